@@ -0,0 +1,112 @@
+package com.gsoc.freebase.importer.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RiotReader;
+import org.apache.jena.riot.system.StreamRDFBase;
+
+import com.gsoc.freebase.importer.model.Entity;
+import com.gsoc.freebase.importer.producer.impl.AbstractProducerImporterHandler;
+import com.hp.hpl.jena.graph.Triple;
+
+/**
+ * <p>
+ * Input data shared by the benchmarks
+ * </p>
+ * <p>
+ * The triples are read from the sample BaseKB dump used by the importer tests, so the benchmarks measure real-looking
+ * subjects, predicates and literals instead of synthetic strings
+ * </p>
+ */
+public class BenchmarkData
+{
+    /**
+     * Classpath resource containing the sample dump
+     */
+    public static final String SAMPLE_DUMP = "/test.nt.gz";
+
+    /**
+     * The triples of the sample dump, loaded once
+     */
+    private static List<Triple> triples;
+
+    /**
+     * The entities of the sample dump, loaded once
+     */
+    private static List<Entity> entities;
+
+    /**
+     * <p>
+     * Gets the triples of the sample dump in file order
+     * </p>
+     *
+     * @return the list of triples
+     */
+    public static synchronized List<Triple> getTriples()
+    {
+        if (triples == null)
+        {
+            InputStream in = null;
+            try
+            {
+                in = new GZIPInputStream(BenchmarkData.class.getResourceAsStream(SAMPLE_DUMP));
+                final List<Triple> list = new ArrayList<Triple>();
+                RiotReader.parse(in, Lang.NTRIPLES, "http://rdf.basekb.com/", new StreamRDFBase()
+                {
+                    @Override
+                    public void triple(Triple triple)
+                    {
+                        list.add(triple);
+                    }
+                });
+                triples = list;
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException("Unable to read " + SAMPLE_DUMP, e);
+            }
+            finally
+            {
+                IOUtils.closeQuietly(in);
+            }
+        }
+        return triples;
+    }
+
+    /**
+     * <p>
+     * Gets the entities of the sample dump, as they are produced by the producer
+     * </p>
+     *
+     * @return the list of entities
+     */
+    public static synchronized List<Entity> getEntities()
+    {
+        if (entities == null)
+        {
+            final Map<String, Entity> read = new LinkedHashMap<String, Entity>();
+            AbstractProducerImporterHandler handler = new AbstractProducerImporterHandler()
+            {
+                @Override
+                public void onItemRead(String subject, Map<String, List<String>> properties)
+                {
+                    read.put(subject, new Entity(subject, properties));
+                }
+            };
+            handler.start();
+            for (Triple triple : getTriples())
+                handler.triple(triple);
+            handler.finish();
+            entities = new ArrayList<Entity>(read.values());
+        }
+        return entities;
+    }
+}
@@ -0,0 +1,49 @@
+package com.gsoc.freebase.importer.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * Main class of the benchmarks jar
+ * </p>
+ * <p>
+ * It runs JMH with the given command line options, writing the results in JSON format (by default into
+ * {@code jmh-result.json}) so the results of different commits can be compared. For example:
+ * </p>
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar -rff results/$(git rev-parse --short HEAD).json
+ * </pre>
+ */
+public class BenchmarkRunner
+{
+    /**
+     * Default file of the results
+     */
+    public static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+    /**
+     * @param args the JMH command line options
+     * @throws Exception if JMH fails
+     */
+    public static void main(String[] args) throws Exception
+    {
+        List<String> options = new ArrayList<String>();
+        List<String> given = Arrays.asList(args);
+        if (!given.contains("-rf"))
+        {
+            options.add("-rf");
+            options.add("json");
+        }
+        if (!given.contains("-rff"))
+        {
+            options.add("-rff");
+            options.add(DEFAULT_RESULT_FILE);
+        }
+        options.addAll(given);
+
+        org.openjdk.jmh.Main.main(options.toArray(new String[options.size()]));
+    }
+}
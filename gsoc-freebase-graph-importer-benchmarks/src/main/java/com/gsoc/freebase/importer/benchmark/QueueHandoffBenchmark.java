@@ -0,0 +1,146 @@
+package com.gsoc.freebase.importer.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.consumer.impl.AbstractFreebaseConsumer;
+import com.gsoc.freebase.importer.model.CheckpointEntity;
+import com.gsoc.freebase.importer.model.Entity;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+
+/**
+ * <p>
+ * Benchmark of the hand-off of entities from the producer to the consumers through the shared queue
+ * </p>
+ * <p>
+ * The consumers run the real consumer loop ({@code AbstractFreebaseConsumer}) with an empty {@code consume}, so the
+ * score is the cost of the queue, the consumer loop and its metrics. Every invocation puts a batch of entities and
+ * waits in a checkpoint until the consumers have taken all of them
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueHandoffBenchmark
+{
+    /**
+     * Number of entities put in every invocation
+     */
+    private static final int BATCH = 10000;
+
+    /**
+     * Capacity of the queue
+     */
+    @Param({ "10", "1000" })
+    public int capacity;
+
+    /**
+     * Number of consumers
+     */
+    @Param({ "1", "4" })
+    public int consumers;
+
+    /**
+     * The shared queue
+     */
+    private BlockingQueue<Entity> queue;
+
+    /**
+     * The consumer threads
+     */
+    private List<Thread> threads;
+
+    /**
+     * The entities put in the queue
+     */
+    private Entity[] entities;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        List<Entity> sample = BenchmarkData.getEntities();
+        this.entities = new Entity[BATCH];
+        for (int i = 0; i < BATCH; i++)
+            this.entities[i] = sample.get(i % sample.size());
+
+        this.queue = new ArrayBlockingQueue<Entity>(this.capacity);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        this.threads = new ArrayList<Thread>();
+        for (int i = 0; i < this.consumers; i++)
+        {
+            Thread thread = new Thread(new EmptyConsumer(startLatch, this.queue), EmptyConsumer.class.getName() + i);
+            this.threads.add(thread);
+            thread.start();
+        }
+        startLatch.countDown();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException
+    {
+        this.queue.put(new Entity(ImporterConstants.CANCEL_ENTITY_URI, null));
+        for (Thread thread : this.threads)
+            thread.join();
+    }
+
+    /**
+     * <p>
+     * Measures the entities handed off per second
+     * </p>
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void handoff() throws InterruptedException, BrokenBarrierException
+    {
+        for (Entity entity : this.entities)
+            this.queue.put(entity);
+
+        CyclicBarrier barrier = new CyclicBarrier(this.consumers + 1);
+        for (int i = 0; i < this.consumers; i++)
+            this.queue.put(new CheckpointEntity(barrier));
+        barrier.await();
+    }
+
+    /**
+     * <p>
+     * Consumer which discards the entities
+     * </p>
+     */
+    private static class EmptyConsumer extends AbstractFreebaseConsumer
+    {
+        public EmptyConsumer(CountDownLatch startLatch, BlockingQueue<Entity> queue)
+        {
+            super(startLatch, queue, new TinkerGraph(), 0);
+        }
+
+        @Override
+        protected void consume(Entity entity)
+        {
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.gsoc.freebase.importer.consumer.impl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gsoc.freebase.importer.model.Entity;
+import com.gsoc.freebase.importer.predicates.PredicateMetadata;
+import com.gsoc.freebase.importer.predicates.PredicateRegistry;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+
+/**
+ * <p>
+ * Benchmark of {@code FreebaseGenerateRelationsConsumer.updateEdgeValues}: incrementing the counters of the domain,
+ * type and property prefixes of a predicate in the edge
+ * </p>
+ * <p>
+ * The prefixes are computed once per predicate by the {@code PredicateRegistry}, so the update only increments the
+ * counters. {@code lookupAndUpdateEdgeValues} adds the lookup of the predicate in the registry, as the consumer does for
+ * every relation
+ * </p>
+ * <p>
+ * An in-memory {@code TinkerGraph} is used, so the score doesn't include the cost of the store
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EdgeValuesBenchmark
+{
+    /**
+     * The property whose counters are updated
+     */
+    @Param({ "http://rdf.basekb.com/ns/type.object.name",
+            "http://rdf.basekb.com/ns/common.topic.topic_equivalent_webpage" })
+    public String property;
+
+    /**
+     * The registry the metadata of the property is looked up in
+     */
+    private PredicateRegistry registry;
+
+    /**
+     * The metadata of the property, resolved once
+     */
+    private PredicateMetadata predicate;
+
+    /**
+     * The consumer being measured
+     */
+    private FreebaseGenerateRelationsConsumer consumer;
+
+    /**
+     * The edge updated
+     */
+    private Edge edge;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        Graph graph = new TinkerGraph();
+        this.consumer = new FreebaseGenerateRelationsConsumer(new CountDownLatch(1),
+                new ArrayBlockingQueue<Entity>(1), graph);
+        this.edge = graph.addEdge(null, graph.addVertex(null), graph.addVertex(null), "direct-connection");
+        this.registry = new PredicateRegistry();
+        this.predicate = this.registry.get(this.property);
+    }
+
+    /**
+     * <p>
+     * Resets the counters of the edge so they don't overflow
+     * </p>
+     */
+    @Setup(Level.Iteration)
+    public void resetEdge()
+    {
+        for (String key : this.edge.getPropertyKeys())
+            this.edge.removeProperty(key);
+    }
+
+    /**
+     * <p>
+     * Measures the update of the counters of one property
+     * </p>
+     */
+    @Benchmark
+    public void updateEdgeValues()
+    {
+        this.consumer.updateEdgeValues(this.edge, this.predicate);
+    }
+
+    /**
+     * <p>
+     * Measures the lookup of the property in the registry and the update of its counters
+     * </p>
+     */
+    @Benchmark
+    public void lookupAndUpdateEdgeValues()
+    {
+        this.consumer.updateEdgeValues(this.edge, this.registry.get(this.property));
+    }
+}
@@ -0,0 +1,141 @@
+package com.gsoc.freebase.importer.consumer.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.model.Entity;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+
+/**
+ * <p>
+ * Benchmark of {@code FreebaseGenerateRelationsConsumer.isTopicGraph}: the lookup by URI done for every property value
+ * of every entity in the relations step
+ * </p>
+ * <p>
+ * The lookups are done against an embedded Neo4j store (in a temporary directory) containing the given number of topic
+ * vertices indexed by URI, as the vertices step generates them. Both lookups of existing topics and of URIs which are
+ * not topics (the most common case) are measured
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopicLookupBenchmark
+{
+    /**
+     * Number of vertices committed in every transaction while the store is populated
+     */
+    private static final int POPULATE_COMMIT_INTERVAL = 10000;
+
+    /**
+     * Number of topic vertices in the store
+     */
+    @Param({ "10000", "100000" })
+    public int topics;
+
+    /**
+     * Directory of the store
+     */
+    private File directory;
+
+    /**
+     * The store
+     */
+    private Neo4jGraph graph;
+
+    /**
+     * The consumer being measured
+     */
+    private FreebaseGenerateRelationsConsumer consumer;
+
+    /**
+     * Next topic looked up
+     */
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        this.directory = File.createTempFile("topic-lookup", "");
+        this.directory.delete();
+
+        this.graph = new Neo4jGraph(this.directory.getAbsolutePath());
+        this.graph.createKeyIndex(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY, Vertex.class);
+        this.graph.commit();
+        for (int i = 0; i < this.topics; i++)
+        {
+            Vertex v = this.graph.addVertex(null);
+            v.setProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY, topicUri(i));
+            if ((i + 1) % POPULATE_COMMIT_INTERVAL == 0)
+                this.graph.commit();
+        }
+        this.graph.commit();
+
+        this.consumer = new FreebaseGenerateRelationsConsumer(new CountDownLatch(1),
+                new ArrayBlockingQueue<Entity>(1), this.graph);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        this.graph.shutdown();
+        FileUtils.deleteQuietly(this.directory);
+    }
+
+    /**
+     * <p>
+     * Generates the URI of a topic
+     * </p>
+     */
+    private static String topicUri(int i)
+    {
+        return "http://rdf.basekb.com/ns/m." + Integer.toString(i * 7919 + 1000000, 36);
+    }
+
+    /**
+     * <p>
+     * Measures the lookup of an existing topic
+     * </p>
+     */
+    @Benchmark
+    public boolean isTopicGraphHit()
+    {
+        this.next = (this.next + 1) % this.topics;
+        return this.consumer.isTopicGraph(topicUri(this.next));
+    }
+
+    /**
+     * <p>
+     * Measures the lookup of an URI which is not a topic
+     * </p>
+     */
+    @Benchmark
+    public boolean isTopicGraphMiss()
+    {
+        this.next = (this.next + 1) % this.topics;
+        return this.consumer.isTopicGraph(topicUri(this.next) + "_");
+    }
+}
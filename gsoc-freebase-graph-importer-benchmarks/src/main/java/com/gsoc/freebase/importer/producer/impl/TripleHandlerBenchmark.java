@@ -0,0 +1,110 @@
+package com.gsoc.freebase.importer.producer.impl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.gsoc.freebase.importer.benchmark.BenchmarkData;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+
+/**
+ * <p>
+ * Benchmark of the producer handler: grouping the triples into entities and converting the objects into strings
+ * </p>
+ * <p>
+ * The score is the time to process all the triples of the sample dump (about 10000 triples)
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TripleHandlerBenchmark
+{
+    /**
+     * The triples of the sample dump
+     */
+    private Triple[] triples;
+
+    /**
+     * The objects of the triples of the sample dump
+     */
+    private Node[] objects;
+
+    /**
+     * The handler being measured
+     */
+    private BlackholeHandler handler;
+
+    @Setup
+    public void setUp()
+    {
+        List<Triple> list = BenchmarkData.getTriples();
+        this.triples = list.toArray(new Triple[list.size()]);
+        this.objects = new Node[this.triples.length];
+        for (int i = 0; i < this.triples.length; i++)
+            this.objects[i] = this.triples[i].getObject();
+        this.handler = new BlackholeHandler();
+    }
+
+    /**
+     * <p>
+     * Measures {@code AbstractProducerImporterHandler.triple()} over the whole sample dump
+     * </p>
+     */
+    @Benchmark
+    public void triple(Blackhole blackhole)
+    {
+        this.handler.blackhole = blackhole;
+        this.handler.start();
+        for (Triple triple : this.triples)
+            this.handler.triple(triple);
+        this.handler.finish();
+    }
+
+    /**
+     * <p>
+     * Measures {@code AbstractProducerImporterHandler.generateStringValue()} over the objects of the sample dump
+     * </p>
+     */
+    @Benchmark
+    public void generateStringValue(Blackhole blackhole)
+    {
+        for (Node object : this.objects)
+            blackhole.consume(this.handler.generateStringValue(object));
+    }
+
+    /**
+     * <p>
+     * Handler sending the entities read to the blackhole
+     * </p>
+     */
+    private static class BlackholeHandler extends AbstractProducerImporterHandler
+    {
+        /**
+         * The blackhole of the current invocation
+         */
+        private Blackhole blackhole;
+
+        @Override
+        public void onItemRead(String subject, Map<String, List<String>> properties)
+        {
+            this.blackhole.consume(properties);
+        }
+    }
+}
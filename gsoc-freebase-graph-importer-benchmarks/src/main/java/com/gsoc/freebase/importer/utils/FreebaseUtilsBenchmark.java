@@ -0,0 +1,91 @@
+package com.gsoc.freebase.importer.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.gsoc.freebase.importer.benchmark.BenchmarkData;
+import com.gsoc.freebase.importer.model.Entity;
+import com.hp.hpl.jena.graph.Triple;
+
+/**
+ * <p>
+ * Benchmark of the checks done for every entity and every property value: {@code FreebaseUtils.isFreebaseId} and
+ * {@code FreebaseUtils.isTopic}
+ * </p>
+ * <p>
+ * The score is the time to check all the URIs (or entities) of the sample dump
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FreebaseUtilsBenchmark
+{
+    /**
+     * The subjects and URI objects of the sample dump
+     */
+    private String[] uris;
+
+    /**
+     * The properties of the entities of the sample dump
+     */
+    private List<Map<String, List<String>>> properties;
+
+    @Setup
+    public void setUp()
+    {
+        List<String> list = new ArrayList<String>();
+        for (Triple triple : BenchmarkData.getTriples())
+        {
+            list.add(triple.getSubject().getURI());
+            if (triple.getObject().isURI())
+                list.add(triple.getObject().getURI());
+        }
+        this.uris = list.toArray(new String[list.size()]);
+
+        this.properties = new ArrayList<Map<String, List<String>>>();
+        for (Entity entity : BenchmarkData.getEntities())
+            this.properties.add(entity.getProperties());
+    }
+
+    /**
+     * <p>
+     * Measures {@code FreebaseUtils.isFreebaseId} over the URIs of the sample dump
+     * </p>
+     */
+    @Benchmark
+    public void isFreebaseId(Blackhole blackhole)
+    {
+        for (String uri : this.uris)
+            blackhole.consume(FreebaseUtils.isFreebaseId(uri));
+    }
+
+    /**
+     * <p>
+     * Measures {@code FreebaseUtils.isTopic} over the entities of the sample dump
+     * </p>
+     */
+    @Benchmark
+    public void isTopic(Blackhole blackhole)
+    {
+        for (Map<String, List<String>> p : this.properties)
+            blackhole.consume(FreebaseUtils.isTopic(p));
+    }
+}
@@ -31,6 +31,26 @@ public class ImporterConstants
      * Property in a Vertex to put the URI
      */
     public static final String VERTEX_ENTITY_URI_PROPERTY = "URI";
+
+    /**
+     * Property in a Vertex to put the lower case name of the topic
+     */
+    public static final String VERTEX_NAME_LC_PROPERTY = "common_topic_name_lc";
+
+    /**
+     * Property in a Vertex to put the ids of its types in the type dictionary
+     */
+    public static final String VERTEX_TYPES_PROPERTY = "types";
+
+    /**
+     * Property in a Vertex to put the URIs of its heaviest neighbours
+     */
+    public static final String VERTEX_TOP_NEIGHBOURS_PROPERTY = "top_neighbours";
+
+    /**
+     * Property in a Vertex to put the weights of its heaviest neighbours
+     */
+    public static final String VERTEX_TOP_NEIGHBOUR_WEIGHTS_PROPERTY = "top_neighbours_weights";
     
     /**
      * Edge label representing direct connections
@@ -56,5 +76,25 @@ public class ImporterConstants
      * Constant containing the URI of the entity to be used to cancel the consumers
      */
     public static final String CANCEL_ENTITY_URI = "CANCEL";
+
+    /**
+     * Constant containing the URI of the entities used to mark checkpoints in the stream of entities
+     */
+    public static final String CHECKPOINT_ENTITY_URI = "CHECKPOINT";
+
+    /**
+     * Name of the generate graph (vertices) step
+     */
+    public static final String GENERATE_GRAPH_STEP = "vertices";
+
+    /**
+     * Name of the generate graph relations (edges) step
+     */
+    public static final String GENERATE_RELATIONS_STEP = "relations";
+
+    /**
+     * Name of the top neighbours step
+     */
+    public static final String TOP_NEIGHBOURS_STEP = "neighbours";
     
 }
@@ -0,0 +1,265 @@
+package com.gsoc.freebase.importer.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Report of the macro benchmark
+ * </p>
+ * <p>
+ * It contains the environment where the benchmark was executed and one row for every run, and it is written both as
+ * CSV (one line per run, to compare runs in a spreadsheet) and as JSON (environment and runs, to compare reports of
+ * different commits)
+ * </p>
+ */
+public class BenchmarkReport
+{
+    /**
+     * Column containing the graph backend
+     */
+    public static final String BACKEND = "backend";
+
+    /**
+     * Column containing the number of consumers
+     */
+    public static final String CONSUMERS = "consumers";
+
+    /**
+     * Column containing the capacity of the queue
+     */
+    public static final String QUEUE_CAPACITY = "queueCapacity";
+
+    /**
+     * Column containing the repetition of the configuration
+     */
+    public static final String REPETITION = "repetition";
+
+    /**
+     * Column containing the status of the run (ok or failed)
+     */
+    public static final String STATUS = "status";
+
+    /**
+     * Column containing the wall time of the whole process
+     */
+    public static final String WALL_MILLIS = "wallMillis";
+
+    /**
+     * Column containing the wall time of the generate graph step
+     */
+    public static final String VERTICES_MILLIS = "verticesMillis";
+
+    /**
+     * Column containing the wall time of the generate graph relations step
+     */
+    public static final String RELATIONS_MILLIS = "relationsMillis";
+
+    /**
+     * Column containing the peak RSS of the process
+     */
+    public static final String PEAK_RSS_BYTES = "peakRssBytes";
+
+    /**
+     * Column containing the peak heap used
+     */
+    public static final String PEAK_HEAP_BYTES = "peakHeapBytes";
+
+    /**
+     * Column containing the number of garbage collections
+     */
+    public static final String GC_COUNT = "gcCount";
+
+    /**
+     * Column containing the total time of the garbage collections
+     */
+    public static final String GC_MILLIS = "gcMillis";
+
+    /**
+     * Column containing the size of the generated store
+     */
+    public static final String STORE_BYTES = "storeBytes";
+
+    /**
+     * The columns of every run, in report order
+     */
+    public static final String[] COLUMNS = { BACKEND, CONSUMERS, QUEUE_CAPACITY, REPETITION, STATUS, WALL_MILLIS,
+            VERTICES_MILLIS, RELATIONS_MILLIS, PEAK_RSS_BYTES, PEAK_HEAP_BYTES, GC_COUNT, GC_MILLIS, STORE_BYTES };
+
+    /**
+     * The environment of the benchmark
+     */
+    private Map<String, String> environment;
+
+    /**
+     * The runs
+     */
+    private List<Map<String, String>> runs;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     */
+    public BenchmarkReport()
+    {
+        this.environment = new LinkedHashMap<String, String>();
+        this.runs = new ArrayList<Map<String, String>>();
+    }
+
+    /**
+     * <p>
+     * Adds a property of the environment
+     * </p>
+     *
+     * @param name the name of the property
+     * @param value the value of the property
+     */
+    public void addEnvironment(String name, String value)
+    {
+        this.environment.put(name, value);
+    }
+
+    /**
+     * <p>
+     * Adds a run
+     * </p>
+     *
+     * @param run the values of the run by column
+     */
+    public void addRun(Map<String, String> run)
+    {
+        this.runs.add(run);
+    }
+
+    /**
+     * @return the runs of the report
+     */
+    public List<Map<String, String>> getRuns()
+    {
+        return this.runs;
+    }
+
+    /**
+     * <p>
+     * Writes the runs as CSV
+     * </p>
+     *
+     * @param file the CSV file
+     * @throws IOException if the file can't be written
+     */
+    public void writeCsv(File file) throws IOException
+    {
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file),
+                Charset.forName("UTF-8")));
+        try
+        {
+            for (int i = 0; i < COLUMNS.length; i++)
+                writer.print((i > 0 ? "," : "") + COLUMNS[i]);
+            writer.print("\n");
+            for (Map<String, String> run : this.runs)
+            {
+                for (int i = 0; i < COLUMNS.length; i++)
+                    writer.print((i > 0 ? "," : "") + valueOf(run.get(COLUMNS[i])));
+                writer.print("\n");
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    /**
+     * <p>
+     * Writes the environment and the runs as JSON
+     * </p>
+     *
+     * @param file the JSON file
+     * @throws IOException if the file can't be written
+     */
+    public void writeJson(File file) throws IOException
+    {
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file),
+                Charset.forName("UTF-8")));
+        try
+        {
+            writer.print("{\n  \"environment\": {");
+            int i = 0;
+            for (Map.Entry<String, String> entry : this.environment.entrySet())
+            {
+                writer.print((i++ > 0 ? "," : "") + "\n    " + jsonString(entry.getKey()) + ": "
+                        + jsonString(entry.getValue()));
+            }
+            writer.print("\n  },\n  \"runs\": [");
+            for (int r = 0; r < this.runs.size(); r++)
+            {
+                Map<String, String> run = this.runs.get(r);
+                writer.print((r > 0 ? "," : "") + "\n    {");
+                for (int c = 0; c < COLUMNS.length; c++)
+                {
+                    writer.print((c > 0 ? ", " : "") + jsonString(COLUMNS[c]) + ": "
+                            + jsonValue(run.get(COLUMNS[c])));
+                }
+                writer.print("}");
+            }
+            writer.print("\n  ]\n}\n");
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    /**
+     * <p>
+     * Converts a missing value into an empty string
+     * </p>
+     */
+    private static String valueOf(String value)
+    {
+        return value == null ? "" : value;
+    }
+
+    /**
+     * <p>
+     * Generates a JSON value: a number if the value is numeric, null if it is missing or a string otherwise
+     * </p>
+     */
+    private static String jsonValue(String value)
+    {
+        if (value == null || value.isEmpty())
+            return "null";
+        if (value.matches("-?\\d+(\\.\\d+)?"))
+            return value;
+        return jsonString(value);
+    }
+
+    /**
+     * <p>
+     * Generates a JSON string
+     * </p>
+     */
+    private static String jsonString(String value)
+    {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : valueOf(value).toCharArray())
+        {
+            if (c == '"' || c == '\\')
+                sb.append('\\').append(c);
+            else if (c < 0x20)
+                sb.append(String.format("\\u%04x", (int) c));
+            else
+                sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+}
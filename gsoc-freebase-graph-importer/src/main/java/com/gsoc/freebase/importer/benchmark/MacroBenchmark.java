@@ -0,0 +1,302 @@
+package com.gsoc.freebase.importer.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TimeZone;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gsoc.freebase.importer.impl.GraphBackend;
+
+/**
+ * <p>
+ * End to end benchmark of the importer
+ * </p>
+ * <p>
+ * It runs {@code FreebaseToGraphImporter.process()} (both steps) on a dataset for every combination of graph backend,
+ * number of consumers and queue capacity, the given number of times. Every run is executed in a fresh JVM (
+ * {@code MacroBenchmarkRun}) with the given JVM arguments and a new store, so runs don't share caches, JIT state or
+ * heap. The measures of every run are collected in a {@code BenchmarkReport} written as CSV and JSON
+ * </p>
+ */
+public class MacroBenchmark
+{
+    /**
+     * Logger
+     */
+    private static Logger logger = LoggerFactory.getLogger(MacroBenchmark.class);
+
+    /**
+     * The dataset (file or directory) to import
+     */
+    private File dataset;
+
+    /**
+     * Directory where the stores, logs and reports are written
+     */
+    private File workDirectory;
+
+    /**
+     * Graph backends to benchmark
+     */
+    private List<GraphBackend> backends;
+
+    /**
+     * Numbers of consumers to benchmark
+     */
+    private List<Integer> consumers;
+
+    /**
+     * Queue capacities to benchmark (0 means the default capacity of every step)
+     */
+    private List<Integer> queueCapacities;
+
+    /**
+     * Number of runs of every configuration
+     */
+    private int repetitions;
+
+    /**
+     * Arguments of the JVMs running the imports
+     */
+    private List<String> jvmArguments;
+
+    /**
+     * Free label stored in the report (for example the commit being measured)
+     */
+    private String label;
+
+    /**
+     * Flag indicating whether to keep the generated stores
+     */
+    private boolean keepStores;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param dataset the file or directory to import
+     * @param workDirectory the directory where the stores, logs and reports are written
+     */
+    public MacroBenchmark(File dataset, File workDirectory)
+    {
+        this.dataset = dataset;
+        this.workDirectory = workDirectory;
+        this.backends = Arrays.asList(GraphBackend.NEO4J);
+        this.consumers = Arrays.asList(Runtime.getRuntime().availableProcessors());
+        this.queueCapacities = Arrays.asList(0);
+        this.repetitions = 1;
+        this.jvmArguments = new ArrayList<String>();
+        this.label = "";
+        this.keepStores = false;
+    }
+
+    /**
+     * @param backends the graph backends to benchmark
+     */
+    public void setBackends(List<GraphBackend> backends)
+    {
+        this.backends = backends;
+    }
+
+    /**
+     * @param consumers the numbers of consumers to benchmark
+     */
+    public void setConsumers(List<Integer> consumers)
+    {
+        this.consumers = consumers;
+    }
+
+    /**
+     * @param queueCapacities the queue capacities to benchmark (0 means the default capacity of every step)
+     */
+    public void setQueueCapacities(List<Integer> queueCapacities)
+    {
+        this.queueCapacities = queueCapacities;
+    }
+
+    /**
+     * @param repetitions the number of runs of every configuration
+     */
+    public void setRepetitions(int repetitions)
+    {
+        this.repetitions = repetitions;
+    }
+
+    /**
+     * @param jvmArguments the arguments of the JVMs running the imports (for example -Xmx4g)
+     */
+    public void setJvmArguments(List<String> jvmArguments)
+    {
+        this.jvmArguments = jvmArguments;
+    }
+
+    /**
+     * @param label a free label stored in the report (for example the commit being measured)
+     */
+    public void setLabel(String label)
+    {
+        this.label = label;
+    }
+
+    /**
+     * @param keepStores true to keep the stores generated by the runs
+     */
+    public void setKeepStores(boolean keepStores)
+    {
+        this.keepStores = keepStores;
+    }
+
+    /**
+     * <p>
+     * Runs the benchmark and writes the report ({@code report.csv} and {@code report.json} in the work directory)
+     * </p>
+     *
+     * @return the report
+     * @throws IOException if the work directory or the report can't be written
+     * @throws InterruptedException if the benchmark is interrupted while waiting for a run
+     */
+    public BenchmarkReport run() throws IOException, InterruptedException
+    {
+        FileUtils.forceMkdir(this.workDirectory);
+
+        BenchmarkReport report = new BenchmarkReport();
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.ENGLISH);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        report.addEnvironment("timestamp", format.format(new Date()));
+        report.addEnvironment("label", this.label);
+        report.addEnvironment("dataset", this.dataset.getAbsolutePath());
+        report.addEnvironment("datasetBytes", Long.toString(this.dataset.isDirectory() ? FileUtils
+                .sizeOfDirectory(this.dataset) : this.dataset.length()));
+        report.addEnvironment("javaVersion", System.getProperty("java.version"));
+        report.addEnvironment("javaVm", System.getProperty("java.vm.name"));
+        report.addEnvironment("os", System.getProperty("os.name") + " " + System.getProperty("os.version") + " "
+                + System.getProperty("os.arch"));
+        report.addEnvironment("processors", Integer.toString(Runtime.getRuntime().availableProcessors()));
+        report.addEnvironment("jvmArguments", join(this.jvmArguments));
+
+        int run = 0;
+        int total = this.backends.size() * this.consumers.size() * this.queueCapacities.size() * this.repetitions;
+        for (GraphBackend backend : this.backends)
+        {
+            for (int consumerSize : this.consumers)
+            {
+                for (int queueCapacity : this.queueCapacities)
+                {
+                    for (int repetition = 1; repetition <= this.repetitions; repetition++)
+                    {
+                        run++;
+                        logger.info(String.format(Locale.ENGLISH, "Run %d of %d: backend %s, %d consumers, "
+                                + "queue %d, repetition %d", run, total, backend, consumerSize, queueCapacity,
+                                repetition));
+                        Map<String, String> result = this.runOnce(run, backend, consumerSize, queueCapacity);
+                        result.put(BenchmarkReport.REPETITION, Integer.toString(repetition));
+                        report.addRun(result);
+                        logger.info("Run " + run + ": " + result);
+                    }
+                }
+            }
+        }
+
+        report.writeCsv(new File(this.workDirectory, "report.csv"));
+        report.writeJson(new File(this.workDirectory, "report.json"));
+        logger.info("Report written in " + new File(this.workDirectory, "report.csv").getAbsolutePath() + " and "
+                + new File(this.workDirectory, "report.json").getAbsolutePath());
+        return report;
+    }
+
+    /**
+     * <p>
+     * Executes a run in a new JVM
+     * </p>
+     *
+     * @return the values of the run by column
+     */
+    private Map<String, String> runOnce(int run, GraphBackend backend, int consumerSize, int queueCapacity)
+            throws IOException, InterruptedException
+    {
+        String name = String.format(Locale.ENGLISH, "run-%03d", run);
+        File store = new File(this.workDirectory, name);
+        File resultFile = new File(this.workDirectory, name + ".properties");
+        File log = new File(this.workDirectory, name + ".log");
+        FileUtils.deleteQuietly(store);
+        FileUtils.deleteQuietly(resultFile);
+
+        List<String> command = new ArrayList<String>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath());
+        command.addAll(this.jvmArguments);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(MacroBenchmarkRun.class.getName());
+        command.add(this.dataset.getAbsolutePath());
+        command.add(store.getAbsolutePath());
+        command.add(backend.name());
+        command.add(Integer.toString(consumerSize));
+        command.add(Integer.toString(queueCapacity));
+        command.add(resultFile.getAbsolutePath());
+
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(log);
+        int exitCode = builder.start().waitFor();
+
+        Map<String, String> result = new LinkedHashMap<String, String>();
+        result.put(BenchmarkReport.BACKEND, backend.name().toLowerCase(Locale.ENGLISH));
+        result.put(BenchmarkReport.CONSUMERS, Integer.toString(consumerSize));
+        result.put(BenchmarkReport.QUEUE_CAPACITY, Integer.toString(queueCapacity));
+
+        if (exitCode == 0 && resultFile.isFile())
+        {
+            Properties properties = new Properties();
+            InputStream in = new FileInputStream(resultFile);
+            try
+            {
+                properties.load(in);
+            }
+            finally
+            {
+                IOUtils.closeQuietly(in);
+            }
+            result.put(BenchmarkReport.STATUS, "ok");
+            for (String key : properties.stringPropertyNames())
+                result.put(key, properties.getProperty(key));
+        }
+        else
+        {
+            logger.warn("Run " + run + " failed with exit code " + exitCode + ". See " + log.getAbsolutePath());
+            result.put(BenchmarkReport.STATUS, "failed");
+        }
+
+        if (!this.keepStores)
+            FileUtils.deleteQuietly(store);
+        return result;
+    }
+
+    /**
+     * <p>
+     * Joins a list of arguments with spaces
+     * </p>
+     */
+    private static String join(List<String> values)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (String value : values)
+            sb.append(sb.length() > 0 ? " " : "").append(value);
+        return sb.toString();
+    }
+}
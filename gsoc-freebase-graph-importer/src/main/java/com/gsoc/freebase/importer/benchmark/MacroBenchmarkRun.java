@@ -0,0 +1,169 @@
+package com.gsoc.freebase.importer.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.impl.FreebaseToGraphImporter;
+import com.gsoc.freebase.importer.impl.GraphBackend;
+
+/**
+ * <p>
+ * A single run of the macro benchmark
+ * </p>
+ * <p>
+ * It is executed in its own JVM by the {@code MacroBenchmark}, so the memory and GC figures only contain the import.
+ * It runs both steps of the importer on the dataset and writes the measures in a properties file:
+ * <ul>
+ * <li>wall time of the whole process and of every step
+ * <li>peak RSS of the process (from {@code /proc/self/status}, -1 if it isn't available)
+ * <li>peak heap used (sum of the peaks of the heap memory pools)
+ * <li>number and total time of the garbage collections
+ * <li>size of the generated store
+ * </ul>
+ * </p>
+ */
+public class MacroBenchmarkRun
+{
+    /**
+     * <p>
+     * Runs the import and writes the measures
+     * </p>
+     *
+     * @param args dataset, graph directory, backend, consumers, queue capacity and result file
+     * @throws IOException if the result can't be written
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 6)
+        {
+            System.out.println("Usage: " + MacroBenchmarkRun.class.getName()
+                    + " <dataset> <graphDirectory> <backend> <consumers> <queueCapacity> <resultFile>");
+            System.exit(1);
+        }
+
+        File dataset = new File(args[0]);
+        File graphDirectory = new File(args[1]);
+        int consumers = Integer.parseInt(args[3]);
+
+        FreebaseToGraphImporter importer = new FreebaseToGraphImporter(dataset, graphDirectory, consumers);
+        importer.setGenerateGraph(true);
+        importer.setGenerateGraphRelations(true);
+        importer.setGraphBackend(GraphBackend.parse(args[2]));
+        importer.setQueueCapacity(Integer.parseInt(args[4]));
+
+        long start = System.nanoTime();
+        importer.process();
+        long wall = (System.nanoTime() - start) / 1000000;
+
+        Properties result = new Properties();
+        result.setProperty(BenchmarkReport.WALL_MILLIS, Long.toString(wall));
+        Map<String, Long> steps = importer.getStepDurations();
+        result.setProperty(BenchmarkReport.VERTICES_MILLIS, valueOf(steps.get(ImporterConstants.GENERATE_GRAPH_STEP)));
+        result.setProperty(BenchmarkReport.RELATIONS_MILLIS,
+                valueOf(steps.get(ImporterConstants.GENERATE_RELATIONS_STEP)));
+        result.setProperty(BenchmarkReport.PEAK_RSS_BYTES, Long.toString(peakRss()));
+        result.setProperty(BenchmarkReport.PEAK_HEAP_BYTES, Long.toString(peakHeap()));
+
+        long gcCount = 0;
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            gcCount += Math.max(0, gc.getCollectionCount());
+            gcMillis += Math.max(0, gc.getCollectionTime());
+        }
+        result.setProperty(BenchmarkReport.GC_COUNT, Long.toString(gcCount));
+        result.setProperty(BenchmarkReport.GC_MILLIS, Long.toString(gcMillis));
+        result.setProperty(BenchmarkReport.STORE_BYTES, Long.toString(FileUtils.sizeOfDirectory(graphDirectory)));
+
+        OutputStream out = new FileOutputStream(args[5]);
+        try
+        {
+            result.store(out, "Macro benchmark run");
+        }
+        finally
+        {
+            IOUtils.closeQuietly(out);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * <p>
+     * Converts a duration into a string (-1 if the step hasn't been run)
+     * </p>
+     */
+    private static String valueOf(Long millis)
+    {
+        return millis == null ? "-1" : millis.toString();
+    }
+
+    /**
+     * <p>
+     * Gets the peak resident set size of the process
+     * </p>
+     *
+     * @return the peak RSS in bytes or -1 if it isn't available (only Linux exposes it)
+     */
+    static long peakRss()
+    {
+        File status = new File("/proc/self/status");
+        if (!status.canRead())
+            return -1;
+
+        BufferedReader reader = null;
+        try
+        {
+            reader = new BufferedReader(new FileReader(status));
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                if (line.startsWith("VmHWM:"))
+                {
+                    String[] parts = line.substring(6).trim().split("\\s+");
+                    return Long.parseLong(parts[0]) * 1024;
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+        finally
+        {
+            IOUtils.closeQuietly(reader);
+        }
+        return -1;
+    }
+
+    /**
+     * <p>
+     * Gets the peak heap used, as the sum of the peaks of the heap memory pools
+     * </p>
+     *
+     * @return the peak heap in bytes
+     */
+    static long peakHeap()
+    {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null)
+                peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,192 @@
+package com.gsoc.freebase.importer.binary;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.RiotReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gsoc.freebase.importer.producer.impl.AbstractProducerImporterHandler;
+
+/**
+ * <p>
+ * Converts RDF files into binary entity files
+ * </p>
+ * <p>
+ * The triples are parsed once and grouped into entities as the producer does, so the steps of the import (and the
+ * later imports) read the binary files without tokenizing the RDF again. Every input file is converted into a binary
+ * file with the same name and the {@code .fbb} extension, so the checkpoints keep working file by file
+ * </p>
+ */
+public class BinaryConverter
+{
+    /**
+     * Logger
+     */
+    private static Logger logger = LoggerFactory.getLogger(BinaryConverter.class);
+
+    /**
+     * Uncompressed size of the blocks
+     */
+    private int blockSize;
+
+    /**
+     * <p>
+     * Constructs a converter writing blocks of the default size
+     * </p>
+     */
+    public BinaryConverter()
+    {
+        this.blockSize = BinaryEntityWriter.DEFAULT_BLOCK_SIZE;
+    }
+
+    /**
+     * <p>
+     * Sets the uncompressed size of the blocks
+     * </p>
+     *
+     * @param blockSize the size in bytes
+     */
+    public void setBlockSize(int blockSize)
+    {
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * <p>
+     * Converts a file or the files of a directory (one level only) into the output directory
+     * </p>
+     *
+     * @param input the file or directory to convert
+     * @param outputDirectory the directory of the binary files
+     * @return the number of entities converted
+     * @throws IOException if a file can't be converted
+     */
+    public long convertAll(File input, File outputDirectory) throws IOException
+    {
+        File[] files;
+        if (input.isDirectory())
+        {
+            files = input.listFiles(new FilenameFilter()
+            {
+                @Override
+                public boolean accept(File dir, String name)
+                {
+                    return !name.startsWith(".");
+                }
+            });
+            Arrays.sort(files);
+        }
+        else
+            files = new File[] { input };
+
+        if (!outputDirectory.exists() && !outputDirectory.mkdirs())
+            throw new IOException("Unable to create " + outputDirectory.getAbsolutePath());
+
+        long entities = 0;
+        for (File f : files)
+            entities += this.convert(f, new File(outputDirectory, getBinaryName(f)));
+        return entities;
+    }
+
+    /**
+     * <p>
+     * Converts a file
+     * </p>
+     *
+     * @param input the RDF file (plain, gzipped or bzipped)
+     * @param output the binary file
+     * @return the number of entities converted
+     * @throws IOException if the file can't be converted
+     */
+    public long convert(File input, File output) throws IOException
+    {
+        long start = System.currentTimeMillis();
+        final BinaryEntityWriter writer = new BinaryEntityWriter(output, this.blockSize);
+        AbstractProducerImporterHandler handler = new AbstractProducerImporterHandler()
+        {
+            @Override
+            public void onItemRead(String subject, Map<String, List<String>> properties)
+            {
+                /* The last call of an empty file has no subject */
+                if (subject == null || subject.isEmpty())
+                    return;
+                try
+                {
+                    writer.write(subject, properties);
+                }
+                catch (IOException e)
+                {
+                    throw new IllegalStateException("Unable to write " + subject, e);
+                }
+            }
+        };
+
+        InputStream in = null;
+        try
+        {
+            String name = input.getName();
+            if (name.endsWith(".gz"))
+            {
+                in = new GZIPInputStream(new FileInputStream(input), 65536);
+                Lang lang = RDFLanguages.filenameToLang(name.substring(0, name.length() - 3), Lang.NTRIPLES);
+                RiotReader.parse(in, lang, input.toURI().toString(), handler);
+            }
+            else if (name.endsWith(".bz2"))
+                RiotReader.parse(input.getAbsolutePath(), handler);
+            else
+            {
+                in = new BufferedInputStream(new FileInputStream(input), 65536);
+                RiotReader.parse(in, RDFLanguages.filenameToLang(name, Lang.NTRIPLES), input.toURI().toString(),
+                        handler);
+            }
+        }
+        catch (IllegalStateException e)
+        {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw e;
+        }
+        finally
+        {
+            IOUtils.closeQuietly(in);
+            writer.close();
+        }
+
+        logger.info("Converted " + input.getName() + " into " + output.getName() + ": " + writer.getEntities()
+                + " entities, " + input.length() + " -> " + output.length() + " bytes in "
+                + (System.currentTimeMillis() - start) / 1000 + " seconds");
+        return writer.getEntities();
+    }
+
+    /**
+     * <p>
+     * Gets the name of the binary file of an RDF file: the name without the compression and format extensions
+     * </p>
+     *
+     * @param input the RDF file
+     * @return the name of the binary file
+     */
+    public static String getBinaryName(File input)
+    {
+        String name = input.getName();
+        if (name.endsWith(".gz") || name.endsWith(".bz2"))
+            name = name.substring(0, name.lastIndexOf('.'));
+        int extension = name.lastIndexOf('.');
+        if (extension > 0)
+            name = name.substring(0, extension);
+        return name + BinaryEntityWriter.EXTENSION;
+    }
+}
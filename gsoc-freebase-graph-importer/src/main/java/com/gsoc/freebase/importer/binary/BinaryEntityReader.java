@@ -0,0 +1,369 @@
+package com.gsoc.freebase.importer.binary;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.gsoc.freebase.importer.impl.ExecutionMode;
+import com.gsoc.freebase.importer.model.Entity;
+
+/**
+ * <p>
+ * Reader of binary entity files
+ * </p>
+ * <p>
+ * The blocks are independent, so they can be read and decompressed in parallel: {@code read} decodes the next blocks
+ * in a pool of threads while the entities of the current one are delivered, always in the order of the file. See
+ * {@code BinaryFormat} for the layout
+ * </p>
+ */
+public class BinaryEntityReader implements Closeable
+{
+    /**
+     * The file
+     */
+    private File file;
+
+    /**
+     * Channel of the file, used for positional reads from several threads
+     */
+    private FileChannel channel;
+
+    /**
+     * The terms of the dictionary, by id
+     */
+    private String[] dictionary;
+
+    /**
+     * Offsets of the blocks and, at the end, the offset of the footer
+     */
+    private long[] blockOffsets;
+
+    /**
+     * Number of entities of the blocks
+     */
+    private int[] blockSizes;
+
+    /**
+     * <p>
+     * Listener of the entities read
+     * </p>
+     */
+    public interface Listener
+    {
+        /**
+         * <p>
+         * Called for every entity, in the order of the file
+         * </p>
+         *
+         * @param subject the URI of the entity
+         * @param properties the values of every predicate of the entity
+         */
+        public void entity(String subject, Map<String, List<String>> properties);
+
+        /**
+         * <p>
+         * Called once the entities of a block have been delivered
+         * </p>
+         *
+         * @param bytes the bytes of the block in the file
+         */
+        public void blockRead(long bytes);
+    }
+
+    /**
+     * <p>
+     * Opens a binary entity file, reading its dictionary and its index
+     * </p>
+     *
+     * @param file the file
+     * @throws IOException if the file can't be read or it isn't a binary entity file
+     */
+    @SuppressWarnings("resource")
+    public BinaryEntityReader(File file) throws IOException
+    {
+        this.file = file;
+        this.channel = new RandomAccessFile(file, "r").getChannel();
+        try
+        {
+            long size = this.channel.size();
+            ByteBuffer trailer = this.read(size - BinaryFormat.TRAILER_SIZE, BinaryFormat.TRAILER_SIZE);
+            long footer = trailer.getLong();
+            byte[] magic = new byte[BinaryFormat.MAGIC.length];
+            trailer.get(magic);
+            if (size < BinaryFormat.MAGIC.length + BinaryFormat.TRAILER_SIZE
+                    || !Arrays.equals(magic, BinaryFormat.MAGIC))
+                throw new IOException(file.getAbsolutePath() + " isn't a binary entity file");
+
+            DataInputStream in = this.stream(this.read(footer, (int) (size - BinaryFormat.TRAILER_SIZE - footer)));
+            this.dictionary = new String[(int) VarLongCodec.read(in)];
+            for (int i = 0; i < this.dictionary.length; i++)
+                this.dictionary[i] = BinaryFormat.readString(in);
+
+            int blocks = (int) VarLongCodec.read(in);
+            this.blockOffsets = new long[blocks + 1];
+            this.blockSizes = new int[blocks];
+            for (int i = 0; i < blocks; i++)
+            {
+                this.blockOffsets[i] = in.readLong();
+                this.blockSizes[i] = in.readInt();
+            }
+            this.blockOffsets[blocks] = footer;
+        }
+        catch (IOException e)
+        {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * <p>
+     * Gets the number of blocks
+     * </p>
+     *
+     * @return the number of blocks
+     */
+    public int getBlockCount()
+    {
+        return this.blockSizes.length;
+    }
+
+    /**
+     * <p>
+     * Gets the number of entities of the file
+     * </p>
+     *
+     * @return the number of entities
+     */
+    public long getEntityCount()
+    {
+        long entities = 0;
+        for (int size : this.blockSizes)
+            entities += size;
+        return entities;
+    }
+
+    /**
+     * <p>
+     * Gets the number of terms of the dictionary
+     * </p>
+     *
+     * @return the number of terms
+     */
+    public int getDictionarySize()
+    {
+        return this.dictionary.length;
+    }
+
+    /**
+     * <p>
+     * Reads and decodes a block
+     * </p>
+     *
+     * @param index the index of the block
+     * @return the entities of the block
+     * @throws IOException if the block can't be read
+     */
+    public List<Entity> readBlock(int index) throws IOException
+    {
+        long offset = this.blockOffsets[index];
+        ByteBuffer header = this.read(offset, BinaryFormat.BLOCK_HEADER_SIZE);
+        int uncompressedLength = header.getInt();
+        int compressedLength = header.getInt();
+        int entities = header.getInt();
+
+        ByteBuffer compressed = this.read(offset + BinaryFormat.BLOCK_HEADER_SIZE, compressedLength);
+        byte[] uncompressed = new byte[uncompressedLength];
+        Inflater inflater = new Inflater();
+        try
+        {
+            inflater.setInput(compressed.array(), 0, compressedLength);
+            int length = 0;
+            while (length < uncompressedLength && !inflater.finished())
+                length += inflater.inflate(uncompressed, length, uncompressedLength - length);
+            if (length != uncompressedLength)
+                throw new IOException("Truncated block " + index + " in " + this.file.getAbsolutePath());
+        }
+        catch (DataFormatException e)
+        {
+            throw new IOException("Corrupted block " + index + " in " + this.file.getAbsolutePath(), e);
+        }
+        finally
+        {
+            inflater.end();
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(uncompressed));
+        List<Entity> block = new ArrayList<Entity>(entities);
+        for (int i = 0; i < entities; i++)
+        {
+            String subject = this.readValue(in);
+            int predicates = (int) VarLongCodec.read(in);
+            Map<String, List<String>> properties = new HashMap<String, List<String>>();
+            for (int p = 0; p < predicates; p++)
+            {
+                String predicate = this.dictionary[(int) VarLongCodec.read(in)];
+                int count = (int) VarLongCodec.read(in);
+                List<String> values = new ArrayList<String>(count);
+                for (int v = 0; v < count; v++)
+                    values.add(this.readValue(in));
+                properties.put(predicate, values);
+            }
+            block.add(new Entity(subject, properties));
+        }
+        return block;
+    }
+
+    /**
+     * <p>
+     * Reads the entities of the file in order, decoding up to {@code parallelism} blocks at the same time
+     * </p>
+     *
+     * @param parallelism the number of threads decoding blocks (1 to decode them in the current thread)
+     * @param listener the listener of the entities
+     * @throws IOException if a block can't be read
+     * @throws InterruptedException if the thread is interrupted while waiting for a block
+     */
+    public void read(int parallelism, Listener listener) throws IOException, InterruptedException
+    {
+        if (parallelism <= 1)
+        {
+            for (int i = 0; i < this.getBlockCount(); i++)
+                this.deliver(i, this.readBlock(i), listener);
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, ExecutionMode.PLATFORM
+                .newThreadFactory(BinaryEntityReader.class.getName()));
+        try
+        {
+            /* Decode ahead a bounded number of blocks so the memory used doesn't depend on the size of the file */
+            ArrayDeque<Future<List<Entity>>> pending = new ArrayDeque<Future<List<Entity>>>();
+            int next = 0;
+            for (int i = 0; i < this.getBlockCount(); i++)
+            {
+                while (next < this.getBlockCount() && pending.size() < 2 * parallelism)
+                {
+                    final int index = next++;
+                    pending.add(executor.submit(new Callable<List<Entity>>()
+                    {
+                        @Override
+                        public List<Entity> call() throws IOException
+                        {
+                            return readBlock(index);
+                        }
+                    }));
+                }
+
+                try
+                {
+                    this.deliver(i, pending.poll().get(), listener);
+                }
+                catch (ExecutionException e)
+                {
+                    if (e.getCause() instanceof IOException)
+                        throw (IOException) e.getCause();
+                    throw new IllegalStateException("Unable to read block " + i + " of " + this.file.getAbsolutePath(),
+                            e.getCause());
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * <p>
+     * Delivers the entities of a block to the listener
+     * </p>
+     */
+    private void deliver(int index, List<Entity> block, Listener listener)
+    {
+        for (Entity entity : block)
+            listener.entity(entity.getUri(), entity.getProperties());
+        listener.blockRead(this.blockOffsets[index + 1] - this.blockOffsets[index]);
+    }
+
+    /**
+     * <p>
+     * Reads a tagged value
+     * </p>
+     */
+    private String readValue(DataInputStream in) throws IOException
+    {
+        int tag = in.readUnsignedByte();
+        switch (tag)
+        {
+        case BinaryFormat.TAG_MID:
+            return MidCodec.decode(VarLongCodec.read(in));
+        case BinaryFormat.TAG_TERM:
+            return this.dictionary[(int) VarLongCodec.read(in)];
+        case BinaryFormat.TAG_STRING:
+            return BinaryFormat.readString(in);
+        default:
+            throw new IOException("Unknown value tag " + tag + " in " + this.file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * <p>
+     * Reads a range of the file
+     * </p>
+     */
+    private ByteBuffer read(long position, int length) throws IOException
+    {
+        if (position < 0 || length < 0)
+            throw new IOException(this.file.getAbsolutePath() + " isn't a binary entity file");
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining())
+        {
+            if (this.channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Unexpected end of " + this.file.getAbsolutePath());
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * <p>
+     * Creates a stream reading a buffer
+     * </p>
+     */
+    private DataInputStream stream(ByteBuffer buffer)
+    {
+        return new DataInputStream(new ByteArrayInputStream(buffer.array(), 0, buffer.limit()));
+    }
+
+    /**
+     * <p>
+     * Closes the file
+     * </p>
+     */
+    @Override
+    public void close() throws IOException
+    {
+        this.channel.close();
+    }
+}
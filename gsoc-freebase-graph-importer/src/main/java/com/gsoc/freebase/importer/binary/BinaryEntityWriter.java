@@ -0,0 +1,286 @@
+package com.gsoc.freebase.importer.binary;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * <p>
+ * Writer of binary entity files
+ * </p>
+ * <p>
+ * The entities are written in blocks of about {@code blockSize} uncompressed bytes, every block compressed on its own,
+ * so the blocks can be read in parallel using the index of the file. See {@code BinaryFormat} for the layout
+ * </p>
+ */
+public class BinaryEntityWriter implements Closeable
+{
+    /**
+     * Extension of the binary entity files
+     */
+    public static final String EXTENSION = ".fbb";
+
+    /**
+     * Constant containing the default uncompressed size of a block (256 KB)
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 256 << 10;
+
+    /**
+     * The output
+     */
+    private DataOutputStream out;
+
+    /**
+     * Number of bytes written
+     */
+    private long offset;
+
+    /**
+     * Uncompressed size of a block
+     */
+    private int blockSize;
+
+    /**
+     * The uncompressed current block
+     */
+    private ByteArrayOutputStream block;
+
+    /**
+     * Output of the current block
+     */
+    private DataOutputStream blockOut;
+
+    /**
+     * Number of entities of the current block
+     */
+    private int blockEntities;
+
+    /**
+     * Compressor of the blocks
+     */
+    private Deflater deflater;
+
+    /**
+     * Buffer of the compressed blocks
+     */
+    private byte[] compressed;
+
+    /**
+     * Ids of the terms of the dictionary, in id order
+     */
+    private Map<String, Integer> dictionary;
+
+    /**
+     * Offsets of the blocks
+     */
+    private List<Long> blockOffsets;
+
+    /**
+     * Number of entities of the blocks
+     */
+    private List<Integer> blockSizes;
+
+    /**
+     * Number of entities written
+     */
+    private long entities;
+
+    /**
+     * <p>
+     * Creates a writer with the default block size
+     * </p>
+     *
+     * @param file the file to write
+     * @throws IOException if the file can't be created
+     */
+    public BinaryEntityWriter(File file) throws IOException
+    {
+        this(file, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param file the file to write
+     * @param blockSize the uncompressed size of a block
+     * @throws IOException if the file can't be created
+     */
+    public BinaryEntityWriter(File file, int blockSize) throws IOException
+    {
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+        this.blockSize = blockSize;
+        this.block = new ByteArrayOutputStream(blockSize + (blockSize >> 2));
+        this.blockOut = new DataOutputStream(this.block);
+        this.deflater = new Deflater(Deflater.BEST_SPEED);
+        this.compressed = new byte[0];
+        this.dictionary = new LinkedHashMap<String, Integer>();
+        this.blockOffsets = new ArrayList<Long>();
+        this.blockSizes = new ArrayList<Integer>();
+
+        this.out.write(BinaryFormat.MAGIC);
+        this.offset = BinaryFormat.MAGIC.length;
+    }
+
+    /**
+     * <p>
+     * Writes an entity
+     * </p>
+     *
+     * @param subject the URI of the entity
+     * @param properties the values of every predicate of the entity
+     * @throws IOException if the entity can't be written
+     */
+    public void write(String subject, Map<String, List<String>> properties) throws IOException
+    {
+        this.writeValue(subject);
+        VarLongCodec.write(this.blockOut, properties.size());
+        for (Map.Entry<String, List<String>> property : properties.entrySet())
+        {
+            VarLongCodec.write(this.blockOut, this.getTermId(property.getKey()));
+            VarLongCodec.write(this.blockOut, property.getValue().size());
+            for (String value : property.getValue())
+                this.writeValue(value);
+        }
+
+        this.entities++;
+        this.blockEntities++;
+        if (this.block.size() >= this.blockSize)
+            this.flushBlock();
+    }
+
+    /**
+     * <p>
+     * Gets the number of entities written
+     * </p>
+     *
+     * @return the number of entities
+     */
+    public long getEntities()
+    {
+        return this.entities;
+    }
+
+    /**
+     * <p>
+     * Writes a tagged value in the current block
+     * </p>
+     */
+    private void writeValue(String value) throws IOException
+    {
+        long mid = MidCodec.encode(value);
+        if (mid != MidCodec.NOT_A_MID)
+        {
+            this.blockOut.writeByte(BinaryFormat.TAG_MID);
+            VarLongCodec.write(this.blockOut, mid);
+        }
+        else if (BinaryFormat.isTerm(value))
+        {
+            this.blockOut.writeByte(BinaryFormat.TAG_TERM);
+            VarLongCodec.write(this.blockOut, this.getTermId(value));
+        }
+        else
+        {
+            this.blockOut.writeByte(BinaryFormat.TAG_STRING);
+            BinaryFormat.writeString(this.blockOut, value);
+        }
+    }
+
+    /**
+     * <p>
+     * Gets the id of a term, adding it to the dictionary the first time
+     * </p>
+     */
+    private int getTermId(String term)
+    {
+        Integer id = this.dictionary.get(term);
+        if (id == null)
+        {
+            id = this.dictionary.size();
+            this.dictionary.put(term, id);
+        }
+        return id;
+    }
+
+    /**
+     * <p>
+     * Compresses and writes the current block
+     * </p>
+     */
+    private void flushBlock() throws IOException
+    {
+        if (this.blockEntities == 0)
+            return;
+
+        byte[] input = this.block.toByteArray();
+        this.deflater.reset();
+        this.deflater.setInput(input);
+        this.deflater.finish();
+        if (this.compressed.length < input.length + 64)
+            this.compressed = new byte[input.length + (input.length >> 3) + 64];
+        int length = 0;
+        while (!this.deflater.finished())
+        {
+            if (length == this.compressed.length)
+            {
+                byte[] larger = new byte[this.compressed.length * 2];
+                System.arraycopy(this.compressed, 0, larger, 0, length);
+                this.compressed = larger;
+            }
+            length += this.deflater.deflate(this.compressed, length, this.compressed.length - length);
+        }
+
+        this.blockOffsets.add(this.offset);
+        this.blockSizes.add(this.blockEntities);
+        this.out.writeInt(input.length);
+        this.out.writeInt(length);
+        this.out.writeInt(this.blockEntities);
+        this.out.write(this.compressed, 0, length);
+        this.offset += BinaryFormat.BLOCK_HEADER_SIZE + length;
+
+        this.block.reset();
+        this.blockEntities = 0;
+    }
+
+    /**
+     * <p>
+     * Writes the last block and the footer and closes the file
+     * </p>
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            this.flushBlock();
+
+            long footer = this.offset;
+            VarLongCodec.write(this.out, this.dictionary.size());
+            for (String term : this.dictionary.keySet())
+                BinaryFormat.writeString(this.out, term);
+            VarLongCodec.write(this.out, this.blockOffsets.size());
+            for (int i = 0; i < this.blockOffsets.size(); i++)
+            {
+                this.out.writeLong(this.blockOffsets.get(i));
+                this.out.writeInt(this.blockSizes.get(i));
+            }
+            this.out.writeLong(footer);
+            this.out.write(BinaryFormat.MAGIC);
+        }
+        finally
+        {
+            this.deflater.end();
+            this.out.close();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.gsoc.freebase.importer.binary;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import com.gsoc.freebase.importer.utils.FreebaseUtils;
+
+/**
+ * <p>
+ * Constants and primitive encodings of the binary entity format
+ * </p>
+ * <p>
+ * A binary entity file contains:
+ * <ul>
+ * <li>The magic bytes {@code FBGBIN01}
+ * <li>The blocks of entities. Every block has a header with the uncompressed size, the compressed size and the number
+ * of entities (three ints) followed by the entities compressed with deflate
+ * <li>The footer: the dictionary (number of terms and the terms) and the index of the blocks (number of blocks and the
+ * offset and the number of entities of every block)
+ * <li>The offset of the footer (a long) and the magic bytes again
+ * </ul>
+ * </p>
+ * <p>
+ * An entity is its subject, the number of predicates and, for every predicate, the id of the predicate in the
+ * dictionary, the number of values and the values. The subject and the values are tagged: a mid encoded as a long by
+ * the {@code MidCodec}, a term of the dictionary (the predicates and the URIs of the schema, which are repeated in
+ * every entity) or a length-prefixed UTF-8 string. The integers are written as variable length integers
+ * </p>
+ */
+final class BinaryFormat
+{
+    /**
+     * Charset of the strings
+     */
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Magic bytes at the beginning and the end of the files
+     */
+    static final byte[] MAGIC = "FBGBIN01".getBytes(UTF8);
+
+    /**
+     * Size of the header of a block (uncompressed size, compressed size and entities)
+     */
+    static final int BLOCK_HEADER_SIZE = 12;
+
+    /**
+     * Size of the trailer (offset of the footer and magic bytes)
+     */
+    static final int TRAILER_SIZE = 8 + 8;
+
+    /**
+     * Tag of a value encoded as a mid
+     */
+    static final int TAG_MID = 0;
+
+    /**
+     * Tag of a value encoded as a term of the dictionary
+     */
+    static final int TAG_TERM = 1;
+
+    /**
+     * Tag of a value encoded as a string
+     */
+    static final int TAG_STRING = 2;
+
+    /**
+     * Namespace of the URIs stored in the dictionary
+     */
+    private static final String TERM_NAMESPACE = "http://rdf.basekb.com/ns/";
+
+    /**
+     * <p>
+     * Private constructor
+     * </p>
+     */
+    private BinaryFormat()
+    {
+    }
+
+    /**
+     * <p>
+     * Checks whether a value is stored in the dictionary: the URIs of the schema (types, properties...) are, the rest
+     * of the entities (whose number is not bounded) aren't
+     * </p>
+     */
+    static boolean isTerm(String value)
+    {
+        return value.startsWith(TERM_NAMESPACE) && !FreebaseUtils.isFreebaseId(value);
+    }
+
+    /**
+     * <p>
+     * Writes a length-prefixed UTF-8 string
+     * </p>
+     */
+    static void writeString(DataOutput out, String value) throws IOException
+    {
+        byte[] bytes = value.getBytes(UTF8);
+        VarLongCodec.write(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * <p>
+     * Reads a length-prefixed UTF-8 string
+     * </p>
+     */
+    static String readString(DataInput in) throws IOException
+    {
+        byte[] bytes = new byte[(int) VarLongCodec.read(in)];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+}
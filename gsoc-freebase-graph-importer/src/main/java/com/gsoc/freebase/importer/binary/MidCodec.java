@@ -0,0 +1,99 @@
+package com.gsoc.freebase.importer.binary;
+
+/**
+ * <p>
+ * Encodes the URIs of the Freebase mids as longs
+ * </p>
+ * <p>
+ * A mid ({@code http://rdf.basekb.com/ns/m.0bkh3tb}) is a string of up to 12 characters of a 32 symbols alphabet after
+ * the {@code m.} prefix, so it fits in a long: the length in the lowest 4 bits and every character in the next groups
+ * of 5 bits. The short mids have small codes, which take few bytes as variable length integers
+ * </p>
+ */
+public final class MidCodec
+{
+    /**
+     * Prefix of the URIs of the mids
+     */
+    public static final String MID_PREFIX = "http://rdf.basekb.com/ns/m.";
+
+    /**
+     * Code of the URIs which aren't mids
+     */
+    public static final long NOT_A_MID = -1;
+
+    /**
+     * Symbols of the mids
+     */
+    private static final char[] ALPHABET = "0123456789bcdfghjklmnpqrstvwxyz_".toCharArray();
+
+    /**
+     * Maximum number of symbols of an encoded mid
+     */
+    private static final int MAX_LENGTH = 12;
+
+    /**
+     * Value of every character in the alphabet (-1 if it isn't a symbol)
+     */
+    private static final int[] SYMBOLS = new int[128];
+
+    static
+    {
+        for (int i = 0; i < SYMBOLS.length; i++)
+            SYMBOLS[i] = -1;
+        for (int i = 0; i < ALPHABET.length; i++)
+            SYMBOLS[ALPHABET[i]] = i;
+    }
+
+    /**
+     * <p>
+     * Private constructor
+     * </p>
+     */
+    private MidCodec()
+    {
+    }
+
+    /**
+     * <p>
+     * Encodes the URI of a mid
+     * </p>
+     *
+     * @param uri the URI
+     * @return the code of the mid or {@code NOT_A_MID} if the URI isn't a mid which can be encoded
+     */
+    public static long encode(String uri)
+    {
+        int length = uri.length() - MID_PREFIX.length();
+        if (length < 1 || length > MAX_LENGTH || !uri.startsWith(MID_PREFIX))
+            return NOT_A_MID;
+
+        long code = length;
+        for (int i = 0; i < length; i++)
+        {
+            char c = uri.charAt(MID_PREFIX.length() + i);
+            int symbol = c < SYMBOLS.length ? SYMBOLS[c] : -1;
+            if (symbol < 0)
+                return NOT_A_MID;
+            code |= (long) symbol << (4 + 5 * i);
+        }
+        return code;
+    }
+
+    /**
+     * <p>
+     * Decodes a mid
+     * </p>
+     *
+     * @param code the code of the mid
+     * @return the URI of the mid
+     */
+    public static String decode(long code)
+    {
+        int length = (int) (code & 0xf);
+        StringBuilder uri = new StringBuilder(MID_PREFIX.length() + length).append(MID_PREFIX);
+        for (int i = 0; i < length; i++)
+            uri.append(ALPHABET[(int) (code >>> (4 + 5 * i)) & 0x1f]);
+        return uri.toString();
+    }
+}
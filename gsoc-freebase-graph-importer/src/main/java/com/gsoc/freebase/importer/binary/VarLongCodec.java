@@ -0,0 +1,112 @@
+package com.gsoc.freebase.importer.binary;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * Encodes unsigned longs as variable length integers
+ * </p>
+ * <p>
+ * Every byte holds 7 bits of the value, lowest bits first, and has its highest bit set when more bytes follow, so the
+ * small values take a single byte. It is the encoding of the integers of the binary entity format, the name index and
+ * the type index, which all use this class, so the formats can't drift apart
+ * </p>
+ */
+public final class VarLongCodec
+{
+    /**
+     * Maximum number of bytes of an encoded value
+     */
+    public static final int MAX_BYTES = 10;
+
+    private VarLongCodec()
+    {
+    }
+
+    /**
+     * <p>
+     * Writes a value to an output
+     * </p>
+     *
+     * @param out the output
+     * @param value the value, read as unsigned
+     * @throws IOException if the output can't be written
+     */
+    public static void write(DataOutput out, long value) throws IOException
+    {
+        while ((value & ~0x7fL) != 0)
+        {
+            out.writeByte((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * <p>
+     * Writes a value to an array, which must have room for {@code MAX_BYTES} bytes from the offset
+     * </p>
+     *
+     * @param bytes the array
+     * @param offset the offset of the first byte
+     * @param value the value, read as unsigned
+     * @return the offset following the value
+     */
+    public static int write(byte[] bytes, int offset, long value)
+    {
+        while ((value & ~0x7fL) != 0)
+        {
+            bytes[offset++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        bytes[offset++] = (byte) value;
+        return offset;
+    }
+
+    /**
+     * <p>
+     * Reads a value from an input
+     * </p>
+     *
+     * @param in the input
+     * @return the value
+     * @throws IOException if the input can't be read or the value is malformed
+     */
+    public static long read(DataInput in) throws IOException
+    {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7)
+        {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+
+    /**
+     * <p>
+     * Reads a value from the position of a buffer, moving the position after it
+     * </p>
+     *
+     * @param buffer the buffer
+     * @return the value
+     * @throws IllegalArgumentException if the value is malformed
+     */
+    public static long read(ByteBuffer buffer)
+    {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7)
+        {
+            int b = buffer.get();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IllegalArgumentException("Malformed variable length integer");
+    }
+}
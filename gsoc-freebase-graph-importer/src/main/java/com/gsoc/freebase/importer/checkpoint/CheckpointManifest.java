@@ -0,0 +1,418 @@
+package com.gsoc.freebase.importer.checkpoint;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Durable manifest containing the progress of the import process
+ * </p>
+ * <p>
+ * It records, for each step, the input files already processed. A record is only written once the consumers have
+ * committed the work of the file, so when the process is resumed the recorded files can be skipped safely. The records
+ * are appended to a text file (one line per record) and synced to disk before returning:
+ * </p>
+ *
+ * <pre>
+ * step TAB file name TAB entities TAB state TAB key TAB digest
+ * </pre>
+ * <p>
+ * The state is {@code done} for completed files or {@code partial} for files whose first {@code entities} entities
+ * have been committed. The key and the digest (see {@link FileFingerprint}) identify the content of the file, so a
+ * record only applies while the file doesn't change. The digest is {@code -} when it isn't known (the file hasn't been
+ * read completely, or it isn't read by the producer). The last record of a step and file wins. Incomplete lines (crash
+ * while writing) are ignored
+ * </p>
+ * <p>
+ * A record applies when the key of the file hasn't changed. Otherwise the digest of the file is computed, once per
+ * process and outside the lock of the manifest, and compared with the recorded one. Without previous records (an
+ * import which isn't resumed or incremental) the files are never checked
+ * </p>
+ */
+public class CheckpointManifest
+{
+    /**
+     * Logger
+     */
+    private static Logger logger = LoggerFactory.getLogger(CheckpointManifest.class);
+
+    /**
+     * Constant containing the name of the manifest file stored in the graph location
+     */
+    public static final String MANIFEST_FILE_NAME = "import.checkpoint";
+
+    /**
+     * State of a completed file
+     */
+    private static final String DONE = "done";
+
+    /**
+     * State of a partially processed file
+     */
+    private static final String PARTIAL = "partial";
+
+    /**
+     * Digest of a record whose digest isn't known
+     */
+    private static final String UNKNOWN = "-";
+
+    /**
+     * Charset used by the manifest
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The manifest file
+     */
+    private File file;
+
+    /**
+     * The records read from the manifest or written during the current process (step|file name -> record)
+     */
+    private Map<String, Record> records;
+
+    /**
+     * Digests of the input files computed by this process
+     */
+    private Map<File, String> digests;
+
+    /**
+     * Flag set when the records of a previous process are kept
+     */
+    private boolean resumed;
+
+    /**
+     * The stream used to append records
+     */
+    private FileOutputStream out;
+
+    /**
+     * <p>
+     * Opens the manifest
+     * </p>
+     *
+     * @param file the manifest file
+     * @param resume true to keep the previous records (resuming a previous process) or false to start from scratch
+     * @throws IOException if the manifest can't be read or created
+     */
+    public CheckpointManifest(File file, boolean resume) throws IOException
+    {
+        this.file = file;
+        this.records = new HashMap<String, Record>();
+        this.digests = new ConcurrentHashMap<File, String>();
+        this.resumed = resume;
+
+        if (resume && file.exists())
+            this.load();
+        else if (file.exists() && !file.delete())
+            throw new IOException("Unable to reset the checkpoint manifest " + file.getAbsolutePath());
+
+        if (file.getParentFile() != null)
+            file.getParentFile().mkdirs();
+        this.out = new FileOutputStream(file, true);
+
+        /* Terminate an incomplete record so the next one starts in a new line */
+        if (this.endsWithIncompleteLine())
+            this.out.write('\n');
+    }
+
+    /**
+     * <p>
+     * Checks whether the last line of the manifest is incomplete
+     * </p>
+     */
+    private boolean endsWithIncompleteLine() throws IOException
+    {
+        if (this.file.length() == 0)
+            return false;
+
+        RandomAccessFile raf = new RandomAccessFile(this.file, "r");
+        try
+        {
+            raf.seek(this.file.length() - 1);
+            return raf.read() != '\n';
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    /**
+     * <p>
+     * Loads the records of the manifest
+     * </p>
+     */
+    private void load() throws IOException
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(this.file), UTF8));
+        try
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                String[] fields = line.split("\t");
+                if (line.startsWith("#") || fields.length < 4 || fields.length > 6)
+                    continue;
+
+                try
+                {
+                    Record record = new Record();
+                    record.entities = Long.parseLong(fields[2]);
+                    /* Records of previous versions only contain the digest */
+                    if (fields.length == 5)
+                        record.digest = fields[4];
+                    else if (fields.length == 6)
+                    {
+                        record.key = fields[4];
+                        record.digest = fields[5].equals(UNKNOWN) ? null : fields[5];
+                    }
+                    if (fields[3].equals(DONE))
+                        record.completed = true;
+                    else if (!fields[3].equals(PARTIAL))
+                        continue;
+                    this.records.put(key(fields[0], fields[1]), record);
+                }
+                catch (NumberFormatException e)
+                {
+                    logger.warn("Ignoring invalid checkpoint record: " + line);
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+
+        logger.info("Resuming from checkpoint manifest " + this.file.getAbsolutePath() + " (" + this.records.size()
+                + " records)");
+    }
+
+    /**
+     * <p>
+     * Checks whether a file has been completely processed in the given step
+     * </p>
+     *
+     * @param step the step name
+     * @param file the input file
+     * @return true if the file is done and it hasn't changed
+     * @throws IllegalStateException if the digest of the file is needed and the file can't be read
+     */
+    public boolean isCompleted(String step, File file)
+    {
+        Record record = this.getRecord(step, file);
+        return record != null && record.completed;
+    }
+
+    /**
+     * <p>
+     * Gets the number of entities of a file already committed in the given step
+     * </p>
+     *
+     * @param step the step name
+     * @param file the input file
+     * @return the number of entities committed, 0 if the file has not been started or it has changed
+     * @throws IllegalStateException if the digest of the file is needed and the file can't be read
+     */
+    public long getCommittedEntities(String step, File file)
+    {
+        Record record = this.getRecord(step, file);
+        return record == null ? 0 : record.entities;
+    }
+
+    /**
+     * <p>
+     * Checks whether a file was processed (completely or partially) in the given step when its content was different
+     * </p>
+     *
+     * @param step the step name
+     * @param file the input file
+     * @return true if the step has a record of a previous content of the file
+     * @throws IllegalStateException if the digest of the file is needed and the file can't be read
+     */
+    public boolean isChanged(String step, File file)
+    {
+        return this.getRecord(step, file) == null && this.getRecord(step, file.getName()) != null;
+    }
+
+    /**
+     * <p>
+     * Sets the digest of an input file computed while it was read, so it is written in the next records of the file
+     * </p>
+     *
+     * @param file the input file
+     * @param digest the digest of the whole content of the file
+     */
+    public void setDigest(File file, String digest)
+    {
+        this.digests.put(file, digest);
+    }
+
+    /**
+     * <p>
+     * Gets the digest of an input file, reading it the first time
+     * </p>
+     *
+     * @param file the input file
+     * @return the digest of the file
+     * @throws IllegalStateException if the file can't be read
+     */
+    private String getDigest(File file)
+    {
+        String digest = this.digests.get(file);
+        if (digest == null)
+        {
+            try
+            {
+                digest = FileFingerprint.compute(file);
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException("Unable to fingerprint " + file.getAbsolutePath(), e);
+            }
+            this.digests.put(file, digest);
+        }
+        return digest;
+    }
+
+    /**
+     * <p>
+     * Gets the record of a file if it applies to the current content of the file. Records without fingerprint always
+     * apply
+     * </p>
+     */
+    private Record getRecord(String step, File file)
+    {
+        Record record = this.getRecord(step, file.getName());
+        if (record == null || (record.key == null && record.digest == null))
+            return record;
+
+        String key = FileFingerprint.key(file);
+        if (key.equals(record.key))
+            return record;
+        if (record.digest == null || !record.digest.equals(this.getDigest(file)))
+            return null;
+
+        /* Same content with a new key, so the digest isn't computed again by the next lookups */
+        synchronized (this)
+        {
+            record.key = key;
+        }
+        return record;
+    }
+
+    /**
+     * <p>
+     * Gets the last record of a file
+     * </p>
+     */
+    private synchronized Record getRecord(String step, String fileName)
+    {
+        return this.records.get(key(step, fileName));
+    }
+
+    /**
+     * <p>
+     * Records the progress of a file, identified by its current key and by the digest set by this process, if any
+     * </p>
+     *
+     * @param step the step name
+     * @param file the input file
+     * @param entities the number of entities of the file committed
+     * @param completed true if the whole file has been committed
+     * @throws IOException if the record can't be written
+     */
+    public synchronized void record(String step, File file, long entities, boolean completed) throws IOException
+    {
+        String key = FileFingerprint.key(file);
+        String digest = this.digests.get(file);
+        String line = step + "\t" + file.getName() + "\t" + entities + "\t" + (completed ? DONE : PARTIAL) + "\t"
+                + key + "\t" + (digest != null ? digest : UNKNOWN) + "\n";
+        this.out.write(line.getBytes(UTF8));
+        this.out.flush();
+        this.out.getFD().sync();
+
+        Record record = new Record();
+        record.entities = entities;
+        record.completed = completed;
+        record.key = key;
+        record.digest = digest;
+        this.records.put(key(step, file.getName()), record);
+    }
+
+    /**
+     * <p>
+     * Closes the manifest
+     * </p>
+     */
+    public synchronized void close()
+    {
+        try
+        {
+            this.out.close();
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * <p>
+     * Checks whether the manifest keeps the records of a previous process
+     * </p>
+     *
+     * @return true if the manifest has been opened to resume a previous process
+     */
+    public boolean isResumed()
+    {
+        return this.resumed;
+    }
+
+    /**
+     * <p>
+     * Gets the manifest file
+     * </p>
+     *
+     * @return the manifest {@code File}
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * <p>
+     * Generates the key of a record
+     * </p>
+     */
+    private static String key(String step, String fileName)
+    {
+        return step + "|" + fileName;
+    }
+
+    /**
+     * <p>
+     * Class representing the last record of a file in a step
+     * </p>
+     */
+    private static class Record
+    {
+        public long entities;
+        public boolean completed;
+        public String key;
+        public String digest;
+    }
+}
@@ -0,0 +1,382 @@
+package com.gsoc.freebase.importer.checkpoint;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gsoc.freebase.importer.commit.GroupCommitter;
+import com.gsoc.freebase.importer.commit.ProgressGraph;
+import com.gsoc.freebase.importer.consumer.ElasticConsumerPool;
+import com.gsoc.freebase.importer.model.CheckpointEntity;
+import com.gsoc.freebase.importer.model.Entity;
+
+/**
+ * <p>
+ * Class used by the producer to generate checkpoints
+ * </p>
+ * <p>
+ * A checkpoint puts one {@code CheckpointEntity} for each consumer in the queue and waits until all the consumers have
+ * committed their pending work. Then the progress of the current file is recorded in the {@code CheckpointManifest}
+ * </p>
+ * <p>
+ * Several files can be produced at the same time, so the checkpoints are generated one at a time: if the checkpoint
+ * entities of two checkpoints were interleaved in the queue, every consumer could end up waiting in a different
+ * barrier
+ * </p>
+ * <p>
+ * With an {@code ElasticConsumerPool}, only the active consumers get a checkpoint entity and the barrier applies the
+ * target number of consumers of the pool when it trips, while every active consumer waits in it
+ * </p>
+ * <p>
+ * With a {@code GroupCommitter}, the consumers only submit their transactions before reaching the barrier, so the
+ * progress is recorded by the committer once it has committed them, while the producer and the consumers go on
+ * </p>
+ * <p>
+ * A record is written after the commit it describes. With a {@code ProgressGraph} and a single consumer, the progress is
+ * also committed by the consumer in the same transaction as the work, so a crash between the commit and the record
+ * doesn't replay the committed entities when resuming
+ * </p>
+ * <p>
+ * A checkpoint which can't be completed (a consumer failed, or the record can't be written) fails the producer, or the
+ * committer recording it, instead of letting the process go on without recording its progress
+ * </p>
+ */
+public class Checkpointer
+{
+    /**
+     * Logger
+     */
+    private static Logger logger = LoggerFactory.getLogger(Checkpointer.class);
+
+    /**
+     * The manifest used to record the progress
+     */
+    private CheckpointManifest manifest;
+
+    /**
+     * The step name
+     */
+    private String step;
+
+    /**
+     * Number of consumers consuming from the queue
+     */
+    private int consumers;
+
+    /**
+     * The pool of the consumers (null if the number of consumers is fixed)
+     */
+    private ElasticConsumerPool consumerPool;
+
+    /**
+     * The committer of the transactions of the consumers (null if the consumers commit in their threads)
+     */
+    private GroupCommitter groupCommitter;
+
+    /**
+     * The graph storing the progress committed by the consumer (null to rely on the manifest only)
+     */
+    private ProgressGraph progressGraph;
+
+    /**
+     * Number of entities produced between intermediate checkpoints (0 to generate checkpoints only at the end of the
+     * files)
+     */
+    private int interval;
+
+    /**
+     * Lock held while a checkpoint is generated. It isn't a monitor so a virtual thread waiting for the consumers
+     * doesn't pin its carrier thread
+     */
+    private Lock checkpointLock;
+
+    /**
+     * Flag set when a checkpoint has been requested before the interval is reached
+     */
+    private AtomicBoolean requested;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param manifest the {@code CheckpointManifest} used to record the progress
+     * @param step the name of the step
+     * @param consumers the number of consumers consuming from the queue
+     * @param interval the number of entities produced between intermediate checkpoints
+     */
+    public Checkpointer(CheckpointManifest manifest, String step, int consumers, int interval)
+    {
+        this.manifest = manifest;
+        this.step = step;
+        this.consumers = consumers;
+        this.interval = interval;
+        this.checkpointLock = new ReentrantLock();
+        this.requested = new AtomicBoolean();
+    }
+
+    /**
+     * <p>
+     * Sets the number of entities produced between intermediate checkpoints
+     * </p>
+     *
+     * @param interval the number of entities (0 to generate checkpoints only at the end of the files)
+     */
+    public void setInterval(int interval)
+    {
+        this.interval = interval;
+    }
+
+    /**
+     * <p>
+     * Sets the pool of the consumers, whose number of active consumers is used instead of the fixed number of
+     * consumers
+     * </p>
+     *
+     * @param pool the {@code ElasticConsumerPool} or null if the number of consumers is fixed
+     */
+    public void setConsumerPool(ElasticConsumerPool pool)
+    {
+        this.consumerPool = pool;
+    }
+
+    /**
+     * <p>
+     * Sets the committer of the transactions of the consumers
+     * </p>
+     *
+     * @param committer the {@code GroupCommitter} or null if the consumers commit in their threads
+     */
+    public void setGroupCommitter(GroupCommitter committer)
+    {
+        this.groupCommitter = committer;
+    }
+
+    /**
+     * <p>
+     * Sets the graph storing the progress committed by the consumer
+     * </p>
+     * <p>
+     * The progress of a file is committed in the transaction of the consumer receiving the checkpoint, so it can only
+     * be used when a single consumer does all the work of the step
+     * </p>
+     *
+     * @param graph the {@code ProgressGraph} or null to rely on the manifest only
+     */
+    public void setProgressGraph(ProgressGraph graph)
+    {
+        this.progressGraph = graph;
+    }
+
+    /**
+     * <p>
+     * Gets the number of entities produced between intermediate checkpoints
+     * </p>
+     *
+     * @return the interval
+     */
+    public int getInterval()
+    {
+        return this.interval;
+    }
+
+    /**
+     * <p>
+     * Requests a checkpoint after the next entity produced, whatever the interval is
+     * </p>
+     * <p>
+     * It is used to commit the pending transactions of the consumers when the memory is short. As the consumers only
+     * commit on checkpoints, committing through a checkpoint keeps the recorded progress consistent with the graph
+     * </p>
+     */
+    public void requestCheckpoint()
+    {
+        this.requested.set(true);
+    }
+
+    /**
+     * <p>
+     * Checks whether a file has been completely processed and it hasn't changed since then
+     * </p>
+     *
+     * @param file the input file
+     * @return true if the file can be skipped
+     */
+    public boolean isCompleted(File file)
+    {
+        return this.manifest.isCompleted(this.step, file);
+    }
+
+    /**
+     * <p>
+     * Gets the number of entities of a file already committed by a previous process
+     * </p>
+     * <p>
+     * The progress committed in the graph is ahead of the manifest when the process crashed after a commit and before
+     * recording it. It is used while the file is the same one (same key, or a record of the manifest still applies)
+     * </p>
+     *
+     * @param file the input file
+     * @return the number of entities to skip
+     */
+    public long getCommittedEntities(File file)
+    {
+        long committed = this.manifest.getCommittedEntities(this.step, file);
+        if (this.progressGraph == null || !this.manifest.isResumed())
+            return committed;
+
+        String progress = this.progressGraph.getProgress(this.getProgressKey(file));
+        if (progress == null)
+            return committed;
+        String[] fields = progress.split("\t");
+        long entities = Long.parseLong(fields[0]);
+        if (entities > committed && (committed > 0 || fields[1].equals(FileFingerprint.key(file))))
+        {
+            logger.info("Resuming " + file.getName() + " after the " + entities + " entities committed in the graph ("
+                    + committed + " recorded)");
+            return entities;
+        }
+        return committed;
+    }
+
+    /**
+     * <p>
+     * Sets the digest of a file computed while it was read, so it is recorded by the next checkpoints of the file
+     * </p>
+     *
+     * @param file the input file
+     * @param digest the digest of the whole content of the file
+     */
+    public void setDigest(File file, String digest)
+    {
+        this.manifest.setDigest(file, digest);
+    }
+
+    /**
+     * <p>
+     * Checks whether an intermediate checkpoint must be generated after producing the given number of entities of a
+     * file
+     * </p>
+     * <p>
+     * A requested checkpoint is due after any entity, and only once
+     * </p>
+     *
+     * @param entities the number of entities of the file produced
+     * @return true if a checkpoint is due
+     */
+    public boolean isDue(long entities)
+    {
+        if (this.requested.get() && this.requested.compareAndSet(true, false))
+            return true;
+        return this.interval > 0 && entities % this.interval == 0;
+    }
+
+    /**
+     * <p>
+     * Generates a checkpoint: waits until the consumers commit the previous entities and records the progress
+     * </p>
+     *
+     * @param queue the queue used by the consumers
+     * @param file the input file being processed
+     * @param entities the number of entities of the file produced
+     * @param completed true if the whole file has been produced
+     * @throws InterruptedException if the producer is interrupted while waiting
+     * @throws IllegalStateException if a consumer has failed before reaching the checkpoint or the progress can't be
+     *             recorded
+     */
+    public void checkpoint(BlockingQueue<Entity> queue, final File file, final long entities, final boolean completed)
+            throws InterruptedException
+    {
+        this.checkpointLock.lockInterruptibly();
+        try
+        {
+            final ElasticConsumerPool pool = this.consumerPool;
+            int consumers = pool != null ? pool.getActive() : this.consumers;
+            CyclicBarrier barrier = pool == null ? new CyclicBarrier(consumers + 1) : new CyclicBarrier(
+                    consumers + 1, new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            pool.applyTarget();
+                        }
+                    });
+            for (int i = 0; i < consumers; i++)
+            {
+                if (this.progressGraph != null)
+                    queue.put(new CheckpointEntity(barrier, this.getProgressKey(file), entities + "\t"
+                            + FileFingerprint.key(file)));
+                else
+                    queue.put(new CheckpointEntity(barrier));
+            }
+
+            try
+            {
+                barrier.await();
+            }
+            catch (BrokenBarrierException e)
+            {
+                /* A consumer has failed, so the entities of the checkpoint may not be committed */
+                throw new IllegalStateException("Checkpoint of " + file.getName() + " broken", e);
+            }
+
+            if (this.groupCommitter == null)
+                this.record(file, entities, completed);
+            else
+            {
+                this.groupCommitter.afterCommits(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        record(file, entities, completed);
+                    }
+                });
+            }
+        }
+        finally
+        {
+            this.checkpointLock.unlock();
+        }
+    }
+
+    /**
+     * <p>
+     * Records the progress of a file once the consumers have committed the previous entities
+     * </p>
+     *
+     * @throws IllegalStateException if the record can't be written
+     */
+    private void record(File file, long entities, boolean completed)
+    {
+        try
+        {
+            this.manifest.record(this.step, file, entities, completed);
+            logger.debug("Checkpoint " + this.step + " " + file.getName() + ": " + entities + " entities"
+                    + (completed ? " (done)" : ""));
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Unable to record the checkpoint of " + file.getName() + " in "
+                    + this.manifest.getFile().getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * <p>
+     * Gets the key of the progress of a file stored in the graph
+     * </p>
+     */
+    private String getProgressKey(File file)
+    {
+        return this.step + "." + file.getName();
+    }
+}
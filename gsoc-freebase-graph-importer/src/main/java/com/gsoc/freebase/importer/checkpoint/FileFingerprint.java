@@ -0,0 +1,103 @@
+package com.gsoc.freebase.importer.checkpoint;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * <p>
+ * Utility class to fingerprint the input files
+ * </p>
+ * <p>
+ * A file has two fingerprints. The key (its length and modification date) is checked first, as it only needs the
+ * attributes of the file. The digest (a SHA-1 digest of the whole content) is only needed when the key has changed: a
+ * file downloaded again without changes has the same digest, while any change of the content, wherever it is, changes
+ * the digest. The producer computes the digest while it parses the file, so it only reads a file for its digest when
+ * a previous record has to be checked
+ * </p>
+ */
+public class FileFingerprint
+{
+    /**
+     * Size of the buffer used to read the file
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * <p>
+     * Gets the key of a file
+     * </p>
+     *
+     * @param file the file
+     * @return the length and the modification date of the file
+     */
+    public static String key(File file)
+    {
+        return file.length() + "-" + file.lastModified();
+    }
+
+    /**
+     * <p>
+     * Computes the digest of a file
+     * </p>
+     *
+     * @param file the file
+     * @return the digest as an hexadecimal {@code String}
+     * @throws IOException if the file can't be read
+     */
+    public static String compute(File file) throws IOException
+    {
+        MessageDigest digest = newDigest();
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+                digest.update(buffer, 0, read);
+        }
+        finally
+        {
+            in.close();
+        }
+        return toString(digest);
+    }
+
+    /**
+     * <p>
+     * Creates the {@code MessageDigest} used to compute the digests, so it can also be computed while the file is read
+     * </p>
+     *
+     * @return a new {@code MessageDigest}
+     */
+    public static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * <p>
+     * Completes a digest
+     * </p>
+     *
+     * @param digest the {@code MessageDigest} which has read the whole file
+     * @return the digest as an hexadecimal {@code String}
+     */
+    public static String toString(MessageDigest digest)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest())
+            sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+}
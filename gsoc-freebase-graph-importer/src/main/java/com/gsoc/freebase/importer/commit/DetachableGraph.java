@@ -0,0 +1,41 @@
+package com.gsoc.freebase.importer.commit;
+
+/**
+ * <p>
+ * Transactional graph whose transactions can be detached from the thread which started them and finished in another
+ * thread
+ * </p>
+ * <p>
+ * It allows a consumer to hand its transaction to the {@code GroupCommitter} and go on with a new transaction while the
+ * previous one is committed
+ * </p>
+ */
+public interface DetachableGraph
+{
+    /**
+     * <p>
+     * Detaches the transaction of the current thread. The next operation of the thread starts a new transaction
+     * </p>
+     *
+     * @return the transaction detached or null if the thread has no transaction
+     */
+    public Object detachTransaction();
+
+    /**
+     * <p>
+     * Commits a detached transaction in the current thread
+     * </p>
+     *
+     * @param transaction the transaction returned by {@code detachTransaction}
+     */
+    public void commitDetached(Object transaction);
+
+    /**
+     * <p>
+     * Rolls back a detached transaction in the current thread
+     * </p>
+     *
+     * @param transaction the transaction returned by {@code detachTransaction}
+     */
+    public void rollbackDetached(Object transaction);
+}
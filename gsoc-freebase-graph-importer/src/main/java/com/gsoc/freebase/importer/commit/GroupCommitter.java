@@ -0,0 +1,405 @@
+package com.gsoc.freebase.importer.commit;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gsoc.freebase.importer.metrics.ConsumerMetrics;
+
+/**
+ * <p>
+ * Commits the transactions of the consumers in a dedicated thread
+ * </p>
+ * <p>
+ * A consumer detaches its transaction from its thread and submits it, going on with a new transaction while the
+ * committer commits the previous one. The transactions and the actions waiting for them (such as recording a
+ * checkpoint) are processed in submission order: every time the committer wakes up it takes all the pending work as a
+ * group, so an action always runs after the commit of every transaction submitted before it
+ * </p>
+ * <p>
+ * Neo4j forces its log on every commit, so the transactions of a group are committed one after another without
+ * waiting between them; a backend able to merge them would do it in {@code commitGroup}
+ * </p>
+ * <p>
+ * If a commit fails, the rest of the pending transactions are rolled back, the pending actions are discarded and the
+ * failure is thrown by every later call, so it reaches the consumers and the importer
+ * </p>
+ */
+public class GroupCommitter
+{
+    /**
+     * Logger
+     */
+    private static Logger logger = LoggerFactory.getLogger(GroupCommitter.class);
+
+    /**
+     * The graph whose transactions are committed
+     */
+    private DetachableGraph graph;
+
+    /**
+     * Maximum number of transactions pending to be committed. A consumer submitting more waits
+     */
+    private int maxPending;
+
+    /**
+     * The work pending to be done, in submission order
+     */
+    private Deque<Object> pending;
+
+    /**
+     * Number of transactions in {@code pending}
+     */
+    private int pendingTransactions;
+
+    /**
+     * Number of transactions submitted and processed
+     */
+    private long submitted;
+    private long processed;
+
+    /**
+     * Number of groups committed
+     */
+    private long groups;
+
+    /**
+     * The first failure of a commit
+     */
+    private RuntimeException failure;
+
+    /**
+     * Flag set when no more work is accepted
+     */
+    private boolean closed;
+
+    /**
+     * Lock protecting the state of the committer
+     */
+    private Lock lock;
+
+    /**
+     * Condition signalled when there is work pending
+     */
+    private Condition workPending;
+
+    /**
+     * Condition signalled when a group has been processed
+     */
+    private Condition groupProcessed;
+
+    /**
+     * The committer thread
+     */
+    private Thread thread;
+
+    /**
+     * <p>
+     * Constructor. Starts the committer thread
+     * </p>
+     *
+     * @param graph the graph whose transactions are committed
+     * @param maxPending the maximum number of transactions pending to be committed
+     */
+    public GroupCommitter(DetachableGraph graph, int maxPending)
+    {
+        this.graph = graph;
+        this.maxPending = Math.max(1, maxPending);
+        this.pending = new ArrayDeque<Object>();
+        this.lock = new ReentrantLock();
+        this.workPending = this.lock.newCondition();
+        this.groupProcessed = this.lock.newCondition();
+        this.thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                process();
+            }
+        }, GroupCommitter.class.getName());
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * <p>
+     * Submits a transaction to be committed
+     * </p>
+     *
+     * @param transaction the transaction detached from the consumer thread
+     * @param metrics the metrics of the consumer, which record the commit latency
+     * @throws InterruptedException if the consumer is interrupted while waiting for room
+     * @throws IllegalStateException if a previous commit has failed
+     */
+    public void submit(Object transaction, ConsumerMetrics metrics) throws InterruptedException
+    {
+        this.lock.lockInterruptibly();
+        try
+        {
+            while (this.pendingTransactions >= this.maxPending && this.failure == null && !this.closed)
+                this.groupProcessed.await();
+            this.checkState();
+            this.pending.add(new Transaction(transaction, metrics));
+            this.pendingTransactions++;
+            this.submitted++;
+            this.workPending.signal();
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * <p>
+     * Runs an action once every transaction submitted before has been committed
+     * </p>
+     *
+     * @param action the action, run in the committer thread
+     * @throws IllegalStateException if a previous commit has failed
+     */
+    public void afterCommits(Runnable action)
+    {
+        this.lock.lock();
+        try
+        {
+            this.checkState();
+            this.pending.add(action);
+            this.workPending.signal();
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * <p>
+     * Waits until every transaction submitted has been committed
+     * </p>
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     * @throws IllegalStateException if a commit has failed
+     */
+    public void flush() throws InterruptedException
+    {
+        this.lock.lockInterruptibly();
+        try
+        {
+            long target = this.submitted;
+            while (this.processed < target && this.failure == null)
+                this.groupProcessed.await();
+            if (this.failure != null)
+                throw new IllegalStateException("Commit failed", this.failure);
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * <p>
+     * Processes the pending work and stops the committer thread
+     * </p>
+     *
+     * @throws IllegalStateException if a commit has failed
+     */
+    public void close()
+    {
+        this.lock.lock();
+        try
+        {
+            this.closed = true;
+            this.workPending.signal();
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+
+        boolean interrupted = false;
+        while (this.thread.isAlive())
+        {
+            try
+            {
+                this.thread.join();
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        logger.debug(this.processed + " transactions committed in " + this.groups + " groups");
+        if (this.failure != null)
+            throw new IllegalStateException("Commit failed", this.failure);
+    }
+
+    /**
+     * @return the number of groups committed
+     */
+    public long getGroups()
+    {
+        return this.groups;
+    }
+
+    /**
+     * @return the number of transactions committed
+     */
+    public long getCommitted()
+    {
+        return this.processed;
+    }
+
+    /**
+     * <p>
+     * Checks new work can be accepted. It is called holding the lock
+     * </p>
+     */
+    private void checkState()
+    {
+        if (this.failure != null)
+            throw new IllegalStateException("Commit failed", this.failure);
+        if (this.closed)
+            throw new IllegalStateException("The committer is closed");
+    }
+
+    /**
+     * <p>
+     * Loop of the committer thread: takes the pending work as a group and processes it
+     * </p>
+     */
+    private void process()
+    {
+        List<Object> group = new ArrayList<Object>();
+        while (true)
+        {
+            this.lock.lock();
+            try
+            {
+                while (this.pending.isEmpty() && !this.closed)
+                    this.workPending.awaitUninterruptibly();
+                if (this.pending.isEmpty())
+                    return;
+                group.addAll(this.pending);
+                this.pending.clear();
+            }
+            finally
+            {
+                this.lock.unlock();
+            }
+
+            int transactions = this.commitGroup(group);
+
+            this.lock.lock();
+            try
+            {
+                this.pendingTransactions -= transactions;
+                this.processed += transactions;
+                this.groups++;
+                this.groupProcessed.signalAll();
+            }
+            finally
+            {
+                this.lock.unlock();
+            }
+            group.clear();
+        }
+    }
+
+    /**
+     * <p>
+     * Commits the transactions of a group and runs its actions in order. After a failure the remaining transactions
+     * are rolled back and the actions discarded
+     * </p>
+     *
+     * @return the number of transactions of the group
+     */
+    private int commitGroup(List<Object> group)
+    {
+        int transactions = 0;
+        for (Object work : group)
+        {
+            Transaction transaction = work instanceof Transaction ? (Transaction) work : null;
+            if (transaction != null)
+                transactions++;
+            if (this.failure != null)
+            {
+                if (transaction != null)
+                    this.rollback(transaction);
+                continue;
+            }
+
+            try
+            {
+                if (transaction == null)
+                {
+                    ((Runnable) work).run();
+                    continue;
+                }
+                long start = System.nanoTime();
+                this.graph.commitDetached(transaction.transaction);
+                if (transaction.metrics != null)
+                    transaction.metrics.commit(System.nanoTime() - start);
+            }
+            catch (RuntimeException e)
+            {
+                logger.error("Unable to commit a group", e);
+                this.lock.lock();
+                try
+                {
+                    this.failure = e;
+                }
+                finally
+                {
+                    this.lock.unlock();
+                }
+            }
+        }
+        return transactions;
+    }
+
+    /**
+     * <p>
+     * Rolls back a transaction after a failure
+     * </p>
+     */
+    private void rollback(Transaction transaction)
+    {
+        try
+        {
+            this.graph.rollbackDetached(transaction.transaction);
+        }
+        catch (RuntimeException e)
+        {
+            logger.warn("Unable to roll back a transaction", e);
+        }
+    }
+
+    /**
+     * <p>
+     * A transaction submitted and the metrics of its consumer
+     * </p>
+     */
+    private static class Transaction
+    {
+        private Object transaction;
+        private ConsumerMetrics metrics;
+
+        public Transaction(Object transaction, ConsumerMetrics metrics)
+        {
+            this.transaction = transaction;
+            this.metrics = metrics;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.gsoc.freebase.importer.commit;
+
+/**
+ * <p>
+ * Transactional graph which can store the progress of the import in the transactions of the consumers
+ * </p>
+ * <p>
+ * The progress is written in the transaction of the current thread, so it is committed (or lost) along with the work
+ * it describes, and a resumed process can skip exactly the work committed, whatever the checkpoint manifest recorded
+ * </p>
+ */
+public interface ProgressGraph
+{
+    /**
+     * <p>
+     * Sets a progress value in the transaction of the current thread
+     * </p>
+     *
+     * @param key the key of the progress
+     * @param value the value of the progress
+     */
+    public void setProgress(String key, String value);
+
+    /**
+     * <p>
+     * Gets a committed progress value
+     * </p>
+     *
+     * @param key the key of the progress
+     * @return the value of the progress or null if it hasn't been set
+     */
+    public String getProgress(String key);
+}
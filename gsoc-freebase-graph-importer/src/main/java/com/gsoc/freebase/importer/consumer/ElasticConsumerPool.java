@@ -0,0 +1,312 @@
+package com.gsoc.freebase.importer.consumer;
+
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gsoc.freebase.importer.metrics.ImporterMetrics;
+
+/**
+ * <p>
+ * Pool of consumers whose number of active consumers changes with the load
+ * </p>
+ * <p>
+ * A thread is started for the maximum number of consumers, but only the consumers whose index is lower than the
+ * number of active consumers take entities from the queue; the rest wait in {@code awaitTurn}. The number of active
+ * consumers only changes when a checkpoint barrier trips (see {@code Checkpointer}): at that point every active
+ * consumer has committed its work and is waiting in the barrier, so the consumers shed have nothing pending and the
+ * next checkpoint puts a checkpoint entity for each consumer taking entities
+ * </p>
+ * <p>
+ * The target number of consumers is decided by a {@code PoolSizingPolicy} from samples of the metrics of the step
+ * taken every {@code periodSeconds} seconds
+ * </p>
+ */
+public class ElasticConsumerPool
+{
+    /**
+     * Logger
+     */
+    private static Logger logger = LoggerFactory.getLogger(ElasticConsumerPool.class);
+
+    /**
+     * Default number of seconds between samples
+     */
+    public static final long DEFAULT_PERIOD_SECONDS = 5;
+
+    /**
+     * The policy deciding the number of consumers
+     */
+    private PoolSizingPolicy policy;
+
+    /**
+     * The number of consumers taking entities
+     */
+    private volatile int active;
+
+    /**
+     * The number of consumers applied on the next checkpoint
+     */
+    private volatile int target;
+
+    /**
+     * Flag set when the queue has been closed, so every consumer has to take the end of the stream
+     */
+    private boolean closed;
+
+    /**
+     * Lock protecting the number of active consumers
+     */
+    private Lock lock;
+
+    /**
+     * Condition signalled when the number of active consumers changes or the pool is closed
+     */
+    private Condition changed;
+
+    /**
+     * The executor taking the samples
+     */
+    private ScheduledExecutorService executor;
+
+    /**
+     * Values of the metrics in the previous sample
+     */
+    private long lastNanos;
+    private long lastTakeWaitNanos;
+    private long lastCommits;
+    private double lastCommitMillis;
+
+    /**
+     * Number of times the number of active consumers has changed
+     */
+    private int resizes;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param policy the policy deciding the number of consumers
+     * @param initial the initial number of active consumers (limited to the bounds of the policy)
+     */
+    public ElasticConsumerPool(PoolSizingPolicy policy, int initial)
+    {
+        this.policy = policy;
+        this.active = Math.max(policy.getMin(), Math.min(policy.getMax(), initial));
+        this.target = this.active;
+        this.lock = new ReentrantLock();
+        this.changed = this.lock.newCondition();
+    }
+
+    /**
+     * @return the maximum number of consumers, which is the number of consumers to create
+     */
+    public int getMaxConsumers()
+    {
+        return this.policy.getMax();
+    }
+
+    /**
+     * @return the number of consumers taking entities
+     */
+    public int getActive()
+    {
+        return this.active;
+    }
+
+    /**
+     * @return the number of consumers applied on the next checkpoint
+     */
+    public int getTarget()
+    {
+        return this.target;
+    }
+
+    /**
+     * @return the number of times the number of active consumers has changed
+     */
+    public int getResizes()
+    {
+        return this.resizes;
+    }
+
+    /**
+     * <p>
+     * Sets the number of consumers applied on the next checkpoint
+     * </p>
+     *
+     * @param target the number of consumers (limited to the bounds of the policy)
+     */
+    public void setTarget(int target)
+    {
+        this.target = Math.max(this.policy.getMin(), Math.min(this.policy.getMax(), target));
+    }
+
+    /**
+     * <p>
+     * Waits until a consumer is active
+     * </p>
+     *
+     * @param index the index of the consumer
+     * @throws InterruptedException if the consumer is interrupted while waiting
+     */
+    public void awaitTurn(int index) throws InterruptedException
+    {
+        if (index < this.active)
+            return;
+        this.lock.lockInterruptibly();
+        try
+        {
+            while (index >= this.active && !this.closed)
+                this.changed.await();
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * <p>
+     * Applies the target number of consumers. It is called by the checkpoint barrier, while the active consumers wait
+     * in it
+     * </p>
+     */
+    public void applyTarget()
+    {
+        this.lock.lock();
+        try
+        {
+            int target = this.target;
+            if (target != this.active)
+            {
+                logger.info("Consumers: " + this.active + " -> " + target + " (" + this.policy + ")");
+                this.active = target;
+                this.resizes++;
+                this.changed.signalAll();
+            }
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * <p>
+     * Wakes every waiting consumer so it takes the end of the stream
+     * </p>
+     */
+    public void close()
+    {
+        this.lock.lock();
+        try
+        {
+            this.closed = true;
+            this.changed.signalAll();
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * <p>
+     * Starts sampling the metrics of the step
+     * </p>
+     *
+     * @param metrics the metrics of the step
+     * @param periodSeconds the number of seconds between samples
+     */
+    public synchronized void start(final ImporterMetrics metrics, long periodSeconds)
+    {
+        if (this.executor != null)
+            return;
+
+        this.lastNanos = System.nanoTime();
+        this.lastTakeWaitNanos = metrics.getQueueTakeWaitNanos();
+        this.lastCommits = metrics.getCommits();
+        this.lastCommitMillis = metrics.getCommitLatencySumMillis();
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, ElasticConsumerPool.class.getName());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor.scheduleAtFixedRate(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                sample(metrics);
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * <p>
+     * Stops sampling the metrics
+     * </p>
+     */
+    public synchronized void stop()
+    {
+        if (this.executor != null)
+        {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+    }
+
+    /**
+     * <p>
+     * Takes a sample of the metrics and updates the target number of consumers
+     * </p>
+     */
+    void sample(ImporterMetrics metrics)
+    {
+        try
+        {
+            long now = System.nanoTime();
+            long takeWait = metrics.getQueueTakeWaitNanos();
+            long commits = metrics.getCommits();
+            double commitMillis = metrics.getCommitLatencySumMillis();
+            int capacity = metrics.getQueueCapacity();
+
+            double queueFill = capacity == 0 ? 0 : (double) metrics.getQueueDepth() / capacity;
+            double busy = 1 - (double) (takeWait - this.lastTakeWaitNanos)
+                    / Math.max(1, (now - this.lastNanos) * this.active);
+            double latency = commits > this.lastCommits ? (commitMillis - this.lastCommitMillis)
+                    / (commits - this.lastCommits) : 0;
+            this.lastNanos = now;
+            this.lastTakeWaitNanos = takeWait;
+            this.lastCommits = commits;
+            this.lastCommitMillis = commitMillis;
+
+            int target = this.policy.resize(this.target, queueFill, Math.max(0, busy), latency);
+            if (target != this.target)
+            {
+                logger.debug(String.format(Locale.ENGLISH, "Consumer target %d -> %d: queue %.0f%%, utilization "
+                        + "%.0f%%, commit %.1f ms", this.target, target, queueFill * 100, busy * 100, latency));
+                this.setTarget(target);
+            }
+        }
+        catch (RuntimeException e)
+        {
+            logger.warn("Unable to sample the consumer pool", e);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.gsoc.freebase.importer.consumer;
+
+/**
+ * <p>
+ * Policy deciding the number of active consumers of an {@code ElasticConsumerPool}
+ * </p>
+ * <p>
+ * It is fed with periodic samples of the queue fill (the fraction of the queue capacity in use), the utilization of
+ * the active consumers (the fraction of their time not spent waiting for entities) and the mean commit latency:
+ * <ul>
+ * <li>If the queue stays full and the consumers stay busy, the consumers are the bottleneck and one is added
+ * <li>If the queue stays empty and the consumers wait for entities, the producer is the bottleneck and one is shed
+ * <li>If the commit latency grows more than {@code CONTENTION_FACTOR} times after adding a consumer, the consumers
+ * contend for the store: the consumer is shed and the pool doesn't grow beyond that size again
+ * </ul>
+ * A condition has to hold for {@code SUSTAINED_SAMPLES} consecutive samples before the size changes, and the counters
+ * start again after every change
+ * </p>
+ */
+public class PoolSizingPolicy
+{
+    /**
+     * Number of consecutive samples a condition has to hold
+     */
+    public static final int SUSTAINED_SAMPLES = 3;
+
+    /**
+     * Queue fill above which the queue is backing up
+     */
+    public static final double HIGH_QUEUE_FILL = 0.75;
+
+    /**
+     * Queue fill below which the queue is starving
+     */
+    public static final double LOW_QUEUE_FILL = 0.25;
+
+    /**
+     * Utilization above which the consumers are busy
+     */
+    public static final double HIGH_UTILIZATION = 0.8;
+
+    /**
+     * Utilization below which the consumers are idle
+     */
+    public static final double LOW_UTILIZATION = 0.5;
+
+    /**
+     * Growth of the commit latency after adding a consumer taken as contention
+     */
+    public static final double CONTENTION_FACTOR = 1.5;
+
+    /**
+     * Minimum number of consumers
+     */
+    private int min;
+
+    /**
+     * Maximum number of consumers
+     */
+    private int max;
+
+    /**
+     * Consecutive samples with the queue backing up
+     */
+    private int backedUp;
+
+    /**
+     * Consecutive samples with the queue starving
+     */
+    private int starving;
+
+    /**
+     * Commit latency before the last consumer was added (0 if the last change wasn't a growth)
+     */
+    private double latencyBeforeGrowth;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param min the minimum number of consumers (at least 1)
+     * @param max the maximum number of consumers (at least {@code min})
+     */
+    public PoolSizingPolicy(int min, int max)
+    {
+        if (min < 1 || max < min)
+            throw new IllegalArgumentException("Invalid consumer pool bounds: " + min + "-" + max);
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * @return the minimum number of consumers
+     */
+    public int getMin()
+    {
+        return this.min;
+    }
+
+    /**
+     * @return the maximum number of consumers (lowered when contention is detected)
+     */
+    public int getMax()
+    {
+        return this.max;
+    }
+
+    /**
+     * <p>
+     * Decides the number of consumers after a sample
+     * </p>
+     *
+     * @param active the number of active consumers
+     * @param queueFill the fraction of the queue capacity in use
+     * @param utilization the fraction of the time the active consumers haven't waited for entities
+     * @param commitMillis the mean commit latency since the previous sample (0 if there were no commits)
+     * @return the number of consumers to use
+     */
+    public int resize(int active, double queueFill, double utilization, double commitMillis)
+    {
+        if (this.latencyBeforeGrowth > 0 && commitMillis > this.latencyBeforeGrowth * CONTENTION_FACTOR
+                && active > this.min)
+        {
+            /* The last consumer added made the commits slower: the store is the bottleneck */
+            this.max = active - 1;
+            return this.changed(active - 1, 0);
+        }
+
+        this.backedUp = queueFill >= HIGH_QUEUE_FILL && utilization >= HIGH_UTILIZATION ? this.backedUp + 1 : 0;
+        this.starving = queueFill <= LOW_QUEUE_FILL && utilization < LOW_UTILIZATION ? this.starving + 1 : 0;
+
+        if (this.backedUp >= SUSTAINED_SAMPLES && active < this.max)
+            return this.changed(active + 1, commitMillis);
+        if (this.starving >= SUSTAINED_SAMPLES && active > this.min)
+            return this.changed(active - 1, 0);
+        return Math.max(this.min, Math.min(this.max, active));
+    }
+
+    /**
+     * <p>
+     * Starts counting the samples again after a change
+     * </p>
+     */
+    private int changed(int size, double latencyBeforeGrowth)
+    {
+        this.backedUp = 0;
+        this.starving = 0;
+        this.latencyBeforeGrowth = latencyBeforeGrowth;
+        return size;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.min + "-" + this.max + " consumers";
+    }
+}
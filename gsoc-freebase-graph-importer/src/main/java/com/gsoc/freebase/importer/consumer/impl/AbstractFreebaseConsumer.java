@@ -0,0 +1,317 @@
+package com.gsoc.freebase.importer.consumer.impl;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.commit.DetachableGraph;
+import com.gsoc.freebase.importer.commit.GroupCommitter;
+import com.gsoc.freebase.importer.commit.ProgressGraph;
+import com.gsoc.freebase.importer.consumer.ElasticConsumerPool;
+import com.gsoc.freebase.importer.consumer.FreebaseConsumer;
+import com.gsoc.freebase.importer.metrics.ConsumerMetrics;
+import com.gsoc.freebase.importer.metrics.ImporterMetrics;
+import com.gsoc.freebase.importer.model.CheckpointEntity;
+import com.gsoc.freebase.importer.model.Entity;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.TransactionalGraph;
+
+/**
+ * <p>
+ * Base class for the consumers
+ * </p>
+ * <p>
+ * It contains the consumer loop: waits for the start, consumes entities from the queue until the cancel entity comes
+ * and commits the pending transactions every {@code commitInterval} entities (if the graph is transactional)
+ * </p>
+ * <p>
+ * When a checkpoint entity is consumed the pending transactions are committed and the consumer waits until the rest of
+ * the consumers and the producer reach the same checkpoint, so the producer can record the progress knowing that all
+ * the previous work is durable. If the checkpoint carries a progress and the graph is a {@code ProgressGraph}, the
+ * progress is written in the transaction committed, so it is durable exactly when the work it describes is
+ * </p>
+ * <p>
+ * A consumer of an {@code ElasticConsumerPool} only takes entities while its index is lower than the number of active
+ * consumers of the pool. As that number only changes while the active consumers wait in a checkpoint, a consumer
+ * stops taking entities right after committing
+ * </p>
+ * <p>
+ * With a {@code GroupCommitter} the consumer doesn't commit itself: it detaches its transaction, submits it to the
+ * committer and goes on with the next entities. The producer records a checkpoint only once the committer has
+ * committed every transaction submitted before it, so the checkpoints still match the commits
+ * </p>
+ */
+public abstract class AbstractFreebaseConsumer implements FreebaseConsumer
+{
+    /**
+     * Logger
+     */
+    private static Logger logger = LoggerFactory.getLogger(AbstractFreebaseConsumer.class);
+
+    /**
+     * The graph used
+     */
+    protected Graph graph;
+
+    /**
+     * Latch used to wait before start
+     */
+    private CountDownLatch startLatch;
+
+    /**
+     * Queue used to get and consume entities
+     */
+    private BlockingQueue<Entity> queue;
+
+    /**
+     * Number of entities consumed between commits. 0 means commit only on checkpoints and at the end
+     */
+    private int commitInterval;
+
+    /**
+     * Metrics of the consumer
+     */
+    private ConsumerMetrics metrics;
+
+    /**
+     * The pool of the consumer (null if the consumer always takes entities)
+     */
+    private ElasticConsumerPool consumerPool;
+
+    /**
+     * Index of the consumer in the pool
+     */
+    private int poolIndex;
+
+    /**
+     * The committer of the transactions of the consumer (null to commit them in the consumer thread)
+     */
+    private GroupCommitter groupCommitter;
+
+    /**
+     * <p>
+     * Constructs a consumer using the given latch, queue, graph and commit interval
+     * </p>
+     *
+     * @param startLatch the {@code CountDownLatch} object used to wait before start the process
+     * @param queue the {@code BlockingQueue<Entity>} used to consume entities
+     * @param graph the {@code Graph} instance
+     * @param commitInterval the number of entities consumed between commits
+     */
+    protected AbstractFreebaseConsumer(CountDownLatch startLatch, BlockingQueue<Entity> queue, Graph graph,
+            int commitInterval)
+    {
+        this.startLatch = startLatch;
+        this.queue = queue;
+        this.graph = graph;
+        this.commitInterval = commitInterval;
+        this.metrics = new ImporterMetrics().registerConsumer(this.getClass().getSimpleName());
+    }
+
+    /**
+     * <p>
+     * Sets the metrics of the consumer
+     * </p>
+     *
+     * @param metrics the {@code ConsumerMetrics} used to record the consumed entities and the commits
+     */
+    public void setMetrics(ConsumerMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    /**
+     * <p>
+     * Gets the metrics of the consumer
+     * </p>
+     *
+     * @return the {@code ConsumerMetrics} of the consumer
+     */
+    protected ConsumerMetrics getMetrics()
+    {
+        return this.metrics;
+    }
+
+    /**
+     * <p>
+     * Sets the number of entities consumed between commits
+     * </p>
+     * <p>
+     * Use 0 to commit only when a checkpoint entity is consumed and at the end of the process. It is used when the
+     * producer generates checkpoints, so a checkpoint always matches a commit point of every consumer
+     * </p>
+     *
+     * @param commitInterval the number of entities consumed between commits
+     */
+    public void setCommitInterval(int commitInterval)
+    {
+        this.commitInterval = commitInterval;
+    }
+
+    /**
+     * <p>
+     * Sets the pool of the consumer
+     * </p>
+     *
+     * @param pool the {@code ElasticConsumerPool} or null if the consumer always takes entities
+     * @param index the index of the consumer in the pool
+     */
+    public void setConsumerPool(ElasticConsumerPool pool, int index)
+    {
+        this.consumerPool = pool;
+        this.poolIndex = index;
+    }
+
+    /**
+     * <p>
+     * Sets the committer of the transactions of the consumer
+     * </p>
+     * <p>
+     * It is only used if the graph is a {@code DetachableGraph}
+     * </p>
+     *
+     * @param committer the {@code GroupCommitter} or null to commit in the consumer thread
+     */
+    public void setGroupCommitter(GroupCommitter committer)
+    {
+        this.groupCommitter = committer;
+    }
+
+    /**
+     * <p>
+     * Run the consumer process
+     * </p>
+     */
+    @Override
+    public void run()
+    {
+        try
+        {
+            logger.debug("Waiting the start in " + Thread.currentThread().getName());
+            /*
+             * Wait in the latch until other process tells this process to start
+             */
+            startLatch.await();
+
+            logger.debug("Starting the consumer " + Thread.currentThread().getName());
+
+            int processed = 1;
+
+            /*
+             * Infinite loop to consume entities when produced until a certain Entity comes.
+             */
+            while (true)
+            {
+                if (this.consumerPool != null)
+                    this.consumerPool.awaitTurn(this.poolIndex);
+
+                long waitStart = System.nanoTime();
+                Entity entity = queue.take();
+                long wait = System.nanoTime() - waitStart;
+
+                if (entity.getUri().equals(ImporterConstants.CANCEL_ENTITY_URI))
+                {
+                    // Adding the entity to stop the process. Other consumers will consume this entity to stop their
+                    // process
+                    if (this.consumerPool != null)
+                        this.consumerPool.close();
+                    queue.put(entity);
+                    break;
+                }
+
+                if (entity.getUri().equals(ImporterConstants.CHECKPOINT_ENTITY_URI))
+                {
+                    // Make the previous work durable and wait for the rest of the consumers
+                    CheckpointEntity checkpoint = (CheckpointEntity) entity;
+                    if (checkpoint.getProgressKey() != null && this.graph instanceof ProgressGraph)
+                        ((ProgressGraph) this.graph).setProgress(checkpoint.getProgressKey(), checkpoint.getProgress());
+                    this.commitPending();
+                    try
+                    {
+                        checkpoint.await();
+                    }
+                    catch (BrokenBarrierException e)
+                    {
+                        /* The producer or another consumer has failed, so the checkpoint won't be recorded */
+                        throw new IllegalStateException("Checkpoint broken in " + Thread.currentThread().getName(), e);
+                    }
+                    continue;
+                }
+
+                this.consume(entity);
+                this.metrics.entityConsumed(wait);
+
+                /*
+                 * Committing if the graph is transactional
+                 */
+                if (commitInterval > 0 && processed++ % commitInterval == 0)
+                {
+                    this.commitPending();
+                }
+            }
+
+            /*
+             * Commiting the remaining transactions if the graph is transactional
+             */
+            this.commitPending();
+
+            logger.debug("Finishing " + Thread.currentThread().getName());
+        }
+        catch (InterruptedException e)
+        {
+            /* The process is being stopped (for example because another stage failed) */
+            logger.warn("Consumer " + Thread.currentThread().getName() + " interrupted");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * <p>
+     * Commits the pending transactions, submitting them to the group committer if there is one
+     * </p>
+     *
+     * @throws InterruptedException if the consumer is interrupted while waiting for room in the committer
+     */
+    private void commitPending() throws InterruptedException
+    {
+        if (this.groupCommitter == null || !(this.graph instanceof DetachableGraph))
+        {
+            this.commit();
+            return;
+        }
+
+        Object transaction = ((DetachableGraph) this.graph).detachTransaction();
+        if (transaction != null)
+            this.groupCommitter.submit(transaction, this.metrics);
+    }
+
+    /**
+     * <p>
+     * Commits the pending transactions if the graph is transactional
+     * </p>
+     */
+    protected void commit()
+    {
+        if (this.graph.getFeatures().supportsTransactions)
+        {
+            long start = System.nanoTime();
+            TransactionalGraph transactionalGraph = (TransactionalGraph) this.graph;
+            transactionalGraph.commit();
+            this.metrics.commit(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * <p>
+     * Consumes an entity
+     * </p>
+     *
+     * @param entity the {@code Entity} to consume
+     */
+    protected abstract void consume(Entity entity);
+
+}
@@ -1,8 +1,8 @@
 package com.gsoc.freebase.importer.consumer.impl;
 
 import com.gsoc.freebase.importer.ImporterConstants;
-import com.gsoc.freebase.importer.consumer.FreebaseConsumer;
 import com.gsoc.freebase.importer.model.Entity;
+import com.gsoc.freebase.importer.types.TypeDictionary;
 import com.gsoc.freebase.importer.utils.FreebaseUtils;
 import com.tinkerpop.blueprints.Graph;
 import com.tinkerpop.blueprints.KeyIndexableGraph;
@@ -11,6 +11,7 @@ import com.tinkerpop.blueprints.Vertex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
@@ -26,26 +27,26 @@ import java.util.concurrent.CountDownLatch;
  *
  * @author Antonio David Perez Morales <adperezmorales@gmail.com>
  */
-public class FreebaseGenerateGraphConsumer implements FreebaseConsumer {
+public class FreebaseGenerateGraphConsumer extends AbstractFreebaseConsumer {
     /**
      * Logger
      */
     private static Logger logger = LoggerFactory.getLogger(FreebaseGenerateGraphConsumer.class);
 
     /**
-     * The graph used
+     * Constant containing the default number of entities consumed between commits
      */
-    private Graph graph;
+    public static final int DEFAULT_COMMIT_INTERVAL = 2000;
 
     /**
-     * Latch used to wait before start
+     * Flag indicating whether to update the existing vertex of an entity instead of creating a new one
      */
-    private CountDownLatch startLatch;
+    private boolean upsert;
 
     /**
-     * Queue used to get and consume entities
+     * The dictionary interning the types of the vertices. If it is null the type URIs are stored
      */
-    private BlockingQueue<Entity> queue;
+    private TypeDictionary typeDictionary;
 
     /**
      * <p>
@@ -57,9 +58,7 @@ public class FreebaseGenerateGraphConsumer implements FreebaseConsumer {
      * @param graph      the {@code Graph} instance used to store the vertices
      */
     public FreebaseGenerateGraphConsumer(CountDownLatch startLatch, BlockingQueue<Entity> queue, Graph graph) {
-        this.startLatch = startLatch;
-        this.queue = queue;
-        this.graph = graph;
+        super(startLatch, queue, graph, DEFAULT_COMMIT_INTERVAL);
 
         /* Init the graph if needed */
         initGraph();
@@ -92,69 +91,57 @@ public class FreebaseGenerateGraphConsumer implements FreebaseConsumer {
 
     }
 
-    @Override
     /**
-     * <p>Run the consumer process</p>
-     * <p>It generates a new Vertex for each consumed Entity</p>
+     * <p>
+     * Sets the upsert flag
+     * </p>
+     * <p>
+     * When it is set, the vertex of a topic already existing in the graph (looked up using the URI key index) is
+     * updated instead of creating a new one. It is used by resumed and incremental imports
+     * </p>
+     *
+     * @param upsert the value of the flag
      */
-    public void run() {
-        try {
-            logger.debug("Waiting the start in " + Thread.currentThread().getName());
-            /*
-             * Wait in the latch until other process tells this process to start
-             */
-            startLatch.await();
-
-            logger.debug("Starting the consumer " + Thread.currentThread().getName());
-
-            int processed = 1;
-
-            /*
-             * Infinite loop to consume entities when produced until a certain Entity comes.
-             */
-            while (true) {
-                Entity entity = queue.poll();
-                if (entity == null)
-                    continue;
-
-                if (entity.getUri().equals(ImporterConstants.CANCEL_ENTITY_URI)) {
-                    // Adding the entity to stop the process. Other consumers will consume this entity to stop their
-                    // process
-                    queue.put(entity);
-                    break;
-                }
-
-                this.generateVertex(entity);
-
-                /*
-                 * Committing if the graph is transactional
-                 */
-                if (processed++ % 2000 == 0) {
-                    if (this.graph.getFeatures().supportsTransactions)
-
-                    {
-                        TransactionalGraph transactionalGraph = (TransactionalGraph) this.graph;
-                        transactionalGraph.commit();
-                    }
-                }
-            }
-
-            /*
-             * Commiting the remaining transactions if the graph is transactional
-             */
-            if (this.graph.getFeatures().supportsTransactions)
+    public void setUpsert(boolean upsert) {
+        this.upsert = upsert;
+    }
 
-            {
-                TransactionalGraph transactionalGraph = (TransactionalGraph) this.graph;
-                transactionalGraph.commit();
-            }
+    /**
+     * <p>
+     * Sets the type dictionary
+     * </p>
+     * <p>
+     * When it is set, the types of a topic are interned in the dictionary and stored as an {@code int[]} in the
+     * {@code ImporterConstants.VERTEX_TYPES_PROPERTY} property instead of storing the list of type URIs
+     * </p>
+     *
+     * @param typeDictionary the {@code TypeDictionary} or null to store the type URIs
+     */
+    public void setTypeDictionary(TypeDictionary typeDictionary) {
+        this.typeDictionary = typeDictionary;
+    }
 
-            logger.debug("Finishing " + Thread.currentThread().getName());
-        } catch (InterruptedException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-        }
+    /**
+     * <p>
+     * Gets the vertex of an entity
+     * </p>
+     *
+     * @param uri the URI of the entity
+     * @return the existing {@code Vertex} or null if the entity doesn't have a vertex yet
+     */
+    private Vertex getVertex(String uri) {
+        Iterator<Vertex> it = this.graph.getVertices(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY, uri).iterator();
+        return it.hasNext() ? it.next() : null;
+    }
 
+    /**
+     * <p>
+     * Consumes an entity generating a new Vertex if the entity is a topic
+     * </p>
+     */
+    @Override
+    protected void consume(Entity entity) {
+        this.generateVertex(entity);
     }
 
     /**
@@ -170,17 +157,27 @@ public class FreebaseGenerateGraphConsumer implements FreebaseConsumer {
                 // System.out.println("Processing entity: "+entity.getUri()+" in consumer "+Thread.currentThread().getName());
                 if (FreebaseUtils.isTopic(entity.getProperties())) {
                     synchronized (this.graph) {
-                        Vertex vertex = this.graph.addVertex(null);
-                        vertex.setProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY, entity.getUri());
+                        Vertex vertex = this.upsert ? this.getVertex(entity.getUri()) : null;
+                        if (vertex == null) {
+                            vertex = this.graph.addVertex(null);
+                            vertex.setProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY, entity.getUri());
 
-                        //blank value for image, will be overridden if it has one
-                        vertex.setProperty("image", "novalue");
+                            //blank value for image, will be overridden if it has one
+                            vertex.setProperty("image", "novalue");
+                        }
                     /*
                      * Adding only rdf-type and type.object.name properties
                      */
                         for (String property : entity.getProperties().keySet()) {
                             if (property.equals(ImporterConstants.RDF_TYPE)) {
-                                vertex.setProperty(property, entity.getProperties().get(property));
+                                if (this.typeDictionary != null) {
+                                    vertex.setProperty(ImporterConstants.VERTEX_TYPES_PROPERTY,
+                                            this.typeDictionary.encode(entity.getProperties().get(property)));
+                                    /* Vertices of previous imports may still have the type URIs */
+                                    if (this.upsert)
+                                        vertex.removeProperty(property);
+                                } else
+                                    vertex.setProperty(property, entity.getProperties().get(property));
                             }
                             if (property.equals(ImporterConstants.FREEBASE_TYPE_OBJECT_NAME)) {
 
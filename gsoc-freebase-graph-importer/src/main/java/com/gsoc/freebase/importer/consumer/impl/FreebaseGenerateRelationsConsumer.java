@@ -1,17 +1,21 @@
 package com.gsoc.freebase.importer.consumer.impl;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.gsoc.freebase.importer.ImporterConstants;
-import com.gsoc.freebase.importer.consumer.FreebaseConsumer;
 import com.gsoc.freebase.importer.model.Entity;
+import com.gsoc.freebase.importer.predicates.PredicateMetadata;
+import com.gsoc.freebase.importer.predicates.PredicateRegistry;
 import com.gsoc.freebase.importer.utils.FreebaseUtils;
 import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Graph;
@@ -31,7 +35,7 @@ import com.tinkerpop.blueprints.Vertex;
  * @author Antonio David Perez Morales <adperezmorales@gmail.com>
  * 
  */
-public class FreebaseGenerateRelationsConsumer implements FreebaseConsumer
+public class FreebaseGenerateRelationsConsumer extends AbstractFreebaseConsumer
 {
 
     /**
@@ -40,19 +44,52 @@ public class FreebaseGenerateRelationsConsumer implements FreebaseConsumer
     private static Logger logger = LoggerFactory.getLogger(FreebaseGenerateRelationsConsumer.class);
 
     /**
-     * The graph used
+     * Constant containing the default number of entities consumed between commits
      */
-    private Graph graph;
+    public static final int DEFAULT_COMMIT_INTERVAL = 300;
 
     /**
-     * Latch used to wait before start
+     * Constant containing the default number of lookups done by a fork/join task without splitting it
      */
-    private CountDownLatch startLatch;
+    public static final int DEFAULT_FORK_THRESHOLD = 64;
 
     /**
-     * Queue used to get and consume entities
+     * Policy used to bound the mediated relations created for a single mediator
      */
-    private BlockingQueue<Entity> queue;
+    private MediatedRelationPolicy mediatedRelationPolicy;
+
+    /**
+     * Statistics about the relations generated
+     */
+    private RelationsStatistics statistics;
+
+    /**
+     * Number of index lookups done for the entity being consumed
+     */
+    private int lookups;
+
+    /**
+     * Pool used to do the lookups of the large mediators in parallel (null to do them in the consumer thread)
+     */
+    private ForkJoinPool forkJoinPool;
+
+    /**
+     * Number of lookups done by a fork/join task without splitting it. Mediators with fewer references and pairs are
+     * processed in the consumer thread
+     */
+    private int forkThreshold;
+
+    /**
+     * Edges created since the last commit by label and index key. They are not visible to the fork/join workers, which
+     * don't take part in the transaction of the consumer. Without transactions only the edges of the current entity
+     * are kept, as the workers look up its pairs before any of them is created
+     */
+    private Map<String, Edge> pendingEdges;
+
+    /**
+     * Registry of the metadata of the predicates, so the edge keys of a predicate are computed only once
+     */
+    private PredicateRegistry predicateRegistry;
 
     /**
      * <p>
@@ -65,14 +102,83 @@ public class FreebaseGenerateRelationsConsumer implements FreebaseConsumer
      */
     public FreebaseGenerateRelationsConsumer(CountDownLatch startLatch, BlockingQueue<Entity> queue, Graph graph)
     {
-        this.startLatch = startLatch;
-        this.queue = queue;
-        this.graph = graph;
+        super(startLatch, queue, graph, DEFAULT_COMMIT_INTERVAL);
+        this.mediatedRelationPolicy = new MediatedRelationPolicy();
+        this.statistics = new RelationsStatistics();
+        this.forkThreshold = DEFAULT_FORK_THRESHOLD;
+        this.pendingEdges = new HashMap<String, Edge>();
+        this.predicateRegistry = new PredicateRegistry();
 
         /* Init the graph if needed */
         initGraph();
     }
 
+    /**
+     * <p>
+     * Sets the policy used to bound the mediated relations created for a single mediator
+     * </p>
+     * 
+     * @param mediatedRelationPolicy the {@code MediatedRelationPolicy} to use
+     */
+    public void setMediatedRelationPolicy(MediatedRelationPolicy mediatedRelationPolicy)
+    {
+        this.mediatedRelationPolicy = mediatedRelationPolicy;
+    }
+
+    /**
+     * <p>
+     * Sets the statistics object used to report the generated relations
+     * </p>
+     * 
+     * @param statistics the {@code RelationsStatistics} instance, which can be shared by several consumers
+     */
+    public void setStatistics(RelationsStatistics statistics)
+    {
+        this.statistics = statistics;
+    }
+
+    /**
+     * <p>
+     * Sets the pool used to do the index lookups of the large mediators in parallel
+     * </p>
+     * <p>
+     * The references of a mediator and the existing edges of its pairs are looked up by fork/join tasks, so the idle
+     * workers can steal the work of a mediator with thousands of references. The edges are still created and updated
+     * in the consumer thread
+     * </p>
+     * 
+     * @param forkJoinPool the {@code ForkJoinPool} to use or null to do all the work in the consumer thread
+     */
+    public void setForkJoinPool(ForkJoinPool forkJoinPool)
+    {
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    /**
+     * <p>
+     * Sets the number of lookups done by a fork/join task without splitting it
+     * </p>
+     * 
+     * @param forkThreshold the number of references or pairs of a task
+     */
+    public void setForkThreshold(int forkThreshold)
+    {
+        this.forkThreshold = forkThreshold;
+    }
+
+    /**
+     * <p>
+     * Commits the pending transactions and forgets the edges created in them, which are visible to every thread from
+     * now on
+     * </p>
+     */
+    @Override
+    protected void commit()
+    {
+        super.commit();
+        this.pendingEdges.clear();
+    }
+
     /**
      * <p>
      * Initialize the graph. Generates an index for the Edges using a property containing the URI of the connected
@@ -105,77 +211,22 @@ public class FreebaseGenerateRelationsConsumer implements FreebaseConsumer
 
     }
 
-    @Override
     /**
-     * <p>Run the consumer process</p>
-     * <p>It generates a new Edge for each connected entities (Vertices in the graph)</p>
+     * <p>
+     * Consumes an entity generating the edges between the connected entities (Vertices in the graph)
+     * </p>
      */
-    public void run()
+    @Override
+    protected void consume(Entity entity)
     {
-        try
-        {
-            logger.debug("Waiting the start in " + Thread.currentThread().getName());
-            /*
-             * Wait in the latch until other process tells this process to start
-             */
-            startLatch.await();
-
-            logger.debug("Starting the consumer " + Thread.currentThread().getName());
-
-            int processed = 1;
-
-            /*
-             * Infinite loop to consume entities when produced until a certain Entity comes.
-             */
-            while (true)
-            {
-                Entity entity = queue.take();
-
-                if (entity == null)
-                    continue;
-
-                if (entity.getUri().equals(ImporterConstants.CANCEL_ENTITY_URI))
-                {
-                    // Adding the entity to stop the process. Other consumers will consume this entity to stop their
-                    // process
-                    queue.put(entity);
-                    logger.info("Cancel consumer");
-                    break;
-                }
-                
-                //logger.debug("Processing entity: "+entity.getUri());
-
-                this.generateRelations(entity);
-                if (processed++ % 300 == 0)
-                {
-
-                    if (this.graph.getFeatures().supportsTransactions)
-
-                    {
-                        TransactionalGraph transactionalGraph = (TransactionalGraph) this.graph;
-                        transactionalGraph.commit();
-                    }
-
-                }
-
-            }
-
-            /*
-             * Commiting the remaining transactions if the graph is transactional
-             */
-            if (this.graph.getFeatures().supportsTransactions)
-
-            {
-                TransactionalGraph transactionalGraph = (TransactionalGraph) this.graph;
-                transactionalGraph.commit();
-            }
-
-            logger.debug("Finishing " + Thread.currentThread().getName());
-        }
-        catch (InterruptedException e)
-        {
-            e.printStackTrace();
-        }
+        //logger.debug("Processing entity: "+entity.getUri());
+
+        this.lookups = 0;
+        /* Without transactions the edges of the previous entities are visible to the fork/join workers */
+        if (!this.graph.getFeatures().supportsTransactions)
+            this.pendingEdges.clear();
+        this.generateRelations(entity);
+        this.getMetrics().indexLookups(this.lookups);
     }
 
     /**
@@ -252,12 +303,13 @@ public class FreebaseGenerateRelationsConsumer implements FreebaseConsumer
              */
             String value = list.get(0);
 
-            if (FreebaseUtils.isFreebaseId(value))
+            PredicateMetadata predicate = this.predicateRegistry.get(property);
+            if (predicate.isTopicReference() && FreebaseUtils.isFreebaseId(value))
 
                 if (this.isTopicGraph(value))
                 {
                     // Create direct relation
-                    this.createDirectRelation(property, entity.getUri(), value);
+                    this.createDirectRelation(predicate, entity.getUri(), value);
                 }
 
         }
@@ -268,14 +320,17 @@ public class FreebaseGenerateRelationsConsumer implements FreebaseConsumer
      * <p>
      * Process a not topic entity
      * </p>
+     * <p>
+     * The topics referenced by the entity are collected first and then the mediated relations are created between the
+     * pairs selected by the {@code MediatedRelationPolicy}, so the work done for a single mediator is bounded
+     * </p>
      * 
-     * @param subject the entity subject
-     * @param properties the entity properties
+     * @param entity the entity
      */
     private void processNotTopic(Entity entity)
     {
-        // Create mediated relations
-        List<Holder> prevRelatedSubjects = new ArrayList<Holder>();
+        List<PredicateMetadata> properties = new ArrayList<PredicateMetadata>();
+        List<String> uris = new ArrayList<String>();
         for (String property : entity.getProperties().keySet())
         {
 
@@ -291,23 +346,151 @@ public class FreebaseGenerateRelationsConsumer implements FreebaseConsumer
              */
             String value = list.get(0);
 
-            if (FreebaseUtils.isFreebaseId(value))
+            PredicateMetadata predicate = this.predicateRegistry.get(property);
+            if (predicate.isTopicReference() && FreebaseUtils.isFreebaseId(value))
             {
-                if (this.isTopicGraph(value))
-                {
-                    Holder holder = new Holder();
-                    holder.property = property;
-                    holder.uri = value;
-                    if (prevRelatedSubjects.size() > 0)
-                    {
-                        this.createMediatedDirectRelation(entity.getUri(), prevRelatedSubjects, holder);
-                    }
-
-                    prevRelatedSubjects.add(holder);
-                }
+                properties.add(predicate);
+                uris.add(value);
+            }
+        }
+
+        List<Holder> relatedSubjects = this.getTopicHolders(properties, uris);
+        if (relatedSubjects.size() < 2)
+            return;
+
+        // Create mediated relations
+        int[] pairs = this.mediatedRelationPolicy.selectPairs(entity.getUri(), relatedSubjects.size());
+        Edge[] edges = this.lookupMediatedEdges(relatedSubjects, pairs);
+        for (int p = 0; p < pairs.length; p += 2)
+        {
+            Holder prevHolder = relatedSubjects.get(pairs[p]);
+            Holder holder = relatedSubjects.get(pairs[p + 1]);
+            Edge e;
+            if (edges == null)
+                e = this.getEdgeBetweenVertices(prevHolder.vertex, holder.vertex,
+                        ImporterConstants.MEDIATED_CONNECTION_EDGE_LABEL);
+            else if (edges[p / 2] != null)
+                e = edges[p / 2];
+            else
+                e = this.getPendingEdge(prevHolder.vertex, holder.vertex,
+                        ImporterConstants.MEDIATED_CONNECTION_EDGE_LABEL);
+            this.createMediatedDirectRelation(entity.getUri(), prevHolder, holder, e);
+        }
+
+        long total = MediatedRelationPolicy.countPairs(relatedSubjects.size());
+        this.statistics.mediatorProcessed(relatedSubjects.size(), pairs.length / 2, total);
+        if (pairs.length / 2 < total)
+        {
+            logger.debug("Mediated relations of " + entity.getUri() + " truncated: " + relatedSubjects.size()
+                    + " topics, " + (pairs.length / 2) + " of " + total + " pairs created using "
+                    + this.mediatedRelationPolicy.getStrategy());
+        }
+    }
 
+    /**
+     * <p>
+     * Looks up the topics referenced by a not topic entity, in parallel if there are more references than the fork
+     * threshold
+     * </p>
+     * 
+     * @param properties the properties of the references
+     * @param uris the referenced URIs
+     * @return the holders of the references to topics, in the order of the references
+     */
+    private List<Holder> getTopicHolders(List<PredicateMetadata> properties, List<String> uris)
+    {
+        Vertex[] vertices = new Vertex[uris.size()];
+        if (this.forkJoinPool != null && uris.size() > this.forkThreshold)
+        {
+            this.lookups += this.forkJoinPool.invoke(new RelationLookupTasks.VertexLookupTask(this.graph, uris
+                    .toArray(new String[uris.size()]), vertices, 0, vertices.length, this.forkThreshold));
+        }
+        else
+        {
+            for (int i = 0; i < vertices.length; i++)
+                vertices[i] = this.getTopicVertex(uris.get(i));
+        }
+
+        List<Holder> holders = new ArrayList<Holder>();
+        for (int i = 0; i < vertices.length; i++)
+        {
+            if (vertices[i] != null)
+            {
+                Holder holder = new Holder();
+                holder.property = properties.get(i);
+                holder.uri = uris.get(i);
+                holder.vertex = vertices[i];
+                holders.add(holder);
             }
         }
+        return holders;
+    }
+
+    /**
+     * <p>
+     * Looks up in parallel the existing edges of the selected pairs of a mediator, if there are more pairs than the
+     * fork threshold
+     * </p>
+     * 
+     * @param relatedSubjects the topics referenced by the mediator
+     * @param pairs the selected pairs
+     * @return the existing edge of every pair or null if the pairs have to be looked up in the consumer thread. The
+     *         edge of a pair is null when it doesn't exist in the committed graph or when it has been created since
+     *         the last commit
+     */
+    private Edge[] lookupMediatedEdges(List<Holder> relatedSubjects, int[] pairs)
+    {
+        int size = pairs.length / 2;
+        if (this.forkJoinPool == null || size <= this.forkThreshold)
+            return null;
+
+        Vertex[] first = new Vertex[size];
+        Vertex[] second = new Vertex[size];
+        for (int p = 0; p < size; p++)
+        {
+            first[p] = relatedSubjects.get(pairs[2 * p]).vertex;
+            second[p] = relatedSubjects.get(pairs[2 * p + 1]).vertex;
+        }
+
+        Edge[] edges = new Edge[size];
+        this.lookups += this.forkJoinPool.invoke(new RelationLookupTasks.EdgeLookupTask(this.graph, first, second,
+                ImporterConstants.MEDIATED_CONNECTION_EDGE_LABEL, this.pendingEdges.keySet(), edges, 0, size,
+                this.forkThreshold));
+        return edges;
+    }
+
+    /**
+     * <p>
+     * Gets an edge between two vertices created since the last commit
+     * </p>
+     * 
+     * @param in one vertex
+     * @param out other vertex
+     * @param label the edge label
+     * @return the {@code Edge} or null if no edge has been created since the last commit
+     */
+    private Edge getPendingEdge(Vertex in, Vertex out, String label)
+    {
+        Edge edge = this.pendingEdges.get(label + " " + this.generateEdgeIndexKeyPropertyValue(in, out));
+        if (edge == null)
+            edge = this.pendingEdges.get(label + " " + this.generateEdgeIndexKeyPropertyValue(out, in));
+        return edge;
+    }
+
+    /**
+     * <p>
+     * Records an edge created in the current transaction (or for the current entity without transactions), so the
+     * fork/join lookups don't miss it
+     * </p>
+     * 
+     * @param edge the new edge
+     * @param label the edge label
+     * @param key the value of the index key property of the edge
+     */
+    private void edgeCreated(Edge edge, String label, String key)
+    {
+        if (this.forkJoinPool != null)
+            this.pendingEdges.put(label + " " + key, edge);
     }
 
     /**
@@ -321,8 +504,9 @@ public class FreebaseGenerateRelationsConsumer implements FreebaseConsumer
      * @param subject the subject to check
      * @return a boolean indicating if the subject is a topic or not
      */
-    private boolean isTopicGraph(String subject)
+    boolean isTopicGraph(String subject)
     {
+        this.lookups++;
         Iterator<Vertex> it = graph.getVertices(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY, subject).iterator();
         return it.hasNext();
 
@@ -330,38 +514,61 @@ public class FreebaseGenerateRelationsConsumer implements FreebaseConsumer
 
     /**
      * <p>
-     * Create mediated relations between topics
+     * Gets the vertex of a topic
      * </p>
      * 
-     * @param noTopicSubject the entity subject (not topic) acting as a mediator of other entities
-     * @param prevRelatedSubjects the list of previous entities which will be related to the current topic entity
-     * @param holder the current entity to be related with the previous ones
+     * @param subject the subject of the topic
+     * @return the {@code Vertex} with the supplied uri property or null if the subject is not a topic
      */
-    private void createMediatedDirectRelation(String noTopicSubject, List<Holder> prevRelatedSubjects, Holder holder)
+    private Vertex getTopicVertex(String subject)
     {
-        Vertex n = graph.getVertices(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY, holder.uri).iterator().next();
-
-        for (Holder prevHolder : prevRelatedSubjects)
-        {
-            Vertex v = graph.getVertices(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY, prevHolder.uri).iterator().next();
+        this.lookups++;
+        return findTopicVertex(this.graph, subject);
+    }
 
-            Edge e = this.getEdgeBetweenVertices(v, n, ImporterConstants.MEDIATED_CONNECTION_EDGE_LABEL);
+    /**
+     * <p>
+     * Looks up the vertex of a topic in the given graph
+     * </p>
+     * 
+     * @param graph the graph
+     * @param subject the subject of the topic
+     * @return the {@code Vertex} with the supplied uri property or null if the subject is not a topic
+     */
+    static Vertex findTopicVertex(Graph graph, String subject)
+    {
+        Iterator<Vertex> it = graph.getVertices(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY, subject).iterator();
+        return it.hasNext() ? it.next() : null;
+    }
 
-            if (e == null)
-            {
-                e = graph.addEdge(null, n, v, ImporterConstants.MEDIATED_CONNECTION_EDGE_LABEL);
-                e.setProperty(
-                        ImporterConstants.EDGE_KEY_VERTICES_CONNECTED_PROPERTY,
-                        n.getProperty((String) ImporterConstants.VERTEX_ENTITY_URI_PROPERTY) + "|"
-                                + v.getProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY));
-            }
+    /**
+     * <p>
+     * Create a mediated relation between two topics
+     * </p>
+     * 
+     * @param noTopicSubject the entity subject (not topic) acting as a mediator of other entities
+     * @param prevHolder the topic entity discovered first
+     * @param holder the topic entity to be related with the previous one
+     * @param e the existing edge between the topics or null to create it
+     */
+    private void createMediatedDirectRelation(String noTopicSubject, Holder prevHolder, Holder holder, Edge e)
+    {
+        Vertex n = holder.vertex;
+        Vertex v = prevHolder.vertex;
 
-            e.setProperty("connected-by", noTopicSubject);
+        if (e == null)
+        {
+            e = graph.addEdge(null, n, v, ImporterConstants.MEDIATED_CONNECTION_EDGE_LABEL);
+            String key = n.getProperty((String) ImporterConstants.VERTEX_ENTITY_URI_PROPERTY) + "|"
+                    + v.getProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY);
+            e.setProperty(ImporterConstants.EDGE_KEY_VERTICES_CONNECTED_PROPERTY, key);
+            this.edgeCreated(e, ImporterConstants.MEDIATED_CONNECTION_EDGE_LABEL, key);
+        }
 
-            this.updateEdgeValues(e, holder.property);
-            this.updateEdgeValues(e, prevHolder.property);
+        e.setProperty("connected-by", noTopicSubject);
 
-        }
+        this.updateEdgeValues(e, holder.property);
+        this.updateEdgeValues(e, prevHolder.property);
     }
 
     /**
@@ -373,11 +580,12 @@ public class FreebaseGenerateRelationsConsumer implements FreebaseConsumer
      * @param inSubject one subject to be related
      * @param outSubject the other subject to be related
      */
-    private void createDirectRelation(String property, String inSubject, String outSubject)
+    private void createDirectRelation(PredicateMetadata property, String inSubject, String outSubject)
     {
 
-        Vertex in = graph.getVertices(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY, inSubject).iterator().next();
-        Vertex out = graph.getVertices(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY, outSubject).iterator().next();
+        this.lookups += 2;
+        Vertex in = findTopicVertex(this.graph, inSubject);
+        Vertex out = findTopicVertex(this.graph, outSubject);
 
         /*
          * If any of the vertices don't exist
@@ -391,10 +599,10 @@ public class FreebaseGenerateRelationsConsumer implements FreebaseConsumer
         {
 
             e = graph.addEdge(null, in, out, ImporterConstants.DIRECT_CONNECTION_EDGE_LABEL);
-            e.setProperty(
-                    ImporterConstants.EDGE_KEY_VERTICES_CONNECTED_PROPERTY,
-                    in.getProperty((String) ImporterConstants.VERTEX_ENTITY_URI_PROPERTY) + "|"
-                            + out.getProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY));
+            String key = in.getProperty((String) ImporterConstants.VERTEX_ENTITY_URI_PROPERTY) + "|"
+                    + out.getProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY);
+            e.setProperty(ImporterConstants.EDGE_KEY_VERTICES_CONNECTED_PROPERTY, key);
+            this.edgeCreated(e, ImporterConstants.DIRECT_CONNECTION_EDGE_LABEL, key);
 
         }
 
@@ -415,18 +623,29 @@ public class FreebaseGenerateRelationsConsumer implements FreebaseConsumer
     private Edge getEdgeBetweenVertices(Vertex in, Vertex out, String label)
     {
         /* Search in one sense in->out */
-        Iterable<Edge> edges = this.graph.getEdges(ImporterConstants.EDGE_KEY_VERTICES_CONNECTED_PROPERTY,
-                this.generateEdgeIndexKeyPropertyValue(in, out));
-        for (Edge edge : edges)
-        {
-            if (edge.getLabel().equals(label))
-                return edge;
-        }
+        this.lookups++;
+        Edge edge = findEdge(this.graph, this.generateEdgeIndexKeyPropertyValue(in, out), label);
+        if (edge != null)
+            return edge;
 
         /* Search in the other sense out->in */
-        edges = this.graph.getEdges(ImporterConstants.EDGE_KEY_VERTICES_CONNECTED_PROPERTY,
-                this.generateEdgeIndexKeyPropertyValue(in, out));
-        for (Edge edge : edges)
+        this.lookups++;
+        return findEdge(this.graph, this.generateEdgeIndexKeyPropertyValue(out, in), label);
+    }
+
+    /**
+     * <p>
+     * Looks up an edge by the value of its index key property and its label
+     * </p>
+     * 
+     * @param graph the graph
+     * @param key the value of the index key property
+     * @param label the edge label
+     * @return the {@code Edge} or null if it doesn't exist
+     */
+    static Edge findEdge(Graph graph, String key, String label)
+    {
+        for (Edge edge : graph.getEdges(ImporterConstants.EDGE_KEY_VERTICES_CONNECTED_PROPERTY, key))
         {
             if (edge.getLabel().equals(label))
                 return edge;
@@ -460,20 +679,17 @@ public class FreebaseGenerateRelationsConsumer implements FreebaseConsumer
      * If the property is of the form of a.b.c then a, a.b and a.b.c will be updated. That is to say, to add one to the
      * value of that property in the edge or creating a new property in the edge with value of 1
      * </p>
+     * <p>
+     * The keys are computed once per predicate by the {@code PredicateRegistry}
+     * </p>
      * 
      * @param e the edge
-     * @param fullProperty the property to be updated
+     * @param property the property to be updated
      */
-    private void updateEdgeValues(Edge e, String fullProperty)
+    void updateEdgeValues(Edge e, PredicateMetadata property)
     {
-        String prop = fullProperty.substring(fullProperty.lastIndexOf("/") + 1);
-        String[] splitProp = prop.split("\\.");
-        String last = "";
-        for (String s : splitProp)
-        {
-            this.updateEdgeValue(e, last + s);
-            last += s + ".";
-        }
+        for (String key : property.getEdgeKeys())
+            this.updateEdgeValue(e, key);
     }
 
     /**
@@ -513,8 +729,9 @@ public class FreebaseGenerateRelationsConsumer implements FreebaseConsumer
      */
     private static class Holder
     {
-        public String property;
+        public PredicateMetadata property;
         public String uri;
+        public Vertex vertex;
     }
 
 }
@@ -0,0 +1,248 @@
+package com.gsoc.freebase.importer.consumer.impl;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * <p>
+ * Policy used to decide which mediated relations are created for a not topic (mediator) entity
+ * </p>
+ * <p>
+ * A mediator referencing k topics generates k*(k-1)/2 mediated relations. While the number of pairs is under the
+ * configured cap all of them are created (in the same order than they are discovered). Above the cap the configured
+ * fallback strategy is used:
+ * <ul>
+ * <li>STAR: the first referenced topic acts as a hub and it is related with the rest of the topics (k-1 relations)</li>
+ * <li>SAMPLE: a deterministic sample (seeded with the mediator URI) of the pairs is created</li>
+ * </ul>
+ * In both cases no more than the configured number of pairs is ever created for a single mediator
+ * </p>
+ */
+public class MediatedRelationPolicy
+{
+    /**
+     * Fallback strategies used when a mediator exceeds the maximum number of pairs
+     */
+    public enum Strategy
+    {
+        STAR, SAMPLE
+    }
+
+    /**
+     * Constant containing the default maximum number of pairs created for a mediator
+     */
+    public static final int DEFAULT_MAX_PAIRS = 10000;
+
+    /**
+     * The maximum number of pairs created for a mediator
+     */
+    private int maxPairs;
+
+    /**
+     * The strategy used when the maximum number of pairs is exceeded
+     */
+    private Strategy strategy;
+
+    /**
+     * <p>
+     * Default constructor
+     * </p>
+     * <p>
+     * Uses {@link #DEFAULT_MAX_PAIRS} and the STAR strategy
+     * </p>
+     */
+    public MediatedRelationPolicy()
+    {
+        this(DEFAULT_MAX_PAIRS, Strategy.STAR);
+    }
+
+    /**
+     * <p>
+     * Constructs a policy using the given cap and fallback strategy
+     * </p>
+     *
+     * @param maxPairs the maximum number of pairs created for a mediator
+     * @param strategy the {@code Strategy} used when the cap is exceeded
+     */
+    public MediatedRelationPolicy(int maxPairs, Strategy strategy)
+    {
+        if (maxPairs < 1)
+            throw new IllegalArgumentException("The maximum number of mediated pairs must be greater than 0");
+
+        this.maxPairs = maxPairs;
+        this.strategy = strategy;
+    }
+
+    /**
+     * <p>
+     * Gets the maximum number of pairs created for a mediator
+     * </p>
+     *
+     * @return the maximum number of pairs
+     */
+    public int getMaxPairs()
+    {
+        return maxPairs;
+    }
+
+    /**
+     * <p>
+     * Gets the fallback strategy
+     * </p>
+     *
+     * @return the {@code Strategy} used when the cap is exceeded
+     */
+    public Strategy getStrategy()
+    {
+        return strategy;
+    }
+
+    /**
+     * <p>
+     * Gets the number of pairs between the given number of topics
+     * </p>
+     *
+     * @param holders the number of topics referenced by a mediator
+     * @return the number of pairs
+     */
+    public static long countPairs(int holders)
+    {
+        return (long) holders * (holders - 1) / 2;
+    }
+
+    /**
+     * <p>
+     * Checks whether the relations of a mediator referencing the given number of topics are truncated
+     * </p>
+     *
+     * @param holders the number of topics referenced by the mediator
+     * @return true if not all the pairs are created
+     */
+    public boolean isTruncated(int holders)
+    {
+        return countPairs(holders) > this.maxPairs;
+    }
+
+    /**
+     * <p>
+     * Selects the pairs of topics to be related
+     * </p>
+     * <p>
+     * The pairs are returned flattened as {@code [first0, second0, first1, second1, ...]} where each value is the
+     * position of the topic in the list of topics referenced by the mediator and first is always lower than second
+     * </p>
+     *
+     * @param mediatorUri the URI of the mediator, used as seed by the SAMPLE strategy
+     * @param holders the number of topics referenced by the mediator
+     * @return the selected pairs
+     */
+    public int[] selectPairs(String mediatorUri, int holders)
+    {
+        if (holders < 2)
+            return new int[0];
+
+        if (!this.isTruncated(holders))
+            return this.allPairs(holders);
+
+        if (this.strategy == Strategy.SAMPLE)
+            return this.samplePairs(mediatorUri, holders);
+
+        return this.starPairs(holders);
+    }
+
+    /**
+     * <p>
+     * Generates all the pairs in discovery order: (0,1), (0,2), (1,2), (0,3)...
+     * </p>
+     */
+    private int[] allPairs(int holders)
+    {
+        int[] pairs = new int[(int) countPairs(holders) * 2];
+        int p = 0;
+        for (int second = 1; second < holders; second++)
+        {
+            for (int first = 0; first < second; first++)
+            {
+                pairs[p++] = first;
+                pairs[p++] = second;
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * <p>
+     * Generates the pairs between the first topic (hub) and the rest of topics, up to the maximum number of pairs
+     * </p>
+     */
+    private int[] starPairs(int holders)
+    {
+        int size = Math.min(holders - 1, this.maxPairs);
+        int[] pairs = new int[size * 2];
+        for (int i = 0; i < size; i++)
+        {
+            pairs[2 * i] = 0;
+            pairs[2 * i + 1] = i + 1;
+        }
+        return pairs;
+    }
+
+    /**
+     * <p>
+     * Generates a deterministic sample of the pairs using Floyd's algorithm over the pair positions
+     * </p>
+     */
+    private int[] samplePairs(String mediatorUri, int holders)
+    {
+        long total = countPairs(holders);
+        Random random = new Random(mediatorUri.hashCode());
+        Set<Long> selected = new HashSet<Long>(this.maxPairs * 2);
+        for (long j = total - this.maxPairs; j < total; j++)
+        {
+            long candidate = (long) (random.nextDouble() * (j + 1));
+            if (!selected.add(candidate))
+                selected.add(j);
+        }
+
+        long[] positions = new long[selected.size()];
+        int i = 0;
+        for (Long position : selected)
+            positions[i++] = position;
+        Arrays.sort(positions);
+
+        int[] pairs = new int[positions.length * 2];
+        for (i = 0; i < positions.length; i++)
+        {
+            /* Decode the position following the discovery order used in allPairs */
+            int second = (int) ((1 + Math.sqrt(1 + 8.0 * positions[i])) / 2);
+            while (countPairs(second) > positions[i])
+                second--;
+            while (countPairs(second + 1) <= positions[i])
+                second++;
+            pairs[2 * i] = (int) (positions[i] - countPairs(second));
+            pairs[2 * i + 1] = second;
+        }
+        return pairs;
+    }
+
+    /**
+     * <p>
+     * Parses a strategy name (case insensitive)
+     * </p>
+     *
+     * @param name the name of the strategy
+     * @return the {@code Strategy}
+     */
+    public static Strategy parseStrategy(String name)
+    {
+        return Strategy.valueOf(name.trim().toUpperCase());
+    }
+
+    @Override
+    public String toString()
+    {
+        return "MediatedRelationPolicy[maxPairs=" + maxPairs + ", strategy=" + strategy + "]";
+    }
+}
@@ -0,0 +1,193 @@
+package com.gsoc.freebase.importer.consumer.impl;
+
+import java.util.Set;
+import java.util.concurrent.RecursiveTask;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+
+/**
+ * <p>
+ * Fork/join tasks doing the index lookups of the large mediators in parallel
+ * </p>
+ * <p>
+ * The lookups are split in chunks of {@code threshold} elements, so the idle workers of the pool steal the chunks of
+ * the mediators with thousands of references. The tasks only read the graph: the edges are created and updated by the
+ * consumer thread, which owns the transaction. As the workers don't see the uncommitted work of that transaction, the
+ * consumer passes the keys of the edges it has created since the last commit, and those pairs are resolved by the
+ * consumer itself
+ * </p>
+ */
+class RelationLookupTasks
+{
+    /**
+     * <p>
+     * Private constructor
+     * </p>
+     */
+    private RelationLookupTasks()
+    {
+    }
+
+    /**
+     * <p>
+     * Task looking up the vertices of a range of topic URIs
+     * </p>
+     * <p>
+     * It returns the number of index lookups done
+     * </p>
+     */
+    static class VertexLookupTask extends RecursiveTask<Integer>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private Graph graph;
+        private String[] uris;
+        private Vertex[] vertices;
+        private int from;
+        private int to;
+        private int threshold;
+
+        /**
+         * <p>
+         * Constructor
+         * </p>
+         *
+         * @param graph the graph
+         * @param uris the URIs to look up
+         * @param vertices the array receiving the vertex of every URI (null if it isn't a topic)
+         * @param from the first URI of the range
+         * @param to the end (exclusive) of the range
+         * @param threshold the maximum number of lookups done by a task without splitting it
+         */
+        VertexLookupTask(Graph graph, String[] uris, Vertex[] vertices, int from, int to, int threshold)
+        {
+            this.graph = graph;
+            this.uris = uris;
+            this.vertices = vertices;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected Integer compute()
+        {
+            if (this.to - this.from <= this.threshold)
+            {
+                for (int i = this.from; i < this.to; i++)
+                    this.vertices[i] = FreebaseGenerateRelationsConsumer.findTopicVertex(this.graph, this.uris[i]);
+                return this.to - this.from;
+            }
+
+            int middle = (this.from + this.to) >>> 1;
+            VertexLookupTask left = new VertexLookupTask(this.graph, this.uris, this.vertices, this.from, middle,
+                    this.threshold);
+            VertexLookupTask right = new VertexLookupTask(this.graph, this.uris, this.vertices, middle, this.to,
+                    this.threshold);
+            left.fork();
+            return right.compute() + left.join();
+        }
+    }
+
+    /**
+     * <p>
+     * Task looking up the existing edges between a range of pairs of vertices
+     * </p>
+     * <p>
+     * It returns the number of index lookups done
+     * </p>
+     */
+    static class EdgeLookupTask extends RecursiveTask<Integer>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private Graph graph;
+        private Vertex[] first;
+        private Vertex[] second;
+        private String label;
+        private Set<String> pendingKeys;
+        private Edge[] edges;
+        private int from;
+        private int to;
+        private int threshold;
+
+        /**
+         * <p>
+         * Constructor
+         * </p>
+         *
+         * @param graph the graph
+         * @param first the first vertex of every pair
+         * @param second the second vertex of every pair
+         * @param label the label of the edges
+         * @param pendingKeys the keys of the edges created in the current transaction, not visible to this task
+         * @param edges the array receiving the existing edge of every pair (null if it doesn't exist or it has to be
+         *            resolved by the consumer)
+         * @param from the first pair of the range
+         * @param to the end (exclusive) of the range
+         * @param threshold the maximum number of pairs looked up by a task without splitting it
+         */
+        EdgeLookupTask(Graph graph, Vertex[] first, Vertex[] second, String label, Set<String> pendingKeys,
+                Edge[] edges, int from, int to, int threshold)
+        {
+            this.graph = graph;
+            this.first = first;
+            this.second = second;
+            this.label = label;
+            this.pendingKeys = pendingKeys;
+            this.edges = edges;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected Integer compute()
+        {
+            if (this.to - this.from <= this.threshold)
+            {
+                int lookups = 0;
+                for (int i = this.from; i < this.to; i++)
+                {
+                    String key = this.key(this.first[i], this.second[i]);
+                    String reverseKey = this.key(this.second[i], this.first[i]);
+                    if (this.pendingKeys.contains(this.label + " " + key)
+                            || this.pendingKeys.contains(this.label + " " + reverseKey))
+                        continue;
+
+                    lookups++;
+                    Edge edge = FreebaseGenerateRelationsConsumer.findEdge(this.graph, key, this.label);
+                    if (edge == null)
+                    {
+                        lookups++;
+                        edge = FreebaseGenerateRelationsConsumer.findEdge(this.graph, reverseKey, this.label);
+                    }
+                    this.edges[i] = edge;
+                }
+                return lookups;
+            }
+
+            int middle = (this.from + this.to) >>> 1;
+            EdgeLookupTask left = new EdgeLookupTask(this.graph, this.first, this.second, this.label,
+                    this.pendingKeys, this.edges, this.from, middle, this.threshold);
+            EdgeLookupTask right = new EdgeLookupTask(this.graph, this.first, this.second, this.label,
+                    this.pendingKeys, this.edges, middle, this.to, this.threshold);
+            left.fork();
+            return right.compute() + left.join();
+        }
+
+        /**
+         * <p>
+         * Generates the value of the index key property of the edges from one vertex to another
+         * </p>
+         */
+        private String key(Vertex in, Vertex out)
+        {
+            return (String) in.getProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY) + "|"
+                    + out.getProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY);
+        }
+    }
+}
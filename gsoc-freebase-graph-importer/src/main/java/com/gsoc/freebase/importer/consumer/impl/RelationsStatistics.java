@@ -0,0 +1,111 @@
+package com.gsoc.freebase.importer.consumer.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Statistics collected while generating the graph relations
+ * </p>
+ * <p>
+ * It can be shared by several consumers, so all the counters are thread safe
+ * </p>
+ */
+public class RelationsStatistics
+{
+    /**
+     * Number of mediators referencing at least two topics
+     */
+    private AtomicLong mediators = new AtomicLong();
+
+    /**
+     * Number of mediators whose relations have been truncated by the policy
+     */
+    private AtomicLong truncatedMediators = new AtomicLong();
+
+    /**
+     * Number of mediated pairs created
+     */
+    private AtomicLong createdPairs = new AtomicLong();
+
+    /**
+     * Number of mediated pairs skipped by the policy
+     */
+    private AtomicLong skippedPairs = new AtomicLong();
+
+    /**
+     * Biggest number of topics referenced by a single mediator
+     */
+    private AtomicLong maxReferencedTopics = new AtomicLong();
+
+    /**
+     * <p>
+     * Records a processed mediator
+     * </p>
+     *
+     * @param referencedTopics the number of topics referenced by the mediator
+     * @param created the number of pairs created
+     * @param total the number of pairs that would be created without cap
+     */
+    public void mediatorProcessed(int referencedTopics, long created, long total)
+    {
+        mediators.incrementAndGet();
+        createdPairs.addAndGet(created);
+        if (created < total)
+        {
+            truncatedMediators.incrementAndGet();
+            skippedPairs.addAndGet(total - created);
+        }
+
+        long max = maxReferencedTopics.get();
+        while (referencedTopics > max && !maxReferencedTopics.compareAndSet(max, referencedTopics))
+            max = maxReferencedTopics.get();
+    }
+
+    /**
+     * @return the number of mediators referencing at least two topics
+     */
+    public long getMediators()
+    {
+        return mediators.get();
+    }
+
+    /**
+     * @return the number of mediators whose relations have been truncated
+     */
+    public long getTruncatedMediators()
+    {
+        return truncatedMediators.get();
+    }
+
+    /**
+     * @return the number of mediated pairs created
+     */
+    public long getCreatedPairs()
+    {
+        return createdPairs.get();
+    }
+
+    /**
+     * @return the number of mediated pairs skipped because of the cap
+     */
+    public long getSkippedPairs()
+    {
+        return skippedPairs.get();
+    }
+
+    /**
+     * @return the biggest number of topics referenced by a single mediator
+     */
+    public long getMaxReferencedTopics()
+    {
+        return maxReferencedTopics.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "mediators=" + getMediators() + ", truncatedMediators=" + getTruncatedMediators() + ", createdPairs="
+                + getCreatedPairs() + ", skippedPairs=" + getSkippedPairs() + ", maxReferencedTopics="
+                + getMaxReferencedTopics();
+    }
+}
@@ -0,0 +1,246 @@
+package com.gsoc.freebase.importer.consumer.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.model.Entity;
+import com.gsoc.freebase.importer.predicates.PredicateMetadata;
+import com.gsoc.freebase.importer.predicates.PredicateRegistry;
+import com.gsoc.freebase.importer.shard.ShardEdge;
+import com.gsoc.freebase.importer.shard.ShardEdgeWriter;
+import com.gsoc.freebase.importer.shard.TopicSet;
+import com.gsoc.freebase.importer.utils.FreebaseUtils;
+
+/**
+ * <p>
+ * Consumer of the generate graph relations step of a shard worker
+ * </p>
+ * <p>
+ * Instead of creating the edges, which connect topics of different shards, it computes the relations of the entities
+ * of the shard exactly as the {@code FreebaseGenerateRelationsConsumer} does, using the topics of all the shards (see
+ * {@code TopicSet}) instead of the graph, and adds up the counters of every edge in memory. The aggregated edges are
+ * written to the files of the shards owning them (see {@code ShardEdge}) every {@code maxEdges} edges and at the end,
+ * so the same edge can be written several times: the owners add them up before the merge inserts them
+ * </p>
+ */
+public class ShardRelationsConsumer extends AbstractFreebaseConsumer
+{
+    /**
+     * Constant containing the default number of edges aggregated in memory before writing them
+     */
+    public static final int DEFAULT_MAX_EDGES = 500000;
+
+    /**
+     * The topics of all the shards
+     */
+    private TopicSet topics;
+
+    /**
+     * The files receiving the aggregated edges
+     */
+    private ShardEdgeWriter writer;
+
+    /**
+     * The edges aggregated since they were last written, by key
+     */
+    private Map<String, ShardEdge> edges;
+
+    /**
+     * Number of edges aggregated in memory before writing them
+     */
+    private int maxEdges;
+
+    /**
+     * Policy used to bound the mediated relations created for a single mediator
+     */
+    private MediatedRelationPolicy mediatedRelationPolicy;
+
+    /**
+     * Statistics about the relations generated
+     */
+    private RelationsStatistics statistics;
+
+    /**
+     * Registry of the metadata of the predicates
+     */
+    private PredicateRegistry predicateRegistry;
+
+    /**
+     * <p>
+     * Constructs an instance of ShardRelationsConsumer
+     * </p>
+     *
+     * @param startLatch the {@code CountDownLatch} object used to wait before start the process
+     * @param queue the {@code BlockingQueue<Entity>} used to consume entities
+     * @param topics the topics of all the shards
+     * @param writer the {@code ShardEdgeWriter} receiving the aggregated edges
+     */
+    public ShardRelationsConsumer(CountDownLatch startLatch, BlockingQueue<Entity> queue, TopicSet topics,
+            ShardEdgeWriter writer)
+    {
+        super(startLatch, queue, null, 0);
+        this.topics = topics;
+        this.writer = writer;
+        this.edges = new HashMap<String, ShardEdge>();
+        this.maxEdges = DEFAULT_MAX_EDGES;
+        this.mediatedRelationPolicy = new MediatedRelationPolicy();
+        this.statistics = new RelationsStatistics();
+        this.predicateRegistry = new PredicateRegistry();
+    }
+
+    /**
+     * <p>
+     * Sets the number of edges aggregated in memory before writing them
+     * </p>
+     *
+     * @param maxEdges the number of edges
+     */
+    public void setMaxEdges(int maxEdges)
+    {
+        this.maxEdges = maxEdges;
+    }
+
+    /**
+     * <p>
+     * Sets the policy used to bound the mediated relations created for a single mediator
+     * </p>
+     *
+     * @param mediatedRelationPolicy the {@code MediatedRelationPolicy} to use
+     */
+    public void setMediatedRelationPolicy(MediatedRelationPolicy mediatedRelationPolicy)
+    {
+        this.mediatedRelationPolicy = mediatedRelationPolicy;
+    }
+
+    /**
+     * <p>
+     * Sets the statistics object used to report the generated relations
+     * </p>
+     *
+     * @param statistics the {@code RelationsStatistics} instance
+     */
+    public void setStatistics(RelationsStatistics statistics)
+    {
+        this.statistics = statistics;
+    }
+
+    /**
+     * <p>
+     * Writes the edges aggregated in memory: the files are complete when the writer is closed
+     * </p>
+     */
+    @Override
+    protected void commit()
+    {
+        try
+        {
+            for (ShardEdge edge : this.edges.values())
+                this.writer.write(edge);
+            this.edges.clear();
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Unable to write the aggregated edges", e);
+        }
+    }
+
+    @Override
+    protected void consume(Entity entity)
+    {
+        if (FreebaseUtils.isTopic(entity.getProperties()))
+            this.processTopic(entity);
+        else
+            this.processNotTopic(entity);
+        if (this.edges.size() >= this.maxEdges)
+            this.commit();
+    }
+
+    /**
+     * <p>
+     * Adds the direct relations of a topic
+     * </p>
+     */
+    private void processTopic(Entity entity)
+    {
+        /* The topics without a vertex (dropped by a type filter) don't have relations */
+        if (!this.topics.contains(entity.getUri()))
+            return;
+        for (Map.Entry<String, List<String>> property : entity.getProperties().entrySet())
+        {
+            /* Multivalued properties are ignored */
+            List<String> values = property.getValue();
+            if (values.size() > 1)
+                continue;
+            String value = values.get(0);
+            PredicateMetadata predicate = this.predicateRegistry.get(property.getKey());
+            if (predicate.isTopicReference() && FreebaseUtils.isFreebaseId(value) && this.topics.contains(value))
+                this.getEdge(ImporterConstants.DIRECT_CONNECTION_EDGE_LABEL, entity.getUri(), value).increment(
+                        predicate);
+        }
+    }
+
+    /**
+     * <p>
+     * Adds the mediated relations between the pairs of topics referenced by a not topic entity selected by the
+     * {@code MediatedRelationPolicy}
+     * </p>
+     */
+    private void processNotTopic(Entity entity)
+    {
+        List<PredicateMetadata> properties = new ArrayList<PredicateMetadata>();
+        List<String> uris = new ArrayList<String>();
+        for (Map.Entry<String, List<String>> property : entity.getProperties().entrySet())
+        {
+            /* Multivalued properties are ignored */
+            List<String> values = property.getValue();
+            if (values.size() > 1)
+                continue;
+            String value = values.get(0);
+            PredicateMetadata predicate = this.predicateRegistry.get(property.getKey());
+            if (predicate.isTopicReference() && FreebaseUtils.isFreebaseId(value) && this.topics.contains(value))
+            {
+                properties.add(predicate);
+                uris.add(value);
+            }
+        }
+        if (uris.size() < 2)
+            return;
+
+        int[] pairs = this.mediatedRelationPolicy.selectPairs(entity.getUri(), uris.size());
+        for (int p = 0; p < pairs.length; p += 2)
+        {
+            int previous = pairs[p];
+            int next = pairs[p + 1];
+            ShardEdge edge = this.getEdge(ImporterConstants.MEDIATED_CONNECTION_EDGE_LABEL, uris.get(next), uris
+                    .get(previous));
+            edge.setConnectedBy(entity.getUri());
+            edge.increment(properties.get(next));
+            edge.increment(properties.get(previous));
+        }
+        this.statistics.mediatorProcessed(uris.size(), pairs.length / 2, MediatedRelationPolicy.countPairs(uris
+                .size()));
+    }
+
+    /**
+     * <p>
+     * Gets the aggregated edge between two topics, creating it in the given direction the first time
+     * </p>
+     */
+    private ShardEdge getEdge(String label, String out, String in)
+    {
+        String key = ShardEdge.key(label, out, in);
+        ShardEdge edge = this.edges.get(key);
+        if (edge == null)
+        {
+            edge = new ShardEdge(label, out, in);
+            this.edges.put(key, edge);
+        }
+        return edge;
+    }
+}
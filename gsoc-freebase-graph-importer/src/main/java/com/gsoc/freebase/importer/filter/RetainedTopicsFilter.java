@@ -0,0 +1,67 @@
+package com.gsoc.freebase.importer.filter;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.gsoc.freebase.importer.model.Entity;
+import com.gsoc.freebase.importer.producer.EntityFilter;
+import com.gsoc.freebase.importer.shard.TopicSet;
+import com.gsoc.freebase.importer.utils.FreebaseUtils;
+
+/**
+ * <p>
+ * Entity filter of the generate graph relations step of a filtered import
+ * </p>
+ * <p>
+ * The topics retained by the generate graph step (the topics having a vertex) are kept in memory, so the entities
+ * whose relations would be dropped by the consumer are dropped before looking up any vertex: the topics not retained
+ * and the mediators (not topic entities) referencing less than two retained topics. The references of the entities
+ * produced to topics not retained are removed too
+ * </p>
+ * <p>
+ * Only the single valued references are taken into account, as the relations consumer ignores the multivalued
+ * properties
+ * </p>
+ */
+public class RetainedTopicsFilter implements EntityFilter
+{
+    /**
+     * The topics retained
+     */
+    private TopicSet topics;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param topics the topics retained by the generate graph step
+     */
+    public RetainedTopicsFilter(TopicSet topics)
+    {
+        this.topics = topics;
+    }
+
+    @Override
+    public boolean accept(Entity entity)
+    {
+        boolean topic = FreebaseUtils.isTopic(entity.getProperties());
+        if (topic && !this.topics.contains(entity.getUri()))
+            return false;
+
+        int references = 0;
+        Iterator<Map.Entry<String, List<String>>> it = entity.getProperties().entrySet().iterator();
+        while (it.hasNext())
+        {
+            List<String> values = it.next().getValue();
+            if (values.size() != 1 || !FreebaseUtils.isFreebaseId(values.get(0)))
+                continue;
+            if (this.topics.contains(values.get(0)))
+                references++;
+            else
+                it.remove();
+        }
+        return topic ? references > 0 : references > 1;
+    }
+}
@@ -0,0 +1,42 @@
+package com.gsoc.freebase.importer.filter;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.model.Entity;
+import com.gsoc.freebase.importer.producer.EntityFilter;
+import com.gsoc.freebase.importer.utils.FreebaseUtils;
+
+/**
+ * <p>
+ * Entity filter of the generate graph step of a filtered import
+ * </p>
+ * <p>
+ * Only the topics accepted by the {@code TypeFilter} are produced. The entities which aren't topics don't have a
+ * vertex, so they are dropped too
+ * </p>
+ */
+public class TopicTypeFilter implements EntityFilter
+{
+    /**
+     * The filter of the types
+     */
+    private TypeFilter typeFilter;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param typeFilter the filter of the types of the topics
+     */
+    public TopicTypeFilter(TypeFilter typeFilter)
+    {
+        this.typeFilter = typeFilter;
+    }
+
+    @Override
+    public boolean accept(Entity entity)
+    {
+        return FreebaseUtils.isTopic(entity.getProperties())
+                && this.typeFilter.accept(entity.getProperties().get(ImporterConstants.RDF_TYPE));
+    }
+}
@@ -0,0 +1,183 @@
+package com.gsoc.freebase.importer.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+
+/**
+ * <p>
+ * Filter selecting the topics imported by their types
+ * </p>
+ * <p>
+ * The filter has a list of included and a list of excluded names. A name is a type ({@code people.person}) or a
+ * domain ({@code people}, {@code base.schemastaging}), matching the types of the domain. A topic is accepted if any
+ * of its types matches an included name (or there are no included names) and none of its types matches an excluded
+ * name
+ * </p>
+ * <p>
+ * A filter is written as comma separated names, the excluded ones starting with {@code -}, e.g.
+ * {@code people,location,organization,-people.deceased_person}
+ * </p>
+ */
+public class TypeFilter
+{
+    /**
+     * Prefix of the excluded names in the written form
+     */
+    public static final String EXCLUDE = "-";
+
+    /**
+     * The included names
+     */
+    private List<String> includes;
+
+    /**
+     * The excluded names
+     */
+    private List<String> excludes;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     * <p>
+     * Builds a filter accepting all the topics
+     * </p>
+     */
+    public TypeFilter()
+    {
+        this.includes = new ArrayList<String>();
+        this.excludes = new ArrayList<String>();
+    }
+
+    /**
+     * <p>
+     * Includes the topics of a type or domain
+     * </p>
+     *
+     * @param name the type or domain, with or without the Freebase namespace
+     * @return this filter
+     */
+    public TypeFilter include(String name)
+    {
+        this.includes.add(localName(name));
+        return this;
+    }
+
+    /**
+     * <p>
+     * Excludes the topics of a type or domain
+     * </p>
+     *
+     * @param name the type or domain, with or without the Freebase namespace
+     * @return this filter
+     */
+    public TypeFilter exclude(String name)
+    {
+        this.excludes.add(localName(name));
+        return this;
+    }
+
+    /**
+     * <p>
+     * Checks if the filter accepts all the topics
+     * </p>
+     *
+     * @return true if the filter hasn't included nor excluded names
+     */
+    public boolean isEmpty()
+    {
+        return this.includes.isEmpty() && this.excludes.isEmpty();
+    }
+
+    /**
+     * <p>
+     * Decides whether a topic is imported
+     * </p>
+     *
+     * @param types the type URIs of the topic
+     * @return true if the topic is accepted by the filter
+     */
+    public boolean accept(List<String> types)
+    {
+        boolean included = this.includes.isEmpty();
+        for (String type : types)
+        {
+            String name = localName(type);
+            if (matches(this.excludes, name))
+                return false;
+            if (!included && matches(this.includes, name))
+                included = true;
+        }
+        return included;
+    }
+
+    /**
+     * <p>
+     * Parses the written form of a filter
+     * </p>
+     *
+     * @param filter the comma separated names
+     * @return the {@code TypeFilter}
+     * @throws IllegalArgumentException if a name is empty
+     */
+    public static TypeFilter parse(String filter)
+    {
+        TypeFilter parsed = new TypeFilter();
+        for (String term : filter.split(","))
+        {
+            term = term.trim();
+            if (term.isEmpty())
+                continue;
+
+            boolean exclude = term.startsWith(EXCLUDE);
+            String name = exclude ? term.substring(EXCLUDE.length()).trim() : term;
+            if (name.isEmpty() || name.startsWith(".") || name.endsWith("."))
+                throw new IllegalArgumentException("Invalid type filter term: " + term);
+
+            if (exclude)
+                parsed.exclude(name);
+            else
+                parsed.include(name);
+        }
+        return parsed;
+    }
+
+    /**
+     * <p>
+     * Checks if a type is one of the names or a type of one of the domains
+     * </p>
+     */
+    private static boolean matches(List<String> names, String type)
+    {
+        for (String name : names)
+        {
+            if (type.startsWith(name) && (type.length() == name.length() || type.charAt(name.length()) == '.'))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * <p>
+     * Removes the Freebase namespace of a type
+     * </p>
+     */
+    private static String localName(String type)
+    {
+        return type.startsWith(ImporterConstants.FREEBASE_NAMESPACE) ? type.substring(
+                ImporterConstants.FREEBASE_NAMESPACE.length()) : type;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder();
+        for (String name : this.includes)
+            builder.append(builder.length() > 0 ? "," : "").append(name);
+        for (String name : this.excludes)
+            builder.append(builder.length() > 0 ? "," : "").append(EXCLUDE).append(name);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,614 @@
+package com.gsoc.freebase.importer.generator;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+
+/**
+ * <p>
+ * Generator of synthetic datasets shaped as the BaseKB Lime dump
+ * </p>
+ * <p>
+ * It writes gzipped N-Triples files whose triples are grouped by subject, so they can be imported as the real dump to
+ * measure the throughput of the importer offline. The number of entities is proportional to the scale factor (
+ * {@link #ENTITIES_PER_SCALE_FACTOR} entities for a scale factor of 1) and the output is the same for the same seed,
+ * scale factor and entities per file
+ * </p>
+ * <p>
+ * The generated data contains:
+ * <ul>
+ * <li>Topics (55% of the entities) with {@code m.} mids, names, keys, typed literals and links to other topics. The
+ * targets of the links follow a Zipf distribution, so a few hub topics are referenced by a large part of the dataset
+ * <li>Mediator entities (30%) of mediator (CVT) types, connecting a number of topics which follows a Pareto
+ * distribution: most mediators connect 2 or 3 topics, and a few of them connect thousands
+ * <li>Other entities (15%), like web pages, which reference at most one topic
+ * </ul>
+ * The predicates are taken from a {@code PredicateHierarchy} of domains, types and properties
+ * </p>
+ */
+public class DatasetGenerator
+{
+    /**
+     * Logger
+     */
+    private static Logger logger = LoggerFactory.getLogger(DatasetGenerator.class);
+
+    /**
+     * Number of entities generated for a scale factor of 1
+     */
+    public static final int ENTITIES_PER_SCALE_FACTOR = 100000;
+
+    /**
+     * Default number of entities of every file
+     */
+    public static final int DEFAULT_ENTITIES_PER_FILE = 25000;
+
+    /**
+     * Default seed
+     */
+    public static final long DEFAULT_SEED = 42;
+
+    /**
+     * Default maximum number of topics connected by a mediator
+     */
+    public static final int DEFAULT_MAX_FAN_OUT = 10000;
+
+    /**
+     * Entities are laid out in blocks of this size: the first {@link #TOPIC_SLOTS} are topics, the next
+     * {@link #MEDIATOR_SLOTS} are mediators and the rest are other entities
+     */
+    private static final int BLOCK = 20;
+
+    /**
+     * Topics in every block
+     */
+    private static final int TOPIC_SLOTS = 11;
+
+    /**
+     * Mediators in every block
+     */
+    private static final int MEDIATOR_SLOTS = 6;
+
+    /**
+     * Exponent of the Zipf distribution of the targets of the links (hub topics)
+     */
+    private static final double TOPIC_ZIPF_EXPONENT = 1.1;
+
+    /**
+     * Exponent of the Zipf distribution of the types
+     */
+    private static final double TYPE_ZIPF_EXPONENT = 1.0;
+
+    /**
+     * Shape of the Pareto distribution of the fan-out of the mediators
+     */
+    private static final double FAN_OUT_PARETO_SHAPE = 1.3;
+
+    /**
+     * Shape of the Pareto distribution of the links of the topics
+     */
+    private static final double LINKS_PARETO_SHAPE = 1.6;
+
+    /**
+     * Maximum number of links of a topic
+     */
+    private static final int MAX_LINKS = 200;
+
+    /**
+     * Prime used to scatter the hub topics over the whole dataset
+     */
+    private static final long SCATTER_PRIME = 1000003L;
+
+    /**
+     * Alphabet of the Freebase mids
+     */
+    private static final char[] MID_ALPHABET = "0123456789bcdfghjklmnpqrstvwxyz_".toCharArray();
+
+    /**
+     * XML Schema namespace
+     */
+    private static final String XSD_NAMESPACE = "http://www.w3.org/2001/XMLSchema#";
+
+    /**
+     * RDF Schema label property
+     */
+    private static final String RDFS_LABEL = "http://www.w3.org/2000/01/rdf-schema#label";
+
+    /**
+     * Directory where the files are written
+     */
+    private File outputDirectory;
+
+    /**
+     * Scale factor
+     */
+    private double scaleFactor;
+
+    /**
+     * Seed of the generator
+     */
+    private long seed;
+
+    /**
+     * Number of entities of every file
+     */
+    private int entitiesPerFile;
+
+    /**
+     * Maximum number of topics connected by a mediator
+     */
+    private int maxFanOut;
+
+    /**
+     * Number of entities to generate
+     */
+    private long entities;
+
+    /**
+     * Number of topics to generate
+     */
+    private long topics;
+
+    /**
+     * The schema
+     */
+    private PredicateHierarchy hierarchy;
+
+    /**
+     * Number of triples generated
+     */
+    private long triples;
+
+    /**
+     * Number of mediators generated
+     */
+    private long mediators;
+
+    /**
+     * Maximum number of topics connected by a generated mediator
+     */
+    private int generatedMaxFanOut;
+
+    /**
+     * Number of files generated
+     */
+    private int files;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param outputDirectory the directory where the files are written
+     * @param scaleFactor the scale factor (1 generates {@link #ENTITIES_PER_SCALE_FACTOR} entities)
+     */
+    public DatasetGenerator(File outputDirectory, double scaleFactor)
+    {
+        this.outputDirectory = outputDirectory;
+        this.scaleFactor = scaleFactor;
+        this.seed = DEFAULT_SEED;
+        this.entitiesPerFile = DEFAULT_ENTITIES_PER_FILE;
+        this.maxFanOut = DEFAULT_MAX_FAN_OUT;
+    }
+
+    /**
+     * <p>
+     * Sets the seed of the generator
+     * </p>
+     *
+     * @param seed the seed
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * <p>
+     * Sets the number of entities of every file
+     * </p>
+     *
+     * @param entitiesPerFile the number of entities
+     */
+    public void setEntitiesPerFile(int entitiesPerFile)
+    {
+        this.entitiesPerFile = entitiesPerFile;
+    }
+
+    /**
+     * <p>
+     * Sets the maximum number of topics connected by a mediator
+     * </p>
+     *
+     * @param maxFanOut the maximum fan-out
+     */
+    public void setMaxFanOut(int maxFanOut)
+    {
+        this.maxFanOut = maxFanOut;
+    }
+
+    /**
+     * <p>
+     * Generates the dataset
+     * </p>
+     *
+     * @throws IOException if a file can't be written
+     */
+    public void generate() throws IOException
+    {
+        if (!this.outputDirectory.isDirectory() && !this.outputDirectory.mkdirs())
+            throw new IOException("Unable to create the directory " + this.outputDirectory.getAbsolutePath());
+
+        this.entities = Math.max(BLOCK, Math.round(ENTITIES_PER_SCALE_FACTOR * this.scaleFactor));
+        this.topics = (this.entities / BLOCK) * TOPIC_SLOTS + Math.min(this.entities % BLOCK, TOPIC_SLOTS);
+        this.hierarchy = new PredicateHierarchy(new Random(this.seed), 40, 12, 10);
+        this.triples = 0;
+        this.mediators = 0;
+        this.generatedMaxFanOut = 0;
+        this.files = 0;
+
+        long start = System.currentTimeMillis();
+        for (long first = 0; first < this.entities; first += this.entitiesPerFile)
+        {
+            long last = Math.min(this.entities, first + this.entitiesPerFile);
+            File file = new File(this.outputDirectory, String.format(Locale.ENGLISH, "synthetic-%05d.nt.gz",
+                    this.files));
+            this.generateFile(file, new Random(this.seed * 31 + this.files), first, last);
+            this.files++;
+        }
+        long end = System.currentTimeMillis();
+
+        logger.info(String.format(Locale.ENGLISH, "Generated %d files in %d seconds: %d entities (%d topics, "
+                + "%d mediators), %d triples, max mediator fan-out %d", this.files, (end - start) / 1000,
+                this.entities, this.topics, this.mediators, this.triples, this.generatedMaxFanOut));
+    }
+
+    /**
+     * <p>
+     * Generates a file with the given range of entities
+     * </p>
+     */
+    private void generateFile(File file, Random random, long first, long last) throws IOException
+    {
+        logger.debug("Generating " + file.getName());
+        Writer writer = null;
+        try
+        {
+            writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file),
+                    65536), Charset.forName("UTF-8")), 65536);
+            for (long i = first; i < last; i++)
+            {
+                int slot = (int) (i % BLOCK);
+                if (slot < TOPIC_SLOTS)
+                    this.writeTopic(writer, random, i);
+                else if (slot < TOPIC_SLOTS + MEDIATOR_SLOTS)
+                    this.writeMediator(writer, random, i);
+                else
+                    this.writeOther(writer, random, i);
+            }
+        }
+        finally
+        {
+            IOUtils.closeQuietly(writer);
+        }
+    }
+
+    /**
+     * <p>
+     * Writes the triples of a topic
+     * </p>
+     */
+    private void writeTopic(Writer writer, Random random, long i) throws IOException
+    {
+        String subject = mid(i);
+        this.writeUri(writer, subject, ImporterConstants.RDF_TYPE, ImporterConstants.FREEBASE_COMMON_TOPIC);
+
+        int[] types = new int[random.nextInt(3) == 0 ? 2 : 1];
+        for (int t = 0; t < types.length; t++)
+        {
+            types[t] = this.hierarchy.getTopicType(zipf(random, this.hierarchy.getTopicTypeCount(),
+                    TYPE_ZIPF_EXPONENT));
+            this.writeUri(writer, subject, ImporterConstants.RDF_TYPE,
+                    ImporterConstants.FREEBASE_NAMESPACE + this.hierarchy.getType(types[t]));
+        }
+
+        String name = capitalize(PredicateHierarchy.name(random, 2 + random.nextInt(2))) + " "
+                + capitalize(PredicateHierarchy.name(random, 2 + random.nextInt(3)));
+        this.writeLiteral(writer, subject, ImporterConstants.FREEBASE_TYPE_OBJECT_NAME, quote(name) + "@en");
+        this.writeLiteral(writer, subject, RDFS_LABEL, quote(name) + "@en");
+        this.writeLiteral(writer, subject, ImporterConstants.FREEBASE_NAMESPACE + "type.object.key",
+                quote("/wikipedia/en/" + name.replace(' ', '_')));
+
+        String[] properties = this.hierarchy.getProperties(types[0]);
+        int literals = 1 + random.nextInt(2);
+        for (int l = 0; l < literals; l++)
+        {
+            String property = ImporterConstants.FREEBASE_NAMESPACE + properties[random.nextInt(properties.length)];
+            switch (random.nextInt(3))
+            {
+                case 0:
+                    this.writeLiteral(writer, subject, property, quote(Integer.toString(random.nextInt(100000)))
+                            + "^^<" + XSD_NAMESPACE + "int>");
+                    break;
+                case 1:
+                    this.writeLiteral(writer, subject, property,
+                            quote(String.format(Locale.ENGLISH, "%.2f", random.nextDouble() * 1000)) + "^^<"
+                                    + XSD_NAMESPACE + "decimal>");
+                    break;
+                default:
+                    this.writeLiteral(writer, subject, property,
+                            quote(String.format(Locale.ENGLISH, "%04d-%02d-%02dT00:00:00", 1900 + random.nextInt(
+                                    115), 1 + random.nextInt(12), 1 + random.nextInt(28))) + "^^<" + XSD_NAMESPACE
+                                    + "dateTime>");
+            }
+        }
+
+        int links = pareto(random, LINKS_PARETO_SHAPE, 1, MAX_LINKS);
+        for (int l = 0; l < links; l++)
+        {
+            String[] props = this.hierarchy.getProperties(types[random.nextInt(types.length)]);
+            this.writeUri(writer, subject, ImporterConstants.FREEBASE_NAMESPACE
+                    + props[random.nextInt(props.length)], mid(this.randomTopic(random)));
+        }
+    }
+
+    /**
+     * <p>
+     * Writes the triples of a mediator
+     * </p>
+     */
+    private void writeMediator(Writer writer, Random random, long i) throws IOException
+    {
+        String subject = mid(i);
+        int type = this.hierarchy.getMediatorType(zipf(random, this.hierarchy.getMediatorTypeCount(),
+                TYPE_ZIPF_EXPONENT));
+        this.writeUri(writer, subject, ImporterConstants.RDF_TYPE,
+                ImporterConstants.FREEBASE_NAMESPACE + this.hierarchy.getType(type));
+
+        String[] properties = this.hierarchy.getProperties(type);
+        int fanOut = pareto(random, FAN_OUT_PARETO_SHAPE, 2, this.maxFanOut);
+        for (int h = 0; h < fanOut; h++)
+        {
+            this.writeUri(writer, subject, ImporterConstants.FREEBASE_NAMESPACE + properties[h % properties.length],
+                    mid(this.randomTopic(random)));
+        }
+        if (random.nextBoolean())
+        {
+            this.writeLiteral(writer, subject, ImporterConstants.FREEBASE_NAMESPACE + properties[0] + "_from",
+                    quote(Integer.toString(1900 + random.nextInt(115))) + "^^<" + XSD_NAMESPACE + "gYear>");
+        }
+
+        this.mediators++;
+        this.generatedMaxFanOut = Math.max(this.generatedMaxFanOut, fanOut);
+    }
+
+    /**
+     * <p>
+     * Writes the triples of an entity which is neither a topic nor a mediator
+     * </p>
+     */
+    private void writeOther(Writer writer, Random random, long i) throws IOException
+    {
+        String subject = mid(i);
+        this.writeUri(writer, subject, ImporterConstants.RDF_TYPE, ImporterConstants.FREEBASE_NAMESPACE
+                + "common.webpage");
+        this.writeUri(writer, subject, ImporterConstants.FREEBASE_NAMESPACE + "common.webpage.uri",
+                "http://www.example.org/page/" + Long.toString(i, 36));
+        if (random.nextBoolean())
+        {
+            this.writeUri(writer, subject, ImporterConstants.FREEBASE_NAMESPACE + "common.webpage.topic",
+                    mid(this.randomTopic(random)));
+        }
+    }
+
+    /**
+     * <p>
+     * Writes a triple whose object is a URI
+     * </p>
+     */
+    private void writeUri(Writer writer, String subject, String predicate, String object) throws IOException
+    {
+        writer.write('<');
+        writer.write(subject);
+        writer.write("> <");
+        writer.write(predicate);
+        writer.write("> <");
+        writer.write(object);
+        writer.write("> .\n");
+        this.triples++;
+    }
+
+    /**
+     * <p>
+     * Writes a triple whose object is a literal (already quoted)
+     * </p>
+     */
+    private void writeLiteral(Writer writer, String subject, String predicate, String literal) throws IOException
+    {
+        writer.write('<');
+        writer.write(subject);
+        writer.write("> <");
+        writer.write(predicate);
+        writer.write("> ");
+        writer.write(literal);
+        writer.write(" .\n");
+        this.triples++;
+    }
+
+    /**
+     * <p>
+     * Chooses a topic following a Zipf distribution. The most popular ranks are scattered over the whole dataset, so
+     * the hubs aren't all in the first file
+     * </p>
+     *
+     * @return the index of the topic entity
+     */
+    private long randomTopic(Random random)
+    {
+        long rank = zipf(random, this.topics, TOPIC_ZIPF_EXPONENT);
+        long scattered = this.topics % SCATTER_PRIME == 0 ? rank : (rank * SCATTER_PRIME) % this.topics;
+        return (scattered / TOPIC_SLOTS) * BLOCK + scattered % TOPIC_SLOTS;
+    }
+
+    /**
+     * <p>
+     * Generates the URI of the entity with the given index, using a mid
+     * </p>
+     *
+     * @param i the index of the entity
+     * @return the URI of the entity
+     */
+    static String mid(long i)
+    {
+        char[] buffer = new char[16];
+        int pos = buffer.length;
+        /* Offset so all the mids have at least 6 characters after m.0 */
+        long value = i + (1L << 30);
+        while (value > 0)
+        {
+            buffer[--pos] = MID_ALPHABET[(int) (value & 31)];
+            value >>>= 5;
+        }
+        return ImporterConstants.FREEBASE_NAMESPACE + "m.0" + new String(buffer, pos, buffer.length - pos);
+    }
+
+    /**
+     * <p>
+     * Samples a rank in [0, n) following a (continuous approximation of a) Zipf distribution
+     * </p>
+     *
+     * @param random the source of randomness
+     * @param n the number of ranks
+     * @param exponent the exponent of the distribution
+     * @return the rank (0 is the most probable)
+     */
+    static int zipf(Random random, int n, double exponent)
+    {
+        return (int) zipf(random, (long) n, exponent);
+    }
+
+    /**
+     * <p>
+     * Samples a rank in [0, n) following a (continuous approximation of a) Zipf distribution
+     * </p>
+     *
+     * @param random the source of randomness
+     * @param n the number of ranks
+     * @param exponent the exponent of the distribution
+     * @return the rank (0 is the most probable)
+     */
+    static long zipf(Random random, long n, double exponent)
+    {
+        double u = random.nextDouble();
+        double x;
+        if (Math.abs(exponent - 1.0) < 1e-9)
+        {
+            x = Math.exp(u * Math.log(n + 1));
+        }
+        else
+        {
+            double a = 1 - exponent;
+            x = Math.pow(u * (Math.pow(n + 1, a) - 1) + 1, 1 / a);
+        }
+        return Math.max(0, Math.min(n - 1, (long) x - 1));
+    }
+
+    /**
+     * <p>
+     * Samples a value following a Pareto distribution
+     * </p>
+     *
+     * @param random the source of randomness
+     * @param shape the shape of the distribution (smaller values generate longer tails)
+     * @param min the minimum value
+     * @param max the maximum value
+     * @return the value
+     */
+    static int pareto(Random random, double shape, int min, int max)
+    {
+        double u = 1.0 - random.nextDouble();
+        double x = min / Math.pow(u, 1 / shape);
+        return (int) Math.min(max, Math.floor(x));
+    }
+
+    /**
+     * <p>
+     * Quotes a literal escaping the N-Triples special characters
+     * </p>
+     */
+    private static String quote(String value)
+    {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+
+    /**
+     * <p>
+     * Capitalizes a word
+     * </p>
+     */
+    private static String capitalize(String word)
+    {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    /**
+     * @return the number of files generated
+     */
+    public int getFiles()
+    {
+        return this.files;
+    }
+
+    /**
+     * @return the number of entities generated
+     */
+    public long getEntities()
+    {
+        return this.entities;
+    }
+
+    /**
+     * @return the number of topics generated
+     */
+    public long getTopics()
+    {
+        return this.topics;
+    }
+
+    /**
+     * @return the number of mediators generated
+     */
+    public long getMediators()
+    {
+        return this.mediators;
+    }
+
+    /**
+     * @return the number of triples generated
+     */
+    public long getTriples()
+    {
+        return this.triples;
+    }
+
+    /**
+     * @return the maximum number of topics connected by a generated mediator
+     */
+    public int getMaxFanOut()
+    {
+        return this.generatedMaxFanOut;
+    }
+}
@@ -0,0 +1,196 @@
+package com.gsoc.freebase.importer.generator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * <p>
+ * Synthetic Freebase schema
+ * </p>
+ * <p>
+ * It contains a hierarchy of domains, types and properties named as in Freebase ({@code domain.type.property}), so the
+ * generated predicates exercise the prefix counters of the edges ({@code domain}, {@code domain.type} and
+ * {@code domain.type.property}) as the real dump does. Some of the types are mediator (CVT) types, whose instances
+ * connect several topics
+ * </p>
+ */
+public class PredicateHierarchy
+{
+    /**
+     * Real Freebase domains used as the first domains of the hierarchy
+     */
+    private static final String[] DOMAINS = { "music", "film", "people", "location", "book", "tv", "business",
+            "sports", "education", "organization", "government", "award", "media_common", "architecture",
+            "biology", "medicine", "computer", "travel", "food", "religion" };
+
+    /**
+     * Syllables used to generate names
+     */
+    private static final String[] SYLLABLES = { "ka", "lo", "mi", "ne", "ru", "sa", "ti", "vo", "be", "da", "fi",
+            "go", "ha", "ju", "pe", "qui", "ro", "su", "ta", "ze" };
+
+    /**
+     * The types of the hierarchy (domain.type)
+     */
+    private List<String> types;
+
+    /**
+     * The properties of every type (domain.type.property)
+     */
+    private List<String[]> properties;
+
+    /**
+     * Flags indicating which types are mediator types
+     */
+    private boolean[] mediatorTypes;
+
+    /**
+     * Indexes of the topic types
+     */
+    private int[] topicTypeIndexes;
+
+    /**
+     * Indexes of the mediator types
+     */
+    private int[] mediatorTypeIndexes;
+
+    /**
+     * <p>
+     * Generates a hierarchy
+     * </p>
+     *
+     * @param random the source of randomness (the hierarchy is the same for the same seed)
+     * @param domains the number of domains
+     * @param typesPerDomain the number of types of every domain (at least 4, so there are mediator types)
+     * @param propertiesPerType the maximum number of properties of every type
+     */
+    public PredicateHierarchy(Random random, int domains, int typesPerDomain, int propertiesPerType)
+    {
+        this.types = new ArrayList<String>();
+        this.properties = new ArrayList<String[]>();
+        List<Boolean> mediators = new ArrayList<Boolean>();
+
+        for (int d = 0; d < domains; d++)
+        {
+            String domain = d < DOMAINS.length ? DOMAINS[d] : name(random, 2) + "_" + d;
+            for (int t = 0; t < typesPerDomain; t++)
+            {
+                /* A quarter of the types are mediators, as the CVTs of Freebase */
+                boolean mediator = t % 4 == 3;
+                String type = domain + "." + name(random, 2) + (mediator ? "_cvt" : "") + t;
+                String[] props = new String[2 + random.nextInt(Math.max(1, propertiesPerType - 1))];
+                for (int p = 0; p < props.length; p++)
+                    props[p] = type + "." + name(random, 2 + random.nextInt(2)) + p;
+
+                this.types.add(type);
+                this.properties.add(props);
+                mediators.add(mediator);
+            }
+        }
+
+        this.mediatorTypes = new boolean[this.types.size()];
+        int mediatorCount = 0;
+        for (int i = 0; i < this.mediatorTypes.length; i++)
+        {
+            this.mediatorTypes[i] = mediators.get(i);
+            if (this.mediatorTypes[i])
+                mediatorCount++;
+        }
+
+        this.topicTypeIndexes = new int[this.types.size() - mediatorCount];
+        this.mediatorTypeIndexes = new int[mediatorCount];
+        for (int i = 0, t = 0, m = 0; i < this.mediatorTypes.length; i++)
+        {
+            if (this.mediatorTypes[i])
+                this.mediatorTypeIndexes[m++] = i;
+            else
+                this.topicTypeIndexes[t++] = i;
+        }
+    }
+
+    /**
+     * <p>
+     * Generates a pronounceable name
+     * </p>
+     *
+     * @param random the source of randomness
+     * @param syllables the number of syllables
+     * @return the name
+     */
+    static String name(Random random, int syllables)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < syllables; i++)
+            sb.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        return sb.toString();
+    }
+
+    /**
+     * @return the number of topic types
+     */
+    public int getTopicTypeCount()
+    {
+        return this.topicTypeIndexes.length;
+    }
+
+    /**
+     * @return the number of mediator types
+     */
+    public int getMediatorTypeCount()
+    {
+        return this.mediatorTypeIndexes.length;
+    }
+
+    /**
+     * <p>
+     * Gets a topic type by rank
+     * </p>
+     *
+     * @param rank the rank of the type (0 is the most popular)
+     * @return the index of the type
+     */
+    public int getTopicType(int rank)
+    {
+        return this.topicTypeIndexes[rank];
+    }
+
+    /**
+     * <p>
+     * Gets a mediator type by rank
+     * </p>
+     *
+     * @param rank the rank of the type (0 is the most popular)
+     * @return the index of the type
+     */
+    public int getMediatorType(int rank)
+    {
+        return this.mediatorTypeIndexes[rank];
+    }
+
+    /**
+     * <p>
+     * Gets the name of a type
+     * </p>
+     *
+     * @param type the index of the type
+     * @return the name of the type (domain.type)
+     */
+    public String getType(int type)
+    {
+        return this.types.get(type);
+    }
+
+    /**
+     * <p>
+     * Gets the properties of a type
+     * </p>
+     *
+     * @param type the index of the type
+     * @return the names of the properties (domain.type.property)
+     */
+    public String[] getProperties(int type)
+    {
+        return this.properties.get(type);
+    }
+}
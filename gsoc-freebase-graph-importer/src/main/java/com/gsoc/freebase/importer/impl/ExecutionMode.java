@@ -0,0 +1,147 @@
+package com.gsoc.freebase.importer.impl;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * Kinds of threads the importer runs its reading tasks on (the producer, and the parsing and decompression of every
+ * input file)
+ * </p>
+ * <p>
+ * The consumers always run on a fixed number of platform threads: they are the store writers, and the Neo4j
+ * transactions are bound to the thread and hold monitors while they write, so they would pin the carrier threads
+ * anyway
+ * </p>
+ */
+public enum ExecutionMode
+{
+    /**
+     * Platform (operating system) threads created by hand. It is the default
+     */
+    PLATFORM
+    {
+        @Override
+        public ThreadFactory newThreadFactory(final String name)
+        {
+            return new ThreadFactory()
+            {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable task)
+                {
+                    return new Thread(task, name + "-" + count.getAndIncrement());
+                }
+            };
+        }
+
+        @Override
+        public boolean isAvailable()
+        {
+            return true;
+        }
+    },
+
+    /**
+     * Virtual threads. Blocking in the queue or in the file system releases the carrier thread, so there can be one
+     * task per input file without paying for an operating system thread each. It needs the importer built with the
+     * {@code java21} profile and a Java 21 runtime
+     */
+    VIRTUAL
+    {
+        @Override
+        public ThreadFactory newThreadFactory(String name)
+        {
+            Method factory = virtualThreadFactoryMethod();
+            if (factory == null)
+                throw new IllegalStateException("Virtual threads are not available. Build the importer with the "
+                        + "java21 profile and run it with Java 21 or later");
+            try
+            {
+                return (ThreadFactory) factory.invoke(null, name);
+            }
+            catch (Exception e)
+            {
+                throw new IllegalStateException("Unable to create the virtual thread factory", e);
+            }
+        }
+
+        @Override
+        public boolean isAvailable()
+        {
+            return virtualThreadFactoryMethod() != null;
+        }
+    };
+
+    /**
+     * Class compiled from {@code src/main/java21} by the {@code java21} profile
+     */
+    private static final String VIRTUAL_THREADS_CLASS = "com.gsoc.freebase.importer.impl.VirtualThreads";
+
+    /**
+     * <p>
+     * Creates a factory of the threads of this mode
+     * </p>
+     *
+     * @param name the prefix of the names of the threads
+     * @return the {@code ThreadFactory}
+     */
+    public abstract ThreadFactory newThreadFactory(String name);
+
+    /**
+     * <p>
+     * Checks whether this mode can be used with the current build and runtime
+     * </p>
+     *
+     * @return true if the threads of this mode can be created
+     */
+    public abstract boolean isAvailable();
+
+    /**
+     * <p>
+     * Looks up the factory method of the virtual threads
+     * </p>
+     *
+     * @return the method or null if the {@code java21} classes are missing or the runtime doesn't support them
+     */
+    private static Method virtualThreadFactoryMethod()
+    {
+        try
+        {
+            return Class.forName(VIRTUAL_THREADS_CLASS).getMethod("factory", String.class);
+        }
+        catch (ClassNotFoundException e)
+        {
+            return null;
+        }
+        catch (NoSuchMethodException e)
+        {
+            return null;
+        }
+        catch (LinkageError e)
+        {
+            /* Class compiled for a newer Java version than the runtime */
+            return null;
+        }
+    }
+
+    /**
+     * <p>
+     * Parses the name of an execution mode (case insensitive)
+     * </p>
+     *
+     * @param name the name of the mode
+     * @return the mode
+     */
+    public static ExecutionMode parse(String name)
+    {
+        for (ExecutionMode mode : values())
+        {
+            if (mode.name().equalsIgnoreCase(name))
+                return mode;
+        }
+        throw new IllegalArgumentException("Unknown execution mode: " + name);
+    }
+}
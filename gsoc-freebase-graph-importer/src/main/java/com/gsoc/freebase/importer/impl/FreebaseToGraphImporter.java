@@ -1,23 +1,56 @@
 package com.gsoc.freebase.importer.impl;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.gsoc.freebase.importer.consumer.FreebaseConsumer;
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.checkpoint.CheckpointManifest;
+import com.gsoc.freebase.importer.checkpoint.Checkpointer;
+import com.gsoc.freebase.importer.commit.DetachableGraph;
+import com.gsoc.freebase.importer.commit.GroupCommitter;
+import com.gsoc.freebase.importer.commit.ProgressGraph;
+import com.gsoc.freebase.importer.consumer.ElasticConsumerPool;
+import com.gsoc.freebase.importer.consumer.PoolSizingPolicy;
 import com.gsoc.freebase.importer.consumer.impl.FreebaseGenerateGraphConsumer;
 import com.gsoc.freebase.importer.consumer.impl.FreebaseGenerateRelationsConsumer;
+import com.gsoc.freebase.importer.consumer.impl.MediatedRelationPolicy;
+import com.gsoc.freebase.importer.consumer.impl.RelationsStatistics;
+import com.gsoc.freebase.importer.filter.RetainedTopicsFilter;
+import com.gsoc.freebase.importer.filter.TopicTypeFilter;
+import com.gsoc.freebase.importer.filter.TypeFilter;
+import com.gsoc.freebase.importer.memory.MemoryBudget;
+import com.gsoc.freebase.importer.memory.MemoryPressureListener;
+import com.gsoc.freebase.importer.memory.MemoryShare;
+import com.gsoc.freebase.importer.metrics.ImporterMetrics;
+import com.gsoc.freebase.importer.metrics.ProgressReporter;
 import com.gsoc.freebase.importer.model.Entity;
-import com.gsoc.freebase.importer.producer.FreebaseProducer;
+import com.gsoc.freebase.importer.names.NameIndexWriter;
+import com.gsoc.freebase.importer.pipeline.Channel;
+import com.gsoc.freebase.importer.pipeline.Pipeline;
+import com.gsoc.freebase.importer.pipeline.PipelineException;
+import com.gsoc.freebase.importer.producer.EntityFilter;
+import com.gsoc.freebase.importer.producer.EntitySink;
 import com.gsoc.freebase.importer.producer.impl.FreebaseProducerImpl;
+import com.gsoc.freebase.importer.query.EdgeWeightFormula;
+import com.gsoc.freebase.importer.query.TopNeighboursBuilder;
+import com.gsoc.freebase.importer.shard.TopicSet;
+import com.gsoc.freebase.importer.sink.EntityTee;
+import com.gsoc.freebase.importer.sort.ExternalSubjectSorter;
+import com.gsoc.freebase.importer.types.TypeDictionary;
+import com.gsoc.freebase.importer.types.TypeIndexWriter;
 import com.tinkerpop.blueprints.Graph;
-import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
 
 /**
  * <p>
@@ -61,96 +94,721 @@ public class FreebaseToGraphImporter
      */
     private static int DEFAULT_CONSUMERS_SIZE = Runtime.getRuntime().availableProcessors();
 
+    /**
+     * Constant containing the default number of triples of an entity above which it is compacted
+     */
+    public static final int DEFAULT_COMPACT_THRESHOLD = 100000;
+
+    /**
+     * Constant containing the default seconds between progress reports
+     */
+    public static final long DEFAULT_PROGRESS_INTERVAL = 30;
+
+    /**
+     * Constant containing the default capacity of the queue of the generate graph relations step
+     */
+    private static final int DEFAULT_RELATIONS_QUEUE_CAPACITY = 10;
+
+    /**
+     * Latch given to the consumers: they start as soon as their stage starts
+     */
+    private static final CountDownLatch STARTED = new CountDownLatch(0);
+
+    /**
+     * Estimated heap bytes of an entity waiting in a queue
+     */
+    private static final long ESTIMATED_ENTITY_BYTES = 4096;
+
+    /**
+     * Estimated heap bytes of the transaction state of an entity consumed and not committed yet
+     */
+    private static final long ESTIMATED_PENDING_ENTITY_BYTES = 2048;
+
+    /**
+     * Weight of the queues of entities in the heap budget
+     */
+    private static final int QUEUE_MEMORY_WEIGHT = 1;
+
+    /**
+     * Weight of the pending transactions of the consumers in the heap budget
+     */
+    private static final int TRANSACTIONS_MEMORY_WEIGHT = 3;
+
+    /**
+     * Weight of the runs of the subject sort in the heap budget
+     */
+    private static final int SORT_MEMORY_WEIGHT = 4;
+
+    /**
+     * Minimum number of bytes of a run of the subject sort
+     */
+    private static final long MIN_SORT_RUN_BYTES = 1L << 20;
+
     /**
      * Number of consumers for each step
      */
-    private int consumerSize;
+    private int consumerSize;
+
+    /**
+     * Minimum and maximum number of consumers of the generate graph step (0 to use {@code consumerSize} consumers)
+     */
+    private int minConsumers;
+    private int maxConsumers;
+
+    /**
+     * Flag indicating whether the consumers of the generate graph step hand their transactions to a group committer
+     */
+    private boolean asyncCommit;
+
+    /**
+     * Number of triples of an entity above which only the values used by the consumers are kept (0 to keep every
+     * triple)
+     */
+    private int compactThreshold;
+
+    /**
+     * The file or directory to import
+     */
+    private File file;
+
+    /**
+     * Location of the graph
+     */
+    private File graphLocation;
+
+    /**
+     * The {@code Graph} implementation
+     */
+    private Graph graph;
+
+    /**
+     * Flag indicating whether to generate the graph or not
+     */
+    private boolean generateGraph;
+
+    /**
+     * Flag indicating whether to generate the graph relations
+     */
+    private boolean generateGraphRelations;
+
+    /**
+     * Flag indicating whether to resume a previous process using the checkpoint manifest
+     */
+    private boolean resume;
+
+    /**
+     * Flag indicating whether to import only the new or changed files into an existing graph
+     */
+    private boolean incremental;
+
+    /**
+     * Manifest recording the progress of the current process
+     */
+    private CheckpointManifest checkpointManifest;
+
+    /**
+     * Policy used to bound the mediated relations created for a single mediator
+     */
+    private MediatedRelationPolicy mediatedRelationPolicy;
+
+    /**
+     * Statistics of the last generate graph relations step
+     */
+    private RelationsStatistics relationsStatistics;
+
+    /**
+     * Metrics of the import process, published over JMX while the process runs
+     */
+    private ImporterMetrics metrics;
+
+    /**
+     * Seconds between progress reports (0 to disable them)
+     */
+    private long progressInterval;
+
+    /**
+     * The graph implementation used to store the graph
+     */
+    private GraphBackend graphBackend;
+
+    /**
+     * Capacity of the queue between the producer and the consumers (0 to use the default capacity of every step)
+     */
+    private int queueCapacity;
+
+    /**
+     * Duration in milliseconds of the steps of the last process
+     */
+    private Map<String, Long> stepDurations;
+
+    /**
+     * Kind of threads running the producer and the parsing of the files
+     */
+    private ExecutionMode executionMode;
+
+    /**
+     * Maximum number of files parsed at the same time (0 to use the default of the execution mode)
+     */
+    private int parallelFiles;
+
+    /**
+     * Number of fork/join workers doing the lookups of the large mediators in the generate graph relations step (1 to
+     * do them in the consumer thread)
+     */
+    private int relationsParallelism;
+
+    /**
+     * Memory budget shared by the queues, the pending transactions and the store
+     */
+    private MemoryBudget memoryBudget;
+
+    /**
+     * Memory share of the store while the graph is open
+     */
+    private MemoryShare storeMemory;
+
+    /**
+     * Whether the triples of the input files are sorted by subject before producing the entities
+     */
+    private boolean sortInput;
+
+    /**
+     * Directory of the temporary runs of the subject sort (null to use the temporary directory of the system)
+     */
+    private File sortDirectory;
+
+    /**
+     * Memory share of the subject sort while the process runs
+     */
+    private MemoryShare sortMemory;
+
+    /**
+     * Whether the name index is built after generating the vertices
+     */
+    private boolean buildNameIndex;
+
+    /**
+     * Flag indicating whether to intern the types of the topics in the type dictionary
+     */
+    private boolean internTypes;
+
+    /**
+     * Number of neighbours materialized in every vertex after the import (0 to skip it)
+     */
+    private int topNeighbours;
+
+    /**
+     * Formula weighting the edges to rank the neighbours
+     */
+    private EdgeWeightFormula edgeWeightFormula;
+
+    /**
+     * Filter of the entities imported by both steps (null to import all of them)
+     */
+    private EntityFilter entityFilter;
+
+    /**
+     * The filter of the types of the topics imported
+     */
+    private TypeFilter typeFilter;
+
+    /**
+     * The sinks fed by the parse of the first step (null for none)
+     */
+    private EntityTee entityTee;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     * <p>
+     * Creates an importer to process the file or directory passed as parameter
+     * </p>
+     * 
+     * @param file the string or directory to import
+     */
+    public FreebaseToGraphImporter(String file, String graphLocation)
+    {
+        this(new File(file), new File(graphLocation), DEFAULT_CONSUMERS_SIZE);
+    }
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     * <p>
+     * Creates an importer to process the file or directory passed as parameter
+     * </p>
+     * <p>
+     * Initializes the set of steps
+     * </p>
+     * 
+     * @param file the string or directory to import
+     */
+    public FreebaseToGraphImporter(File file, File graphLocation, int consumerSize)
+    {
+        this.file = file;
+        this.graphLocation = graphLocation;
+        this.consumerSize = consumerSize;
+        this.generateGraph = false;
+        this.generateGraphRelations = false;
+        this.resume = false;
+        this.incremental = false;
+        this.mediatedRelationPolicy = new MediatedRelationPolicy();
+        this.relationsStatistics = new RelationsStatistics();
+        this.metrics = new ImporterMetrics();
+        this.progressInterval = DEFAULT_PROGRESS_INTERVAL;
+        this.graphBackend = GraphBackend.NEO4J;
+        this.queueCapacity = 0;
+        this.stepDurations = new LinkedHashMap<String, Long>();
+        this.executionMode = ExecutionMode.PLATFORM;
+        this.parallelFiles = 0;
+        this.relationsParallelism = DEFAULT_CONSUMERS_SIZE;
+        this.memoryBudget = new MemoryBudget(0);
+        this.sortInput = false;
+        this.buildNameIndex = true;
+        this.internTypes = false;
+        this.topNeighbours = 0;
+        this.edgeWeightFormula = new EdgeWeightFormula();
+        this.compactThreshold = DEFAULT_COMPACT_THRESHOLD;
+
+    }
+
+    /**
+     * <p>
+     * Set the generate graph flag
+     * </p>
+     * 
+     * @param flag the value of the flag
+     */
+    public void setGenerateGraph(Boolean flag)
+    {
+        this.generateGraph = flag;
+    }
+
+    /**
+     * <p>
+     * Set the generate graph relations flag
+     * </p>
+     * 
+     * @param flag the value of the flag
+     */
+    public void setGenerateGraphRelations(Boolean flag)
+    {
+        this.generateGraphRelations = flag;
+    }
+
+    /**
+     * <p>
+     * Set the resume flag
+     * </p>
+     * <p>
+     * When it is set, the files (or the part of the files) recorded in the checkpoint manifest of a previous process
+     * are skipped. Otherwise the manifest is reset
+     * </p>
+     * <p>
+     * The progress is recorded after the commit, so a crash between both replays the entities committed since the
+     * last record. The vertices are upserted by URI, so the replay doesn't duplicate them, but the relations of the
+     * replayed entities are added again to the edge counters
+     * </p>
+     * 
+     * @param flag the value of the flag
+     */
+    public void setResume(Boolean flag)
+    {
+        this.resume = flag;
+    }
+
+    /**
+     * <p>
+     * Set the incremental flag
+     * </p>
+     * <p>
+     * When it is set, only the files which are new or have changed (according to their fingerprints in the checkpoint
+     * manifest) since the previous import are processed. The vertices are upserted by URI and the edge counters of the
+     * existing edges are incremented
+     * </p>
+     * <p>
+     * The relations step only supports new files: the relations of a changed file can't be counted again without
+     * inflating the counters, so when the relations step is run and a file whose relations have been counted has
+     * changed, the import fails before running any step
+     * </p>
+     * 
+     * @param flag the value of the flag
+     */
+    public void setIncremental(Boolean flag)
+    {
+        this.incremental = flag;
+    }
+
+    /**
+     * <p>
+     * Set the policy used to bound the mediated relations created for a single mediator
+     * </p>
+     * 
+     * @param policy the {@code MediatedRelationPolicy} to use
+     */
+    public void setMediatedRelationPolicy(MediatedRelationPolicy policy)
+    {
+        this.mediatedRelationPolicy = policy;
+    }
+
+    /**
+     * <p>
+     * Get the policy used to bound the mediated relations created for a single mediator
+     * </p>
+     * 
+     * @return the {@code MediatedRelationPolicy} instance
+     */
+    public MediatedRelationPolicy getMediatedRelationPolicy()
+    {
+        return this.mediatedRelationPolicy;
+    }
+
+    /**
+     * <p>
+     * Get the statistics of the last generate graph relations step
+     * </p>
+     * 
+     * @return the {@code RelationsStatistics} instance
+     */
+    public RelationsStatistics getRelationsStatistics()
+    {
+        return this.relationsStatistics;
+    }
+
+    /**
+     * <p>
+     * Set the seconds between the progress lines logged while the process runs
+     * </p>
+     * 
+     * @param seconds the seconds between progress reports or 0 to disable them
+     */
+    public void setProgressInterval(long seconds)
+    {
+        this.progressInterval = seconds;
+    }
+
+    /**
+     * <p>
+     * Set the graph implementation used to store the graph
+     * </p>
+     * 
+     * @param backend the {@code GraphBackend} to use (Neo4j by default)
+     */
+    public void setGraphBackend(GraphBackend backend)
+    {
+        this.graphBackend = backend;
+    }
+
+    /**
+     * <p>
+     * Set the capacity of the queue between the producer and the consumers
+     * </p>
+     * 
+     * @param capacity the capacity of the queue or 0 to use the default capacity of every step (the number of
+     *            consumers for the generate graph step and 10 for the generate graph relations step)
+     */
+    public void setQueueCapacity(int capacity)
+    {
+        this.queueCapacity = capacity;
+    }
+
+    /**
+     * <p>
+     * Set the bounds of the number of consumers of the generate graph step
+     * </p>
+     * <p>
+     * A thread is created for the maximum number of consumers, starting with {@code consumerSize} of them active
+     * (limited to the bounds). Every few seconds the queue fill, the utilization of the consumers and the commit
+     * latency are sampled and a {@code PoolSizingPolicy} decides whether to add or shed a consumer. The change is
+     * applied on the next checkpoint (see {@code ElasticConsumerPool})
+     * </p>
+     * 
+     * @param min the minimum number of consumers
+     * @param max the maximum number of consumers or 0 to always use {@code consumerSize} consumers
+     */
+    public void setConsumerPool(int min, int max)
+    {
+        this.minConsumers = min;
+        this.maxConsumers = max;
+    }
+
+    /**
+     * <p>
+     * Set whether the consumers of the generate graph step commit in a dedicated thread
+     * </p>
+     * <p>
+     * The consumers hand their transactions to a {@code GroupCommitter} at every checkpoint and go on with the next
+     * entities while they are committed. The checkpoint is recorded once its transactions are committed. It is only
+     * used if the graph supports detaching the transactions from their threads (Neo4j). The generate graph relations
+     * step always commits in the consumer thread, as it updates the edges created by the previous transactions
+     * </p>
+     * 
+     * @param flag the value of the flag
+     */
+    public void setAsyncCommit(Boolean flag)
+    {
+        this.asyncCommit = flag;
+    }
+
+    /**
+     * <p>
+     * Set the number of triples of an entity above which only the values used by the consumers are kept
+     * </p>
+     * <p>
+     * The entities are held in memory until their last triple is read, and some Freebase subjects have millions of
+     * triples. Above the threshold the entity is compacted and its next triples are folded into it as they are read:
+     * only its types and the first two values of the rest of its predicates are kept, which is all the consumers read
+     * (see {@code AbstractProducerImporterHandler}), so the graph is the same. The step feeding an entity tee doesn't
+     * compact the entities, as the sinks receive every value
+     * </p>
+     * 
+     * @param triples the number of triples (100000 by default) or 0 to keep every triple
+     */
+    public void setCompactThreshold(int triples)
+    {
+        this.compactThreshold = triples;
+    }
+
+    /**
+     * <p>
+     * Set the kind of threads running the producer and the parsing (and decompression) of the files
+     * </p>
+     * <p>
+     * The consumers always run on {@code consumerSize} platform threads, which bound the concurrent writers of the
+     * store
+     * </p>
+     * 
+     * @param mode the {@code ExecutionMode} to use (platform threads by default)
+     */
+    public void setExecutionMode(ExecutionMode mode)
+    {
+        this.executionMode = mode;
+    }
+
+    /**
+     * <p>
+     * Set the maximum number of files of the input directory parsed at the same time
+     * </p>
+     * 
+     * @param parallelFiles the number of files or 0 to use the default of the execution mode (1 with platform threads
+     *            and the number of processors with virtual threads)
+     */
+    public void setParallelFiles(int parallelFiles)
+    {
+        this.parallelFiles = parallelFiles;
+    }
+
+    /**
+     * <p>
+     * Set the number of fork/join workers doing the index lookups of the large mediators in the generate graph
+     * relations step
+     * </p>
+     * <p>
+     * The lookups of the mediators with many references are split in tasks that idle workers can steal, so a mediator
+     * with thousands of references doesn't delay the rest of the file. The edges are still written by the consumer
+     * </p>
+     * 
+     * @param parallelism the number of workers (the number of processors by default) or 1 to do the lookups in the
+     *            consumer thread
+     */
+    public void setRelationsParallelism(int parallelism)
+    {
+        this.relationsParallelism = parallelism;
+    }
+
+    /**
+     * <p>
+     * Set the sort input flag
+     * </p>
+     * <p>
+     * The producer builds an entity from the consecutive triples with the same subject. If the input isn't grouped by
+     * subject (the BaseKB dumps are), set the flag so every file is sorted by subject with an external sort before
+     * producing its entities
+     * </p>
+     * <p>
+     * Every file is sorted on its own, so the triples of an entity must be in the same file
+     * </p>
+     * 
+     * @param flag the value of the flag
+     */
+    public void setSortInput(Boolean flag)
+    {
+        this.sortInput = flag;
+    }
 
     /**
-     * The file or directory to import
+     * <p>
+     * Set the directory of the temporary runs of the subject sort
+     * </p>
+     * 
+     * @param directory the directory (the temporary directory of the system by default)
      */
-    private File file;
+    public void setSortDirectory(File directory)
+    {
+        this.sortDirectory = directory;
+    }
 
     /**
-     * Location of the graph
+     * <p>
+     * Set the build name index flag
+     * </p>
+     * <p>
+     * When the flag is set (the default), the generate graph step writes the {@code NameIndexWriter.FILE_NAME} file in
+     * the graph location, indexing the lower case names of all the topics for exact, prefix and fuzzy lookups (see
+     * {@code NameIndex})
+     * </p>
+     * 
+     * @param flag the value of the flag
      */
-    private File graphLocation;
+    public void setBuildNameIndex(Boolean flag)
+    {
+        this.buildNameIndex = flag;
+    }
 
     /**
-     * The {@code Graph} implementation
+     * <p>
+     * Set the intern types flag
+     * </p>
+     * <p>
+     * When the flag is set, the types of the topics are interned in the {@code TypeDictionary.FILE_NAME} file of the
+     * graph location and the vertices store the ids of their types in the {@code ImporterConstants.VERTEX_TYPES_PROPERTY}
+     * property instead of the type URIs in the {@code ImporterConstants.RDF_TYPE} property, so the readers of the graph
+     * need the dictionary to get the types. The generate graph step also writes the {@code TypeIndexWriter.FILE_NAME}
+     * file with the vertices of every type (see {@code TypeIndex})
+     * </p>
+     * <p>
+     * The flag isn't set by default, so the vertices keep the type URIs
+     * </p>
+     * 
+     * @param flag the value of the flag
      */
-    private Graph graph;
+    public void setInternTypes(Boolean flag)
+    {
+        this.internTypes = flag;
+    }
 
     /**
-     * Flag indicating whether to generate the graph or not
+     * <p>
+     * Set the number of neighbours materialized in every vertex
+     * </p>
+     * <p>
+     * If it is greater than 0, the process ends with a step storing the heaviest neighbours of every vertex, ranked
+     * with the edge weight formula (see {@code TopNeighboursBuilder})
+     * </p>
+     * 
+     * @param k the number of neighbours (0, the default, to skip the step)
      */
-    private boolean generateGraph;
+    public void setTopNeighbours(int k)
+    {
+        this.topNeighbours = k;
+    }
 
     /**
-     * Flag indicating whether to generate the graph relations
+     * <p>
+     * Set the formula weighting the edges to rank the neighbours
+     * </p>
+     * 
+     * @param formula the {@code EdgeWeightFormula} (the number of properties connecting the topics by default)
      */
-    private boolean generateGraphRelations;
+    public void setEdgeWeightFormula(EdgeWeightFormula formula)
+    {
+        this.edgeWeightFormula = formula;
+    }
 
     /**
      * <p>
-     * Constructor
+     * Set the filter of the entities imported
      * </p>
      * <p>
-     * Creates an importer to process the file or directory passed as parameter
+     * The entities rejected by the filter are read but not given to the consumers of any step (for example, the
+     * workers of a sharded import only import the entities of their shard)
      * </p>
      * 
-     * @param file the string or directory to import
+     * @param filter the {@code EntityFilter} or null to import all the entities
      */
-    public FreebaseToGraphImporter(String file, String graphLocation)
+    public void setEntityFilter(EntityFilter filter)
     {
-        this(new File(file), new File(graphLocation), DEFAULT_CONSUMERS_SIZE);
+        this.entityFilter = filter;
     }
 
     /**
      * <p>
-     * Constructor
+     * Set the filter of the types of the topics imported
      * </p>
      * <p>
-     * Creates an importer to process the file or directory passed as parameter
+     * Only the topics accepted by the filter get a vertex (see {@code TopicTypeFilter}). The generate graph relations
+     * step then loads the topics of the graph and drops, before looking up any vertex, the topics not retained and
+     * the mediators which don't reference at least two retained topics (see {@code RetainedTopicsFilter})
+     * </p>
+     * 
+     * @param filter the {@code TypeFilter} or null to import all the topics
+     */
+    public void setTypeFilter(TypeFilter filter)
+    {
+        this.typeFilter = filter != null && !filter.isEmpty() ? filter : null;
+    }
+
+    /**
+     * <p>
+     * Set the sinks fed with the entities of the first step run (the generate graph step, or the generate graph
+     * relations step if it is the only one), so other outputs (such as an export or statistics of the dataset) are
+     * built from the same parse of the dump
      * </p>
      * <p>
-     * Initializes the set of steps
+     * The sinks receive the entities given to the consumers of the step, in the parsing threads (through their
+     * buffers), and the tee is closed once the steps have finished. The files and entities skipped when resuming
+     * aren't given to the sinks. The entities of the step aren't compacted (see {@link #setCompactThreshold(int)}), so the
+     * sinks see all their values, and an entity is held whole in memory until its last triple is read
      * </p>
      * 
-     * @param file the string or directory to import
+     * @param tee the {@code EntityTee} of the sinks or null for none
      */
-    public FreebaseToGraphImporter(File file, File graphLocation, int consumerSize)
+    public void setEntityTee(EntityTee tee)
     {
-        this.file = file;
-        this.graphLocation = graphLocation;
-        this.consumerSize = consumerSize;
-        this.generateGraph = false;
-        this.generateGraphRelations = false;
+        this.entityTee = tee;
+    }
 
+    /**
+     * <p>
+     * Set the memory budget of the import process
+     * </p>
+     * <p>
+     * The queues of entities, the transactions pending to be committed and the memory mapped files of the store are
+     * sized with their share of the budget, and the consumers commit (through an early checkpoint) when the heap used
+     * passes the high-water mark of the budget
+     * </p>
+     * 
+     * @param budget the {@code MemoryBudget} (by default half of the maximum heap and no off-heap limit)
+     */
+    public void setMemoryBudget(MemoryBudget budget)
+    {
+        this.memoryBudget = budget;
     }
 
     /**
      * <p>
-     * Set the generate graph flag
+     * Get the duration of the steps of the last process
      * </p>
      * 
-     * @param flag the value of the flag
+     * @return a map from the step name to its duration in milliseconds, in execution order
      */
-    public void setGenerateGraph(Boolean flag)
+    public Map<String, Long> getStepDurations()
     {
-        this.generateGraph = flag;
+        return this.stepDurations;
     }
 
     /**
      * <p>
-     * Set the generate graph relations flag
+     * Get the metrics of the import process
      * </p>
      * 
-     * @param flag the value of the flag
+     * @return the {@code ImporterMetrics} instance
      */
-    public void setGenerateGraphRelations(Boolean flag)
+    public ImporterMetrics getMetrics()
     {
-        this.generateGraphRelations = flag;
+        return this.metrics;
     }
 
     /**
@@ -168,12 +826,62 @@ public class FreebaseToGraphImporter
      * Initialize the graph using the graph location
      * </p>
      * <p>
-     * Uses Neo4jGraph implementation of Tinkerpop Blueprints
+     * Uses the configured {@code GraphBackend} (Neo4jGraph implementation of Tinkerpop Blueprints by default)
      * </p>
      */
     private void initializeGraph()
     {
-        this.graph = new Neo4jGraph(this.graphLocation.getAbsolutePath());
+        /* The store is the only part using off-heap memory */
+        this.storeMemory = this.memoryBudget.register("store", 0, 1, null);
+        this.graph = this.graphBackend.open(this.graphLocation, this.storeMemory.getOffHeapBytes());
+    }
+
+    /**
+     * <p>
+     * Open the checkpoint manifest stored in the graph location, if it is not open yet
+     * </p>
+     * <p>
+     * It must be called once the graph has been initialized, because the graph implementation could consider that an
+     * existing directory is not a fresh graph
+     * </p>
+     */
+    private void openCheckpointManifest()
+    {
+        if (this.checkpointManifest != null)
+            return;
+
+        try
+        {
+            this.checkpointManifest = new CheckpointManifest(new File(this.graphLocation,
+                    CheckpointManifest.MANIFEST_FILE_NAME), this.resume || this.incremental);
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Unable to open the checkpoint manifest", e);
+        }
+    }
+
+    /**
+     * <p>
+     * Checks that no input file whose relations are already counted in the graph has changed since then
+     * </p>
+     * <p>
+     * The relations step increments the counters of the edges, and the contributions of the previous content of a file
+     * can't be told apart from the rest of the counters, so processing the new content would count its relations again.
+     * It is checked before any step runs, so the graph is left untouched
+     * </p>
+     *
+     * @throws IllegalStateException if the relations of a previous content of an input file have been counted
+     */
+    private void checkChangedRelations()
+    {
+        for (File f : new FreebaseProducerImpl(null, this.file).listPendingFiles())
+        {
+            if (this.checkpointManifest.isChanged(ImporterConstants.GENERATE_RELATIONS_STEP, f))
+                throw new IllegalStateException("The file " + f.getName() + " has changed since its relations were "
+                        + "counted in " + this.graphLocation + ". The edge counters can't be updated with its new "
+                        + "content: import the dump into a new output directory");
+        }
     }
 
     /**
@@ -181,30 +889,81 @@ public class FreebaseToGraphImporter
      * Performs the import process based using two types of consumers: FreebaseGenerateGraphConsumer and
      * FreebaseGenerateRelationsConsumer
      * </p>
+     * <p>
+     * The graph is opened once and kept open across the steps
+     * </p>
+     * 
+     * @throws PipelineException if a stage of a step fails (the graph and the checkpoint manifest are closed anyway)
      */
     public void process()
     {
-        /* Run the parser process */
+        if (!this.executionMode.isAvailable())
+            throw new IllegalStateException("The " + this.executionMode + " execution mode is not available. Build "
+                    + "the importer with the java21 profile and run it with Java 21 or later");
+
+        this.stepDurations.clear();
+        ProgressReporter progressReporter = new ProgressReporter(this.metrics, this.progressInterval);
+        this.metrics.register();
+        progressReporter.start();
+        this.memoryBudget.start();
+        if (this.sortInput)
+            this.sortMemory = this.memoryBudget.register("sort", SORT_MEMORY_WEIGHT, 0, null);
+
         try
         {
             logger.info("Freebase importer starts");
             long start = System.currentTimeMillis();
+            if (this.generateGraph || this.generateGraphRelations || this.topNeighbours > 0)
+            {
+                this.initializeGraph();
+                this.openCheckpointManifest();
+            }
+            if (this.generateGraphRelations && (this.resume || this.incremental))
+                this.checkChangedRelations();
+
+            if (this.entityTee != null && !this.generateGraph && !this.generateGraphRelations)
+                logger.warn("No step parses the input: the sinks receive no entities");
+
             /* Run the parser process */
             if (this.generateGraph)
             {
                 this.generateGraph();
             }
-            Thread.sleep(2000);
             if (this.generateGraphRelations)
             {
                 this.generateGraphRelations();
             }
+            if (this.topNeighbours > 0)
+            {
+                this.buildTopNeighbours();
+            }
+            if (this.entityTee != null)
+                this.entityTee.close();
             long end = System.currentTimeMillis();
             logger.info("Freebase importer finished. Duration: " + (end - start) / 1000 + " seconds");
         }
-        catch (InterruptedException e)
+        finally
         {
-            e.printStackTrace();
+            if (this.entityTee != null)
+                this.entityTee.cancel();
+            progressReporter.stop();
+            this.metrics.unregister();
+            this.memoryBudget.stop();
+            if (this.graph != null)
+            {
+                logger.debug("Committing pending transactions");
+                this.graph.shutdown();
+                this.graph = null;
+            }
+            if (this.storeMemory != null)
+                this.memoryBudget.unregister(this.storeMemory);
+            this.storeMemory = null;
+            if (this.sortMemory != null)
+                this.memoryBudget.unregister(this.sortMemory);
+            this.sortMemory = null;
+            if (this.checkpointManifest != null)
+                this.checkpointManifest.close();
+            this.checkpointManifest = null;
         }
 
     }
@@ -220,61 +979,226 @@ public class FreebaseToGraphImporter
         logger.info("Starting generate graph process");
         long start = System.currentTimeMillis();
 
-        CountDownLatch startLatch = new CountDownLatch(1);
-        BlockingQueue<Entity> queue = new ArrayBlockingQueue<>(this.consumerSize);
+        /* Only one consumer can write into graphs which aren't thread safe */
+        int consumerSize = this.graphBackend.isThreadSafe() ? this.consumerSize : 1;
+        if (consumerSize != this.consumerSize)
+            logger.warn("The " + this.graphBackend + " graph isn't thread safe. Using only one consumer");
 
-        this.initializeGraph();
+        MemoryShare queueMemory = this.memoryBudget.register(ImporterConstants.GENERATE_GRAPH_STEP + ".entities",
+                QUEUE_MEMORY_WEIGHT, 0, null);
+        Pipeline pipeline = new Pipeline(ImporterConstants.GENERATE_GRAPH_STEP);
+        Channel<Entity> entities = pipeline.channel("entities", this.getQueueCapacity(consumerSize, queueMemory),
+                new Entity(ImporterConstants.CANCEL_ENTITY_URI, null));
+        this.metrics.startStep(ImporterConstants.GENERATE_GRAPH_STEP, entities.getQueue());
 
-        List<Thread> consumers = new ArrayList<>();
-        for (int i = 0; i < this.consumerSize; i++)
+        ElasticConsumerPool consumerPool = null;
+        if (this.maxConsumers > 0 && consumerSize > 1)
         {
+            consumerPool = new ElasticConsumerPool(new PoolSizingPolicy(this.minConsumers, this.maxConsumers),
+                    consumerSize);
+            consumerSize = consumerPool.getActive();
+        }
 
-            FreebaseConsumer consumer = new FreebaseGenerateGraphConsumer(startLatch, queue, this.graph);
+        int threads = consumerPool != null ? consumerPool.getMaxConsumers() : consumerSize;
+        /* A transaction of every consumer can wait to be committed while the next ones are built */
+        GroupCommitter groupCommitter = this.asyncCommit && this.graph instanceof DetachableGraph
+                && this.graph.getFeatures().supportsTransactions ? new GroupCommitter((DetachableGraph) this.graph,
+                threads) : null;
 
-            Thread consumerThread = new Thread(consumer, FreebaseGenerateGraphConsumer.class.getName() + i);
-            consumers.add(consumerThread);
-            consumerThread.start();
+        TypeDictionary typeDictionary = this.internTypes ? this.openTypeDictionary() : null;
+        List<FreebaseGenerateGraphConsumer> consumers = new ArrayList<>();
+        for (int i = 0; i < threads; i++)
+        {
+            FreebaseGenerateGraphConsumer consumer = new FreebaseGenerateGraphConsumer(STARTED, entities.getQueue(),
+                    this.graph);
+            /* Commit only on checkpoints */
+            consumer.setCommitInterval(0);
+            /* A resumed file replays the entities committed after its last recorded checkpoint */
+            consumer.setUpsert(this.resume || this.incremental);
+            consumer.setTypeDictionary(typeDictionary);
+            consumer.setConsumerPool(consumerPool, i);
+            consumer.setGroupCommitter(groupCommitter);
+            consumer.setMetrics(this.metrics.registerConsumer(FreebaseGenerateGraphConsumer.class.getName() + i));
+            consumers.add(consumer);
         }
 
-        FreebaseProducer producer = new FreebaseProducerImpl(queue, this.file);
-        Thread producerThread = new Thread(producer, FreebaseProducerImpl.class.getName());
+        FreebaseProducerImpl producer = new FreebaseProducerImpl(entities.getQueue(), this.file);
+        producer.setMetrics(this.metrics);
+        Checkpointer checkpointer = new Checkpointer(this.checkpointManifest, ImporterConstants.GENERATE_GRAPH_STEP,
+                consumerSize, consumerSize * FreebaseGenerateGraphConsumer.DEFAULT_COMMIT_INTERVAL);
+        checkpointer.setConsumerPool(consumerPool);
+        checkpointer.setGroupCommitter(groupCommitter);
+        producer.setCheckpointer(checkpointer);
+        MemoryShare transactionsMemory = this.registerTransactions(ImporterConstants.GENERATE_GRAPH_STEP,
+                checkpointer, groupCommitter != null ? 2 : 1);
+
+        this.addProducerStages(pipeline, producer, entities, this.typeFilter != null ? new TopicTypeFilter(
+                this.typeFilter) : null, this.entityTee);
+        pipeline.addStage("sink", consumers, null, ExecutionMode.PLATFORM.newThreadFactory(
+                FreebaseGenerateGraphConsumer.class.getName()));
+        if (consumerPool != null)
+            consumerPool.start(this.metrics, ElasticConsumerPool.DEFAULT_PERIOD_SECONDS);
         try
         {
-            // Waiting for initializarion of consumers
-            Thread.sleep(500);
+            pipeline.run();
         }
-        catch (InterruptedException e)
+        finally
         {
-            e.printStackTrace();
+            try
+            {
+                /* Commit the last transactions and record their checkpoints before reading the graph */
+                if (groupCommitter != null)
+                {
+                    groupCommitter.close();
+                    logger.info(groupCommitter.getCommitted() + " transactions committed in "
+                            + groupCommitter.getGroups() + " groups");
+                }
+            }
+            finally
+            {
+                if (consumerPool != null)
+                {
+                    consumerPool.stop();
+                    logger.info("Consumers resized " + consumerPool.getResizes() + " times, finishing with "
+                            + consumerPool.getActive());
+                }
+                this.memoryBudget.unregister(queueMemory);
+                this.memoryBudget.unregister(transactionsMemory);
+                if (typeDictionary != null)
+                    this.closeTypeDictionary(typeDictionary);
+            }
         }
 
-        // Start the consumers
-        startLatch.countDown();
+        if (this.buildNameIndex)
+            this.buildNameIndex();
+        if (this.internTypes)
+            this.buildTypeIndex();
+
+        long end = System.currentTimeMillis();
+
+        this.stepDurations.put(ImporterConstants.GENERATE_GRAPH_STEP, end - start);
+        logger.info("Generate graph (vertices) process finished. Duration: " + ((end - start) / 1000) + " seconds");
+
+    }
 
-        // Start the producer
-        producerThread.start();
+    /**
+     * <p>
+     * Writes the name index of the topics of the graph
+     * </p>
+     * <p>
+     * The names are read from the vertices once they are committed, instead of collecting them in the consumers, so
+     * the index also covers the vertices of previous processes when resuming or importing incrementally
+     * </p>
+     */
+    private void buildNameIndex()
+    {
+        long start = System.currentTimeMillis();
+        NameIndexWriter writer = NameIndexWriter.forGraph(this.graph);
 
-        // waiting producer and consumers thread to finish
         try
         {
-            producerThread.join();
-            for (Thread t : consumers)
-            {
-                t.join();
-            }
+            long names = writer.write(new File(this.graphLocation, NameIndexWriter.FILE_NAME));
+            logger.info("Name index written: " + names + " names of " + writer.size() + " topics. Duration: "
+                    + (System.currentTimeMillis() - start) / 1000 + " seconds");
         }
-        catch (InterruptedException e)
+        catch (IOException e)
         {
-            e.printStackTrace();
+            throw new IllegalStateException("Unable to write the name index", e);
         }
+    }
+
+    /**
+     * <p>
+     * Creates the filter of the relations of a filtered import from the topics of the graph
+     * </p>
+     */
+    private RetainedTopicsFilter newRetainedTopicsFilter()
+    {
+        long start = System.currentTimeMillis();
+        TopicSet topics = TopicSet.forGraph(this.graph);
+        logger.info("Type filter (" + this.typeFilter + "): " + topics.size() + " topics retained. Duration: "
+                + (System.currentTimeMillis() - start) / 1000 + " seconds");
+        return new RetainedTopicsFilter(topics);
+    }
 
-        logger.debug("Committing pending transactions");
-        this.graph.shutdown();
+    /**
+     * <p>
+     * Opens the type dictionary of the graph, keeping the ids of the types interned by previous processes
+     * </p>
+     */
+    private TypeDictionary openTypeDictionary()
+    {
+        try
+        {
+            TypeDictionary dictionary = TypeDictionary.open(new File(this.graphLocation, TypeDictionary.FILE_NAME));
+            logger.info("Type dictionary opened: " + dictionary.size() + " types");
+            return dictionary;
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Unable to open the type dictionary", e);
+        }
+    }
 
-        long end = System.currentTimeMillis();
+    /**
+     * <p>
+     * Closes the type dictionary of the graph
+     * </p>
+     */
+    private void closeTypeDictionary(TypeDictionary dictionary)
+    {
+        try
+        {
+            dictionary.close();
+            logger.info("Type dictionary closed: " + dictionary.size() + " types");
+        }
+        catch (IOException e)
+        {
+            logger.warn("Unable to close the type dictionary", e);
+        }
+    }
 
-        logger.info("Generate graph (vertices) process finished. Duration: " + ((end - start) / 1000) + " seconds");
+    /**
+     * <p>
+     * Writes the postings index of the types of the topics of the graph
+     * </p>
+     * <p>
+     * As the name index, it is built from the committed vertices, so it also covers the vertices of previous processes
+     * </p>
+     */
+    private void buildTypeIndex()
+    {
+        long start = System.currentTimeMillis();
+        TypeIndexWriter writer = TypeIndexWriter.forGraph(this.graph);
+
+        try
+        {
+            int types = writer.write(new File(this.graphLocation, TypeIndexWriter.FILE_NAME));
+            logger.info("Type index written: " + writer.size() + " postings of " + types + " types. Duration: "
+                    + (System.currentTimeMillis() - start) / 1000 + " seconds");
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Unable to write the type index", e);
+        }
+    }
+
+    /**
+     * <p>
+     * Last step: Materialize the top neighbours of every vertex
+     * </p>
+     */
+    private void buildTopNeighbours()
+    {
+        logger.info("Starting top neighbours process (" + this.edgeWeightFormula + ")");
+        long start = System.currentTimeMillis();
+
+        long vertices = new TopNeighboursBuilder(this.graph, this.topNeighbours, this.edgeWeightFormula).build();
 
+        long end = System.currentTimeMillis();
+        this.stepDurations.put(ImporterConstants.TOP_NEIGHBOURS_STEP, end - start);
+        logger.info("Top " + this.topNeighbours + " neighbours of " + vertices + " vertices stored. Duration: "
+                + ((end - start) / 1000) + " seconds");
     }
 
     /**
@@ -288,57 +1212,193 @@ public class FreebaseToGraphImporter
         logger.info("Starting generate graph relations process");
         long start = System.currentTimeMillis();
 
-        CountDownLatch startLatch = new CountDownLatch(1);
-        BlockingQueue<Entity> queue = new ArrayBlockingQueue<>(10);
-
-        initializeGraph();
+        MemoryShare queueMemory = this.memoryBudget.register(ImporterConstants.GENERATE_RELATIONS_STEP
+                + ".entities", QUEUE_MEMORY_WEIGHT, 0, null);
+        Pipeline pipeline = new Pipeline(ImporterConstants.GENERATE_RELATIONS_STEP);
+        Channel<Entity> entities = pipeline.channel("entities", this.getQueueCapacity(
+                DEFAULT_RELATIONS_QUEUE_CAPACITY, queueMemory), new Entity(ImporterConstants.CANCEL_ENTITY_URI, null));
+        this.metrics.startStep(ImporterConstants.GENERATE_RELATIONS_STEP, entities.getQueue());
 
         /*
-         * Creates and starts the create or update edges consumer Consume edge orders produced by
-         * FreebaseGenerateRelationsConsumer
+         * Creates the create or update edges consumer, which consumes the entities produced by the producer
          */
 
-        FreebaseConsumer consumer = new FreebaseGenerateRelationsConsumer(startLatch, queue, graph);
+        this.relationsStatistics = new RelationsStatistics();
+        FreebaseGenerateRelationsConsumer consumer = new FreebaseGenerateRelationsConsumer(STARTED,
+                entities.getQueue(), graph);
+        consumer.setMediatedRelationPolicy(this.mediatedRelationPolicy);
+        consumer.setStatistics(this.relationsStatistics);
+        /* Commit only on checkpoints */
+        consumer.setCommitInterval(0);
+        consumer.setMetrics(this.metrics.registerConsumer(FreebaseGenerateRelationsConsumer.class.getName()));
+        ForkJoinPool forkJoinPool = this.relationsParallelism > 1 ? new ForkJoinPool(this.relationsParallelism) : null;
+        consumer.setForkJoinPool(forkJoinPool);
 
-        Thread relationsThread = new Thread(consumer, FreebaseGenerateRelationsConsumer.class.getName());
-        relationsThread.start();
+        FreebaseProducerImpl producer = new FreebaseProducerImpl(entities.getQueue(), this.file);
+        producer.setMetrics(this.metrics);
+        Checkpointer checkpointer = new Checkpointer(this.checkpointManifest,
+                ImporterConstants.GENERATE_RELATIONS_STEP, 1, FreebaseGenerateRelationsConsumer.DEFAULT_COMMIT_INTERVAL);
+        /* The edge counters aren't idempotent, so the consumer commits the progress along with them */
+        if (graph instanceof ProgressGraph)
+            checkpointer.setProgressGraph((ProgressGraph) graph);
+        producer.setCheckpointer(checkpointer);
+        MemoryShare transactionsMemory = this.registerTransactions(ImporterConstants.GENERATE_RELATIONS_STEP,
+                checkpointer, 1);
 
-        FreebaseProducer producer = new FreebaseProducerImpl(queue, this.file);
-        Thread producerThread = new Thread(producer, FreebaseProducerImpl.class.getName());
+        this.addProducerStages(pipeline, producer, entities, this.typeFilter != null ? this.newRetainedTopicsFilter()
+                : null, this.generateGraph ? null : this.entityTee);
+        pipeline.addStage("sink", Collections.singletonList(consumer), null, ExecutionMode.PLATFORM
+                .newThreadFactory(FreebaseGenerateRelationsConsumer.class.getName()));
         try
         {
-            // Waiting for initializarion of consumers
-            Thread.sleep(500);
+            pipeline.run();
         }
-        catch (InterruptedException e)
+        finally
         {
-            e.printStackTrace();
+            if (forkJoinPool != null)
+                forkJoinPool.shutdown();
+            this.memoryBudget.unregister(queueMemory);
+            this.memoryBudget.unregister(transactionsMemory);
         }
 
-        // Start the consumers
-        startLatch.countDown();
+        long end = System.currentTimeMillis();
 
-        // Start the producer
-        producerThread.start();
+        this.stepDurations.put(ImporterConstants.GENERATE_RELATIONS_STEP, end - start);
+        logger.info("Generate graph relations (edges) process finished. Duration: " + ((end - start) / 1000)
+                + " seconds");
+        logger.info("Mediated relations (" + this.mediatedRelationPolicy + "): " + this.relationsStatistics);
+        logger.info(String.format(Locale.ENGLISH, "Relations step: %d entities, %.1f index lookups/entity, "
+                + "%d commits (p95 %.0f ms, max %.0f ms)", this.metrics.getEntitiesConsumed(),
+                this.metrics.getIndexLookupsPerEntity(), this.metrics.getCommits(),
+                this.metrics.getCommitLatencyP95Millis(), this.metrics.getCommitLatencyMaxMillis()));
+    }
 
-        // waiting producer and consumers thread to finish
-        try
+    /**
+     * <p>
+     * Gets the capacity of the queue of entities of a step: the configured capacity or the default one of the step,
+     * limited to the entities fitting in the memory share of the queue
+     * </p>
+     * 
+     * @param defaultCapacity the default capacity of the step
+     * @param share the memory share of the queue
+     * @return the capacity of the queue
+     */
+    private int getQueueCapacity(int defaultCapacity, MemoryShare share)
+    {
+        int capacity = this.queueCapacity > 0 ? this.queueCapacity : defaultCapacity;
+        int limit = share.getHeapCapacity(ESTIMATED_ENTITY_BYTES);
+        if (capacity > limit)
+        {
+            logger.warn("Queue capacity " + capacity + " doesn't fit in " + share + ". Using " + limit);
+            capacity = limit;
+        }
+        return capacity;
+    }
+
+    /**
+     * <p>
+     * Registers the transactions pending to be committed by the consumers of a step in the memory budget
+     * </p>
+     * <p>
+     * The checkpoints, which are the commit points of the consumers, are generated before the pending entities
+     * exceed the share, and a checkpoint is requested when the heap used passes the high-water mark
+     * </p>
+     * 
+     * @param step the name of the step
+     * @param checkpointer the checkpointer of the step
+     * @param pendingCheckpoints the number of checkpoints whose transactions can be pending at the same time
+     * @return the memory share of the transactions
+     */
+    private MemoryShare registerTransactions(String step, final Checkpointer checkpointer, int pendingCheckpoints)
+    {
+        MemoryShare share = this.memoryBudget.register(step + ".transactions", TRANSACTIONS_MEMORY_WEIGHT, 0,
+                new MemoryPressureListener()
+                {
+                    @Override
+                    public void memoryPressure(MemoryShare share)
+                    {
+                        checkpointer.requestCheckpoint();
+                    }
+                });
+        int limit = share.getHeapCapacity(ESTIMATED_PENDING_ENTITY_BYTES) / pendingCheckpoints;
+        if (checkpointer.getInterval() > limit)
+        {
+            logger.warn("Checkpoint interval " + checkpointer.getInterval() + " doesn't fit in " + share + ". Using "
+                    + limit);
+            checkpointer.setInterval(limit);
+        }
+        return share;
+    }
+
+    /**
+     * <p>
+     * Adds the stages reading the input to a step: the source stage listing the files to process and the decode
+     * stage parsing them into entities, with {@code parallelFiles} files parsed at the same time. Both run on the
+     * threads of the execution mode
+     * </p>
+     * 
+     * @param pipeline the pipeline of the step
+     * @param producer the producer
+     * @param entities the channel of the entities consumed by the sink stage
+     * @param stepFilter the filter of the entities of the step, applied after the entity filter (null for none)
+     * @param tee the sinks also receiving the entities of the step (null for none)
+     */
+    private void addProducerStages(Pipeline pipeline, FreebaseProducerImpl producer, Channel<Entity> entities,
+            final EntityFilter stepFilter, final EntityTee tee)
+    {
+        final EntityFilter entityFilter = this.entityFilter;
+        if (entityFilter == null || stepFilter == null)
+            producer.setEntityFilter(entityFilter != null ? entityFilter : stepFilter);
+        else
         {
-            producerThread.join();
-            relationsThread.join();
+            producer.setEntityFilter(new EntityFilter()
+            {
+                @Override
+                public boolean accept(Entity entity)
+                {
+                    return entityFilter.accept(entity) && stepFilter.accept(entity);
+                }
+            });
         }
-        catch (InterruptedException e)
+        /* The sinks count and export every value, so the entities they receive aren't compacted */
+        producer.setCompactThreshold(tee != null ? 0 : this.compactThreshold);
+        if (tee != null)
         {
-            e.printStackTrace();
+            /* The consumers first, so the entities stay ordered with the checkpoints put in their queue */
+            final BlockingQueue<Entity> queue = entities.getQueue();
+            producer.setSink(new EntitySink()
+            {
+                @Override
+                public void put(Entity entity) throws InterruptedException
+                {
+                    queue.put(entity);
+                    tee.put(entity);
+                }
+            });
         }
+        int files = this.parallelFiles;
+        if (files <= 0)
+            files = this.executionMode == ExecutionMode.VIRTUAL ? Runtime.getRuntime().availableProcessors() : 1;
 
-        logger.debug("Committing pending transactions");
-        this.graph.shutdown();
+        if (this.sortInput)
+        {
+            /* The runs being sorted by all the files parsed at the same time must fit in the share of the sort */
+            int parallelism = DEFAULT_CONSUMERS_SIZE;
+            long runBytes = Math.min(ExternalSubjectSorter.DEFAULT_RUN_BYTES, Math.max(MIN_SORT_RUN_BYTES,
+                    this.sortMemory.getHeapBytes() / (files * (parallelism + 1))));
+            producer.setSubjectSort(this.sortDirectory != null ? this.sortDirectory : new File(
+                    System.getProperty("java.io.tmpdir")), runBytes, parallelism);
+        }
 
-        long end = System.currentTimeMillis();
+        Channel<File> pending = pipeline.channel("files", files, new File(ImporterConstants.CANCEL_ENTITY_URI));
+        pipeline.addStage("source", Collections.singletonList(producer.newFileSource(pending)), pending,
+                this.executionMode.newThreadFactory(FreebaseProducerImpl.class.getName()));
 
-        logger.info("Generate graph relations (edges) process finished. Duration: " + ((end - start) / 1000)
-                + " seconds");
+        List<Runnable> decoders = new ArrayList<>();
+        for (int i = 0; i < files; i++)
+            decoders.add(producer.newFileDecoder(pending));
+        pipeline.addStage("decode", decoders, entities, this.executionMode.newThreadFactory(
+                FreebaseProducerImpl.class.getName() + "-file"));
     }
 
 }
@@ -0,0 +1,357 @@
+package com.gsoc.freebase.importer.impl;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.transaction.SystemException;
+import javax.transaction.Transaction;
+import javax.transaction.TransactionManager;
+
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.kernel.GraphDatabaseAPI;
+import org.neo4j.kernel.impl.core.NodeManager;
+
+import com.gsoc.freebase.importer.commit.DetachableGraph;
+import com.gsoc.freebase.importer.commit.ProgressGraph;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+
+/**
+ * <p>
+ * Graph implementations the importer can store the graph in
+ * </p>
+ */
+public enum GraphBackend
+{
+    /**
+     * Neo4j embedded store (the default). It supports indices and transactions
+     */
+    NEO4J
+    {
+        @Override
+        public Graph open(File location, long offHeapBytes)
+        {
+            if (offHeapBytes <= 0)
+                return new DetachableNeo4jGraph(location.getAbsolutePath());
+
+            /* Split the memory mapped to the store files as suggested by the Neo4j documentation */
+            long megabytes = Math.max(NEO4J_MAPPED_FILES.length, offHeapBytes >> 20);
+            Map<String, String> configuration = new HashMap<String, String>();
+            configuration.put("use_memory_mapped_buffers", "true");
+            for (int i = 0; i < NEO4J_MAPPED_FILES.length; i++)
+                configuration.put(NEO4J_MAPPED_FILES[i],
+                        Math.max(1, megabytes * NEO4J_MAPPED_PERCENTAGES[i] / 100) + "M");
+            return new DetachableNeo4jGraph(location.getAbsolutePath(), configuration);
+        }
+
+        @Override
+        public boolean isThreadSafe()
+        {
+            return true;
+        }
+    },
+
+    /**
+     * In-memory TinkerGraph, serialized into the location when it is shut down. It is not thread safe, so only one
+     * consumer writes into it, and it is mainly useful as a reference to measure the cost of the store.
+     * <p>
+     * The graph is written and read with Java serialization, which recurses through the adjacency of the vertices, so
+     * loading and saving run in a thread with a large stack
+     * </p>
+     */
+    TINKERGRAPH
+    {
+        @Override
+        public Graph open(File location, long offHeapBytes)
+        {
+            final String directory = location.getAbsolutePath();
+            final TinkerGraph[] graph = new TinkerGraph[1];
+            runWithLargeStack(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    graph[0] = new SerializingTinkerGraph(directory);
+                }
+            }, "tinkergraph-load");
+            return graph[0];
+        }
+
+        @Override
+        public boolean isThreadSafe()
+        {
+            return false;
+        }
+    };
+
+    /**
+     * Stack size of the threads loading and saving a {@code TinkerGraph}
+     */
+    private static final long SERIALIZATION_STACK_SIZE = 1L << 30;
+
+    /**
+     * Settings of the memory mapped to the files of the Neo4j store
+     */
+    private static final String[] NEO4J_MAPPED_FILES = { "neostore.nodestore.db.mapped_memory",
+            "neostore.relationshipstore.db.mapped_memory", "neostore.propertystore.db.mapped_memory",
+            "neostore.propertystore.db.strings.mapped_memory", "neostore.propertystore.db.arrays.mapped_memory" };
+
+    /**
+     * Percentage of the off-heap memory mapped to every file of the Neo4j store
+     */
+    private static final int[] NEO4J_MAPPED_PERCENTAGES = { 10, 45, 20, 20, 5 };
+
+    /**
+     * <p>
+     * Opens (or creates) the graph stored in the given location
+     * </p>
+     *
+     * @param location the directory of the graph
+     * @return the {@code Graph} instance
+     */
+    public Graph open(File location)
+    {
+        return this.open(location, 0);
+    }
+
+    /**
+     * <p>
+     * Opens (or creates) the graph stored in the given location, limiting the off-heap memory used by the store
+     * </p>
+     * <p>
+     * The limit is applied to the memory mapped files of the stores using them and ignored by the rest
+     * </p>
+     *
+     * @param location the directory of the graph
+     * @param offHeapBytes the bytes of off-heap memory the store can use (0 to use the defaults of the store)
+     * @return the {@code Graph} instance
+     */
+    public abstract Graph open(File location, long offHeapBytes);
+
+    /**
+     * <p>
+     * Checks whether several consumers can write into the graph at the same time
+     * </p>
+     *
+     * @return true if the graph supports concurrent writers
+     */
+    public abstract boolean isThreadSafe();
+
+    /**
+     * <p>
+     * Parses the name of a backend (case insensitive)
+     * </p>
+     *
+     * @param name the name of the backend
+     * @return the backend
+     */
+    public static GraphBackend parse(String name)
+    {
+        for (GraphBackend backend : values())
+        {
+            if (backend.name().equalsIgnoreCase(name))
+                return backend;
+        }
+        throw new IllegalArgumentException("Unknown graph backend: " + name);
+    }
+
+    /**
+     * <p>
+     * Runs a task in a thread with a large stack and waits for it
+     * </p>
+     */
+    private static void runWithLargeStack(Runnable task, String name)
+    {
+        final RuntimeException[] failure = new RuntimeException[1];
+        final Runnable wrapped = task;
+        Thread thread = new Thread(null, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    wrapped.run();
+                }
+                catch (RuntimeException e)
+                {
+                    failure[0] = e;
+                }
+            }
+        }, name, SERIALIZATION_STACK_SIZE);
+        thread.start();
+        try
+        {
+            thread.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + name, e);
+        }
+        if (failure[0] != null)
+            throw failure[0];
+    }
+
+    /**
+     * <p>
+     * TinkerGraph saving itself in a thread with a large stack
+     * </p>
+     */
+    private static class SerializingTinkerGraph extends TinkerGraph
+    {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * <p>
+         * Constructor
+         * </p>
+         *
+         * @param directory the directory of the graph
+         */
+        public SerializingTinkerGraph(String directory)
+        {
+            super(directory);
+        }
+
+        @Override
+        public void shutdown()
+        {
+            runWithLargeStack(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    SerializingTinkerGraph.super.shutdown();
+                }
+            }, "tinkergraph-save");
+        }
+    }
+
+    /**
+     * <p>
+     * Neo4jGraph whose transactions can be detached from their thread, using the suspend and resume operations of the
+     * Neo4j transaction manager
+     * </p>
+     * <p>
+     * The progress of the import is stored in the graph properties of the store, which are transactional like the
+     * vertices and the edges but don't belong to any of them
+     * </p>
+     */
+    private static class DetachableNeo4jGraph extends Neo4jGraph implements DetachableGraph, ProgressGraph
+    {
+        /**
+         * Prefix of the graph properties containing the progress of the import
+         */
+        private static final String PROGRESS_PREFIX = "import.progress.";
+
+        /**
+         * <p>
+         * Constructor
+         * </p>
+         *
+         * @param directory the directory of the graph
+         */
+        public DetachableNeo4jGraph(String directory)
+        {
+            super(directory);
+        }
+
+        /**
+         * <p>
+         * Constructor
+         * </p>
+         *
+         * @param directory the directory of the graph
+         * @param configuration the configuration of the store
+         */
+        public DetachableNeo4jGraph(String directory, Map<String, String> configuration)
+        {
+            super(directory, configuration);
+        }
+
+        @Override
+        public Object detachTransaction()
+        {
+            if (this.tx.get() == null)
+                return null;
+            /* The next operation of the thread starts a new transaction */
+            this.tx.remove();
+            try
+            {
+                return this.getTransactionManager().suspend();
+            }
+            catch (SystemException e)
+            {
+                throw new IllegalStateException("Unable to detach the transaction", e);
+            }
+        }
+
+        @Override
+        public void commitDetached(Object transaction)
+        {
+            TransactionManager manager = this.getTransactionManager();
+            try
+            {
+                manager.resume((Transaction) transaction);
+                manager.commit();
+            }
+            catch (Exception e)
+            {
+                throw new IllegalStateException("Unable to commit the transaction", e);
+            }
+        }
+
+        @Override
+        public void rollbackDetached(Object transaction)
+        {
+            TransactionManager manager = this.getTransactionManager();
+            try
+            {
+                manager.resume((Transaction) transaction);
+                manager.rollback();
+            }
+            catch (Exception e)
+            {
+                throw new IllegalStateException("Unable to roll back the transaction", e);
+            }
+        }
+
+        @Override
+        public void setProgress(String key, String value)
+        {
+            this.autoStartTransaction();
+            this.getGraphProperties().setProperty(PROGRESS_PREFIX + key, value);
+        }
+
+        @Override
+        public String getProgress(String key)
+        {
+            return (String) this.getGraphProperties().getProperty(PROGRESS_PREFIX + key, null);
+        }
+
+        /**
+         * <p>
+         * Gets the graph properties of the store
+         * </p>
+         */
+        private PropertyContainer getGraphProperties()
+        {
+            return ((GraphDatabaseAPI) this.getRawGraph()).getDependencyResolver().resolveDependency(
+                    NodeManager.class).getGraphProperties();
+        }
+
+        /**
+         * <p>
+         * Gets the transaction manager of the store
+         * </p>
+         */
+        private TransactionManager getTransactionManager()
+        {
+            return ((GraphDatabaseAPI) this.getRawGraph()).getDependencyResolver().resolveDependency(
+                    TransactionManager.class);
+        }
+    }
+}
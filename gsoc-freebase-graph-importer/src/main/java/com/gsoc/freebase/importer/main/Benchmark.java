@@ -0,0 +1,130 @@
+package com.gsoc.freebase.importer.main;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+
+import com.gsoc.freebase.importer.benchmark.MacroBenchmark;
+import com.gsoc.freebase.importer.impl.GraphBackend;
+
+/**
+ * <p>
+ * Main class to run the end to end benchmark of the importer
+ * </p>
+ */
+public class Benchmark
+{
+    private static final Options options;
+    static
+    {
+        options = new Options();
+        options.addOption("h", "help", false, "Display this help and exit");
+        options.addOption("i", "inputDirectory", true, "The dataset file or directory to be imported");
+        options.addOption("o", "outputDirectory", true,
+                "The directory where the stores, the logs of the runs and the reports will be written");
+        options.addOption(null, "backends", true, "Comma separated graph backends: neo4j (default), tinkergraph");
+        options.addOption(null, "consumers", true,
+                "Comma separated numbers of consumers (default the number of processors)");
+        options.addOption(null, "queueSizes", true,
+                "Comma separated queue capacities (default 0, the default capacity of every step)");
+        options.addOption(null, "repetitions", true, "Number of runs of every configuration (default 1)");
+        options.addOption(null, "jvmArgs", true, "Arguments of the JVMs running the imports, e.g. \"-Xmx4g\"");
+        options.addOption(null, "label", true, "Free label stored in the report, e.g. the commit being measured");
+        options.addOption(null, "keepStores", false, "Keep the stores generated by the runs");
+    }
+
+    /**
+     * @param args
+     * @throws ParseException
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static void main(String[] args) throws ParseException, IOException, InterruptedException
+    {
+        CommandLineParser parser = new PosixParser();
+        CommandLine cmd = parser.parse(options, args);
+
+        if (cmd.hasOption("h") || !cmd.hasOption("i") || !cmd.hasOption("o"))
+        {
+            HelpFormatter formatter = new HelpFormatter();
+            formatter.printHelp("java -cp " + Main.JAR_NAME + " " + Benchmark.class.getName() + " [options] \n",
+                    "Freebase to Graph Importer Benchmark\n", options, null);
+            System.exit(0);
+        }
+
+        File inputDir = new File(cmd.getOptionValue("i"));
+        if (!inputDir.exists())
+        {
+            System.out.println(inputDir + " doesn't exist. Please enter a valid file or directory to be processed");
+            System.exit(0);
+        }
+
+        MacroBenchmark benchmark = new MacroBenchmark(inputDir, new File(cmd.getOptionValue("o")));
+
+        if (cmd.hasOption("backends"))
+        {
+            List<GraphBackend> backends = new ArrayList<GraphBackend>();
+            for (String backend : split(cmd.getOptionValue("backends")))
+                backends.add(GraphBackend.parse(backend));
+            benchmark.setBackends(backends);
+        }
+
+        if (cmd.hasOption("consumers"))
+            benchmark.setConsumers(toIntegers(split(cmd.getOptionValue("consumers"))));
+
+        if (cmd.hasOption("queueSizes"))
+            benchmark.setQueueCapacities(toIntegers(split(cmd.getOptionValue("queueSizes"))));
+
+        if (cmd.hasOption("repetitions"))
+            benchmark.setRepetitions(Integer.parseInt(cmd.getOptionValue("repetitions")));
+
+        if (cmd.hasOption("jvmArgs"))
+            benchmark.setJvmArguments(Arrays.asList(cmd.getOptionValue("jvmArgs").trim().split("\\s+")));
+
+        if (cmd.hasOption("label"))
+            benchmark.setLabel(cmd.getOptionValue("label"));
+
+        if (cmd.hasOption("keepStores"))
+            benchmark.setKeepStores(true);
+
+        benchmark.run();
+    }
+
+    /**
+     * <p>
+     * Splits a comma separated list
+     * </p>
+     */
+    private static List<String> split(String value)
+    {
+        List<String> values = new ArrayList<String>();
+        for (String v : value.split(","))
+        {
+            if (!v.trim().isEmpty())
+                values.add(v.trim());
+        }
+        return values;
+    }
+
+    /**
+     * <p>
+     * Converts a list of strings into integers
+     * </p>
+     */
+    private static List<Integer> toIntegers(List<String> values)
+    {
+        List<Integer> integers = new ArrayList<Integer>();
+        for (String v : values)
+            integers.add(Integer.parseInt(v));
+        return integers;
+    }
+}
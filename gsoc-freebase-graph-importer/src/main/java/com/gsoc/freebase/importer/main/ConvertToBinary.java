@@ -0,0 +1,73 @@
+package com.gsoc.freebase.importer.main;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+
+import com.gsoc.freebase.importer.binary.BinaryConverter;
+import com.gsoc.freebase.importer.binary.BinaryEntityWriter;
+
+/**
+ * <p>
+ * Main class to convert a BaseKBLime Freebase dump into binary entity files, which the importer reads without parsing
+ * the RDF again
+ * </p>
+ */
+public class ConvertToBinary
+{
+    private static final Options options;
+    static
+    {
+        options = new Options();
+        options.addOption("h", "help", false, "Display this help and exit");
+        options.addOption("i", "inputDirectory", true,
+                "The BaseKBLime Freebase dataset file to be converted or the input directory containing the Freebase dataset files");
+        options.addOption("o", "outputDirectory", true, "The directory where the binary files will be written");
+        options.addOption(null, "blockSize", true, "Uncompressed size in KB of the blocks of the binary files (default "
+                + (BinaryEntityWriter.DEFAULT_BLOCK_SIZE >> 10) + ")");
+    }
+
+    /**
+     * @param args
+     * @throws ParseException
+     * @throws IOException
+     */
+    public static void main(String[] args) throws ParseException, IOException
+    {
+        CommandLineParser parser = new PosixParser();
+        CommandLine cmd = parser.parse(options, args);
+
+        if (cmd.hasOption("h") || !cmd.hasOption("i") || !cmd.hasOption("o"))
+        {
+            HelpFormatter formatter = new HelpFormatter();
+            formatter.printHelp("java -cp " + Main.JAR_NAME + " " + ConvertToBinary.class.getName()
+                    + " [options] \n", "Freebase dump to binary entity files converter\n", options, null);
+            System.exit(0);
+        }
+
+        File inputDir = new File(cmd.getOptionValue("i"));
+        File outputDir = new File(cmd.getOptionValue("o"));
+        if (!inputDir.exists())
+        {
+            System.out.println(inputDir + " doesn't exist. Please enter a valid file or directory to be converted");
+            System.exit(0);
+        }
+        if (outputDir.exists() && outputDir.isFile())
+        {
+            System.out.println(outputDir + " is a file. Please enter a valid directory to store the binary files");
+            System.exit(0);
+        }
+
+        BinaryConverter converter = new BinaryConverter();
+        if (cmd.hasOption("blockSize"))
+            converter.setBlockSize(Integer.parseInt(cmd.getOptionValue("blockSize")) << 10);
+
+        converter.convertAll(inputDir, outputDir);
+    }
+}
@@ -0,0 +1,77 @@
+package com.gsoc.freebase.importer.main;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+
+import com.gsoc.freebase.importer.generator.DatasetGenerator;
+
+/**
+ * <p>
+ * Main class to generate a synthetic dataset shaped as the BaseKB Lime dump
+ * </p>
+ */
+public class GenerateDataset
+{
+    private static final Options options;
+    static
+    {
+        options = new Options();
+        options.addOption("h", "help", false, "Display this help and exit");
+        options.addOption("o", "outputDirectory", true, "The directory where the dataset files will be generated");
+        options.addOption("s", "scaleFactor", true, "The scale factor (1 generates "
+                + DatasetGenerator.ENTITIES_PER_SCALE_FACTOR + " entities, default 1)");
+        options.addOption(null, "seed", true, "The seed of the generator (default " + DatasetGenerator.DEFAULT_SEED
+                + ")");
+        options.addOption(null, "entitiesPerFile", true, "The number of entities of every file (default "
+                + DatasetGenerator.DEFAULT_ENTITIES_PER_FILE + ")");
+        options.addOption(null, "maxFanOut", true, "The maximum number of topics connected by a mediator (default "
+                + DatasetGenerator.DEFAULT_MAX_FAN_OUT + ")");
+    }
+
+    /**
+     * @param args
+     * @throws ParseException
+     * @throws IOException
+     */
+    public static void main(String[] args) throws ParseException, IOException
+    {
+        CommandLineParser parser = new PosixParser();
+        CommandLine cmd = parser.parse(options, args);
+
+        if (cmd.hasOption("h") || !cmd.hasOption("o"))
+        {
+            HelpFormatter formatter = new HelpFormatter();
+            formatter.printHelp("java -cp " + Main.JAR_NAME + " " + GenerateDataset.class.getName()
+                    + " [options] \n", "Synthetic BaseKB Lime dataset generator\n", options, null);
+            System.exit(0);
+        }
+
+        File outputDir = new File(cmd.getOptionValue("o"));
+        if (outputDir.exists() && outputDir.isFile())
+        {
+            System.out.println(outputDir + " is a file. Please enter a valid directory to store the dataset");
+            System.exit(0);
+        }
+
+        double scaleFactor = cmd.hasOption("s") ? Double.parseDouble(cmd.getOptionValue("s")) : 1;
+        DatasetGenerator generator = new DatasetGenerator(outputDir, scaleFactor);
+
+        if (cmd.hasOption("seed"))
+            generator.setSeed(Long.parseLong(cmd.getOptionValue("seed")));
+
+        if (cmd.hasOption("entitiesPerFile"))
+            generator.setEntitiesPerFile(Integer.parseInt(cmd.getOptionValue("entitiesPerFile")));
+
+        if (cmd.hasOption("maxFanOut"))
+            generator.setMaxFanOut(Integer.parseInt(cmd.getOptionValue("maxFanOut")));
+
+        generator.generate();
+    }
+}
@@ -1,6 +1,7 @@
 package com.gsoc.freebase.importer.main;
 
 import java.io.File;
+import java.io.IOException;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -9,7 +10,19 @@ import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.cli.PosixParser;
 
+import com.gsoc.freebase.importer.consumer.impl.MediatedRelationPolicy;
+import com.gsoc.freebase.importer.filter.TypeFilter;
+import com.gsoc.freebase.importer.impl.ExecutionMode;
 import com.gsoc.freebase.importer.impl.FreebaseToGraphImporter;
+import com.gsoc.freebase.importer.impl.GraphBackend;
+import com.gsoc.freebase.importer.memory.MemoryBudget;
+import com.gsoc.freebase.importer.query.EdgeWeightFormula;
+import com.gsoc.freebase.importer.shard.ShardCoordinator;
+import com.gsoc.freebase.importer.shard.ShardMerger;
+import com.gsoc.freebase.importer.shard.ShardWorker;
+import com.gsoc.freebase.importer.sink.CsvEntityExporter;
+import com.gsoc.freebase.importer.sink.EntityStatistics;
+import com.gsoc.freebase.importer.sink.EntityTee;
 
 /**
  * <p>
@@ -34,6 +47,83 @@ public class Main
                 "Tell the importer to generate the graph structure (one vertex for each entity which is a common.topic)");
         options.addOption("r", "generateRelations", false,
                 "Tell the importer to generate the graph relations (edges between entities directly or indirectly connected");
+        options.addOption(null, "resume", false,
+                "Resume a previous process skipping the files already recorded in its checkpoint manifest");
+        options.addOption(null, "incremental", false,
+                "Import only the new or changed files into an existing graph, updating the existing vertices. The "
+                        + "relations are only counted for new files: the relations step fails if a file whose relations "
+                        + "were counted has changed");
+        options.addOption(null, "sortInput", false,
+                "Sort the triples of every input file by subject before importing it (needed if the triples of an entity "
+                        + "aren't consecutive in the input). Every file is sorted on its own, so the triples of an "
+                        + "entity must be in the same file");
+        options.addOption(null, "sortDirectory", true,
+                "Directory of the temporary files of the subject sort (default the temporary directory of the system)");
+        options.addOption(null, "skipNameIndex", false,
+                "Don't build the name index of the topics after generating the graph structure");
+        options.addOption(null, "typeFilter", true,
+                "Import only the topics of some types or domains: comma separated type or domain names, the excluded "
+                        + "ones starting with - (e.g. people,location,organization,-people.deceased_person)");
+        options.addOption(null, "internTypes", false,
+                "Intern the types of the topics in a type dictionary and store their ids in every vertex instead of "
+                        + "the type URIs, and build the type index (the vertices lose the rdf:type property)");
+        options.addOption(null, "topNeighbours", true,
+                "Number of heaviest neighbours stored in every vertex at the end of the process (default 0, none)");
+        options.addOption(null, "edgeWeights", true,
+                "Formula weighting the edges to rank the neighbours: comma separated name=value terms, the name being "
+                        + "an edge label, a counter or default (default the number of properties connecting the topics)");
+        options.addOption(null, "maxMediatedPairs", true,
+                "Maximum number of mediated relations created for a single mediator entity (default "
+                        + MediatedRelationPolicy.DEFAULT_MAX_PAIRS + ")");
+        options.addOption(null, "mediatedFallback", true,
+                "Strategy used when a mediator exceeds the maximum number of mediated relations: star (default) or sample");
+        options.addOption(null, "consumers", true,
+                "Number of consumers of the generate graph step (default the number of processors)");
+        options.addOption(null, "maxConsumers", true,
+                "Maximum number of consumers of the generate graph step. The number of consumers then grows and "
+                        + "shrinks with the load, starting with --consumers");
+        options.addOption(null, "minConsumers", true,
+                "Minimum number of consumers of the generate graph step when --maxConsumers is used (default 1)");
+        options.addOption(null, "compactThreshold", true,
+                "Number of triples of an entity above which only the values used by the import are kept in memory "
+                        + "(default " + FreebaseToGraphImporter.DEFAULT_COMPACT_THRESHOLD + ", 0 keeps every triple)");
+        options.addOption(null, "asyncCommit", false,
+                "Commit the transactions of the generate graph step in a dedicated thread while the consumers go on");
+        options.addOption(null, "queueCapacity", true,
+                "Capacity of the queue between the producer and the consumers (default the number of consumers for "
+                        + "the generate graph step and 10 for the generate relations step)");
+        options.addOption(null, "backend", true, "Graph implementation: neo4j (default) or tinkergraph");
+        options.addOption(null, "execution", true,
+                "Threads running the parsing of the files: platform (default) or virtual (needs the java21 build)");
+        options.addOption(null, "parallelFiles", true,
+                "Number of files parsed at the same time (default 1 with platform threads and the number of "
+                        + "processors with virtual threads)");
+        options.addOption(null, "relationsParallelism", true,
+                "Number of threads doing the lookups of the mediators with many references in the generate relations "
+                        + "step (default the number of processors, 1 to disable it)");
+        options.addOption(null, "heapBudget", true,
+                "Percentage of the maximum heap shared by the queues and the pending transactions (default "
+                        + Math.round(MemoryBudget.DEFAULT_HEAP_FRACTION * 100) + ")");
+        options.addOption(null, "offHeapBudget", true,
+                "Megabytes of off-heap memory mapped to the files of the store (default the store settings)");
+        options.addOption(null, "highWaterMark", true,
+                "Percentage of the heap used after a garbage collection which makes the consumers commit (default "
+                        + Math.round(MemoryBudget.DEFAULT_HIGH_WATER_MARK * 100) + ")");
+        options.addOption(null, "shards", true,
+                "Import the dataset with this number of local worker processes, each one importing the topics of a "
+                        + "shard, and merge their output into the graph");
+        options.addOption(null, "shardDirectory", true,
+                "Directory shared by the workers of a sharded import (default the output directory followed by -shards)");
+        options.addOption(null, "shard", true, "Shard imported by a worker of a sharded import (used by the workers)");
+        options.addOption(null, "exportCsv", true,
+                "Exports the entities parsed by the first step to a CSV file (gzipped if its name ends with .gz, "
+                        + "not with --shards)");
+        options.addOption(null, "statistics", true,
+                "Writes statistics of the entities parsed by the first step (entities by type) to a file (not with "
+                        + "--shards)");
+        options.addOption(null, "progressInterval", true,
+                "Seconds between the progress lines logged while importing (default "
+                        + FreebaseToGraphImporter.DEFAULT_PROGRESS_INTERVAL + ", 0 to disable them)");
     }
 
     /**
@@ -84,9 +174,27 @@ public class Main
         }
         
         /* Number of consumers to be used for every type of consumers */
-        Integer consumersSize = Runtime.getRuntime().availableProcessors();
+        Integer consumersSize = cmd.hasOption("consumers") ? Integer.parseInt(cmd.getOptionValue("consumers"))
+                : Runtime.getRuntime().availableProcessors();
 
-        FreebaseToGraphImporter freebaseImporter = new FreebaseToGraphImporter(inputDir, outputDir, consumersSize);
+        /* A sharded import runs a worker process for every shard and merges their output */
+        ShardCoordinator coordinator = null;
+        Integer shard = null;
+        File importOutput = outputDir;
+        if (cmd.hasOption("shards"))
+        {
+            File shardDirectory = cmd.hasOption("shardDirectory") ? new File(cmd.getOptionValue("shardDirectory"))
+                    : new File(outputDir.getAbsoluteFile().getParentFile(), outputDir.getName() + "-shards");
+            coordinator = new ShardCoordinator(shardDirectory, Integer.parseInt(cmd.getOptionValue("shards")));
+            if (cmd.hasOption("shard"))
+            {
+                shard = Integer.parseInt(cmd.getOptionValue("shard"));
+                importOutput = coordinator.getGraphDirectory(shard);
+            }
+        }
+
+        FreebaseToGraphImporter freebaseImporter = new FreebaseToGraphImporter(inputDir, importOutput,
+                consumersSize);
         
         if(cmd.hasOption("g"))
             freebaseImporter.setGenerateGraph(true);
@@ -94,8 +202,132 @@ public class Main
         if(cmd.hasOption("r"))
             freebaseImporter.setGenerateGraphRelations(true);
 
-        /* Run the parser process */
-        freebaseImporter.process();
+        if (cmd.hasOption("resume"))
+            freebaseImporter.setResume(true);
+
+        if (cmd.hasOption("incremental"))
+            freebaseImporter.setIncremental(true);
+
+        if (cmd.hasOption("sortInput"))
+            freebaseImporter.setSortInput(true);
+
+        if (cmd.hasOption("sortDirectory"))
+            freebaseImporter.setSortDirectory(new File(cmd.getOptionValue("sortDirectory")));
+
+        if (cmd.hasOption("skipNameIndex"))
+            freebaseImporter.setBuildNameIndex(false);
+
+        if (cmd.hasOption("internTypes"))
+            freebaseImporter.setInternTypes(true);
+
+        if (cmd.hasOption("typeFilter"))
+            freebaseImporter.setTypeFilter(TypeFilter.parse(cmd.getOptionValue("typeFilter")));
+
+        if (cmd.hasOption("topNeighbours"))
+            freebaseImporter.setTopNeighbours(Integer.parseInt(cmd.getOptionValue("topNeighbours")));
+
+        if (cmd.hasOption("edgeWeights"))
+            freebaseImporter.setEdgeWeightFormula(EdgeWeightFormula.parse(cmd.getOptionValue("edgeWeights")));
+
+        if (cmd.hasOption("maxMediatedPairs") || cmd.hasOption("mediatedFallback"))
+        {
+            int maxPairs = cmd.hasOption("maxMediatedPairs") ? Integer.parseInt(cmd
+                    .getOptionValue("maxMediatedPairs")) : MediatedRelationPolicy.DEFAULT_MAX_PAIRS;
+            MediatedRelationPolicy.Strategy strategy = cmd.hasOption("mediatedFallback") ? MediatedRelationPolicy
+                    .parseStrategy(cmd.getOptionValue("mediatedFallback")) : MediatedRelationPolicy.Strategy.STAR;
+            freebaseImporter.setMediatedRelationPolicy(new MediatedRelationPolicy(maxPairs, strategy));
+        }
+
+        if (cmd.hasOption("maxConsumers"))
+            freebaseImporter.setConsumerPool(cmd.hasOption("minConsumers") ? Integer.parseInt(cmd
+                    .getOptionValue("minConsumers")) : 1, Integer.parseInt(cmd.getOptionValue("maxConsumers")));
+
+        if (cmd.hasOption("compactThreshold"))
+            freebaseImporter.setCompactThreshold(Integer.parseInt(cmd.getOptionValue("compactThreshold")));
+
+        if (cmd.hasOption("asyncCommit"))
+            freebaseImporter.setAsyncCommit(true);
+
+        if (cmd.hasOption("queueCapacity"))
+            freebaseImporter.setQueueCapacity(Integer.parseInt(cmd.getOptionValue("queueCapacity")));
+
+        GraphBackend backend = cmd.hasOption("backend") ? GraphBackend.parse(cmd.getOptionValue("backend"))
+                : GraphBackend.NEO4J;
+        freebaseImporter.setGraphBackend(backend);
+
+        if (cmd.hasOption("execution"))
+            freebaseImporter.setExecutionMode(ExecutionMode.parse(cmd.getOptionValue("execution")));
+
+        if (cmd.hasOption("parallelFiles"))
+            freebaseImporter.setParallelFiles(Integer.parseInt(cmd.getOptionValue("parallelFiles")));
+
+        if (cmd.hasOption("relationsParallelism"))
+            freebaseImporter.setRelationsParallelism(Integer.parseInt(cmd.getOptionValue("relationsParallelism")));
+
+        if (cmd.hasOption("heapBudget") || cmd.hasOption("offHeapBudget") || cmd.hasOption("highWaterMark"))
+        {
+            double heapFraction = cmd.hasOption("heapBudget") ? Integer.parseInt(cmd.getOptionValue("heapBudget"))
+                    / 100.0 : MemoryBudget.DEFAULT_HEAP_FRACTION;
+            long offHeap = cmd.hasOption("offHeapBudget") ? Long.parseLong(cmd.getOptionValue("offHeapBudget")) << 20
+                    : 0;
+            double highWaterMark = cmd.hasOption("highWaterMark") ? Integer.parseInt(cmd
+                    .getOptionValue("highWaterMark")) / 100.0 : MemoryBudget.DEFAULT_HIGH_WATER_MARK;
+            freebaseImporter.setMemoryBudget(new MemoryBudget((long) (Runtime.getRuntime().maxMemory() * heapFraction),
+                    offHeap, highWaterMark));
+        }
+
+        if (cmd.hasOption("progressInterval"))
+            freebaseImporter.setProgressInterval(Long.parseLong(cmd.getOptionValue("progressInterval")));
+
+        /* The export and the statistics are fed by the same parse as the graph (of a single process) */
+        if (coordinator == null && (cmd.hasOption("exportCsv") || cmd.hasOption("statistics")))
+        {
+            EntityTee tee = new EntityTee();
+            try
+            {
+                if (cmd.hasOption("exportCsv"))
+                    tee.addSink("csv", new CsvEntityExporter(new File(cmd.getOptionValue("exportCsv"))));
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException("Unable to create " + cmd.getOptionValue("exportCsv"), e);
+            }
+            if (cmd.hasOption("statistics"))
+                tee.addSink("statistics", new EntityStatistics(new File(cmd.getOptionValue("statistics"))));
+            freebaseImporter.setEntityTee(tee);
+        }
+
+        if (shard != null)
+        {
+            /* Worker of a sharded import */
+            new ShardWorker(coordinator, shard, freebaseImporter, backend, inputDir).run();
+        }
+        else if (coordinator != null)
+        {
+            try
+            {
+                coordinator.reset();
+                coordinator.runWorkers(args);
+                new ShardMerger(coordinator, backend).merge(outputDir, !cmd.hasOption("skipNameIndex"));
+            }
+            catch (IOException | InterruptedException e)
+            {
+                throw new IllegalStateException("The sharded import failed", e);
+            }
+
+            /* The merge inserts the edges: only the top neighbours are left */
+            if (cmd.hasOption("topNeighbours"))
+            {
+                freebaseImporter.setGenerateGraph(false);
+                freebaseImporter.setGenerateGraphRelations(false);
+                freebaseImporter.process();
+            }
+        }
+        else
+        {
+            /* Run the parser process */
+            freebaseImporter.process();
+        }
         
     }
 
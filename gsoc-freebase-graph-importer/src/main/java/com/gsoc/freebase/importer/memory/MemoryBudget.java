@@ -0,0 +1,307 @@
+package com.gsoc.freebase.importer.memory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Memory budget of the import process
+ * </p>
+ * <p>
+ * The parts of the importer holding memory (the queues of entities, the pending transactions, the memory mapped files
+ * of the store...) register a share in the budget with a weight, and size themselves with the bytes of their share
+ * instead of fixed numbers, so an import uses the memory given to the JVM without ending in an
+ * {@code OutOfMemoryError}. The heap budget is a fraction of the maximum heap (the rest is left to the parsers and the
+ * caches of the store) and the off-heap budget is a limit given by the user (0 to let the store decide)
+ * </p>
+ * <p>
+ * Once started, the budget sets the collection usage threshold of the heap pools to the high-water mark and calls the
+ * {@code MemoryPressureListener} of every share when the heap used after a garbage collection passes it, so the
+ * memory can be flushed or spilled before the heap is exhausted
+ * </p>
+ */
+public class MemoryBudget
+{
+    /**
+     * Logger
+     */
+    private static Logger logger = LoggerFactory.getLogger(MemoryBudget.class);
+
+    /**
+     * Constant containing the default fraction of the maximum heap shared among the registered parts
+     */
+    public static final double DEFAULT_HEAP_FRACTION = 0.5;
+
+    /**
+     * Constant containing the default fraction of the heap pools used after a collection which triggers the listeners
+     */
+    public static final double DEFAULT_HIGH_WATER_MARK = 0.85;
+
+    /**
+     * Bytes of the heap shared among the registered parts
+     */
+    private long heapLimit;
+
+    /**
+     * Bytes of off-heap memory shared among the registered parts (0 if there is no limit)
+     */
+    private long offHeapLimit;
+
+    /**
+     * Fraction of the heap pools used after a collection which triggers the listeners
+     */
+    private double highWaterMark;
+
+    /**
+     * The registered shares
+     */
+    private List<MemoryShare> shares;
+
+    /**
+     * The heap pools whose threshold has been set
+     */
+    private List<MemoryPoolMXBean> pools;
+
+    /**
+     * Number of times the high-water mark has been passed
+     */
+    private AtomicLong pressureEvents;
+
+    /**
+     * Listener of the notifications of the memory MXBean
+     */
+    private NotificationListener notificationListener = new NotificationListener()
+    {
+        @Override
+        public void handleNotification(Notification notification, Object handback)
+        {
+            if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType()))
+            {
+                logger.warn("The heap used after a collection passed the high-water mark ("
+                        + Math.round(highWaterMark * 100) + "%). Asking to release memory");
+                releaseMemory();
+            }
+        }
+    };
+
+    /**
+     * <p>
+     * Constructs a budget with the default fraction of the maximum heap of the JVM, the default high-water mark and
+     * the given off-heap limit
+     * </p>
+     *
+     * @param offHeapLimit the bytes of off-heap memory (0 if there is no limit)
+     */
+    public MemoryBudget(long offHeapLimit)
+    {
+        this((long) (Runtime.getRuntime().maxMemory() * DEFAULT_HEAP_FRACTION), offHeapLimit,
+                DEFAULT_HIGH_WATER_MARK);
+    }
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param heapLimit the bytes of the heap shared among the registered parts
+     * @param offHeapLimit the bytes of off-heap memory (0 if there is no limit)
+     * @param highWaterMark the fraction (0 to 1) of the heap pools used after a collection which triggers the
+     *            listeners
+     */
+    public MemoryBudget(long heapLimit, long offHeapLimit, double highWaterMark)
+    {
+        if (highWaterMark <= 0 || highWaterMark > 1)
+            throw new IllegalArgumentException("The high-water mark must be between 0 and 1: " + highWaterMark);
+
+        this.heapLimit = heapLimit;
+        this.offHeapLimit = offHeapLimit;
+        this.highWaterMark = highWaterMark;
+        this.shares = new CopyOnWriteArrayList<MemoryShare>();
+        this.pools = new ArrayList<MemoryPoolMXBean>();
+        this.pressureEvents = new AtomicLong();
+    }
+
+    /**
+     * <p>
+     * Registers a part of the importer in the budget
+     * </p>
+     *
+     * @param name the name of the part
+     * @param heapWeight the weight of the part in the heap budget
+     * @param offHeapWeight the weight of the part in the off-heap budget
+     * @param listener the listener called when the heap usage passes the high-water mark or null
+     * @return the {@code MemoryShare} of the part
+     */
+    public MemoryShare register(String name, int heapWeight, int offHeapWeight, MemoryPressureListener listener)
+    {
+        if (heapWeight < 0 || offHeapWeight < 0)
+            throw new IllegalArgumentException("The weights of " + name + " can't be negative");
+
+        MemoryShare share = new MemoryShare(this, name, heapWeight, offHeapWeight, listener);
+        this.shares.add(share);
+        logger.debug("Memory share registered: " + share);
+        return share;
+    }
+
+    /**
+     * <p>
+     * Unregisters a share, so its memory is given to the rest of the shares
+     * </p>
+     *
+     * @param share the share to unregister
+     */
+    public void unregister(MemoryShare share)
+    {
+        this.shares.remove(share);
+    }
+
+    /**
+     * <p>
+     * Gets the heap bytes of a share
+     * </p>
+     */
+    long getHeapBytes(MemoryShare share)
+    {
+        long total = 0;
+        for (MemoryShare s : this.shares)
+            total += s.getHeapWeight();
+        return total == 0 ? 0 : (long) ((double) this.heapLimit * share.getHeapWeight() / total);
+    }
+
+    /**
+     * <p>
+     * Gets the off-heap bytes of a share
+     * </p>
+     */
+    long getOffHeapBytes(MemoryShare share)
+    {
+        long total = 0;
+        for (MemoryShare s : this.shares)
+            total += s.getOffHeapWeight();
+        return total == 0 ? 0 : (long) ((double) this.offHeapLimit * share.getOffHeapWeight() / total);
+    }
+
+    /**
+     * <p>
+     * Gets the bytes of the heap shared among the registered parts
+     * </p>
+     *
+     * @return the heap limit
+     */
+    public long getHeapLimit()
+    {
+        return this.heapLimit;
+    }
+
+    /**
+     * <p>
+     * Gets the bytes of off-heap memory shared among the registered parts
+     * </p>
+     *
+     * @return the off-heap limit (0 if there is no limit)
+     */
+    public long getOffHeapLimit()
+    {
+        return this.offHeapLimit;
+    }
+
+    /**
+     * <p>
+     * Gets the number of times the high-water mark has been passed
+     * </p>
+     *
+     * @return the number of memory pressure events
+     */
+    public long getPressureEvents()
+    {
+        return this.pressureEvents.get();
+    }
+
+    /**
+     * <p>
+     * Starts monitoring the heap: sets the collection usage threshold of the heap pools supporting it to the
+     * high-water mark
+     * </p>
+     */
+    public synchronized void start()
+    {
+        if (!this.pools.isEmpty())
+            return;
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            long max = pool.getUsage().getMax();
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported() && max > 0)
+            {
+                pool.setCollectionUsageThreshold((long) (max * this.highWaterMark));
+                this.pools.add(pool);
+            }
+        }
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(
+                this.notificationListener, null, null);
+        logger.info("Memory budget: heap " + (this.heapLimit >> 20) + " MB, off-heap "
+                + (this.offHeapLimit > 0 ? (this.offHeapLimit >> 20) + " MB" : "unlimited") + ", high-water mark "
+                + Math.round(this.highWaterMark * 100) + "% of " + this.pools.size() + " heap pools");
+    }
+
+    /**
+     * <p>
+     * Stops monitoring the heap, restoring the thresholds of the pools
+     * </p>
+     */
+    public synchronized void stop()
+    {
+        if (this.pools.isEmpty())
+            return;
+
+        for (MemoryPoolMXBean pool : this.pools)
+            pool.setCollectionUsageThreshold(0);
+        this.pools.clear();
+        try
+        {
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean())
+                    .removeNotificationListener(this.notificationListener);
+        }
+        catch (ListenerNotFoundException e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * <p>
+     * Asks every registered part to release memory, calling the listeners of the shares
+     * </p>
+     */
+    public void releaseMemory()
+    {
+        this.pressureEvents.incrementAndGet();
+        for (MemoryShare share : this.shares)
+        {
+            if (share.getListener() == null)
+                continue;
+            try
+            {
+                share.getListener().memoryPressure(share);
+            }
+            catch (RuntimeException e)
+            {
+                logger.error("Unable to release the memory of " + share.getName(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.gsoc.freebase.importer.memory;
+
+/**
+ * <p>
+ * Callback of the parts of the importer holding memory which can be released
+ * </p>
+ */
+public interface MemoryPressureListener
+{
+    /**
+     * <p>
+     * Called when the heap usage passes the high-water mark of the {@code MemoryBudget}
+     * </p>
+     * <p>
+     * It is called from the thread delivering the JMX notifications, so it must not block: it should only ask the
+     * threads owning the memory to flush or spill it
+     * </p>
+     *
+     * @param share the share of the budget of the listener
+     */
+    public void memoryPressure(MemoryShare share);
+}
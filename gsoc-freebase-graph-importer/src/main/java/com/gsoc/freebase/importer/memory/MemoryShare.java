@@ -0,0 +1,151 @@
+package com.gsoc.freebase.importer.memory;
+
+/**
+ * <p>
+ * Share of a {@code MemoryBudget} registered by a part of the importer
+ * </p>
+ * <p>
+ * The bytes of the share are computed from the weights registered when they are requested, so a share shrinks when
+ * other parts register in the same budget
+ * </p>
+ */
+public class MemoryShare
+{
+    /**
+     * The budget the share belongs to
+     */
+    private MemoryBudget budget;
+
+    /**
+     * The name of the share
+     */
+    private String name;
+
+    /**
+     * Weight of the share in the heap budget
+     */
+    private int heapWeight;
+
+    /**
+     * Weight of the share in the off-heap budget
+     */
+    private int offHeapWeight;
+
+    /**
+     * The listener called when the heap usage passes the high-water mark (null if the memory can't be released)
+     */
+    private MemoryPressureListener listener;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param budget the budget
+     * @param name the name of the share
+     * @param heapWeight the weight of the share in the heap budget
+     * @param offHeapWeight the weight of the share in the off-heap budget
+     * @param listener the listener called under memory pressure or null
+     */
+    MemoryShare(MemoryBudget budget, String name, int heapWeight, int offHeapWeight, MemoryPressureListener listener)
+    {
+        this.budget = budget;
+        this.name = name;
+        this.heapWeight = heapWeight;
+        this.offHeapWeight = offHeapWeight;
+        this.listener = listener;
+    }
+
+    /**
+     * <p>
+     * Gets the name of the share
+     * </p>
+     *
+     * @return the name
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+
+    /**
+     * <p>
+     * Gets the weight of the share in the heap budget
+     * </p>
+     *
+     * @return the weight
+     */
+    public int getHeapWeight()
+    {
+        return this.heapWeight;
+    }
+
+    /**
+     * <p>
+     * Gets the weight of the share in the off-heap budget
+     * </p>
+     *
+     * @return the weight
+     */
+    public int getOffHeapWeight()
+    {
+        return this.offHeapWeight;
+    }
+
+    /**
+     * <p>
+     * Gets the listener of the share
+     * </p>
+     *
+     * @return the listener or null
+     */
+    MemoryPressureListener getListener()
+    {
+        return this.listener;
+    }
+
+    /**
+     * <p>
+     * Gets the heap bytes the share can use
+     * </p>
+     *
+     * @return the bytes of the heap budget corresponding to the weight of the share
+     */
+    public long getHeapBytes()
+    {
+        return this.budget.getHeapBytes(this);
+    }
+
+    /**
+     * <p>
+     * Gets the off-heap bytes the share can use
+     * </p>
+     *
+     * @return the bytes of the off-heap budget corresponding to the weight of the share (0 if there is no off-heap
+     *         limit)
+     */
+    public long getOffHeapBytes()
+    {
+        return this.budget.getOffHeapBytes(this);
+    }
+
+    /**
+     * <p>
+     * Gets the number of elements of the given estimated size fitting in the heap bytes of the share
+     * </p>
+     *
+     * @param elementBytes the estimated size of an element
+     * @return the number of elements (at least 1)
+     */
+    public int getHeapCapacity(long elementBytes)
+    {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, this.getHeapBytes() / elementBytes));
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.name + " (heap " + (this.getHeapBytes() >> 20) + " MB, off-heap " + (this.getOffHeapBytes() >> 20)
+                + " MB)";
+    }
+}
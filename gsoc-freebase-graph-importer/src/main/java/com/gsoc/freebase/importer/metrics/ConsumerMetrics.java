@@ -0,0 +1,141 @@
+package com.gsoc.freebase.importer.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Metrics of a single consumer
+ * </p>
+ * <p>
+ * Every value recorded is also added to the metrics of the importer the consumer belongs to
+ * </p>
+ */
+public class ConsumerMetrics implements ConsumerMetricsMBean
+{
+    /**
+     * The name of the consumer
+     */
+    private String name;
+
+    /**
+     * The metrics of the importer
+     */
+    private ImporterMetrics parent;
+
+    /**
+     * Time when the consumer was registered
+     */
+    private long startNanos;
+
+    /**
+     * Number of entities consumed
+     */
+    private AtomicLong entities = new AtomicLong();
+
+    /**
+     * Time waiting to take entities from the queue (nanoseconds)
+     */
+    private AtomicLong takeWaitNanos = new AtomicLong();
+
+    /**
+     * Commit latencies
+     */
+    private LatencyHistogram commits = new LatencyHistogram();
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param name the name of the consumer
+     * @param parent the {@code ImporterMetrics} of the importer
+     */
+    ConsumerMetrics(String name, ImporterMetrics parent)
+    {
+        this.name = name;
+        this.parent = parent;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * <p>
+     * Records a consumed entity
+     * </p>
+     *
+     * @param waitNanos the time waiting to take the entity from the queue
+     */
+    public void entityConsumed(long waitNanos)
+    {
+        entities.incrementAndGet();
+        takeWaitNanos.addAndGet(waitNanos);
+        parent.entityConsumed(waitNanos);
+    }
+
+    /**
+     * <p>
+     * Records a commit
+     * </p>
+     *
+     * @param nanos the latency of the commit
+     */
+    public void commit(long nanos)
+    {
+        commits.record(nanos);
+        parent.commit(nanos);
+    }
+
+    /**
+     * <p>
+     * Records index lookups
+     * </p>
+     *
+     * @param lookups the number of lookups
+     */
+    public void indexLookups(long lookups)
+    {
+        parent.indexLookups(lookups);
+    }
+
+    @Override
+    public String getName()
+    {
+        return name;
+    }
+
+    @Override
+    public long getEntitiesConsumed()
+    {
+        return entities.get();
+    }
+
+    @Override
+    public double getEntitiesPerSecond()
+    {
+        return ImporterMetrics.rate(entities.get(), startNanos);
+    }
+
+    @Override
+    public double getMeanQueueTakeWaitMillis()
+    {
+        long count = entities.get();
+        return count == 0 ? 0 : takeWaitNanos.get() / 1000000.0 / count;
+    }
+
+    @Override
+    public long getCommits()
+    {
+        return commits.getCount();
+    }
+
+    @Override
+    public double getCommitLatencyP95Millis()
+    {
+        return commits.getPercentileMillis(95);
+    }
+
+    @Override
+    public double getCommitLatencyMaxMillis()
+    {
+        return commits.getMaxMillis();
+    }
+}
@@ -0,0 +1,44 @@
+package com.gsoc.freebase.importer.metrics;
+
+/**
+ * <p>
+ * JMX management interface of the metrics of a single consumer
+ * </p>
+ */
+public interface ConsumerMetricsMBean
+{
+    /**
+     * @return the name of the consumer
+     */
+    public String getName();
+
+    /**
+     * @return the number of entities consumed
+     */
+    public long getEntitiesConsumed();
+
+    /**
+     * @return the entities consumed per second
+     */
+    public double getEntitiesPerSecond();
+
+    /**
+     * @return the mean time waiting to take an entity from the queue, in milliseconds
+     */
+    public double getMeanQueueTakeWaitMillis();
+
+    /**
+     * @return the number of commits
+     */
+    public long getCommits();
+
+    /**
+     * @return the 95th percentile of the commit latency in milliseconds
+     */
+    public double getCommitLatencyP95Millis();
+
+    /**
+     * @return the maximum commit latency in milliseconds
+     */
+    public double getCommitLatencyMaxMillis();
+}
@@ -0,0 +1,546 @@
+package com.gsoc.freebase.importer.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Metrics of the import process
+ * </p>
+ * <p>
+ * It collects the throughput of the producer (triples and entities per second and bytes of the input read), the state
+ * of the queue (depth and wait times), the throughput of the consumers and the latency of the commits. The counters are
+ * reset at the beginning of every step
+ * </p>
+ * <p>
+ * Once registered, the metrics are published as JMX MBeans: one for the importer (
+ * {@code com.gsoc.freebase.importer:type=Importer}) and one for every consumer of the current step (
+ * {@code com.gsoc.freebase.importer:type=Consumer,name=<consumer>})
+ * </p>
+ */
+public class ImporterMetrics implements ImporterMetricsMBean
+{
+    /**
+     * Logger
+     */
+    private static Logger logger = LoggerFactory.getLogger(ImporterMetrics.class);
+
+    /**
+     * JMX domain
+     */
+    public static final String JMX_DOMAIN = "com.gsoc.freebase.importer";
+
+    /**
+     * Name of the current step
+     */
+    private volatile String step = "";
+
+    /**
+     * Time when the current step started
+     */
+    private volatile long startNanos = System.nanoTime();
+
+    /**
+     * Queue of the current step
+     */
+    private volatile BlockingQueue<?> queue;
+
+    /**
+     * Number of triples read by the producer
+     */
+    private AtomicLong triples = new AtomicLong();
+
+    /**
+     * Number of entities put in the queue
+     */
+    private AtomicLong entitiesProduced = new AtomicLong();
+
+    /**
+     * Time the producer waits to put entities in the queue (nanoseconds)
+     */
+    private AtomicLong putWaitNanos = new AtomicLong();
+
+    /**
+     * Number of entities consumed
+     */
+    private AtomicLong entitiesConsumed = new AtomicLong();
+
+    /**
+     * Time the consumers wait to take entities from the queue (nanoseconds)
+     */
+    private AtomicLong takeWaitNanos = new AtomicLong();
+
+    /**
+     * Number of bytes of the input read
+     */
+    private AtomicLong bytesRead = new AtomicLong();
+
+    /**
+     * Number of bytes of the input to be read
+     */
+    private AtomicLong bytesTotal = new AtomicLong();
+
+    /**
+     * Number of index lookups done by the relations consumers
+     */
+    private AtomicLong indexLookups = new AtomicLong();
+
+    /**
+     * Commit latencies of all the consumers
+     */
+    private volatile LatencyHistogram commits = new LatencyHistogram();
+
+    /**
+     * Consumers registered in the current step
+     */
+    private List<ConsumerMetrics> consumers = new ArrayList<ConsumerMetrics>();
+
+    /**
+     * Flag indicating whether the metrics are published in JMX
+     */
+    private boolean registered;
+
+    /**
+     * <p>
+     * Resets the metrics for a new step
+     * </p>
+     *
+     * @param step the name of the step
+     * @param queue the queue used in the step
+     */
+    public synchronized void startStep(String step, BlockingQueue<?> queue)
+    {
+        this.unregisterConsumers();
+        this.step = step;
+        this.queue = queue;
+        this.triples.set(0);
+        this.entitiesProduced.set(0);
+        this.putWaitNanos.set(0);
+        this.entitiesConsumed.set(0);
+        this.takeWaitNanos.set(0);
+        this.bytesRead.set(0);
+        this.bytesTotal.set(0);
+        this.indexLookups.set(0);
+        this.commits = new LatencyHistogram();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * <p>
+     * Registers a consumer of the current step
+     * </p>
+     *
+     * @param name the name of the consumer
+     * @return the {@code ConsumerMetrics} of the consumer
+     */
+    public synchronized ConsumerMetrics registerConsumer(String name)
+    {
+        ConsumerMetrics consumer = new ConsumerMetrics(name, this);
+        this.consumers.add(consumer);
+        if (this.registered)
+            register(consumer, consumerObjectName(name));
+        return consumer;
+    }
+
+    /**
+     * <p>
+     * Publishes the metrics in the platform MBean server
+     * </p>
+     */
+    public synchronized void register()
+    {
+        this.registered = register(this, importerObjectName());
+        for (ConsumerMetrics consumer : this.consumers)
+            register(consumer, consumerObjectName(consumer.getName()));
+    }
+
+    /**
+     * <p>
+     * Removes the metrics from the platform MBean server
+     * </p>
+     */
+    public synchronized void unregister()
+    {
+        this.unregisterConsumers();
+        if (this.registered)
+            unregister(importerObjectName());
+        this.registered = false;
+    }
+
+    /**
+     * <p>
+     * Removes the consumers of the previous step
+     * </p>
+     */
+    private void unregisterConsumers()
+    {
+        if (this.registered)
+        {
+            for (ConsumerMetrics consumer : this.consumers)
+                unregister(consumerObjectName(consumer.getName()));
+        }
+        this.consumers.clear();
+    }
+
+    /**
+     * <p>
+     * Records triples read by the producer
+     * </p>
+     *
+     * @param count the number of triples
+     */
+    public void triplesRead(long count)
+    {
+        triples.addAndGet(count);
+    }
+
+    /**
+     * <p>
+     * Records an entity produced
+     * </p>
+     *
+     * @param waitNanos the time waiting to put the entity in the queue
+     */
+    public void entityProduced(long waitNanos)
+    {
+        entitiesProduced.incrementAndGet();
+        putWaitNanos.addAndGet(waitNanos);
+    }
+
+    /**
+     * <p>
+     * Records bytes of the input read
+     * </p>
+     *
+     * @param bytes the number of bytes
+     */
+    public void bytesRead(long bytes)
+    {
+        bytesRead.addAndGet(bytes);
+    }
+
+    /**
+     * <p>
+     * Sets the number of bytes of the input to be read in the current step
+     * </p>
+     *
+     * @param bytes the number of bytes
+     */
+    public void setBytesTotal(long bytes)
+    {
+        bytesTotal.set(bytes);
+    }
+
+    /**
+     * <p>
+     * Records an entity consumed (called by the {@code ConsumerMetrics})
+     * </p>
+     */
+    void entityConsumed(long waitNanos)
+    {
+        entitiesConsumed.incrementAndGet();
+        takeWaitNanos.addAndGet(waitNanos);
+    }
+
+    /**
+     * <p>
+     * Records a commit (called by the {@code ConsumerMetrics})
+     * </p>
+     */
+    void commit(long nanos)
+    {
+        commits.record(nanos);
+    }
+
+    /**
+     * <p>
+     * Records index lookups (called by the {@code ConsumerMetrics})
+     * </p>
+     */
+    void indexLookups(long lookups)
+    {
+        indexLookups.addAndGet(lookups);
+    }
+
+    @Override
+    public String getStep()
+    {
+        return step;
+    }
+
+    @Override
+    public long getElapsedSeconds()
+    {
+        return (System.nanoTime() - startNanos) / 1000000000L;
+    }
+
+    @Override
+    public long getTriplesRead()
+    {
+        return triples.get();
+    }
+
+    @Override
+    public double getTriplesPerSecond()
+    {
+        return rate(triples.get(), startNanos);
+    }
+
+    @Override
+    public long getEntitiesProduced()
+    {
+        return entitiesProduced.get();
+    }
+
+    @Override
+    public double getEntitiesPerSecond()
+    {
+        return rate(entitiesProduced.get(), startNanos);
+    }
+
+    @Override
+    public long getEntitiesConsumed()
+    {
+        return entitiesConsumed.get();
+    }
+
+    @Override
+    public double getConsumedEntitiesPerSecond()
+    {
+        return rate(entitiesConsumed.get(), startNanos);
+    }
+
+    @Override
+    public int getQueueDepth()
+    {
+        BlockingQueue<?> q = this.queue;
+        return q == null ? 0 : q.size();
+    }
+
+    @Override
+    public int getQueueCapacity()
+    {
+        BlockingQueue<?> q = this.queue;
+        return q == null ? 0 : q.size() + q.remainingCapacity();
+    }
+
+    @Override
+    public double getMeanQueuePutWaitMillis()
+    {
+        long count = entitiesProduced.get();
+        return count == 0 ? 0 : putWaitNanos.get() / 1000000.0 / count;
+    }
+
+    @Override
+    public double getMeanQueueTakeWaitMillis()
+    {
+        long count = entitiesConsumed.get();
+        return count == 0 ? 0 : takeWaitNanos.get() / 1000000.0 / count;
+    }
+
+    /**
+     * @return the total time the producer has waited to put entities in the queue (nanoseconds)
+     */
+    public long getQueuePutWaitNanos()
+    {
+        return putWaitNanos.get();
+    }
+
+    /**
+     * @return the total time the consumers have waited to take entities from the queue (nanoseconds)
+     */
+    public long getQueueTakeWaitNanos()
+    {
+        return takeWaitNanos.get();
+    }
+
+    @Override
+    public long getBytesRead()
+    {
+        return bytesRead.get();
+    }
+
+    @Override
+    public long getBytesTotal()
+    {
+        return bytesTotal.get();
+    }
+
+    @Override
+    public double getProgressPercent()
+    {
+        long total = bytesTotal.get();
+        return total == 0 ? 0 : Math.min(100.0, bytesRead.get() * 100.0 / total);
+    }
+
+    @Override
+    public long getEtaSeconds()
+    {
+        long read = bytesRead.get();
+        long total = bytesTotal.get();
+        double elapsed = (System.nanoTime() - startNanos) / 1000000000.0;
+        if (read == 0 || total == 0 || elapsed <= 0)
+            return -1;
+        return (long) (Math.max(0, total - read) / (read / elapsed));
+    }
+
+    @Override
+    public long getCommits()
+    {
+        return commits.getCount();
+    }
+
+    @Override
+    public double getCommitLatencyMeanMillis()
+    {
+        return commits.getMeanMillis();
+    }
+
+    /**
+     * @return the sum of the commit latencies in milliseconds
+     */
+    public double getCommitLatencySumMillis()
+    {
+        return commits.getSumMillis();
+    }
+
+    @Override
+    public double getCommitLatencyP50Millis()
+    {
+        return commits.getPercentileMillis(50);
+    }
+
+    @Override
+    public double getCommitLatencyP95Millis()
+    {
+        return commits.getPercentileMillis(95);
+    }
+
+    @Override
+    public double getCommitLatencyP99Millis()
+    {
+        return commits.getPercentileMillis(99);
+    }
+
+    @Override
+    public double getCommitLatencyMaxMillis()
+    {
+        return commits.getMaxMillis();
+    }
+
+    @Override
+    public long getIndexLookups()
+    {
+        return indexLookups.get();
+    }
+
+    @Override
+    public double getIndexLookupsPerEntity()
+    {
+        long count = entitiesConsumed.get();
+        return count == 0 ? 0 : (double) indexLookups.get() / count;
+    }
+
+    /**
+     * <p>
+     * Computes a rate per second
+     * </p>
+     *
+     * @param count the number of events
+     * @param startNanos the time when the events started
+     * @return the number of events per second
+     */
+    static double rate(long count, long startNanos)
+    {
+        double elapsed = (System.nanoTime() - startNanos) / 1000000000.0;
+        return elapsed <= 0 ? 0 : count / elapsed;
+    }
+
+    /**
+     * <p>
+     * Generates the object name of the importer MBean
+     * </p>
+     */
+    private static ObjectName importerObjectName()
+    {
+        return objectName(JMX_DOMAIN + ":type=Importer");
+    }
+
+    /**
+     * <p>
+     * Generates the object name of a consumer MBean
+     * </p>
+     */
+    private static ObjectName consumerObjectName(String name)
+    {
+        return objectName(JMX_DOMAIN + ":type=Consumer,name=" + ObjectName.quote(name));
+    }
+
+    /**
+     * <p>
+     * Creates an object name
+     * </p>
+     */
+    private static ObjectName objectName(String name)
+    {
+        try
+        {
+            return new ObjectName(name);
+        }
+        catch (JMException e)
+        {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * <p>
+     * Registers an MBean replacing the previous one with the same name
+     * </p>
+     */
+    private static boolean register(Object mbean, ObjectName name)
+    {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try
+        {
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+            server.registerMBean(mbean, name);
+            return true;
+        }
+        catch (JMException e)
+        {
+            logger.warn("Unable to register the MBean " + name, e);
+            return false;
+        }
+    }
+
+    /**
+     * <p>
+     * Unregisters an MBean if it is registered
+     * </p>
+     */
+    private static void unregister(ObjectName name)
+    {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try
+        {
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+        }
+        catch (JMException e)
+        {
+            logger.warn("Unable to unregister the MBean " + name, e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.gsoc.freebase.importer.metrics;
+
+/**
+ * <p>
+ * JMX management interface of the importer metrics
+ * </p>
+ * <p>
+ * Rates are averages since the start of the current step
+ * </p>
+ */
+public interface ImporterMetricsMBean
+{
+    /**
+     * @return the name of the current step
+     */
+    public String getStep();
+
+    /**
+     * @return the seconds elapsed since the start of the current step
+     */
+    public long getElapsedSeconds();
+
+    /**
+     * @return the number of triples read by the producer
+     */
+    public long getTriplesRead();
+
+    /**
+     * @return the triples read by the producer per second
+     */
+    public double getTriplesPerSecond();
+
+    /**
+     * @return the number of entities produced
+     */
+    public long getEntitiesProduced();
+
+    /**
+     * @return the entities produced per second
+     */
+    public double getEntitiesPerSecond();
+
+    /**
+     * @return the number of entities consumed by all the consumers
+     */
+    public long getEntitiesConsumed();
+
+    /**
+     * @return the entities consumed per second by all the consumers
+     */
+    public double getConsumedEntitiesPerSecond();
+
+    /**
+     * @return the number of entities waiting in the queue
+     */
+    public int getQueueDepth();
+
+    /**
+     * @return the capacity of the queue
+     */
+    public int getQueueCapacity();
+
+    /**
+     * @return the mean time the producer waits to put an entity in the queue, in milliseconds
+     */
+    public double getMeanQueuePutWaitMillis();
+
+    /**
+     * @return the mean time the consumers wait to take an entity from the queue, in milliseconds
+     */
+    public double getMeanQueueTakeWaitMillis();
+
+    /**
+     * @return the number of bytes of the input files read
+     */
+    public long getBytesRead();
+
+    /**
+     * @return the number of bytes of the input files to be read in the current step
+     */
+    public long getBytesTotal();
+
+    /**
+     * @return the percentage of the input read in the current step
+     */
+    public double getProgressPercent();
+
+    /**
+     * @return the estimated seconds to finish the current step or -1 if unknown
+     */
+    public long getEtaSeconds();
+
+    /**
+     * @return the number of commits
+     */
+    public long getCommits();
+
+    /**
+     * @return the mean commit latency in milliseconds
+     */
+    public double getCommitLatencyMeanMillis();
+
+    /**
+     * @return the 50th percentile of the commit latency in milliseconds
+     */
+    public double getCommitLatencyP50Millis();
+
+    /**
+     * @return the 95th percentile of the commit latency in milliseconds
+     */
+    public double getCommitLatencyP95Millis();
+
+    /**
+     * @return the 99th percentile of the commit latency in milliseconds
+     */
+    public double getCommitLatencyP99Millis();
+
+    /**
+     * @return the maximum commit latency in milliseconds
+     */
+    public double getCommitLatencyMaxMillis();
+
+    /**
+     * @return the number of index lookups done by the relations consumers
+     */
+    public long getIndexLookups();
+
+    /**
+     * @return the mean number of index lookups per entity done by the relations consumers
+     */
+    public double getIndexLookupsPerEntity();
+}
@@ -0,0 +1,118 @@
+package com.gsoc.freebase.importer.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * Lock free latency histogram
+ * </p>
+ * <p>
+ * Latencies are recorded in microseconds into power of two buckets, so percentiles are approximated by the upper bound
+ * of the bucket (at most twice the real value), which is enough to see where the time goes
+ * </p>
+ */
+public class LatencyHistogram
+{
+    /**
+     * Number of buckets (one for each power of two)
+     */
+    private static final int BUCKETS = 64;
+
+    /**
+     * Number of values recorded in each bucket
+     */
+    private AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Number of values recorded
+     */
+    private AtomicLong count = new AtomicLong();
+
+    /**
+     * Sum of the values recorded (microseconds)
+     */
+    private AtomicLong sum = new AtomicLong();
+
+    /**
+     * Maximum value recorded (microseconds)
+     */
+    private AtomicLong max = new AtomicLong();
+
+    /**
+     * <p>
+     * Records a latency
+     * </p>
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(long nanos)
+    {
+        long micros = Math.max(0, nanos / 1000);
+        buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(micros));
+        count.incrementAndGet();
+        sum.addAndGet(micros);
+
+        long current = max.get();
+        while (micros > current && !max.compareAndSet(current, micros))
+            current = max.get();
+    }
+
+    /**
+     * @return the number of values recorded
+     */
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    /**
+     * @return the mean latency in milliseconds
+     */
+    public double getMeanMillis()
+    {
+        long c = count.get();
+        return c == 0 ? 0 : sum.get() / 1000.0 / c;
+    }
+
+    /**
+     * @return the sum of the latencies recorded in milliseconds
+     */
+    public double getSumMillis()
+    {
+        return sum.get() / 1000.0;
+    }
+
+    /**
+     * @return the maximum latency in milliseconds
+     */
+    public double getMaxMillis()
+    {
+        return max.get() / 1000.0;
+    }
+
+    /**
+     * <p>
+     * Gets an approximation of a percentile
+     * </p>
+     *
+     * @param percentile the percentile (0-100)
+     * @return the upper bound of the bucket containing the percentile, in milliseconds
+     */
+    public double getPercentileMillis(double percentile)
+    {
+        long c = count.get();
+        if (c == 0)
+            return 0;
+
+        long target = (long) Math.ceil(c * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            seen += buckets.get(i);
+            if (seen >= target)
+                return Math.min(i == 0 ? 0 : (1L << i) - 1, max.get()) / 1000.0;
+        }
+        return getMaxMillis();
+    }
+}
@@ -0,0 +1,201 @@
+package com.gsoc.freebase.importer.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Periodically logs a one line summary of the progress of the import process
+ * </p>
+ * <p>
+ * The rates are computed over the last period, while the ETA is based on the bytes of the input consumed since the
+ * start of the step. For example:
+ * </p>
+ *
+ * <pre>
+ * [relations] 42.1% (1.2 GB of 2.9 GB) | 81234 triples/s | 7120 entities/s produced, 7098 consumed | queue 10/10 ...
+ * </pre>
+ */
+public class ProgressReporter
+{
+    /**
+     * Logger
+     */
+    private static Logger logger = LoggerFactory.getLogger(ProgressReporter.class);
+
+    /**
+     * The metrics to report
+     */
+    private ImporterMetrics metrics;
+
+    /**
+     * Seconds between reports
+     */
+    private long periodSeconds;
+
+    /**
+     * The executor running the reports
+     */
+    private ScheduledExecutorService executor;
+
+    /**
+     * Time of the previous report
+     */
+    private long lastNanos;
+
+    /**
+     * Triples read at the previous report
+     */
+    private long lastTriples;
+
+    /**
+     * Entities produced at the previous report
+     */
+    private long lastProduced;
+
+    /**
+     * Entities consumed at the previous report
+     */
+    private long lastConsumed;
+
+    /**
+     * Step of the previous report
+     */
+    private String lastStep;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param metrics the {@code ImporterMetrics} to report
+     * @param periodSeconds the seconds between reports
+     */
+    public ProgressReporter(ImporterMetrics metrics, long periodSeconds)
+    {
+        this.metrics = metrics;
+        this.periodSeconds = periodSeconds;
+    }
+
+    /**
+     * <p>
+     * Starts reporting
+     * </p>
+     */
+    public synchronized void start()
+    {
+        if (this.executor != null || this.periodSeconds <= 0)
+            return;
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, ProgressReporter.class.getName());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor.scheduleAtFixedRate(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                report();
+            }
+        }, this.periodSeconds, this.periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * <p>
+     * Stops reporting
+     * </p>
+     */
+    public synchronized void stop()
+    {
+        if (this.executor != null)
+        {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+    }
+
+    /**
+     * <p>
+     * Logs the progress line
+     * </p>
+     */
+    void report()
+    {
+        try
+        {
+            long now = System.nanoTime();
+            long triples = metrics.getTriplesRead();
+            long produced = metrics.getEntitiesProduced();
+            long consumed = metrics.getEntitiesConsumed();
+
+            /* Restart the period when the step changes */
+            if (!metrics.getStep().equals(this.lastStep))
+            {
+                this.lastStep = metrics.getStep();
+                this.lastNanos = now - metrics.getElapsedSeconds() * 1000000000L;
+                this.lastTriples = 0;
+                this.lastProduced = 0;
+                this.lastConsumed = 0;
+            }
+
+            double seconds = Math.max(1e-9, (now - this.lastNanos) / 1000000000.0);
+            logger.info(String.format(Locale.ENGLISH,
+                    "[%s] %.1f%% (%s of %s) | %.0f triples/s | %.0f entities/s produced, %.0f consumed | "
+                            + "queue %d/%d (put wait %.2f ms, take wait %.2f ms) | commit p95 %.0f ms | "
+                            + "lookups/entity %.1f | ETA %s", metrics.getStep(), metrics.getProgressPercent(),
+                    formatBytes(metrics.getBytesRead()), formatBytes(metrics.getBytesTotal()),
+                    (triples - this.lastTriples) / seconds, (produced - this.lastProduced) / seconds,
+                    (consumed - this.lastConsumed) / seconds, metrics.getQueueDepth(), metrics.getQueueCapacity(),
+                    metrics.getMeanQueuePutWaitMillis(), metrics.getMeanQueueTakeWaitMillis(),
+                    metrics.getCommitLatencyP95Millis(), metrics.getIndexLookupsPerEntity(),
+                    formatDuration(metrics.getEtaSeconds())));
+
+            this.lastNanos = now;
+            this.lastTriples = triples;
+            this.lastProduced = produced;
+            this.lastConsumed = consumed;
+        }
+        catch (RuntimeException e)
+        {
+            logger.warn("Unable to report the progress", e);
+        }
+    }
+
+    /**
+     * <p>
+     * Formats a number of bytes
+     * </p>
+     */
+    private static String formatBytes(long bytes)
+    {
+        if (bytes < 1024)
+            return bytes + " B";
+        int exp = (int) (Math.log(bytes) / Math.log(1024));
+        return String.format(Locale.ENGLISH, "%.1f %sB", bytes / Math.pow(1024, exp), "KMGTPE".charAt(exp - 1));
+    }
+
+    /**
+     * <p>
+     * Formats a duration in seconds as hh:mm:ss
+     * </p>
+     */
+    private static String formatDuration(long seconds)
+    {
+        if (seconds < 0)
+            return "unknown";
+        return String.format(Locale.ENGLISH, "%02d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+    }
+}
@@ -0,0 +1,90 @@
+package com.gsoc.freebase.importer.model;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+
+/**
+ * <p>
+ * CheckpointEntity class
+ * </p>
+ * <p>
+ * Represents a checkpoint in the stream of entities. The producer puts one checkpoint entity for each consumer in the
+ * queue and every consumer, after committing its pending work, waits in the shared barrier until the rest of consumers
+ * and the producer reach the checkpoint
+ * </p>
+ */
+public class CheckpointEntity extends Entity
+{
+    /**
+     * The barrier shared by the producer and the consumers
+     */
+    private CyclicBarrier barrier;
+
+    /**
+     * The key and the value of the progress committed by the checkpoint (null if the progress isn't stored in the
+     * graph)
+     */
+    private String progressKey;
+    private String progress;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param barrier the {@code CyclicBarrier} shared by the producer and the consumers
+     */
+    public CheckpointEntity(CyclicBarrier barrier)
+    {
+        super(ImporterConstants.CHECKPOINT_ENTITY_URI, null);
+        this.barrier = barrier;
+    }
+
+    /**
+     * <p>
+     * Constructor of a checkpoint whose progress is committed by the consumer along with its work (see
+     * {@code ProgressGraph})
+     * </p>
+     *
+     * @param barrier the {@code CyclicBarrier} shared by the producer and the consumers
+     * @param progressKey the key of the progress
+     * @param progress the value of the progress
+     */
+    public CheckpointEntity(CyclicBarrier barrier, String progressKey, String progress)
+    {
+        this(barrier);
+        this.progressKey = progressKey;
+        this.progress = progress;
+    }
+
+    /**
+     * @return the key of the progress or null if the progress isn't stored in the graph
+     */
+    public String getProgressKey()
+    {
+        return this.progressKey;
+    }
+
+    /**
+     * @return the value of the progress or null if the progress isn't stored in the graph
+     */
+    public String getProgress()
+    {
+        return this.progress;
+    }
+
+    /**
+     * <p>
+     * Waits until the rest of the parties reach the checkpoint
+     * </p>
+     *
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     * @throws BrokenBarrierException if another party has been interrupted while waiting
+     */
+    public void await() throws InterruptedException, BrokenBarrierException
+    {
+        this.barrier.await();
+    }
+}
@@ -0,0 +1,412 @@
+package com.gsoc.freebase.importer.names;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.gsoc.freebase.importer.binary.MidCodec;
+import com.gsoc.freebase.importer.binary.VarLongCodec;
+
+/**
+ * <p>
+ * Name index of the topics, built by the importer next to the graph (see {@code NameIndexWriter})
+ * </p>
+ * <p>
+ * The index file is memory mapped, so opening it doesn't load it and the lookups only touch the blocks they need. It
+ * supports exact, prefix and fuzzy (bounded edit distance) lookups of lower case names. The fuzzy lookup walks the
+ * sorted names as a trie: the edit distance rows of the prefix shared with the previous name are reused, and when no
+ * name starting with a prefix can be within the distance the whole prefix is skipped
+ * </p>
+ * <p>
+ * An instance can be used by several threads at the same time
+ * </p>
+ */
+public class NameIndex implements Closeable
+{
+    /**
+     * Charset of the names
+     */
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Orders the matches by distance and name
+     */
+    private static final Comparator<NameMatch> BY_DISTANCE = new Comparator<NameMatch>()
+    {
+        @Override
+        public int compare(NameMatch match1, NameMatch match2)
+        {
+            if (match1.getDistance() != match2.getDistance())
+                return match1.getDistance() - match2.getDistance();
+            return match1.getName().compareTo(match2.getName());
+        }
+    };
+
+    /**
+     * The file of the index
+     */
+    private RandomAccessFile file;
+
+    /**
+     * The mapped index
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * Number of names
+     */
+    private long names;
+
+    /**
+     * Offsets of the blocks
+     */
+    private int[] blockOffsets;
+
+    /**
+     * <p>
+     * Opens an index
+     * </p>
+     *
+     * @param location the index file
+     * @throws IOException if the file can't be mapped or it isn't a name index
+     */
+    public NameIndex(File location) throws IOException
+    {
+        this.file = new RandomAccessFile(location, "r");
+        try
+        {
+            long size = this.file.length();
+            int trailer = 8 + NameIndexWriter.MAGIC.length;
+            if (size < NameIndexWriter.MAGIC.length + trailer || size > Integer.MAX_VALUE)
+                throw new IOException(location.getAbsolutePath() + " isn't a name index");
+
+            this.buffer = this.file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+            byte[] magic = new byte[NameIndexWriter.MAGIC.length];
+            ByteBuffer end = this.buffer.duplicate();
+            end.position((int) size - NameIndexWriter.MAGIC.length);
+            end.get(magic);
+            if (!Arrays.equals(magic, NameIndexWriter.MAGIC))
+                throw new IOException(location.getAbsolutePath() + " isn't a name index");
+
+            int footer = (int) this.buffer.getLong((int) size - trailer);
+            this.names = this.buffer.getLong(footer);
+            this.blockOffsets = new int[(int) this.buffer.getLong(footer + 8)];
+            for (int i = 0; i < this.blockOffsets.length; i++)
+                this.blockOffsets[i] = (int) this.buffer.getLong(footer + 16 + 8 * i);
+        }
+        catch (IOException e)
+        {
+            this.file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * <p>
+     * Gets the number of distinct names
+     * </p>
+     *
+     * @return the number of names
+     */
+    public long getNameCount()
+    {
+        return this.names;
+    }
+
+    /**
+     * <p>
+     * Gets the topics having a name
+     * </p>
+     *
+     * @param name the name (it is lower cased)
+     * @return the URIs of the topics (empty if no topic has the name)
+     */
+    public List<String> getTopics(String name)
+    {
+        name = name.toLowerCase();
+        Cursor cursor = new Cursor();
+        if (cursor.seek(name) && cursor.name.equals(name))
+            return cursor.readTopics();
+        return Collections.emptyList();
+    }
+
+    /**
+     * <p>
+     * Gets the names starting with a prefix, in name order
+     * </p>
+     *
+     * @param prefix the prefix (it is lower cased)
+     * @param limit the maximum number of names
+     * @return the names and their topics
+     */
+    public List<NameMatch> prefix(String prefix, int limit)
+    {
+        prefix = prefix.toLowerCase();
+        List<NameMatch> matches = new ArrayList<NameMatch>();
+        Cursor cursor = new Cursor();
+        boolean found = cursor.seek(prefix);
+        while (found && matches.size() < limit && cursor.name.startsWith(prefix))
+        {
+            matches.add(new NameMatch(cursor.name, cursor.readTopics(), 0));
+            found = cursor.next();
+        }
+        return matches;
+    }
+
+    /**
+     * <p>
+     * Gets the names within an edit distance (Levenshtein) of a name, the closest first
+     * </p>
+     *
+     * @param name the name (it is lower cased)
+     * @param maxEdits the maximum number of insertions, deletions or substitutions of characters
+     * @param limit the maximum number of names
+     * @return the names and their topics
+     */
+    public List<NameMatch> fuzzy(String name, int maxEdits, int limit)
+    {
+        String query = name.toLowerCase();
+        int length = query.length();
+
+        /* rows.get(d) is the row of the edit distance of the first d characters of the current name */
+        List<int[]> rows = new ArrayList<int[]>();
+        int[] first = new int[length + 1];
+        for (int i = 0; i <= length; i++)
+            first[i] = i;
+        rows.add(first);
+        String computed = "";
+
+        List<NameMatch> matches = new ArrayList<NameMatch>();
+        Cursor cursor = new Cursor();
+        boolean found = cursor.seek("");
+        while (found)
+        {
+            String term = cursor.name;
+            int depth = commonPrefix(computed, term);
+            int pruned = -1;
+            while (depth < term.length())
+            {
+                int[] previous = rows.get(depth);
+                depth++;
+                int[] row = depth < rows.size() ? rows.get(depth) : new int[length + 1];
+                if (depth == rows.size())
+                    rows.add(row);
+
+                char c = term.charAt(depth - 1);
+                row[0] = depth;
+                int min = row[0];
+                for (int i = 1; i <= length; i++)
+                {
+                    int cost = query.charAt(i - 1) == c ? 0 : 1;
+                    row[i] = Math.min(Math.min(row[i - 1] + 1, previous[i] + 1), previous[i - 1] + cost);
+                    min = Math.min(min, row[i]);
+                }
+                if (min > maxEdits)
+                {
+                    pruned = depth;
+                    break;
+                }
+            }
+            computed = term.substring(0, depth);
+
+            if (pruned > 0)
+            {
+                /* No name starting with this prefix is close enough: skip all of them */
+                String successor = successor(term.substring(0, pruned));
+                found = successor != null && cursor.seek(successor);
+                continue;
+            }
+
+            int distance = rows.get(term.length())[length];
+            if (distance <= maxEdits)
+                matches.add(new NameMatch(term, cursor.readTopics(), distance));
+            found = cursor.next();
+        }
+
+        Collections.sort(matches, BY_DISTANCE);
+        return matches.size() > limit ? new ArrayList<NameMatch>(matches.subList(0, limit)) : matches;
+    }
+
+    /**
+     * <p>
+     * Closes the index
+     * </p>
+     */
+    @Override
+    public void close() throws IOException
+    {
+        this.file.close();
+    }
+
+    /**
+     * <p>
+     * Gets the number of characters shared by the beginning of two strings
+     * </p>
+     */
+    private static int commonPrefix(String s1, String s2)
+    {
+        int length = Math.min(s1.length(), s2.length());
+        int i = 0;
+        while (i < length && s1.charAt(i) == s2.charAt(i))
+            i++;
+        return i;
+    }
+
+    /**
+     * <p>
+     * Gets the first string greater than all the strings starting with a prefix
+     * </p>
+     *
+     * @return the successor or null if there is none
+     */
+    private static String successor(String prefix)
+    {
+        int end = prefix.length();
+        while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE)
+            end--;
+        if (end == 0)
+            return null;
+        return prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
+    }
+
+    /**
+     * <p>
+     * Cursor over the names of the index, in order
+     * </p>
+     */
+    private class Cursor
+    {
+        private int ordinal;
+        private ByteBuffer in = buffer.duplicate();
+        private byte[] bytes = new byte[64];
+        private String name;
+        private int topicsPosition;
+
+        /**
+         * <p>
+         * Moves to the first name greater than or equal to a key
+         * </p>
+         *
+         * @return false if there is no such name
+         */
+        boolean seek(String key)
+        {
+            /* The last block whose first name is not greater than the key */
+            int low = 0;
+            int high = blockOffsets.length - 1;
+            int block = 0;
+            while (low <= high)
+            {
+                int middle = (low + high) >>> 1;
+                this.in.position(blockOffsets[middle]);
+                this.ordinal = middle * NameIndexWriter.BLOCK_SIZE;
+                this.readName();
+                if (this.name.compareTo(key) <= 0)
+                {
+                    block = middle;
+                    low = middle + 1;
+                }
+                else
+                    high = middle - 1;
+            }
+
+            if (blockOffsets.length == 0)
+                return false;
+            this.in.position(blockOffsets[block]);
+            this.ordinal = block * NameIndexWriter.BLOCK_SIZE;
+            this.readName();
+            while (this.name.compareTo(key) < 0)
+            {
+                if (!this.next())
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * <p>
+         * Moves to the next name
+         * </p>
+         *
+         * @return false at the end of the index
+         */
+        boolean next()
+        {
+            if (this.ordinal + 1 >= names)
+                return false;
+
+            /* Skip the topics of the current name */
+            this.in.position(this.topicsPosition);
+            long topics = VarLongCodec.read(this.in);
+            for (long i = 0; i < topics; i++)
+            {
+                long code = VarLongCodec.read(this.in);
+                if (code == 0)
+                {
+                    int length = (int) VarLongCodec.read(this.in);
+                    this.in.position(this.in.position() + length);
+                }
+            }
+
+            this.ordinal++;
+            this.readName();
+            return true;
+        }
+
+        /**
+         * <p>
+         * Reads the name at the current position
+         * </p>
+         */
+        private void readName()
+        {
+            int shared = (int) VarLongCodec.read(this.in);
+            int suffix = (int) VarLongCodec.read(this.in);
+            if (shared + suffix > this.bytes.length)
+                this.bytes = Arrays.copyOf(this.bytes, Math.max(shared + suffix, 2 * this.bytes.length));
+            for (int i = 0; i < suffix; i++)
+                this.bytes[shared + i] = this.in.get();
+            this.name = new String(this.bytes, 0, shared + suffix, UTF8);
+            this.topicsPosition = this.in.position();
+        }
+
+        /**
+         * <p>
+         * Reads the topics of the current name
+         * </p>
+         */
+        List<String> readTopics()
+        {
+            int saved = this.in.position();
+            this.in.position(this.topicsPosition);
+            int count = (int) VarLongCodec.read(this.in);
+            List<String> topics = new ArrayList<String>(count);
+            for (int i = 0; i < count; i++)
+            {
+                long code = VarLongCodec.read(this.in);
+                if (code > 0)
+                    topics.add(MidCodec.decode(code - 1));
+                else
+                {
+                    byte[] uri = new byte[(int) VarLongCodec.read(this.in)];
+                    for (int b = 0; b < uri.length; b++)
+                        uri[b] = this.in.get();
+                    topics.add(new String(uri, UTF8));
+                }
+            }
+            this.in.position(saved);
+            return topics;
+        }
+
+    }
+}
@@ -0,0 +1,246 @@
+package com.gsoc.freebase.importer.names;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.binary.MidCodec;
+import com.gsoc.freebase.importer.binary.VarLongCodec;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+
+/**
+ * <p>
+ * Builds the name index of the topics
+ * </p>
+ * <p>
+ * The names are sorted and written front coded (every name stores only the bytes not shared with the previous one) in
+ * blocks of {@code BLOCK_SIZE} names, each block starting with a complete name, followed by the topics having the name.
+ * The footer contains the offset of every block, so a name is found with a binary search over the first names of the
+ * blocks and a scan of a single block
+ * </p>
+ * <p>
+ * The file contains:
+ * <ul>
+ * <li>The magic bytes {@code FBGNAME1}
+ * <li>The names. Every name is the number of bytes shared with the previous name, the number of bytes of the rest of
+ * the name, the rest of the name in UTF-8, the number of topics and the topics: the code of the mid plus one (see
+ * {@code MidCodec}) or 0 followed by the length-prefixed URI if it isn't a mid
+ * <li>The footer: the number of names, the number of blocks and the offset of every block
+ * <li>The offset of the footer and the magic bytes again
+ * </ul>
+ * The integers of the names are variable length integers, the ones of the footer are fixed length
+ * </p>
+ */
+public class NameIndexWriter
+{
+    /**
+     * Name of the index file in the graph directory
+     */
+    public static final String FILE_NAME = "names.idx";
+
+    /**
+     * Magic bytes at the beginning and the end of the index
+     */
+    static final byte[] MAGIC = "FBGNAME1".getBytes(NameIndex.UTF8);
+
+    /**
+     * Number of names of a block
+     */
+    static final int BLOCK_SIZE = 16;
+
+    /**
+     * Separator of the name and the topic in the entries
+     */
+    private static final char SEPARATOR = '\u0000';
+
+    /**
+     * The entries (name, separator and topic URI)
+     */
+    private List<String> entries;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     */
+    public NameIndexWriter()
+    {
+        this.entries = new ArrayList<String>();
+    }
+
+    /**
+     * <p>
+     * Creates a writer with the names of all the topics of a graph
+     * </p>
+     *
+     * @param graph the graph
+     * @return the {@code NameIndexWriter}
+     */
+    public static NameIndexWriter forGraph(Graph graph)
+    {
+        NameIndexWriter writer = new NameIndexWriter();
+        for (Vertex vertex : graph.getVertices())
+        {
+            String name = vertex.getProperty(ImporterConstants.VERTEX_NAME_LC_PROPERTY);
+            String uri = vertex.getProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY);
+            if (name != null && uri != null)
+                writer.add(name, uri);
+        }
+        return writer;
+    }
+
+    /**
+     * <p>
+     * Adds the name of a topic
+     * </p>
+     *
+     * @param name the lower case name
+     * @param uri the URI of the topic
+     */
+    public void add(String name, String uri)
+    {
+        if (name == null || name.isEmpty())
+            return;
+        this.entries.add(name.replace(SEPARATOR, ' ') + SEPARATOR + uri);
+    }
+
+    /**
+     * <p>
+     * Gets the number of names added
+     * </p>
+     *
+     * @return the number of entries
+     */
+    public int size()
+    {
+        return this.entries.size();
+    }
+
+    /**
+     * <p>
+     * Sorts the names and writes the index
+     * </p>
+     *
+     * @param file the index file
+     * @return the number of distinct names written
+     * @throws IOException if the index can't be written
+     */
+    public long write(File file) throws IOException
+    {
+        /* The separator sorts before any character, so the entries are sorted by name and then by topic */
+        Collections.sort(this.entries);
+
+        CountingOutput out = new CountingOutput(file);
+        List<Long> blockOffsets = new ArrayList<Long>();
+        long names = 0;
+        try
+        {
+            out.write(MAGIC);
+            byte[] previous = new byte[0];
+            int i = 0;
+            while (i < this.entries.size())
+            {
+                String name = name(this.entries.get(i));
+                int end = i + 1;
+                while (end < this.entries.size() && name(this.entries.get(end)).equals(name))
+                    end++;
+
+                byte[] bytes = name.getBytes(NameIndex.UTF8);
+                int shared = 0;
+                if (names % BLOCK_SIZE == 0)
+                    blockOffsets.add(out.getOffset());
+                else
+                {
+                    while (shared < previous.length && shared < bytes.length && previous[shared] == bytes[shared])
+                        shared++;
+                }
+
+                VarLongCodec.write(out, shared);
+                VarLongCodec.write(out, bytes.length - shared);
+                out.write(bytes, shared, bytes.length - shared);
+                VarLongCodec.write(out, end - i);
+                for (int t = i; t < end; t++)
+                {
+                    String uri = this.entries.get(t).substring(name.length() + 1);
+                    long mid = MidCodec.encode(uri);
+                    if (mid != MidCodec.NOT_A_MID)
+                        VarLongCodec.write(out, mid + 1);
+                    else
+                    {
+                        VarLongCodec.write(out, 0);
+                        byte[] uriBytes = uri.getBytes(NameIndex.UTF8);
+                        VarLongCodec.write(out, uriBytes.length);
+                        out.write(uriBytes, 0, uriBytes.length);
+                    }
+                }
+
+                previous = bytes;
+                names++;
+                i = end;
+            }
+
+            long footer = out.getOffset();
+            out.writeLong(names);
+            out.writeLong(blockOffsets.size());
+            for (long offset : blockOffsets)
+                out.writeLong(offset);
+            out.writeLong(footer);
+            out.write(MAGIC);
+        }
+        finally
+        {
+            out.close();
+        }
+        return names;
+    }
+
+    /**
+     * <p>
+     * Gets the name of an entry
+     * </p>
+     */
+    private static String name(String entry)
+    {
+        return entry.substring(0, entry.indexOf(SEPARATOR));
+    }
+
+    /**
+     * <p>
+     * Output counting the bytes written
+     * </p>
+     */
+    private static class CountingOutput extends DataOutputStream
+    {
+        /**
+         * <p>
+         * Constructor
+         * </p>
+         *
+         * @param file the file to write
+         */
+        CountingOutput(File file) throws IOException
+        {
+            super(new BufferedOutputStream(new FileOutputStream(file), 65536));
+        }
+
+        /**
+         * <p>
+         * Gets the number of bytes written. The index is mapped in a single buffer, so it can't reach 2 GB
+         * </p>
+         */
+        long getOffset() throws IOException
+        {
+            if (this.size() == Integer.MAX_VALUE)
+                throw new IOException("The name index can't be larger than 2 GB");
+            return this.size();
+        }
+
+    }
+}
@@ -0,0 +1,84 @@
+package com.gsoc.freebase.importer.names;
+
+import java.util.List;
+
+/**
+ * <p>
+ * Name found in the name index and the topics having it
+ * </p>
+ */
+public class NameMatch
+{
+    /**
+     * The lower case name
+     */
+    private String name;
+
+    /**
+     * The URIs of the topics having the name
+     */
+    private List<String> topics;
+
+    /**
+     * Edit distance between the name and the query (0 for exact and prefix lookups)
+     */
+    private int distance;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param name the name
+     * @param topics the URIs of the topics
+     * @param distance the edit distance to the query
+     */
+    public NameMatch(String name, List<String> topics, int distance)
+    {
+        this.name = name;
+        this.topics = topics;
+        this.distance = distance;
+    }
+
+    /**
+     * <p>
+     * Gets the name
+     * </p>
+     *
+     * @return the lower case name
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+
+    /**
+     * <p>
+     * Gets the topics having the name
+     * </p>
+     *
+     * @return the URIs of the topics
+     */
+    public List<String> getTopics()
+    {
+        return this.topics;
+    }
+
+    /**
+     * <p>
+     * Gets the edit distance between the name and the query
+     * </p>
+     *
+     * @return the number of edits
+     */
+    public int getDistance()
+    {
+        return this.distance;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.name + " (" + this.distance + ") " + this.topics;
+    }
+}
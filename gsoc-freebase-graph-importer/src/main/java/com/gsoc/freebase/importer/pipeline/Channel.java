@@ -0,0 +1,114 @@
+package com.gsoc.freebase.importer.pipeline;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * <p>
+ * Bounded channel connecting two stages of a {@code Pipeline}
+ * </p>
+ * <p>
+ * The end of the stream is signalled with a marker element: once every worker of the writing stage has finished, the
+ * pipeline closes the channel putting the marker in it. A reader taking the marker puts it back, so every worker of
+ * the reading stage sees the end of the stream
+ * </p>
+ *
+ * @param <T> the type of the elements
+ */
+public class Channel<T>
+{
+    /**
+     * The name of the channel
+     */
+    private String name;
+
+    /**
+     * The queue holding the elements
+     */
+    private BlockingQueue<T> queue;
+
+    /**
+     * The marker put in the queue when the channel is closed
+     */
+    private T endOfStream;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param name the name of the channel
+     * @param capacity the maximum number of elements waiting in the channel
+     * @param endOfStream the marker put in the channel when it is closed (compared by identity)
+     */
+    public Channel(String name, int capacity, T endOfStream)
+    {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<T>(capacity);
+        this.endOfStream = endOfStream;
+    }
+
+    /**
+     * <p>
+     * Puts an element, waiting while the channel is full
+     * </p>
+     *
+     * @param element the element
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void put(T element) throws InterruptedException
+    {
+        this.queue.put(element);
+    }
+
+    /**
+     * <p>
+     * Takes an element, waiting while the channel is empty
+     * </p>
+     *
+     * @return the element or null if the channel has been closed
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public T take() throws InterruptedException
+    {
+        T element = this.queue.take();
+        if (element == this.endOfStream)
+        {
+            this.queue.put(element);
+            return null;
+        }
+        return element;
+    }
+
+    /**
+     * <p>
+     * Closes the channel: the readers get the end of the stream once the pending elements have been taken
+     * </p>
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting for room in the channel
+     */
+    public void close() throws InterruptedException
+    {
+        this.queue.put(this.endOfStream);
+    }
+
+    /**
+     * <p>
+     * Gets the queue of the channel, for the readers and writers following the end of stream protocol themselves
+     * </p>
+     *
+     * @return the {@code BlockingQueue} holding the elements
+     */
+    public BlockingQueue<T> getQueue()
+    {
+        return this.queue;
+    }
+
+    /**
+     * @return the name of the channel
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+}
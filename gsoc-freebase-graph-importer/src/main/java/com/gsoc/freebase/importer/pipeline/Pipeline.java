@@ -0,0 +1,257 @@
+package com.gsoc.freebase.importer.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Small runtime running a set of stages connected by bounded {@code Channel}s
+ * </p>
+ * <p>
+ * Every stage has one or more workers, each one running in its own thread created by the thread factory of the
+ * stage. All the workers start at the same time and the channels make them wait for each other, so there is no need
+ * to wait a fixed time for a stage to be ready. When the last worker of a stage finishes, the output channel of the
+ * stage is closed, so the completion flows downstream
+ * </p>
+ * <p>
+ * If a worker fails, the rest of the workers are interrupted and {@code run()} throws a {@code PipelineException}
+ * with the first failure once every thread has finished
+ * </p>
+ */
+public class Pipeline
+{
+    /**
+     * Logger
+     */
+    private static Logger logger = LoggerFactory.getLogger(Pipeline.class);
+
+    /**
+     * The name of the pipeline
+     */
+    private String name;
+
+    /**
+     * The stages of the pipeline
+     */
+    private List<Stage> stages;
+
+    /**
+     * The threads running the workers
+     */
+    private List<Thread> threads;
+
+    /**
+     * The first failure of a worker
+     */
+    private AtomicReference<Throwable> failure;
+
+    /**
+     * The stage of the first failure
+     */
+    private volatile String failedStage;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param name the name of the pipeline
+     */
+    public Pipeline(String name)
+    {
+        this.name = name;
+        this.stages = new ArrayList<Stage>();
+        this.threads = new ArrayList<Thread>();
+        this.failure = new AtomicReference<Throwable>();
+    }
+
+    /**
+     * <p>
+     * Creates a bounded channel to connect two stages
+     * </p>
+     *
+     * @param name the name of the channel
+     * @param capacity the maximum number of elements waiting in the channel
+     * @param endOfStream the marker put in the channel when the writing stage finishes
+     * @return the {@code Channel}
+     */
+    public <T> Channel<T> channel(String name, int capacity, T endOfStream)
+    {
+        return new Channel<T>(this.name + "." + name, capacity, endOfStream);
+    }
+
+    /**
+     * <p>
+     * Adds a stage
+     * </p>
+     *
+     * @param name the name of the stage
+     * @param workers the workers of the stage, each one run in its own thread
+     * @param output the channel closed when every worker has finished or null if the stage is a sink
+     * @param threadFactory the factory of the threads of the workers
+     */
+    public void addStage(String name, List<? extends Runnable> workers, Channel<?> output, ThreadFactory threadFactory)
+    {
+        this.stages.add(new Stage(name, workers, output, threadFactory));
+    }
+
+    /**
+     * <p>
+     * Runs the stages and waits until all of them have finished
+     * </p>
+     *
+     * @throws PipelineException if a worker fails or the calling thread is interrupted
+     */
+    public void run()
+    {
+        int workers = 0;
+        for (Stage stage : this.stages)
+            workers += stage.workers.size();
+        CountDownLatch finished = new CountDownLatch(workers);
+
+        /* Create every thread before starting any of them, so a failure can interrupt all of them */
+        for (Stage stage : this.stages)
+        {
+            for (Runnable worker : stage.workers)
+                this.threads.add(stage.threadFactory.newThread(new Worker(stage, worker, finished)));
+        }
+
+        logger.debug("Starting pipeline " + this.name + " (" + this.stages.size() + " stages, " + workers
+                + " workers)");
+        for (Thread thread : this.threads)
+            thread.start();
+
+        try
+        {
+            finished.await();
+        }
+        catch (InterruptedException e)
+        {
+            this.fail("main", e);
+            this.awaitUninterruptibly(finished);
+            Thread.currentThread().interrupt();
+        }
+
+        Throwable cause = this.failure.get();
+        if (cause != null)
+            throw new PipelineException("Stage " + this.failedStage + " of " + this.name + " failed: " + cause,
+                    cause);
+        logger.debug("Pipeline " + this.name + " finished");
+    }
+
+    /**
+     * <p>
+     * Records the first failure and interrupts the rest of the workers
+     * </p>
+     */
+    private void fail(String stage, Throwable cause)
+    {
+        if (!this.failure.compareAndSet(null, cause))
+        {
+            logger.debug("Stage " + stage + " of " + this.name + " stopped after the failure: " + cause);
+            return;
+        }
+
+        this.failedStage = stage;
+        logger.error("Stage " + stage + " of " + this.name + " failed. Stopping the pipeline", cause);
+        for (Thread thread : this.threads)
+        {
+            if (thread != Thread.currentThread())
+                thread.interrupt();
+        }
+    }
+
+    /**
+     * <p>
+     * Waits for the workers ignoring the interruptions
+     * </p>
+     */
+    private void awaitUninterruptibly(CountDownLatch latch)
+    {
+        while (true)
+        {
+            try
+            {
+                latch.await();
+                return;
+            }
+            catch (InterruptedException e)
+            {
+                /* Keep waiting: the workers have been interrupted already */
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Stage of the pipeline
+     * </p>
+     */
+    private static class Stage
+    {
+        private String name;
+        private List<? extends Runnable> workers;
+        private Channel<?> output;
+        private ThreadFactory threadFactory;
+        private AtomicInteger running;
+
+        public Stage(String name, List<? extends Runnable> workers, Channel<?> output, ThreadFactory threadFactory)
+        {
+            this.name = name;
+            this.workers = workers;
+            this.output = output;
+            this.threadFactory = threadFactory;
+            this.running = new AtomicInteger(workers.size());
+        }
+    }
+
+    /**
+     * <p>
+     * Runs a worker of a stage, closing the output of the stage after its last worker and recording the failures
+     * </p>
+     */
+    private class Worker implements Runnable
+    {
+        private Stage stage;
+        private Runnable worker;
+        private CountDownLatch finished;
+
+        public Worker(Stage stage, Runnable worker, CountDownLatch finished)
+        {
+            this.stage = stage;
+            this.worker = worker;
+            this.finished = finished;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                this.worker.run();
+                if (this.stage.running.decrementAndGet() == 0 && this.stage.output != null
+                        && failure.get() == null)
+                {
+                    logger.debug("Stage " + this.stage.name + " of " + name + " finished. Closing "
+                            + this.stage.output.getName());
+                    this.stage.output.close();
+                }
+            }
+            catch (Throwable t)
+            {
+                fail(this.stage.name, t);
+            }
+            finally
+            {
+                this.finished.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.gsoc.freebase.importer.pipeline;
+
+/**
+ * <p>
+ * Exception thrown when a stage of a {@code Pipeline} fails
+ * </p>
+ */
+public class PipelineException extends RuntimeException
+{
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param message the message
+     * @param cause the first failure of the pipeline
+     */
+    public PipelineException(String message, Throwable cause)
+    {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,95 @@
+package com.gsoc.freebase.importer.predicates;
+
+/**
+ * <p>
+ * Metadata of a predicate computed once by the {@code PredicateRegistry}
+ * </p>
+ * <p>
+ * The local name of {@code http://rdf.basekb.com/ns/music.recording.artist} is {@code music.recording.artist} and its
+ * edge keys are {@code music}, {@code music.recording} and {@code music.recording.artist}: the properties of an edge
+ * incremented every time the predicate relates its topics
+ * </p>
+ */
+public class PredicateMetadata
+{
+    /**
+     * The URI of the predicate
+     */
+    private String uri;
+
+    /**
+     * The local name of the predicate (after the last '/')
+     */
+    private String localName;
+
+    /**
+     * The prefixes of the local name ending before every '.' and the local name itself, interned by the registry
+     */
+    private String[] edgeKeys;
+
+    /**
+     * Whether the objects of the predicate can be references to topics
+     */
+    private boolean topicReference;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param uri the URI of the predicate
+     * @param localName the local name of the predicate
+     * @param edgeKeys the edge keys of the predicate
+     * @param topicReference whether the objects of the predicate can be references to topics
+     */
+    PredicateMetadata(String uri, String localName, String[] edgeKeys, boolean topicReference)
+    {
+        this.uri = uri;
+        this.localName = localName;
+        this.edgeKeys = edgeKeys;
+        this.topicReference = topicReference;
+    }
+
+    /**
+     * @return the URI of the predicate
+     */
+    public String getUri()
+    {
+        return this.uri;
+    }
+
+    /**
+     * @return the local name of the predicate
+     */
+    public String getLocalName()
+    {
+        return this.localName;
+    }
+
+    /**
+     * <p>
+     * Gets the edge keys of the predicate, from the shortest to the local name. The array is shared: it must not be
+     * modified
+     * </p>
+     *
+     * @return the edge keys
+     */
+    public String[] getEdgeKeys()
+    {
+        return this.edgeKeys;
+    }
+
+    /**
+     * @return true if the objects of the predicate can be references to topics, false if they never are
+     */
+    public boolean isTopicReference()
+    {
+        return this.topicReference;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.uri;
+    }
+}
@@ -0,0 +1,116 @@
+package com.gsoc.freebase.importer.predicates;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+
+/**
+ * <p>
+ * Registry of the metadata of the predicates
+ * </p>
+ * <p>
+ * The relations step increments the edge keys of a predicate (see {@code PredicateMetadata}) every time it relates two
+ * topics, billions of times for a whole dump, while there are only some thousands of distinct predicates. The registry
+ * computes the local name and the edge keys of a predicate the first time it is looked up, so the consumers don't
+ * split and concatenate strings for every relation. The edge keys are interned in the registry, so the keys shared by
+ * several predicates (such as the domain) are the same instance, with its hash code already computed
+ * </p>
+ * <p>
+ * An instance can be used by several threads at the same time
+ * </p>
+ */
+public class PredicateRegistry
+{
+    /**
+     * The metadata of the predicates by URI
+     */
+    private ConcurrentMap<String, PredicateMetadata> predicates;
+
+    /**
+     * The edge keys of all the predicates, used to intern them
+     */
+    private ConcurrentMap<String, String> edgeKeys;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     */
+    public PredicateRegistry()
+    {
+        this.predicates = new ConcurrentHashMap<String, PredicateMetadata>();
+        this.edgeKeys = new ConcurrentHashMap<String, String>();
+    }
+
+    /**
+     * <p>
+     * Gets the metadata of a predicate, computing it the first time
+     * </p>
+     *
+     * @param uri the URI of the predicate
+     * @return the {@code PredicateMetadata}
+     */
+    public PredicateMetadata get(String uri)
+    {
+        PredicateMetadata predicate = this.predicates.get(uri);
+        if (predicate != null)
+            return predicate;
+
+        predicate = this.compute(uri);
+        PredicateMetadata previous = this.predicates.putIfAbsent(uri, predicate);
+        return previous != null ? previous : predicate;
+    }
+
+    /**
+     * @return the number of predicates registered
+     */
+    public int size()
+    {
+        return this.predicates.size();
+    }
+
+    /**
+     * <p>
+     * Computes the metadata of a predicate
+     * </p>
+     * <p>
+     * The objects of {@code rdf:type} are types, which are schema objects and never topics
+     * </p>
+     */
+    private PredicateMetadata compute(String uri)
+    {
+        String localName = uri.substring(uri.lastIndexOf('/') + 1);
+        List<String> keys = new ArrayList<String>();
+        /* Trailing dots don't generate keys, as with String.split */
+        int end = localName.length();
+        while (end > 0 && localName.charAt(end - 1) == '.')
+            end--;
+        if (end > 0 || localName.isEmpty())
+        {
+            String name = localName.substring(0, end);
+            int dot = name.indexOf('.');
+            while (dot >= 0)
+            {
+                keys.add(this.intern(name.substring(0, dot)));
+                dot = name.indexOf('.', dot + 1);
+            }
+            keys.add(this.intern(name));
+        }
+        return new PredicateMetadata(uri, localName, keys.toArray(new String[keys.size()]), !uri
+                .equals(ImporterConstants.RDF_TYPE));
+    }
+
+    /**
+     * <p>
+     * Interns an edge key
+     * </p>
+     */
+    private String intern(String key)
+    {
+        String previous = this.edgeKeys.putIfAbsent(key, key);
+        return previous != null ? previous : key;
+    }
+}
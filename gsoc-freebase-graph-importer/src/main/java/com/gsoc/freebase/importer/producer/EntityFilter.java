@@ -0,0 +1,25 @@
+package com.gsoc.freebase.importer.producer;
+
+import com.gsoc.freebase.importer.model.Entity;
+
+/**
+ * <p>
+ * EntityFilter interface
+ * </p>
+ * <p>
+ * Selects the entities given to the consumers. The entities rejected are read (and counted by the checkpoints) but not
+ * produced
+ * </p>
+ */
+public interface EntityFilter
+{
+    /**
+     * <p>
+     * Decides whether an entity is produced
+     * </p>
+     * 
+     * @param entity the entity read
+     * @return true to give the entity to the consumers
+     */
+    boolean accept(Entity entity);
+}
@@ -0,0 +1,25 @@
+package com.gsoc.freebase.importer.producer;
+
+import com.gsoc.freebase.importer.model.Entity;
+
+/**
+ * <p>
+ * EntitySink interface
+ * </p>
+ * <p>
+ * Receives the entities produced instead of the queue of the consumers, so the parser can be used outside the
+ * importer. The entities are given in the order they are read, from the thread parsing the file
+ * </p>
+ */
+public interface EntitySink
+{
+    /**
+     * <p>
+     * Receives an entity, waiting while the sink can't take it
+     * </p>
+     * 
+     * @param entity the entity produced
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    void put(Entity entity) throws InterruptedException;
+}
@@ -12,6 +12,7 @@ import org.openrdf.model.Value;
 import org.openrdf.model.ValueFactory;
 import org.openrdf.model.impl.ValueFactoryImpl;
 
+import com.gsoc.freebase.importer.ImporterConstants;
 import com.hp.hpl.jena.datatypes.BaseDatatype;
 import com.hp.hpl.jena.datatypes.BaseDatatype.TypedValue;
 import com.hp.hpl.jena.datatypes.xsd.XSDDateTime;
@@ -26,12 +27,24 @@ import com.hp.hpl.jena.sparql.core.Quad;
  * <p>
  * Abstract (Stream RDF) class to be used with Riot Reader to listen read triples
  * </p>
+ * <p>
+ * The triples of the current subject are kept in memory until the subject changes. Some subjects have millions of
+ * triples, so above the compact threshold the subject is streamed instead: the values collected are compacted and
+ * the next triples are folded into the compact state as they are read. Only the values the consumers use are kept:
+ * every type of the subject and the first {@code COMPACT_VALUES} values of the rest of the predicates, which is enough
+ * to know whether a predicate is multivalued (the relations ignore the multivalued predicates) and to read its first
+ * value (the name and the image of a topic)
+ * </p>
  * 
  * @author Antonio David Perez Morales <adperezmorales@gmail.com>
  * 
  */
 public abstract class AbstractProducerImporterHandler implements StreamRDF
 {
+    /**
+     * Number of values of a predicate kept once a subject is compacted
+     */
+    public static final int COMPACT_VALUES = 2;
 
     /**
      * The previous subject processed
@@ -43,11 +56,65 @@ public abstract class AbstractProducerImporterHandler implements StreamRDF
      */
     private Map<String, List<String>> properties;
 
+    /**
+     * Number of triples of a subject above which it is compacted (0 to keep every triple)
+     */
+    private int compactThreshold;
+
+    /**
+     * Number of triples of the subject being processed
+     */
+    private long subjectTriples;
+
+    /**
+     * Flag indicating whether the subject being processed has been compacted
+     */
+    private boolean compacted;
+
     /**
      * The factory to generate and convert values
      */
     ValueFactory valueFactory = ValueFactoryImpl.getInstance();
 
+    /**
+     * <p>
+     * Sets the number of triples of a subject above which only the values used by the consumers are kept
+     * </p>
+     * <p>
+     * It must not be used when every triple is needed (for example, to convert the input to another format)
+     * </p>
+     * 
+     * @param triples the number of triples or 0 to keep every triple
+     */
+    public void setCompactThreshold(int triples)
+    {
+        this.compactThreshold = triples;
+    }
+
+    /**
+     * <p>
+     * Checks whether the subject being processed has been compacted. It can be called from {@code onItemRead}
+     * </p>
+     * 
+     * @return true if the properties of the subject only have the values used by the consumers
+     */
+    protected boolean isCompacted()
+    {
+        return this.compacted;
+    }
+
+    /**
+     * <p>
+     * Gets the number of triples of the subject being processed. It can be called from {@code onItemRead}
+     * </p>
+     * 
+     * @return the number of triples read, including the ones not kept after compacting the subject
+     */
+    protected long getSubjectTriples()
+    {
+        return this.subjectTriples;
+    }
+
     /**
      * <p>
      * Called when the parser starts
@@ -87,17 +154,47 @@ public abstract class AbstractProducerImporterHandler implements StreamRDF
 
             previousSubject = triple.getSubject().getURI();
             this.properties = new HashMap<String, List<String>>();
+            this.subjectTriples = 0;
+            this.compacted = false;
         }
 
         Node predicate = triple.getPredicate();
-        Node object = triple.getObject();
+        List<String> values = properties.get(predicate.getURI());
+        this.subjectTriples++;
 
-        String objectValue = this.generateStringValue(object);
+        /* A compacted subject only keeps the values the consumers use */
+        if (this.compacted && values != null && values.size() >= COMPACT_VALUES
+                && !predicate.getURI().equals(ImporterConstants.RDF_TYPE))
+            return;
 
-        if (properties.get(predicate.getURI()) == null)
-            properties.put(predicate.getURI(), new ArrayList<String>());
+        String objectValue = this.generateStringValue(triple.getObject());
 
-        properties.get(predicate.getURI()).add(objectValue);
+        if (values == null)
+        {
+            values = new ArrayList<String>();
+            properties.put(predicate.getURI(), values);
+        }
+
+        values.add(objectValue);
+
+        if (!this.compacted && this.compactThreshold > 0 && this.subjectTriples >= this.compactThreshold)
+            this.compact();
+    }
+
+    /**
+     * <p>
+     * Compacts the properties of the subject being processed
+     * </p>
+     */
+    private void compact()
+    {
+        for (Map.Entry<String, List<String>> property : this.properties.entrySet())
+        {
+            List<String> values = property.getValue();
+            if (values.size() > COMPACT_VALUES && !property.getKey().equals(ImporterConstants.RDF_TYPE))
+                property.setValue(new ArrayList<String>(values.subList(0, COMPACT_VALUES)));
+        }
+        this.compacted = true;
     }
 
     @Override
@@ -140,7 +237,7 @@ public abstract class AbstractProducerImporterHandler implements StreamRDF
      * @param object the Node to obtain the string representation
      * @return the {@code String} representation
      */
-    private String generateStringValue(Node object)
+    String generateStringValue(Node object)
     {
 
         Value objectValue = null;
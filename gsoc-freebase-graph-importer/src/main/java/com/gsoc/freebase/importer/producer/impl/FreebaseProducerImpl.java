@@ -1,17 +1,44 @@
 package com.gsoc.freebase.importer.producer.impl;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFLanguages;
 import org.apache.jena.riot.RiotReader;
+import org.apache.jena.riot.system.StreamRDF;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.binary.BinaryEntityReader;
+import com.gsoc.freebase.importer.binary.BinaryEntityWriter;
+import com.gsoc.freebase.importer.checkpoint.Checkpointer;
+import com.gsoc.freebase.importer.checkpoint.FileFingerprint;
+import com.gsoc.freebase.importer.metrics.ImporterMetrics;
 import com.gsoc.freebase.importer.model.Entity;
+import com.gsoc.freebase.importer.pipeline.Channel;
+import com.gsoc.freebase.importer.producer.EntityFilter;
+import com.gsoc.freebase.importer.producer.EntitySink;
 import com.gsoc.freebase.importer.producer.FreebaseProducer;
+import com.gsoc.freebase.importer.sort.ExternalSubjectSorter;
 
 /**
  * <p>
@@ -32,6 +59,11 @@ public class FreebaseProducerImpl implements FreebaseProducer
      */
     private static int DEFAULT_QUEUE_CAPACITY = 10;
 
+    /**
+     * Constant containing the number of threads decoding the blocks of a binary entity file
+     */
+    private static final int BINARY_READ_PARALLELISM = Math.min(4, Runtime.getRuntime().availableProcessors());
+
     /**
      * Logger
      */
@@ -47,6 +79,47 @@ public class FreebaseProducerImpl implements FreebaseProducer
      */
     private File file;
 
+    /**
+     * The checkpointer used to record the progress (null if checkpoints are disabled)
+     */
+    private Checkpointer checkpointer;
+
+    /**
+     * Filter of the entities produced (null to produce all of them)
+     */
+    private EntityFilter entityFilter;
+
+    /**
+     * Metrics of the import process
+     */
+    private ImporterMetrics metrics = new ImporterMetrics();
+
+    /**
+     * Directory of the runs of the subject sort (null if the input is already grouped by subject)
+     */
+    private File sortDirectory;
+
+    /**
+     * Maximum number of bytes of a run of the subject sort
+     */
+    private long sortRunBytes;
+
+    /**
+     * Number of threads sorting the runs of a file
+     */
+    private int sortParallelism;
+
+    /**
+     * Number of triples of an entity above which only the values used by the consumers are kept (0 to keep every
+     * triple)
+     */
+    private int compactThreshold;
+
+    /**
+     * Sink receiving the entities instead of the queue (null to put them in the queue)
+     */
+    private EntitySink sink;
+
     /**
      * <p>
      * Default constructor
@@ -88,24 +161,209 @@ public class FreebaseProducerImpl implements FreebaseProducer
         this.queue = queue;
     }
 
+    /**
+     * <p>
+     * Sets the sink receiving the entities instead of the queue, so the entities can be read outside the importer
+     * </p>
+     * <p>
+     * The checkpoints and the entity stopping the consumers are still put in the queue, so a sink is meant to be used
+     * without checkpointer, calling {@code listPendingFiles} and {@code processFile} instead of {@code run}
+     * </p>
+     * 
+     * @param sink the {@code EntitySink} or null to put the entities in the queue
+     * @see com.gsoc.freebase.importer.stream.EntityPublisher
+     */
+    public void setSink(EntitySink sink)
+    {
+        this.sink = sink;
+    }
+
+    /**
+     * <p>
+     * Sets the checkpointer used to record the progress of the files and skip the files already processed
+     * </p>
+     * 
+     * @param checkpointer the {@code Checkpointer} to use or null to disable checkpoints
+     */
+    public void setCheckpointer(Checkpointer checkpointer)
+    {
+        this.checkpointer = checkpointer;
+    }
+
+    /**
+     * <p>
+     * Sets the filter of the entities produced
+     * </p>
+     * 
+     * @param entityFilter the {@code EntityFilter} or null to produce all the entities
+     */
+    public void setEntityFilter(EntityFilter entityFilter)
+    {
+        this.entityFilter = entityFilter;
+    }
+
+    /**
+     * <p>
+     * Sets the metrics used to record the progress of the producer
+     * </p>
+     * 
+     * @param metrics the {@code ImporterMetrics} instance
+     */
+    public void setMetrics(ImporterMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    /**
+     * <p>
+     * Sorts the triples of every file by subject before producing its entities
+     * </p>
+     * <p>
+     * It is needed when the triples of a subject aren't consecutive in the input, otherwise every group of consecutive
+     * triples is produced as a different entity
+     * </p>
+     * 
+     * @param directory the directory of the temporary runs or null to parse the files as they are
+     * @param runBytes the maximum number of bytes of a run
+     * @param parallelism the number of threads sorting the runs of a file
+     * @see ExternalSubjectSorter
+     */
+    public void setSubjectSort(File directory, long runBytes, int parallelism)
+    {
+        this.sortDirectory = directory;
+        this.sortRunBytes = runBytes;
+        this.sortParallelism = parallelism;
+    }
+
+    /**
+     * <p>
+     * Sets the number of triples of an entity above which only the values used by the consumers are kept, so a
+     * subject with millions of triples isn't held in memory
+     * </p>
+     * <p>
+     * It applies to the RDF files. The entities of the binary files are read as a whole
+     * </p>
+     * 
+     * @param triples the number of triples or 0 to keep every triple
+     * @see AbstractProducerImporterHandler#setCompactThreshold(int)
+     */
+    public void setCompactThreshold(int triples)
+    {
+        this.compactThreshold = triples;
+    }
+
     /**
      * <p>
      * Executes the process. Read triples from Freebase files and produce entities which will be consumed by consumers
      * listening the queue.
      * </p>
+     * <p>
+     * The files are parsed one after another in the current thread. The importer runs the same work as two pipeline
+     * stages instead (see {@code newFileSource} and {@code newFileDecoder}), so several files can be parsed at the same
+     * time
+     * </p>
      */
     @Override
     public void run()
     {
         logger.info("Starting the producer " + Thread.currentThread().getName());
-        /*
-         * Process all files inside this directory
-         */
+        try
+        {
+            for (File f : this.listPendingFiles())
+                this.processFile(f);
+
+            logger.info("Finishing producer " + Thread.currentThread().getName());
+
+            /*
+             * Generates a dummy Entity to stop the consumers
+             */
+            queue.put(new Entity(ImporterConstants.CANCEL_ENTITY_URI, null));
+        }
+        catch (InterruptedException e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * <p>
+     * Creates the worker of the source stage: it puts the files to process in the channel, in name order
+     * </p>
+     * 
+     * @param files the channel of the files to process
+     * @return the worker
+     */
+    public Runnable newFileSource(final Channel<File> files)
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    for (File f : listPendingFiles())
+                        files.put(f);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while listing " + file.getAbsolutePath(), e);
+                }
+            }
+        };
+    }
+
+    /**
+     * <p>
+     * Creates a worker of the decode stage: it parses (and decompresses) the files taken from the channel and puts
+     * their entities in the queue of the consumers
+     * </p>
+     * 
+     * @param files the channel of the files to process
+     * @return the worker
+     */
+    public Runnable newFileDecoder(final Channel<File> files)
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    File f;
+                    while ((f = files.take()) != null)
+                        processFile(f);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while parsing " + file.getAbsolutePath(), e);
+                }
+            }
+        };
+    }
+
+    /**
+     * <p>
+     * Lists the files to process (the file itself or the files of the directory, one level only), skipping the files
+     * already completed according to the checkpointer
+     * </p>
+     * <p>
+     * The total number of bytes of the files is recorded in the metrics
+     * </p>
+     * 
+     * @return the pending files sorted by name
+     */
+    public List<File> listPendingFiles()
+    {
+        File[] files;
         if (file.isDirectory())
         {
             logger.debug(file.getAbsolutePath() + " is a directory. Processing directory files (one level only)");
 
-            File[] files = file.listFiles(new FilenameFilter()
+            files = file.listFiles(new FilenameFilter()
             {
                 @Override
                 public boolean accept(File dir, String name)
@@ -117,68 +375,228 @@ public class FreebaseProducerImpl implements FreebaseProducer
                 }
             });
 
-            for (File f : files)
+            /* Sort the files so the order is the same when the process is resumed */
+            Arrays.sort(files);
+        }
+        else
+            files = new File[] { file };
+
+        List<File> pending = new ArrayList<File>();
+        for (File f : files)
+        {
+            if (this.checkpointer != null && this.checkpointer.isCompleted(f))
             {
-                this.processFile(f);
+                logger.info("Skipping file " + f.getAbsolutePath() + " (already processed and unchanged)");
+                continue;
             }
+            pending.add(f);
         }
-        /*
-         * Process the file
-         */
+
+        this.metrics.setBytesTotal(totalLength(pending));
+        return pending;
+    }
+
+    /**
+     * <p>
+     * Process the file
+     * </p>
+     * <p>
+     * In this case, a {@code RiotReader} object is used with the current step
+     * </p>
+     * <p>
+     * If checkpoints are enabled, the progress of the file is recorded once the consumers have committed its entities,
+     * along with the digest of the file computed while it was parsed
+     * </p>
+     * 
+     * @param f the file to process
+     * @throws InterruptedException if the thread is interrupted while waiting for the consumers
+     */
+    public void processFile(File f) throws InterruptedException
+    {
+        logger.debug(Thread.currentThread().getName() + " Processing file " + f.getAbsolutePath());
+        long start = System.currentTimeMillis();
+        FreebaseProducerImporterHandler handler = new FreebaseProducerImporterHandler(this.queue, f, this.checkpointer);
+        handler.setMetrics(this.metrics);
+        handler.setEntityFilter(this.entityFilter);
+        handler.setCompactThreshold(this.compactThreshold);
+        handler.setSink(this.sink);
+        String digest = null;
+        if (f.getName().endsWith(BinaryEntityWriter.EXTENSION))
+            this.parseBinary(f, handler);
+        else if (this.sortDirectory != null)
+            digest = this.parseSorted(f, handler);
         else
+            digest = this.parse(f, handler);
+        if (this.checkpointer != null)
+        {
+            if (digest != null)
+                this.checkpointer.setDigest(f, digest);
+            this.checkpointer.checkpoint(this.queue, f, handler.getEntities(), true);
+        }
+        long end = System.currentTimeMillis();
+        logger.debug(Thread.currentThread().getName() + " File " + f.getAbsolutePath()+ " processed in "
+                + (end - start) / 1000 + " seconds");
+    }
+
+    /**
+     * <p>
+     * Parses a file counting the bytes read, so the progress of the step can be reported
+     * </p>
+     * <p>
+     * Plain and gzipped files are read through a counting stream, which also computes the digest of the file (see
+     * {@code FileFingerprint}), so the checkpoints don't read the file again. Other formats are parsed by the
+     * {@code RiotReader} using the path and the whole file is counted once it has been parsed
+     * </p>
+     * 
+     * @param f the file to parse
+     * @param handler the handler receiving the triples
+     * @return the digest of the file or null if it hasn't been computed
+     * @throws IllegalStateException if the file can't be read
+     */
+    private String parse(File f, StreamRDF handler)
+    {
+        String name = f.getName();
+        boolean gzipped = name.endsWith(".gz");
+        if (gzipped)
+            name = name.substring(0, name.length() - 3);
+
+        Lang lang = RDFLanguages.filenameToLang(name, Lang.NTRIPLES);
+        if (!gzipped && name.endsWith(".bz2"))
         {
-            this.processFile(this.file);
+            RiotReader.parse(f.getAbsolutePath(), handler);
+            this.metrics.bytesRead(f.length());
+            return null;
         }
 
+        MessageDigest digest = FileFingerprint.newDigest();
+        InputStream counting = null;
+        InputStream in = null;
         try
         {
-            // Sleep a second to wait other threads to finish their processes
-            Thread.sleep(1000);
+            in = counting = new CountingInputStream(new DigestInputStream(new FileInputStream(f), digest))
+            {
+                @Override
+                protected synchronized void afterRead(int n)
+                {
+                    super.afterRead(n);
+                    if (n > 0)
+                        metrics.bytesRead(n);
+                }
+            };
+            in = gzipped ? new GZIPInputStream(in, 65536) : new BufferedInputStream(in, 65536);
+            /* The parser closes the stream, and the rest of the file is still needed by the digest */
+            RiotReader.parse(new CloseShieldInputStream(in), lang, f.toURI().toString(), handler);
+            IOUtils.skip(counting, Long.MAX_VALUE);
+            return FileFingerprint.toString(digest);
         }
-        catch (InterruptedException e)
+        catch (IOException e)
         {
-
-            e.printStackTrace();
+            /* Returning would record the file as completed in the checkpoint manifest */
+            throw new IllegalStateException("Unable to parse " + f.getAbsolutePath(), e);
         }
+        finally
+        {
+            IOUtils.closeQuietly(in);
+        }
+    }
 
-        logger.info("Finishing producer " + Thread.currentThread().getName());
-
-        /*
-         * Generates a dummy Entity to stop the consumers
-         */
-        Entity e = new Entity(ImporterConstants.CANCEL_ENTITY_URI, null);
-
+    /**
+     * <p>
+     * Reads a binary entity file (see {@code BinaryConverter}). The entities are already grouped, so they are given to
+     * the handler as they are read
+     * </p>
+     * 
+     * @param f the file to read
+     * @param handler the handler receiving the entities
+     * @throws InterruptedException if the thread is interrupted while reading
+     */
+    private void parseBinary(File f, final FreebaseProducerImporterHandler handler) throws InterruptedException
+    {
+        BinaryEntityReader reader = null;
         try
         {
-            queue.put(e);
+            reader = new BinaryEntityReader(f);
+            reader.read(BINARY_READ_PARALLELISM, new BinaryEntityReader.Listener()
+            {
+                @Override
+                public void entity(String subject, Map<String, List<String>> properties)
+                {
+                    long values = 0;
+                    for (List<String> v : properties.values())
+                        values += v.size();
+                    metrics.triplesRead(values);
+                    handler.onItemRead(subject, properties);
+                }
+
+                @Override
+                public void blockRead(long bytes)
+                {
+                    metrics.bytesRead(bytes);
+                }
+            });
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Unable to read " + f.getAbsolutePath(), e);
         }
-        catch (InterruptedException e1)
+        finally
         {
-            e1.printStackTrace();
+            IOUtils.closeQuietly(reader);
         }
-
     }
 
     /**
      * <p>
-     * Process the file
+     * Parses a file grouping its triples by subject: the file is parsed into the runs of an
+     * {@code ExternalSubjectSorter} and the handler parses the merge of the runs
      * </p>
+     * 
+     * @param f the file to parse
+     * @param handler the handler receiving the triples
+     * @return the digest of the file or null if it hasn't been computed
+     * @throws InterruptedException if the thread is interrupted while sorting
+     */
+    private String parseSorted(File f, FreebaseProducerImporterHandler handler) throws InterruptedException
+    {
+        ExternalSubjectSorter sorter = new ExternalSubjectSorter(this.sortDirectory, this.sortRunBytes,
+                this.sortParallelism);
+        InputStream in = null;
+        try
+        {
+            long start = System.currentTimeMillis();
+            String digest = this.parse(f, sorter);
+            in = sorter.merge();
+            logger.debug(Thread.currentThread().getName() + " File " + f.getAbsolutePath() + " sorted ("
+                    + sorter.getTriples() + " triples) in " + (System.currentTimeMillis() - start) / 1000
+                    + " seconds");
+            RiotReader.parse(in, Lang.NTRIPLES, f.toURI().toString(), handler);
+            return digest;
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Unable to sort " + f.getAbsolutePath(), e);
+        }
+        finally
+        {
+            IOUtils.closeQuietly(in);
+            sorter.close();
+        }
+    }
+
+    /**
      * <p>
-     * In this case, a {@code RiotReader} object is used with the current step
+     * Computes the number of bytes of the given files
      * </p>
      * 
-     * @param f the file to process
-     * @param step the current step. It is instance of {@code StreamRDF}
+     * @param files the files
+     * @return the sum of the lengths of the files
      */
-    private void processFile(File f)
+    private static long totalLength(List<File> files)
     {
-        logger.debug(Thread.currentThread().getName() + " Processing file " + f.getAbsolutePath());
-        long start = System.currentTimeMillis();
-        FreebaseProducerImporterHandler handler = new FreebaseProducerImporterHandler(this.queue);
-        RiotReader.parse(f.getAbsolutePath(), handler);
-        long end = System.currentTimeMillis();
-        logger.debug(Thread.currentThread().getName() + " File " + f.getAbsolutePath()+ " processed in "
-                + (end - start) / 1000 + " seconds");
+        long total = 0;
+        for (File f : files)
+            total += f.length();
+        return total;
     }
 
 }
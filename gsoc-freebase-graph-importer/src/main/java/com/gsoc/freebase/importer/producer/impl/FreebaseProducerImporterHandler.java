@@ -1,12 +1,19 @@
 package com.gsoc.freebase.importer.producer.impl;
 
+import java.io.File;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 
 import org.apache.log4j.Logger;
 
+import com.hp.hpl.jena.graph.Triple;
+
+import com.gsoc.freebase.importer.checkpoint.Checkpointer;
+import com.gsoc.freebase.importer.metrics.ImporterMetrics;
 import com.gsoc.freebase.importer.model.Entity;
+import com.gsoc.freebase.importer.producer.EntityFilter;
+import com.gsoc.freebase.importer.producer.EntitySink;
 import com.gsoc.freebase.importer.utils.FreebaseUtils;
 
 /**
@@ -31,30 +38,151 @@ public class FreebaseProducerImporterHandler extends AbstractProducerImporterHan
      * Queue used to put the entities
      */
     private BlockingQueue<Entity> queue;
+
+    /**
+     * The file being processed
+     */
+    private File file;
+
+    /**
+     * The checkpointer used to generate checkpoints (null if checkpoints are disabled)
+     */
+    private Checkpointer checkpointer;
+
+    /**
+     * Number of entities of the file already committed by a previous process, which are skipped
+     */
+    private long skip;
+
+    /**
+     * Number of entities of the file read
+     */
+    private long entities;
+
+    /**
+     * Metrics of the import process
+     */
+    private ImporterMetrics metrics;
+
+    /**
+     * Number of triples read since the last entity
+     */
+    private long triples;
+
+    /**
+     * Filter of the entities produced (null to produce all of them)
+     */
+    private EntityFilter filter;
+
+    /**
+     * Sink receiving the entities instead of the queue (null to put them in the queue)
+     */
+    private EntitySink sink;
     
     /**
      * <p>Constructs an instance of FreebaseProducerImporterHandler using the given queue to put the produced entities on</p>
      * @param queue the {@code BlockingQueue<Entity>} instance
      */
     public FreebaseProducerImporterHandler(BlockingQueue<Entity> queue) {
+        this(queue, null, null);
+    }
+
+    /**
+     * <p>Constructs an instance of FreebaseProducerImporterHandler generating checkpoints while the file is processed</p>
+     * <p>The entities of the file already committed by a previous process (as recorded by the checkpointer) are skipped</p>
+     * @param queue the {@code BlockingQueue<Entity>} instance
+     * @param file the {@code File} being processed
+     * @param checkpointer the {@code Checkpointer} used to generate checkpoints or null to disable them
+     */
+    public FreebaseProducerImporterHandler(BlockingQueue<Entity> queue, File file, Checkpointer checkpointer) {
         this.queue = queue;
+        this.file = file;
+        this.checkpointer = checkpointer;
+        this.skip = checkpointer != null ? checkpointer.getCommittedEntities(file) : 0;
+        this.entities = 0;
+        this.metrics = new ImporterMetrics();
+        if (this.skip > 0)
+            logger.info("Skipping the first " + this.skip + " entities of " + file.getName());
     }
     
+    /**
+     * <p>Sets the metrics used to record the triples read and the entities produced</p>
+     * @param metrics the {@code ImporterMetrics} instance
+     */
+    public void setMetrics(ImporterMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    /**
+     * <p>Sets the filter of the entities produced</p>
+     * @param filter the {@code EntityFilter} or null to produce all the entities
+     */
+    public void setEntityFilter(EntityFilter filter)
+    {
+        this.filter = filter;
+    }
+
+    /**
+     * <p>Sets the sink receiving the entities instead of the queue. The checkpoints are still put in the queue</p>
+     * @param sink the {@code EntitySink} or null to put the entities in the queue
+     */
+    public void setSink(EntitySink sink)
+    {
+        this.sink = sink;
+    }
+
+    @Override
+    public void triple(Triple triple)
+    {
+        this.triples++;
+        super.triple(triple);
+    }
+
     @Override
     public void onItemRead(String subject, Map<String, List<String>> properties)
     {
+        this.metrics.triplesRead(this.triples);
+        this.triples = 0;
+        if (this.isCompacted())
+            logger.info("Entity " + subject + " compacted: " + this.getSubjectTriples() + " triples");
+
         if(FreebaseUtils.isFreebaseId(subject)) {
+            /* Skip the entities committed by a previous process */
+            if (++this.entities <= this.skip)
+                return;
+
             Entity entity = new Entity(subject, properties);
+            if (this.filter != null && !this.filter.accept(entity))
+                return;
             try
             {
-                this.queue.put(entity);
+                long start = System.nanoTime();
+                if (this.sink != null)
+                    this.sink.put(entity);
+                else
+                    this.queue.put(entity);
+                this.metrics.entityProduced(System.nanoTime() - start);
+                if (this.checkpointer != null && this.checkpointer.isDue(this.entities))
+                    this.checkpointer.checkpoint(this.queue, this.file, this.entities, false);
             }
             catch (InterruptedException e)
             {
-                e.printStackTrace();
+                /* Stop the parsing: the consumers are gone */
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while producing " + subject, e);
             }
         }
         
     }
 
+    /**
+     * <p>Gets the number of entities of the file read</p>
+     * @return the number of entities read (including the skipped ones)
+     */
+    public long getEntities()
+    {
+        return this.entities;
+    }
+
 }
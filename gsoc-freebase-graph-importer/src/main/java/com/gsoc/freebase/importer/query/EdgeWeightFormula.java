@@ -0,0 +1,182 @@
+package com.gsoc.freebase.importer.query;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+
+/**
+ * <p>
+ * Formula computing the weight of an edge from its counters
+ * </p>
+ * <p>
+ * The weight is a linear combination of the counters of the edge multiplied by a factor of its label. The counters
+ * without a coefficient are weighted with the default coefficient if they are top level domains (the counters without
+ * dots) and ignored otherwise, so the default formula (coefficients and factors 1) is the number of properties
+ * connecting the topics. The hierarchy of an edge counts a property once per level, so giving a coefficient to a
+ * counter of a lower level adds to the weight of its domain instead of replacing it
+ * </p>
+ * <p>
+ * A formula is written as comma separated {@code name=value} terms, where the name is an edge label, a counter or
+ * {@code default}, e.g. {@code mediated-connection=0.5,film.performance=2,people=0}
+ * </p>
+ */
+public class EdgeWeightFormula
+{
+    /**
+     * Name of the default coefficient in the written form
+     */
+    public static final String DEFAULT = "default";
+
+    /**
+     * Coefficient of the top level domains without an explicit coefficient
+     */
+    private double defaultCoefficient;
+
+    /**
+     * Explicit coefficients of the counters
+     */
+    private Map<String, Double> coefficients;
+
+    /**
+     * Factors of the labels (1 if they aren't present)
+     */
+    private Map<String, Double> labelFactors;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     * <p>
+     * Builds the default formula
+     * </p>
+     */
+    public EdgeWeightFormula()
+    {
+        this.defaultCoefficient = 1;
+        this.coefficients = new HashMap<String, Double>();
+        this.labelFactors = new HashMap<String, Double>();
+    }
+
+    /**
+     * <p>
+     * Sets the coefficient of the top level domains without an explicit coefficient
+     * </p>
+     *
+     * @param coefficient the coefficient
+     * @return this formula
+     */
+    public EdgeWeightFormula setDefaultCoefficient(double coefficient)
+    {
+        this.defaultCoefficient = coefficient;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Sets the coefficient of a counter
+     * </p>
+     *
+     * @param counter the counter (a domain, a type or a property, e.g. film.performance)
+     * @param coefficient the coefficient
+     * @return this formula
+     */
+    public EdgeWeightFormula setCoefficient(String counter, double coefficient)
+    {
+        this.coefficients.put(counter, coefficient);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Sets the factor of the edges with a label
+     * </p>
+     *
+     * @param label the label
+     * @param factor the factor
+     * @return this formula
+     */
+    public EdgeWeightFormula setLabelFactor(String label, double factor)
+    {
+        this.labelFactors.put(label, factor);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Computes the weight of an edge
+     * </p>
+     *
+     * @param label the label of the edge
+     * @param counters the properties of the edge (the non numeric ones are ignored)
+     * @return the weight
+     */
+    public double weight(String label, Map<String, Object> counters)
+    {
+        Double factor = this.labelFactors.get(label);
+        if (factor != null && factor == 0)
+            return 0;
+
+        double weight = 0;
+        for (Map.Entry<String, Object> counter : counters.entrySet())
+        {
+            if (!(counter.getValue() instanceof Number))
+                continue;
+            Double coefficient = this.coefficients.get(counter.getKey());
+            if (coefficient == null)
+                coefficient = counter.getKey().indexOf('.') < 0 ? this.defaultCoefficient : 0;
+            weight += coefficient * ((Number) counter.getValue()).doubleValue();
+        }
+        return factor != null ? factor * weight : weight;
+    }
+
+    /**
+     * <p>
+     * Parses a written formula
+     * </p>
+     *
+     * @param formula the comma separated {@code name=value} terms
+     * @return the {@code EdgeWeightFormula}
+     * @throws IllegalArgumentException if a term is not valid
+     */
+    public static EdgeWeightFormula parse(String formula)
+    {
+        EdgeWeightFormula parsed = new EdgeWeightFormula();
+        for (String term : formula.split(","))
+        {
+            term = term.trim();
+            if (term.isEmpty())
+                continue;
+
+            int equals = term.indexOf('=');
+            if (equals <= 0)
+                throw new IllegalArgumentException("Invalid edge weight term: " + term);
+            String name = term.substring(0, equals).trim();
+            double value;
+            try
+            {
+                value = Double.parseDouble(term.substring(equals + 1).trim());
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IllegalArgumentException("Invalid edge weight term: " + term);
+            }
+
+            if (name.equals(DEFAULT))
+                parsed.setDefaultCoefficient(value);
+            else if (name.equals(ImporterConstants.DIRECT_CONNECTION_EDGE_LABEL)
+                    || name.equals(ImporterConstants.MEDIATED_CONNECTION_EDGE_LABEL))
+                parsed.setLabelFactor(name, value);
+            else
+                parsed.setCoefficient(name, value);
+        }
+        return parsed;
+    }
+
+    @Override
+    public String toString()
+    {
+        return DEFAULT + "=" + this.defaultCoefficient + (this.labelFactors.isEmpty() ? "" : ", " + this.labelFactors)
+                + (this.coefficients.isEmpty() ? "" : ", " + this.coefficients);
+    }
+}
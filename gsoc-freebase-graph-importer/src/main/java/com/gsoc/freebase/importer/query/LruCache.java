@@ -0,0 +1,200 @@
+package com.gsoc.freebase.importer.query;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Size bounded least recently used cache counting its hits and misses
+ * </p>
+ * <p>
+ * Every value has a weight (1 by default, see {@code weight}) and the least recently used values are evicted when the
+ * total weight passes the capacity. The cache is synchronized, which is enough for the read traffic of a graph store:
+ * the time spent in the cache is negligible next to a miss
+ * </p>
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class LruCache<K, V>
+{
+    /**
+     * The values in access order (the least recently used first)
+     */
+    private LinkedHashMap<K, V> values;
+
+    /**
+     * Maximum total weight of the values
+     */
+    private long capacity;
+
+    /**
+     * Total weight of the values
+     */
+    private long weight;
+
+    /**
+     * Number of lookups finding the value
+     */
+    private AtomicLong hits = new AtomicLong();
+
+    /**
+     * Number of lookups not finding the value
+     */
+    private AtomicLong misses = new AtomicLong();
+
+    /**
+     * Number of values evicted
+     */
+    private AtomicLong evictions = new AtomicLong();
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param capacity the maximum total weight of the values (0 disables the cache)
+     */
+    public LruCache(long capacity)
+    {
+        this.capacity = capacity;
+        this.values = new LinkedHashMap<K, V>(16, 0.75f, true);
+    }
+
+    /**
+     * <p>
+     * Gets a value, making it the most recently used
+     * </p>
+     *
+     * @param key the key
+     * @return the value or null if it isn't cached
+     */
+    public synchronized V get(K key)
+    {
+        V value = this.values.get(key);
+        if (value != null)
+            this.hits.incrementAndGet();
+        else
+            this.misses.incrementAndGet();
+        return value;
+    }
+
+    /**
+     * <p>
+     * Caches a value, evicting the least recently used values if needed
+     * </p>
+     *
+     * @param key the key
+     * @param value the value (not null)
+     */
+    public synchronized void put(K key, V value)
+    {
+        long valueWeight = this.weight(value);
+        if (valueWeight > this.capacity)
+            return;
+
+        V previous = this.values.put(key, value);
+        if (previous != null)
+            this.weight -= this.weight(previous);
+        this.weight += valueWeight;
+
+        Iterator<Map.Entry<K, V>> it = this.values.entrySet().iterator();
+        while (this.weight > this.capacity && it.hasNext())
+        {
+            this.weight -= this.weight(it.next().getValue());
+            it.remove();
+            this.evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * <p>
+     * Removes all the values. The statistics are kept
+     * </p>
+     */
+    public synchronized void clear()
+    {
+        this.values.clear();
+        this.weight = 0;
+    }
+
+    /**
+     * <p>
+     * Gets the weight of a value
+     * </p>
+     *
+     * @param value the value
+     * @return the weight, 1 unless overridden
+     */
+    protected long weight(V value)
+    {
+        return 1;
+    }
+
+    /**
+     * @return the number of values cached
+     */
+    public synchronized int size()
+    {
+        return this.values.size();
+    }
+
+    /**
+     * @return the total weight of the values cached
+     */
+    public synchronized long getWeight()
+    {
+        return this.weight;
+    }
+
+    /**
+     * @return the maximum total weight of the values
+     */
+    public long getCapacity()
+    {
+        return this.capacity;
+    }
+
+    /**
+     * @return the number of lookups finding the value
+     */
+    public long getHits()
+    {
+        return this.hits.get();
+    }
+
+    /**
+     * @return the number of lookups not finding the value
+     */
+    public long getMisses()
+    {
+        return this.misses.get();
+    }
+
+    /**
+     * @return the number of values evicted
+     */
+    public long getEvictions()
+    {
+        return this.evictions.get();
+    }
+
+    /**
+     * @return the fraction of the lookups finding the value (0 if there were no lookups)
+     */
+    public double getHitRate()
+    {
+        long hits = this.hits.get();
+        long lookups = hits + this.misses.get();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%d/%d cached, hit rate %.1f%% (%d hits, %d misses, %d evictions)", this.getWeight(),
+                this.capacity, this.getHitRate() * 100, this.getHits(), this.getMisses(), this.getEvictions());
+    }
+}
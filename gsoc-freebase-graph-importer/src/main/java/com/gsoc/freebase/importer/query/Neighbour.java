@@ -0,0 +1,87 @@
+package com.gsoc.freebase.importer.query;
+
+import java.util.Map;
+
+/**
+ * <p>
+ * Topic connected to another topic by an edge
+ * </p>
+ */
+public class Neighbour
+{
+    /**
+     * The URI of the neighbour topic
+     */
+    private String uri;
+
+    /**
+     * The label of the edge
+     */
+    private String label;
+
+    /**
+     * The weight of the edge
+     */
+    private double weight;
+
+    /**
+     * The properties (counters) of the edge
+     */
+    private Map<String, Object> features;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param uri the URI of the neighbour topic
+     * @param label the label of the edge
+     * @param weight the weight of the edge
+     * @param features the properties of the edge
+     */
+    public Neighbour(String uri, String label, double weight, Map<String, Object> features)
+    {
+        this.uri = uri;
+        this.label = label;
+        this.weight = weight;
+        this.features = features;
+    }
+
+    /**
+     * @return the URI of the neighbour topic
+     */
+    public String getUri()
+    {
+        return this.uri;
+    }
+
+    /**
+     * @return the label of the edge
+     */
+    public String getLabel()
+    {
+        return this.label;
+    }
+
+    /**
+     * @return the weight of the edge
+     */
+    public double getWeight()
+    {
+        return this.weight;
+    }
+
+    /**
+     * @return the properties of the edge
+     */
+    public Map<String, Object> getFeatures()
+    {
+        return this.features;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.uri + " (" + this.label + ", " + this.weight + ")";
+    }
+}
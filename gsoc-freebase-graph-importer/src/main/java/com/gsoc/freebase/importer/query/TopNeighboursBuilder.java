@@ -0,0 +1,178 @@
+package com.gsoc.freebase.importer.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.TransactionalGraph;
+import com.tinkerpop.blueprints.Vertex;
+
+/**
+ * <p>
+ * Post-import stage materializing the heaviest neighbours of every topic
+ * </p>
+ * <p>
+ * For every vertex it weights its edges with an {@code EdgeWeightFormula}, adds up the weights of the edges to the
+ * same neighbour (a pair of topics can be connected by a direct and a mediated edge) and stores the URIs and the
+ * weights of the {@code k} heaviest neighbours, the heaviest first, in the
+ * {@code ImporterConstants.VERTEX_TOP_NEIGHBOURS_PROPERTY} and
+ * {@code ImporterConstants.VERTEX_TOP_NEIGHBOUR_WEIGHTS_PROPERTY} properties of the vertex. Reading the neighbours of a
+ * hub then takes a single read of the vertex instead of a scan of all its edges
+ * </p>
+ * <p>
+ * The stage reads the whole graph, so it is run again after every import changing the relations
+ * </p>
+ */
+public class TopNeighboursBuilder
+{
+    private static Logger logger = LoggerFactory.getLogger(TopNeighboursBuilder.class);
+
+    /**
+     * Default number of vertices updated in a transaction
+     */
+    public static final int DEFAULT_COMMIT_INTERVAL = 1000;
+
+    /**
+     * The graph
+     */
+    private Graph graph;
+
+    /**
+     * Number of neighbours stored
+     */
+    private int k;
+
+    /**
+     * The formula weighting the edges
+     */
+    private EdgeWeightFormula formula;
+
+    /**
+     * Number of vertices updated in a transaction
+     */
+    private int commitInterval;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param graph the imported graph
+     * @param k the number of neighbours stored in every vertex
+     * @param formula the formula weighting the edges
+     */
+    public TopNeighboursBuilder(Graph graph, int k, EdgeWeightFormula formula)
+    {
+        this.graph = graph;
+        this.k = k;
+        this.formula = formula;
+        this.commitInterval = DEFAULT_COMMIT_INTERVAL;
+    }
+
+    /**
+     * <p>
+     * Sets the number of vertices updated in a transaction
+     * </p>
+     *
+     * @param commitInterval the number of vertices
+     */
+    public void setCommitInterval(int commitInterval)
+    {
+        this.commitInterval = commitInterval;
+    }
+
+    /**
+     * <p>
+     * Stores the top neighbours of all the vertices
+     * </p>
+     *
+     * @return the number of vertices updated
+     */
+    public long build()
+    {
+        long vertices = 0;
+        for (Vertex vertex : this.graph.getVertices())
+        {
+            List<Map.Entry<String, Double>> neighbours = this.topNeighbours(vertex);
+            String[] uris = new String[neighbours.size()];
+            double[] weights = new double[neighbours.size()];
+            for (int i = 0; i < uris.length; i++)
+            {
+                uris[i] = neighbours.get(i).getKey();
+                weights[i] = neighbours.get(i).getValue();
+            }
+            vertex.setProperty(ImporterConstants.VERTEX_TOP_NEIGHBOURS_PROPERTY, uris);
+            vertex.setProperty(ImporterConstants.VERTEX_TOP_NEIGHBOUR_WEIGHTS_PROPERTY, weights);
+
+            vertices++;
+            if (vertices % this.commitInterval == 0)
+                this.commit();
+        }
+        this.commit();
+        logger.debug("Top " + this.k + " neighbours stored in " + vertices + " vertices");
+        return vertices;
+    }
+
+    /**
+     * <p>
+     * Computes the heaviest neighbours of a vertex
+     * </p>
+     */
+    private List<Map.Entry<String, Double>> topNeighbours(Vertex vertex)
+    {
+        Map<String, Double> weights = new HashMap<String, Double>();
+        for (Edge edge : vertex.getEdges(Direction.BOTH))
+        {
+            Vertex other = edge.getVertex(Direction.IN);
+            if (other.getId().equals(vertex.getId()))
+                other = edge.getVertex(Direction.OUT);
+            String uri = other.getProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY);
+
+            Map<String, Object> counters = new LinkedHashMap<String, Object>();
+            for (String key : edge.getPropertyKeys())
+                counters.put(key, edge.getProperty(key));
+            double weight = this.formula.weight(edge.getLabel(), counters);
+            Double previous = weights.get(uri);
+            weights.put(uri, previous != null ? previous + weight : weight);
+        }
+
+        List<Map.Entry<String, Double>> neighbours = new ArrayList<Map.Entry<String, Double>>();
+        for (Map.Entry<String, Double> neighbour : weights.entrySet())
+        {
+            if (neighbour.getValue() > 0)
+                neighbours.add(neighbour);
+        }
+        Collections.sort(neighbours, new Comparator<Map.Entry<String, Double>>()
+        {
+            @Override
+            public int compare(Map.Entry<String, Double> n1, Map.Entry<String, Double> n2)
+            {
+                int c = Double.compare(n2.getValue(), n1.getValue());
+                return c != 0 ? c : n1.getKey().compareTo(n2.getKey());
+            }
+        });
+        return neighbours.size() > this.k ? neighbours.subList(0, this.k) : neighbours;
+    }
+
+    /**
+     * <p>
+     * Commits the updated vertices if the graph is transactional
+     * </p>
+     */
+    private void commit()
+    {
+        if (this.graph instanceof TransactionalGraph)
+            ((TransactionalGraph) this.graph).commit();
+    }
+}
@@ -0,0 +1,143 @@
+package com.gsoc.freebase.importer.query;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.types.TypeDictionary;
+import com.tinkerpop.blueprints.Vertex;
+
+/**
+ * <p>
+ * Snapshot of the vertex of a topic
+ * </p>
+ * <p>
+ * It doesn't reference the vertex, so it can be cached and used out of the transaction which read it
+ * </p>
+ */
+public class Topic
+{
+    /**
+     * The identifier of the vertex
+     */
+    private Object id;
+
+    /**
+     * The URI of the topic
+     */
+    private String uri;
+
+    /**
+     * The properties of the vertex
+     */
+    private Map<String, Object> properties;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     * <p>
+     * The interned types of the vertex are kept as their ids
+     * </p>
+     *
+     * @param vertex the vertex of the topic
+     */
+    public Topic(Vertex vertex)
+    {
+        this(vertex, null);
+    }
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     * <p>
+     * The ids of the interned types of the vertex are decoded, so the {@code ImporterConstants.VERTEX_TYPES_PROPERTY}
+     * property is the list of the type URIs
+     * </p>
+     *
+     * @param vertex the vertex of the topic
+     * @param typeDictionary the type dictionary of the graph or null to keep the ids of the types
+     */
+    public Topic(Vertex vertex, TypeDictionary typeDictionary)
+    {
+        this.id = vertex.getId();
+        this.uri = vertex.getProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY);
+        Map<String, Object> properties = new LinkedHashMap<String, Object>();
+        for (String key : vertex.getPropertyKeys())
+        {
+            Object value = vertex.getProperty(key);
+            if (typeDictionary != null && value instanceof int[]
+                    && key.equals(ImporterConstants.VERTEX_TYPES_PROPERTY))
+                value = Collections.unmodifiableList(typeDictionary.decode((int[]) value));
+            properties.put(key, value);
+        }
+        this.properties = Collections.unmodifiableMap(properties);
+    }
+
+    /**
+     * @return the identifier of the vertex
+     */
+    public Object getId()
+    {
+        return this.id;
+    }
+
+    /**
+     * @return the URI of the topic
+     */
+    public String getUri()
+    {
+        return this.uri;
+    }
+
+    /**
+     * @return the lower case name of the topic (null if it has no name)
+     */
+    public String getName()
+    {
+        return (String) this.properties.get(ImporterConstants.VERTEX_NAME_LC_PROPERTY);
+    }
+
+    /**
+     * <p>
+     * Gets the types of the topic, whether they are interned or stored as URIs (graphs imported without interning the
+     * types)
+     * </p>
+     *
+     * @return the type URIs (empty if the topic has no types)
+     * @throws IllegalStateException if the types are interned and the topic was read without the type dictionary
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getTypes()
+    {
+        Object types = this.properties.get(ImporterConstants.VERTEX_TYPES_PROPERTY);
+        if (types instanceof int[])
+            throw new IllegalStateException("The types of " + this.uri + " are interned: read the topic with the "
+                    + "type dictionary of the graph");
+        if (types == null)
+            types = this.properties.get(ImporterConstants.RDF_TYPE);
+        if (types instanceof String[])
+            return Collections.unmodifiableList(Arrays.asList((String[]) types));
+        if (types instanceof List)
+            return (List<String>) types;
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return the properties of the vertex
+     */
+    public Map<String, Object> getProperties()
+    {
+        return this.properties;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.uri;
+    }
+}
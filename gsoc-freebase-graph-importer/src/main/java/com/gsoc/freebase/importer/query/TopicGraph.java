@@ -0,0 +1,372 @@
+package com.gsoc.freebase.importer.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.types.TypeDictionary;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+
+/**
+ * <p>
+ * Read API over an imported graph
+ * </p>
+ * <p>
+ * It looks up the topics by URI, their neighbours and the edges between two topics, caching the vertices, the
+ * adjacency lists and the edges read in size bounded LRU caches. The lookups of the disambiguation of entities hit a
+ * small set of topics again and again, so most of them are served from the caches without touching the store. The
+ * cached values are snapshots, so they aren't updated if the graph changes: use {@code invalidate} after writing
+ * </p>
+ * <p>
+ * The edges are weighted with an {@code EdgeWeightFormula}, by default the number of properties connecting the topics.
+ * If the top neighbours were materialized by a {@code TopNeighboursBuilder}, {@code topNeighbours} reads them from the
+ * topic instead of its edges
+ * </p>
+ * <p>
+ * If the importer interned the types of the topics (see {@code TypeDictionary}), the topics read with the type
+ * dictionary of the graph directory (see {@code setTypeDictionary}) have the URIs of their types instead of their ids
+ * </p>
+ */
+public class TopicGraph
+{
+    private static Logger logger = LoggerFactory.getLogger(TopicGraph.class);
+
+    /**
+     * Default number of topics cached
+     */
+    public static final int DEFAULT_VERTEX_CACHE_SIZE = 100000;
+
+    /**
+     * Default number of neighbours cached (the adjacency lists are weighted by their size)
+     */
+    public static final int DEFAULT_ADJACENCY_CACHE_SIZE = 1000000;
+
+    /**
+     * Default number of pairs of topics whose edges are cached
+     */
+    public static final int DEFAULT_EDGE_CACHE_SIZE = 100000;
+
+    /**
+     * Orders the neighbours by weight (the heaviest first) and URI
+     */
+    private static final Comparator<Neighbour> BY_WEIGHT = new Comparator<Neighbour>()
+    {
+        @Override
+        public int compare(Neighbour n1, Neighbour n2)
+        {
+            int c = Double.compare(n2.getWeight(), n1.getWeight());
+            return c != 0 ? c : n1.getUri().compareTo(n2.getUri());
+        }
+    };
+
+    /**
+     * The graph
+     */
+    private Graph graph;
+
+    /**
+     * Topics by URI
+     */
+    private LruCache<String, Topic> vertexCache;
+
+    /**
+     * Neighbours sorted by weight by URI and label
+     */
+    private LruCache<String, List<Neighbour>> adjacencyCache;
+
+    /**
+     * Properties of the edges between two topics by label
+     */
+    private LruCache<String, Map<String, Map<String, Object>>> edgeCache;
+
+    /**
+     * The formula weighting the edges
+     */
+    private EdgeWeightFormula formula;
+
+    /**
+     * The type dictionary decoding the types of the topics (null to keep the ids of the types)
+     */
+    private TypeDictionary typeDictionary;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     * <p>
+     * Uses the default sizes of the caches
+     * </p>
+     *
+     * @param graph the imported graph
+     */
+    public TopicGraph(Graph graph)
+    {
+        this(graph, DEFAULT_VERTEX_CACHE_SIZE, DEFAULT_ADJACENCY_CACHE_SIZE, DEFAULT_EDGE_CACHE_SIZE);
+    }
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param graph the imported graph
+     * @param vertexCacheSize the number of topics cached
+     * @param adjacencyCacheSize the number of neighbours cached
+     * @param edgeCacheSize the number of pairs of topics whose edges are cached
+     */
+    public TopicGraph(Graph graph, int vertexCacheSize, int adjacencyCacheSize, int edgeCacheSize)
+    {
+        this.graph = graph;
+        this.vertexCache = new LruCache<String, Topic>(vertexCacheSize);
+        this.adjacencyCache = new LruCache<String, List<Neighbour>>(adjacencyCacheSize)
+        {
+            @Override
+            protected long weight(List<Neighbour> neighbours)
+            {
+                return Math.max(1, neighbours.size());
+            }
+        };
+        this.edgeCache = new LruCache<String, Map<String, Map<String, Object>>>(edgeCacheSize);
+        this.formula = new EdgeWeightFormula();
+    }
+
+    /**
+     * <p>
+     * Sets the formula weighting the edges. The cached neighbours are removed
+     * </p>
+     *
+     * @param formula the {@code EdgeWeightFormula}
+     */
+    public void setEdgeWeightFormula(EdgeWeightFormula formula)
+    {
+        this.formula = formula;
+        this.adjacencyCache.clear();
+    }
+
+    /**
+     * <p>
+     * Sets the type dictionary used to decode the types of the topics, usually the one of the graph directory read
+     * with {@code TypeDictionary.read(new File(directory, TypeDictionary.FILE_NAME))}. The cached topics are removed
+     * </p>
+     *
+     * @param typeDictionary the {@code TypeDictionary} or null to keep the ids of the types
+     */
+    public void setTypeDictionary(TypeDictionary typeDictionary)
+    {
+        this.typeDictionary = typeDictionary;
+        this.vertexCache.clear();
+    }
+
+    /**
+     * <p>
+     * Gets a topic
+     * </p>
+     *
+     * @param uri the URI of the topic
+     * @return the topic or null if there is no topic with that URI
+     */
+    public Topic getTopic(String uri)
+    {
+        Topic topic = this.vertexCache.get(uri);
+        if (topic != null)
+            return topic;
+
+        Iterator<Vertex> it = this.graph.getVertices(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY, uri).iterator();
+        if (!it.hasNext())
+            return null;
+        topic = new Topic(it.next(), this.typeDictionary);
+        this.vertexCache.put(uri, topic);
+        return topic;
+    }
+
+    /**
+     * <p>
+     * Gets the neighbours of a topic, the heaviest first
+     * </p>
+     *
+     * @param uri the URI of the topic
+     * @param label the label of the edges ({@code ImporterConstants.DIRECT_CONNECTION_EDGE_LABEL} or
+     *            {@code ImporterConstants.MEDIATED_CONNECTION_EDGE_LABEL}) or null for both
+     * @param topK the maximum number of neighbours (0 for all of them)
+     * @return the neighbours (empty if there is no topic with that URI)
+     */
+    public List<Neighbour> neighbours(String uri, String label, int topK)
+    {
+        String key = uri + " " + (label != null ? label : "*");
+        List<Neighbour> neighbours = this.adjacencyCache.get(key);
+        if (neighbours == null)
+        {
+            Topic topic = this.getTopic(uri);
+            if (topic == null)
+                return Collections.emptyList();
+
+            neighbours = this.readNeighbours(this.graph.getVertex(topic.getId()), label);
+            this.adjacencyCache.put(key, neighbours);
+        }
+        return topK > 0 && topK < neighbours.size() ? neighbours.subList(0, topK) : neighbours;
+    }
+
+    /**
+     * <p>
+     * Gets the heaviest neighbours of a topic materialized by a {@code TopNeighboursBuilder}
+     * </p>
+     * <p>
+     * The neighbours are read with the topic, so they cost a single read at most. They don't have a label (the
+     * weights of the edges of both labels are added up) nor features
+     * </p>
+     *
+     * @param uri the URI of the topic
+     * @param topK the maximum number of neighbours (0 for all the stored ones)
+     * @return the neighbours or null if they weren't materialized (empty if there is no topic with that URI)
+     */
+    public List<Neighbour> topNeighbours(String uri, int topK)
+    {
+        Topic topic = this.getTopic(uri);
+        if (topic == null)
+            return Collections.emptyList();
+
+        String[] uris = (String[]) topic.getProperties().get(ImporterConstants.VERTEX_TOP_NEIGHBOURS_PROPERTY);
+        double[] weights = (double[]) topic.getProperties().get(
+                ImporterConstants.VERTEX_TOP_NEIGHBOUR_WEIGHTS_PROPERTY);
+        if (uris == null || weights == null)
+            return null;
+
+        int size = topK > 0 ? Math.min(topK, uris.length) : uris.length;
+        List<Neighbour> neighbours = new ArrayList<Neighbour>(size);
+        Map<String, Object> features = Collections.emptyMap();
+        for (int i = 0; i < size; i++)
+            neighbours.add(new Neighbour(uris[i], null, weights[i], features));
+        return neighbours;
+    }
+
+    /**
+     * <p>
+     * Gets the properties of the edges between two topics
+     * </p>
+     *
+     * @param uri1 the URI of a topic
+     * @param uri2 the URI of the other topic
+     * @return the properties of the edges by label (empty if the topics aren't connected)
+     */
+    public Map<String, Map<String, Object>> edgeFeatures(String uri1, String uri2)
+    {
+        String key = uri1.compareTo(uri2) <= 0 ? uri1 + "|" + uri2 : uri2 + "|" + uri1;
+        Map<String, Map<String, Object>> features = this.edgeCache.get(key);
+        if (features != null)
+            return features;
+
+        /* The index key of an edge has the URIs in the order of its vertices */
+        features = new LinkedHashMap<String, Map<String, Object>>();
+        for (String edgeKey : new String[] { uri1 + "|" + uri2, uri2 + "|" + uri1 })
+        {
+            for (Edge edge : this.graph.getEdges(ImporterConstants.EDGE_KEY_VERTICES_CONNECTED_PROPERTY, edgeKey))
+            {
+                if (!features.containsKey(edge.getLabel()))
+                    features.put(edge.getLabel(), this.properties(edge));
+            }
+            if (uri1.equals(uri2))
+                break;
+        }
+        features = Collections.unmodifiableMap(features);
+        this.edgeCache.put(key, features);
+        return features;
+    }
+
+    /**
+     * <p>
+     * Removes all the cached values, so the changes of the graph are seen
+     * </p>
+     */
+    public void invalidate()
+    {
+        this.vertexCache.clear();
+        this.adjacencyCache.clear();
+        this.edgeCache.clear();
+    }
+
+    /**
+     * <p>
+     * Logs the usage and the hit rates of the caches
+     * </p>
+     */
+    public void logStatistics()
+    {
+        logger.info("Topic cache: " + this.vertexCache);
+        logger.info("Neighbour cache: " + this.adjacencyCache);
+        logger.info("Edge cache: " + this.edgeCache);
+    }
+
+    /**
+     * @return the cache of the topics
+     */
+    public LruCache<String, Topic> getVertexCache()
+    {
+        return this.vertexCache;
+    }
+
+    /**
+     * @return the cache of the neighbours
+     */
+    public LruCache<String, List<Neighbour>> getAdjacencyCache()
+    {
+        return this.adjacencyCache;
+    }
+
+    /**
+     * @return the cache of the edges between two topics
+     */
+    public LruCache<String, Map<String, Map<String, Object>>> getEdgeCache()
+    {
+        return this.edgeCache;
+    }
+
+    /**
+     * <p>
+     * Reads the neighbours of a vertex from the graph
+     * </p>
+     */
+    private List<Neighbour> readNeighbours(Vertex vertex, String label)
+    {
+        List<Neighbour> neighbours = new ArrayList<Neighbour>();
+        if (vertex == null)
+            return neighbours;
+
+        Iterable<Edge> edges = label != null ? vertex.getEdges(Direction.BOTH, label) : vertex
+                .getEdges(Direction.BOTH);
+        for (Edge edge : edges)
+        {
+            Vertex other = edge.getVertex(Direction.IN);
+            if (other.getId().equals(vertex.getId()))
+                other = edge.getVertex(Direction.OUT);
+            Map<String, Object> features = this.properties(edge);
+            neighbours.add(new Neighbour((String) other.getProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY),
+                    edge.getLabel(), this.formula.weight(edge.getLabel(), features), features));
+        }
+        Collections.sort(neighbours, BY_WEIGHT);
+        return Collections.unmodifiableList(neighbours);
+    }
+
+    /**
+     * <p>
+     * Copies the properties of an edge
+     * </p>
+     */
+    private Map<String, Object> properties(Edge edge)
+    {
+        Map<String, Object> properties = new LinkedHashMap<String, Object>();
+        for (String key : edge.getPropertyKeys())
+            properties.put(key, edge.getProperty(key));
+        return Collections.unmodifiableMap(properties);
+    }
+}
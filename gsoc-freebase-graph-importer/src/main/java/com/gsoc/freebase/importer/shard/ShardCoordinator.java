@@ -0,0 +1,349 @@
+package com.gsoc.freebase.importer.shard;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gsoc.freebase.importer.main.Main;
+
+/**
+ * <p>
+ * File based coordinator of the workers of a sharded import
+ * </p>
+ * <p>
+ * The workers share a directory with a subdirectory for every shard, holding the graph store of the shard, the topics
+ * of the shard and the marker files of the phases completed by its worker. The workers wait for each other by polling
+ * the marker files, so they can run as local processes (see {@code runWorkers}) or on any machines sharing the
+ * directory, without any other service. A worker which fails writes a failure marker, which stops the rest of the
+ * workers
+ * </p>
+ * <p>
+ * The layout of the directory is:
+ * <ul>
+ * <li>shard-N/graph: the graph store with the vertices of the shard</li>
+ * <li>shard-N/topics.bin: the URIs of the topics of the shard</li>
+ * <li>shard-N/{phase}.done and shard-N/failed: the markers of the worker</li>
+ * <li>shard-N/worker.log: the output of the worker process</li>
+ * <li>shard-N/edges-M.bin: the edges aggregated from the entities of the shard owned by shard M</li>
+ * <li>relations/shard-N.edges: the edges owned by the shard, with their final counters</li>
+ * </ul>
+ * </p>
+ */
+public class ShardCoordinator
+{
+    private static Logger logger = LoggerFactory.getLogger(ShardCoordinator.class);
+
+    /**
+     * Phase importing the vertices of the shard and writing its topics
+     */
+    public static final String VERTICES_PHASE = "vertices";
+
+    /**
+     * Phase aggregating the edges of the entities of the shard and sending them to the shards owning them
+     */
+    public static final String RELATIONS_PHASE = "relations";
+
+    /**
+     * Phase adding up the edges owned by the shard
+     */
+    public static final String EDGES_PHASE = "edges";
+
+    /**
+     * Milliseconds between the checks of the markers
+     */
+    private static final long POLL_INTERVAL = 500;
+
+    /**
+     * Name of the failure marker
+     */
+    private static final String FAILED_MARKER = "failed";
+
+    /**
+     * The shared directory
+     */
+    private File directory;
+
+    /**
+     * The partitioner of the entities
+     */
+    private ShardPartitioner partitioner;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param directory the directory shared by the workers
+     * @param shards the number of shards
+     */
+    public ShardCoordinator(File directory, int shards)
+    {
+        this.directory = directory;
+        this.partitioner = new ShardPartitioner(shards);
+    }
+
+    /**
+     * @return the number of shards
+     */
+    public int getShards()
+    {
+        return this.partitioner.getShards();
+    }
+
+    /**
+     * @return the partitioner of the entities
+     */
+    public ShardPartitioner getPartitioner()
+    {
+        return this.partitioner;
+    }
+
+    /**
+     * @return the directory of a shard
+     */
+    public File getShardDirectory(int shard)
+    {
+        return new File(this.directory, "shard-" + shard);
+    }
+
+    /**
+     * @return the graph store of a shard
+     */
+    public File getGraphDirectory(int shard)
+    {
+        return new File(this.getShardDirectory(shard), "graph");
+    }
+
+    /**
+     * @return the file with the topics of a shard
+     */
+    public File getTopicsFile(int shard)
+    {
+        return new File(this.getShardDirectory(shard), "topics.bin");
+    }
+
+    /**
+     * @return the files with the topics of all the shards
+     */
+    public List<File> getTopicsFiles()
+    {
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < this.getShards(); i++)
+            files.add(this.getTopicsFile(i));
+        return files;
+    }
+
+    /**
+     * @return the directory with the relations of all the shards
+     */
+    public File getRelationsDirectory()
+    {
+        return new File(this.directory, "relations");
+    }
+
+    /**
+     * @return the file with the edges owned by a shard
+     */
+    public File getRelationsFile(int shard)
+    {
+        return new File(this.getRelationsDirectory(), "shard-" + shard + ".edges");
+    }
+
+    /**
+     * @return the files with the edges of the entities of a shard, by the shard owning them
+     */
+    public List<File> getEdgesFiles(int shard)
+    {
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < this.getShards(); i++)
+            files.add(this.getEdgesFile(shard, i));
+        return files;
+    }
+
+    /**
+     * @return the file with the edges of the entities of a shard owned by another shard
+     */
+    public File getEdgesFile(int shard, int owner)
+    {
+        return new File(this.getShardDirectory(shard), "edges-" + owner + ".bin");
+    }
+
+    /**
+     * <p>
+     * Removes the output of a previous sharded import and creates the directories of the shards
+     * </p>
+     *
+     * @throws IOException if the directory can't be cleaned
+     */
+    public void reset() throws IOException
+    {
+        FileUtils.deleteDirectory(this.directory);
+        for (int i = 0; i < this.getShards(); i++)
+            FileUtils.forceMkdir(this.getShardDirectory(i));
+        FileUtils.forceMkdir(this.getRelationsDirectory());
+    }
+
+    /**
+     * <p>
+     * Records that the worker of a shard completed a phase
+     * </p>
+     *
+     * @param shard the shard
+     * @param phase the phase
+     * @throws IOException if the marker can't be written
+     */
+    public void markDone(int shard, String phase) throws IOException
+    {
+        FileUtils.touch(new File(this.getShardDirectory(shard), phase + ".done"));
+    }
+
+    /**
+     * <p>
+     * Records that the worker of a shard failed, so the rest of the workers stop waiting for it
+     * </p>
+     *
+     * @param shard the shard
+     * @param cause the cause of the failure
+     */
+    public void markFailed(int shard, Throwable cause)
+    {
+        try
+        {
+            FileUtils.writeStringToFile(new File(this.getShardDirectory(shard), FAILED_MARKER), String.valueOf(cause),
+                    "UTF-8");
+        }
+        catch (IOException e)
+        {
+            logger.error("Unable to record the failure of shard " + shard, e);
+        }
+    }
+
+    /**
+     * <p>
+     * Waits until the workers of all the shards complete a phase
+     * </p>
+     *
+     * @param phase the phase
+     * @throws InterruptedException if the thread is interrupted while waiting
+     * @throws IllegalStateException if a worker failed
+     */
+    public void awaitAll(String phase) throws InterruptedException
+    {
+        while (true)
+        {
+            int done = 0;
+            for (int i = 0; i < this.getShards(); i++)
+            {
+                File failed = new File(this.getShardDirectory(i), FAILED_MARKER);
+                if (failed.exists())
+                    throw new IllegalStateException("The worker of shard " + i + " failed: " + this.read(failed));
+                if (new File(this.getShardDirectory(i), phase + ".done").exists())
+                    done++;
+            }
+            if (done == this.getShards())
+                return;
+            Thread.sleep(POLL_INTERVAL);
+        }
+    }
+
+    /**
+     * <p>
+     * Runs a worker process for every shard and waits for them
+     * </p>
+     * <p>
+     * The workers run the {@code Main} class with the same arguments and JVM options as this process, plus the shard
+     * they import, and their output goes to the worker.log file of their shard. If a worker exits with an error, it is
+     * marked as failed so the rest of the workers stop
+     * </p>
+     *
+     * @param args the arguments of the import
+     * @throws IOException if a worker can't be started
+     * @throws InterruptedException if the thread is interrupted while waiting
+     * @throws IllegalStateException if a worker failed
+     */
+    public void runWorkers(String[] args) throws IOException, InterruptedException
+    {
+        List<String> command = new ArrayList<String>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Main.class.getName());
+        command.addAll(Arrays.asList(args));
+
+        List<Process> workers = new ArrayList<Process>();
+        try
+        {
+            for (int i = 0; i < this.getShards(); i++)
+            {
+                List<String> workerCommand = new ArrayList<String>(command);
+                workerCommand.add("--shard");
+                workerCommand.add(String.valueOf(i));
+                File log = new File(this.getShardDirectory(i), "worker.log");
+                workers.add(new ProcessBuilder(workerCommand).redirectErrorStream(true).redirectOutput(log).start());
+                logger.info("Worker of shard " + i + " started (output in " + log.getAbsolutePath() + ")");
+            }
+
+            int running = workers.size();
+            boolean[] finished = new boolean[workers.size()];
+            String failure = null;
+            while (running > 0)
+            {
+                Thread.sleep(POLL_INTERVAL);
+                for (int i = 0; i < workers.size(); i++)
+                {
+                    if (finished[i])
+                        continue;
+                    try
+                    {
+                        int exit = workers.get(i).exitValue();
+                        finished[i] = true;
+                        running--;
+                        if (exit != 0)
+                        {
+                            this.markFailed(i, new IllegalStateException("Exit code " + exit));
+                            if (failure == null)
+                                failure = "The worker of shard " + i + " exited with code " + exit + " (see "
+                                        + new File(this.getShardDirectory(i), "worker.log").getAbsolutePath() + ")";
+                        }
+                    }
+                    catch (IllegalThreadStateException e)
+                    {
+                        /* Still running */
+                    }
+                }
+            }
+            if (failure != null)
+                throw new IllegalStateException(failure);
+        }
+        finally
+        {
+            for (Process worker : workers)
+                worker.destroy();
+        }
+    }
+
+    /**
+     * <p>
+     * Reads a marker
+     * </p>
+     */
+    private String read(File marker)
+    {
+        try
+        {
+            return FileUtils.readFileToString(marker, "UTF-8");
+        }
+        catch (IOException e)
+        {
+            return "unknown cause";
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.gsoc.freebase.importer.shard;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.gsoc.freebase.importer.predicates.PredicateMetadata;
+
+/**
+ * <p>
+ * Edge of a sharded import, with its counters added up by the workers
+ * </p>
+ * <p>
+ * The workers don't create the edges: they add up the counters of the predicates relating every pair of topics (see
+ * {@code FreebaseGenerateRelationsConsumer}), so the merge inserts every edge once with its final properties. An edge
+ * is identified by its label and its unordered pair of topics, and it keeps the direction it is seen with first. It
+ * belongs to the shard of the smaller URI of its topics (see {@code getOwner})
+ * </p>
+ */
+public class ShardEdge
+{
+    /**
+     * The label of the edge
+     */
+    private String label;
+
+    /**
+     * The URI of the outgoing topic
+     */
+    private String out;
+
+    /**
+     * The URI of the incoming topic
+     */
+    private String in;
+
+    /**
+     * The last mediator connecting the topics (null for the direct relations)
+     */
+    private String connectedBy;
+
+    /**
+     * The values of the edge keys of the predicates relating the topics
+     */
+    private Map<String, Integer> counters;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param label the label of the edge
+     * @param out the URI of the outgoing topic
+     * @param in the URI of the incoming topic
+     */
+    public ShardEdge(String label, String out, String in)
+    {
+        this.label = label;
+        this.out = out;
+        this.in = in;
+        this.counters = new LinkedHashMap<String, Integer>();
+    }
+
+    /**
+     * @return the label of the edge
+     */
+    public String getLabel()
+    {
+        return this.label;
+    }
+
+    /**
+     * @return the URI of the outgoing topic
+     */
+    public String getOut()
+    {
+        return this.out;
+    }
+
+    /**
+     * @return the URI of the incoming topic
+     */
+    public String getIn()
+    {
+        return this.in;
+    }
+
+    /**
+     * @return the smaller URI of the topics, whose shard owns the edge
+     */
+    public String getOwner()
+    {
+        return this.out.compareTo(this.in) <= 0 ? this.out : this.in;
+    }
+
+    /**
+     * @return the key of the edge, the same in both directions
+     */
+    public String getKey()
+    {
+        return key(this.label, this.out, this.in);
+    }
+
+    /**
+     * @return the last mediator connecting the topics or null for a direct relation
+     */
+    public String getConnectedBy()
+    {
+        return this.connectedBy;
+    }
+
+    /**
+     * @param connectedBy the mediator connecting the topics
+     */
+    public void setConnectedBy(String connectedBy)
+    {
+        this.connectedBy = connectedBy;
+    }
+
+    /**
+     * @return the values of the edge keys
+     */
+    public Map<String, Integer> getCounters()
+    {
+        return this.counters;
+    }
+
+    /**
+     * <p>
+     * Adds one to the edge keys of a predicate relating the topics
+     * </p>
+     *
+     * @param predicate the predicate
+     */
+    public void increment(PredicateMetadata predicate)
+    {
+        for (String key : predicate.getEdgeKeys())
+            this.add(key, 1);
+    }
+
+    /**
+     * <p>
+     * Adds the counters of the same edge aggregated somewhere else. Its mediator, if any, replaces the current one
+     * </p>
+     *
+     * @param edge the edge with the same key
+     */
+    public void add(ShardEdge edge)
+    {
+        for (Map.Entry<String, Integer> counter : edge.counters.entrySet())
+            this.add(counter.getKey(), counter.getValue());
+        if (edge.connectedBy != null)
+            this.connectedBy = edge.connectedBy;
+    }
+
+    /**
+     * <p>
+     * Adds a value to a counter
+     * </p>
+     */
+    private void add(String key, int value)
+    {
+        Integer current = this.counters.get(key);
+        this.counters.put(key, current == null ? value : current + value);
+    }
+
+    /**
+     * <p>
+     * Writes the edge
+     * </p>
+     *
+     * @param output the output, finished by {@code writeEnd}
+     * @throws IOException if the edge can't be written
+     */
+    public void write(DataOutputStream output) throws IOException
+    {
+        output.writeBoolean(true);
+        output.writeUTF(this.label);
+        output.writeUTF(this.out);
+        output.writeUTF(this.in);
+        output.writeUTF(this.connectedBy != null ? this.connectedBy : "");
+        output.writeInt(this.counters.size());
+        for (Map.Entry<String, Integer> counter : this.counters.entrySet())
+        {
+            output.writeUTF(counter.getKey());
+            output.writeInt(counter.getValue());
+        }
+    }
+
+    /**
+     * <p>
+     * Writes the end of a sequence of edges
+     * </p>
+     *
+     * @param output the output
+     * @throws IOException if the end can't be written
+     */
+    public static void writeEnd(DataOutputStream output) throws IOException
+    {
+        output.writeBoolean(false);
+    }
+
+    /**
+     * <p>
+     * Reads an edge written by {@code write}
+     * </p>
+     *
+     * @param input the input
+     * @return the edge or null at the end of the sequence
+     * @throws IOException if the edge can't be read
+     */
+    public static ShardEdge read(DataInputStream input) throws IOException
+    {
+        if (!input.readBoolean())
+            return null;
+        ShardEdge edge = new ShardEdge(input.readUTF(), input.readUTF(), input.readUTF());
+        String connectedBy = input.readUTF();
+        if (!connectedBy.isEmpty())
+            edge.connectedBy = connectedBy;
+        int size = input.readInt();
+        for (int i = 0; i < size; i++)
+            edge.counters.put(input.readUTF(), input.readInt());
+        return edge;
+    }
+
+    /**
+     * <p>
+     * Gets the key of an edge
+     * </p>
+     *
+     * @param label the label of the edge
+     * @param first the URI of a topic
+     * @param second the URI of the other topic
+     * @return the key, which doesn't depend on the order of the topics
+     */
+    public static String key(String label, String first, String second)
+    {
+        return first.compareTo(second) <= 0 ? label + " " + first + "|" + second : label + " " + second + "|" + first;
+    }
+}
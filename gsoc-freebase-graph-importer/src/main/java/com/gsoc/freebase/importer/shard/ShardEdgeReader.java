@@ -0,0 +1,55 @@
+package com.gsoc.freebase.importer.shard;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * <p>
+ * Reader of an edge file written by {@code ShardEdgeWriter}
+ * </p>
+ */
+public class ShardEdgeReader implements Closeable
+{
+    /**
+     * The input
+     */
+    private DataInputStream input;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param file the file to read
+     * @throws IOException if the file can't be opened
+     */
+    public ShardEdgeReader(File file) throws IOException
+    {
+        this.input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file),
+                65536)));
+    }
+
+    /**
+     * <p>
+     * Reads the next edge
+     * </p>
+     *
+     * @return the edge or null at the end of the file
+     * @throws IOException if the edge can't be read
+     */
+    public ShardEdge read() throws IOException
+    {
+        return ShardEdge.read(this.input);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.input.close();
+    }
+}
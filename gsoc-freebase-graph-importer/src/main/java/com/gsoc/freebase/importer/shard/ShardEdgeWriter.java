@@ -0,0 +1,131 @@
+package com.gsoc.freebase.importer.shard;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * <p>
+ * Writer of the edge files of a sharded import
+ * </p>
+ * <p>
+ * Every edge is written to the file of the shard owning it (see {@code ShardEdge}), so a worker can send the edges
+ * aggregated from its entities to the workers which add up their final counters. Read the files with
+ * {@code ShardEdgeReader}
+ * </p>
+ */
+public class ShardEdgeWriter implements Closeable
+{
+    /**
+     * The outputs, by shard
+     */
+    private DataOutputStream[] outputs;
+
+    /**
+     * The partitioner choosing the output of an edge (null with a single output)
+     */
+    private ShardPartitioner partitioner;
+
+    /**
+     * Number of edges written
+     */
+    private long edges;
+
+    /**
+     * <p>
+     * Creates a writer of a single file
+     * </p>
+     *
+     * @param file the file to write
+     * @throws IOException if the file can't be created
+     */
+    public ShardEdgeWriter(File file) throws IOException
+    {
+        this(Collections.singletonList(file), null);
+    }
+
+    /**
+     * <p>
+     * Creates a writer of a file for every shard
+     * </p>
+     *
+     * @param files the files to write, by shard
+     * @param partitioner the partitioner of the shards (null with a single file)
+     * @throws IOException if a file can't be created
+     */
+    public ShardEdgeWriter(List<File> files, ShardPartitioner partitioner) throws IOException
+    {
+        this.outputs = new DataOutputStream[files.size()];
+        this.partitioner = partitioner;
+        try
+        {
+            for (int i = 0; i < this.outputs.length; i++)
+                this.outputs[i] = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(
+                        new FileOutputStream(files.get(i)), 65536)));
+        }
+        catch (IOException e)
+        {
+            for (DataOutputStream output : this.outputs)
+                IOUtils.closeQuietly(output);
+            throw e;
+        }
+    }
+
+    /**
+     * <p>
+     * Writes an edge to the file of the shard owning it
+     * </p>
+     *
+     * @param edge the edge
+     * @throws IOException if the edge can't be written
+     */
+    public void write(ShardEdge edge) throws IOException
+    {
+        int shard = this.partitioner != null ? this.partitioner.shard(edge.getOwner()) : 0;
+        edge.write(this.outputs[shard]);
+        this.edges++;
+    }
+
+    /**
+     * @return the number of edges written
+     */
+    public long getEdges()
+    {
+        return this.edges;
+    }
+
+    /**
+     * <p>
+     * Ends and closes the files
+     * </p>
+     */
+    @Override
+    public void close() throws IOException
+    {
+        IOException failure = null;
+        for (DataOutputStream output : this.outputs)
+        {
+            try
+            {
+                ShardEdge.writeEnd(output);
+                output.close();
+            }
+            catch (IOException e)
+            {
+                IOUtils.closeQuietly(output);
+                if (failure == null)
+                    failure = e;
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+}
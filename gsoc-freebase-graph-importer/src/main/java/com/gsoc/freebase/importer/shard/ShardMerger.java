@@ -0,0 +1,209 @@
+package com.gsoc.freebase.importer.shard;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.impl.GraphBackend;
+import com.gsoc.freebase.importer.names.NameIndexWriter;
+import com.gsoc.freebase.importer.types.TypeDictionary;
+import com.gsoc.freebase.importer.types.TypeIndexWriter;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.KeyIndexableGraph;
+import com.tinkerpop.blueprints.TransactionalGraph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.util.wrappers.batch.BatchGraph;
+
+/**
+ * <p>
+ * Merges the shards of a sharded import into the final graph
+ * </p>
+ * <p>
+ * The vertices of the graph stores of the shards are copied into the final graph and its name index is written. The
+ * types interned by the workers are translated to the type dictionary of the final graph, whose type index is written
+ * too. Then the edges of the relations files of the shards, already added up by the workers (see {@code ShardEdge}),
+ * are inserted with their final properties. Every edge is inserted once and its topics are found by their URI in the
+ * vertices copied, so the merge is a batch insert (see {@code BatchGraph}) without any index lookup
+ * </p>
+ */
+public class ShardMerger
+{
+    private static Logger logger = LoggerFactory.getLogger(ShardMerger.class);
+
+    /**
+     * Number of vertices or edges inserted in a transaction
+     */
+    private static final int COMMIT_INTERVAL = 10000;
+
+    /**
+     * The coordinator of the workers
+     */
+    private ShardCoordinator coordinator;
+
+    /**
+     * The graph implementation of the stores
+     */
+    private GraphBackend backend;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param coordinator the coordinator of the workers
+     * @param backend the graph implementation of the stores
+     */
+    public ShardMerger(ShardCoordinator coordinator, GraphBackend backend)
+    {
+        this.coordinator = coordinator;
+        this.backend = backend;
+    }
+
+    /**
+     * <p>
+     * Inserts the vertices and the edges of all the shards into the final graph
+     * </p>
+     *
+     * @param location the location of the final graph
+     * @param buildNameIndex whether to write the name index of the final graph
+     * @return the number of vertices copied
+     * @throws IOException if a relations file, the name index or the type dictionary and index can't be read or
+     *             written
+     */
+    public long merge(File location, boolean buildNameIndex) throws IOException
+    {
+        long start = System.currentTimeMillis();
+        long vertices = 0;
+        long edges = 0;
+        Graph graph = this.backend.open(location);
+        TypeDictionary types = null;
+        try
+        {
+            if (graph.getFeatures().supportsVertexKeyIndex)
+            {
+                KeyIndexableGraph keyIndexableGraph = (KeyIndexableGraph) graph;
+                if (!keyIndexableGraph.getIndexedKeys(Vertex.class).contains(
+                        ImporterConstants.VERTEX_ENTITY_URI_PROPERTY))
+                    keyIndexableGraph.createKeyIndex(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY, Vertex.class);
+                this.commit(graph);
+            }
+            if (graph.getFeatures().supportsEdgeKeyIndex)
+            {
+                KeyIndexableGraph keyIndexableGraph = (KeyIndexableGraph) graph;
+                if (!keyIndexableGraph.getIndexedKeys(Edge.class).contains(
+                        ImporterConstants.EDGE_KEY_VERTICES_CONNECTED_PROPERTY))
+                    keyIndexableGraph.createKeyIndex(ImporterConstants.EDGE_KEY_VERTICES_CONNECTED_PROPERTY,
+                            Edge.class);
+                this.commit(graph);
+            }
+
+            /* The batch graph keeps the vertices by URI, so the edges find their topics without index lookups */
+            BatchGraph<?> batchGraph = BatchGraph.wrap(graph, COMMIT_INTERVAL);
+            batchGraph.setVertexIdKey(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY);
+            for (int i = 0; i < this.coordinator.getShards(); i++)
+            {
+                File directory = this.coordinator.getGraphDirectory(i);
+                TypeDictionary shardTypes = TypeDictionary.read(new File(directory, TypeDictionary.FILE_NAME));
+                if (types == null && shardTypes.size() > 0)
+                    types = TypeDictionary.open(new File(location, TypeDictionary.FILE_NAME));
+
+                Graph shard = this.backend.open(directory);
+                try
+                {
+                    for (Vertex vertex : shard.getVertices())
+                    {
+                        Vertex copy = batchGraph.addVertex(vertex.getProperty(
+                                ImporterConstants.VERTEX_ENTITY_URI_PROPERTY));
+                        for (String key : vertex.getPropertyKeys())
+                        {
+                            if (key.equals(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY))
+                                continue;
+                            Object value = vertex.getProperty(key);
+                            if (key.equals(ImporterConstants.VERTEX_TYPES_PROPERTY))
+                                value = types.encode(shardTypes.decode((int[]) value));
+                            copy.setProperty(key, value);
+                        }
+                        vertices++;
+                    }
+                }
+                finally
+                {
+                    shard.shutdown();
+                }
+            }
+
+            for (int i = 0; i < this.coordinator.getShards(); i++)
+                edges += this.insertEdges(batchGraph, this.coordinator.getRelationsFile(i));
+            batchGraph.commit();
+
+            if (buildNameIndex)
+                NameIndexWriter.forGraph(graph).write(new File(location, NameIndexWriter.FILE_NAME));
+            if (types != null)
+                TypeIndexWriter.forGraph(graph).write(new File(location, TypeIndexWriter.FILE_NAME));
+        }
+        finally
+        {
+            if (types != null)
+                types.close();
+            graph.shutdown();
+        }
+
+        logger.info(vertices + " vertices and " + edges + " edges of " + this.coordinator.getShards()
+                + " shards merged. Duration: " + (System.currentTimeMillis() - start) / 1000 + " seconds");
+        return vertices;
+    }
+
+    /**
+     * <p>
+     * Inserts the edges of the relations file of a shard
+     * </p>
+     *
+     * @return the number of edges inserted
+     */
+    private long insertEdges(BatchGraph<?> batchGraph, File file) throws IOException
+    {
+        long edges = 0;
+        ShardEdgeReader reader = new ShardEdgeReader(file);
+        try
+        {
+            ShardEdge edge;
+            while ((edge = reader.read()) != null)
+            {
+                Vertex out = batchGraph.getVertex(edge.getOut());
+                Vertex in = batchGraph.getVertex(edge.getIn());
+                if (out == null || in == null)
+                    throw new IllegalStateException("The edge " + edge.getKey() + " references a topic of no shard");
+
+                Edge e = batchGraph.addEdge(null, out, in, edge.getLabel());
+                e.setProperty(ImporterConstants.EDGE_KEY_VERTICES_CONNECTED_PROPERTY, edge.getOut() + "|"
+                        + edge.getIn());
+                if (edge.getConnectedBy() != null)
+                    e.setProperty("connected-by", edge.getConnectedBy());
+                for (Map.Entry<String, Integer> counter : edge.getCounters().entrySet())
+                    e.setProperty(counter.getKey(), counter.getValue());
+                edges++;
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return edges;
+    }
+
+    /**
+     * <p>
+     * Commits the graph if it is transactional
+     * </p>
+     */
+    private void commit(Graph graph)
+    {
+        if (graph instanceof TransactionalGraph)
+            ((TransactionalGraph) graph).commit();
+    }
+}
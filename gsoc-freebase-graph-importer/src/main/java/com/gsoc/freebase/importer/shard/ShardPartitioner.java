@@ -0,0 +1,84 @@
+package com.gsoc.freebase.importer.shard;
+
+import com.gsoc.freebase.importer.binary.MidCodec;
+import com.gsoc.freebase.importer.model.Entity;
+import com.gsoc.freebase.importer.producer.EntityFilter;
+
+/**
+ * <p>
+ * Partitions the entities in shards by the hash of their mid
+ * </p>
+ * <p>
+ * The mids are hashed from their numeric code (see {@code MidCodec}), so the partition doesn't depend on the platform,
+ * and mixed so the consecutive mids of the dumps spread over all the shards
+ * </p>
+ */
+public class ShardPartitioner
+{
+    /**
+     * Multiplier mixing the bits of the hashes (the 64 bits golden ratio)
+     */
+    private static final long MIX = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Number of shards
+     */
+    private int shards;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param shards the number of shards
+     */
+    public ShardPartitioner(int shards)
+    {
+        if (shards < 1)
+            throw new IllegalArgumentException("The number of shards must be positive: " + shards);
+        this.shards = shards;
+    }
+
+    /**
+     * @return the number of shards
+     */
+    public int getShards()
+    {
+        return this.shards;
+    }
+
+    /**
+     * <p>
+     * Gets the shard of an entity
+     * </p>
+     *
+     * @param uri the URI of the entity
+     * @return the shard, from 0 to the number of shards - 1
+     */
+    public int shard(String uri)
+    {
+        long code = MidCodec.encode(uri);
+        long hash = (code != MidCodec.NOT_A_MID ? code : uri.hashCode()) * MIX;
+        return (int) ((hash >>> 33) % this.shards);
+    }
+
+    /**
+     * <p>
+     * Gets a filter accepting the entities of a shard
+     * </p>
+     *
+     * @param shard the shard
+     * @return the {@code EntityFilter}
+     */
+    public EntityFilter filter(final int shard)
+    {
+        return new EntityFilter()
+        {
+            @Override
+            public boolean accept(Entity entity)
+            {
+                return shard(entity.getUri()) == shard;
+            }
+        };
+    }
+}
@@ -0,0 +1,282 @@
+package com.gsoc.freebase.importer.shard;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.consumer.impl.RelationsStatistics;
+import com.gsoc.freebase.importer.consumer.impl.ShardRelationsConsumer;
+import com.gsoc.freebase.importer.impl.ExecutionMode;
+import com.gsoc.freebase.importer.impl.FreebaseToGraphImporter;
+import com.gsoc.freebase.importer.impl.GraphBackend;
+import com.gsoc.freebase.importer.model.Entity;
+import com.gsoc.freebase.importer.pipeline.Channel;
+import com.gsoc.freebase.importer.pipeline.Pipeline;
+import com.gsoc.freebase.importer.producer.impl.FreebaseProducerImpl;
+import com.tinkerpop.blueprints.Graph;
+
+/**
+ * <p>
+ * Worker of a sharded import
+ * </p>
+ * <p>
+ * It imports the entities of one shard in three phases:
+ * <ul>
+ * <li>Vertices: the topics of the shard are imported into the graph store of the shard and their URIs are written to
+ * the topics file of the shard</li>
+ * <li>Relations: once the topics of all the shards are written, the relations of the entities of the shard are
+ * computed and the counters of their edges added up (see {@code ShardRelationsConsumer}). Every edge is written to
+ * the edges file of the shard owning it (see {@code ShardEdge})</li>
+ * <li>Edges: once the edges of all the shards are written, the edges owned by the shard are added up and written to
+ * the relations file of the shard, with their final counters</li>
+ * </ul>
+ * The merge (see {@code ShardMerger}) inserts the edges of the relations files without looking any of them up. A
+ * worker keeps the edges it owns in memory while it adds them up, about the edges of the graph divided by the shards
+ * </p>
+ */
+public class ShardWorker
+{
+    private static Logger logger = LoggerFactory.getLogger(ShardWorker.class);
+
+    /**
+     * Capacity of the queue of the relations phase
+     */
+    private static final int RELATIONS_QUEUE_CAPACITY = 1000;
+
+    /**
+     * The coordinator of the workers
+     */
+    private ShardCoordinator coordinator;
+
+    /**
+     * The shard imported
+     */
+    private int shard;
+
+    /**
+     * The importer of the vertices, writing into the graph store of the shard
+     */
+    private FreebaseToGraphImporter importer;
+
+    /**
+     * The graph implementation of the stores
+     */
+    private GraphBackend backend;
+
+    /**
+     * The file or directory to import
+     */
+    private File input;
+
+    /**
+     * Number of edges aggregated in memory by the relations phase before writing them
+     */
+    private int maxEdges;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param coordinator the coordinator of the workers
+     * @param shard the shard to import
+     * @param importer the importer of the vertices, writing into the graph directory of the shard
+     * @param backend the graph implementation used by the importer
+     * @param input the file or directory to import
+     */
+    public ShardWorker(ShardCoordinator coordinator, int shard, FreebaseToGraphImporter importer,
+            GraphBackend backend, File input)
+    {
+        this.coordinator = coordinator;
+        this.shard = shard;
+        this.importer = importer;
+        this.backend = backend;
+        this.input = input;
+        this.maxEdges = ShardRelationsConsumer.DEFAULT_MAX_EDGES;
+    }
+
+    /**
+     * <p>
+     * Sets the number of edges aggregated in memory by the relations phase before writing them to the shards owning
+     * them. A lower value uses less memory and writes the same edges more times
+     * </p>
+     *
+     * @param maxEdges the number of edges
+     */
+    public void setMaxEdges(int maxEdges)
+    {
+        this.maxEdges = maxEdges;
+    }
+
+    /**
+     * <p>
+     * Runs the phases, waiting for the rest of the workers between them
+     * </p>
+     *
+     * @throws IllegalStateException if this or another worker fails
+     */
+    public void run()
+    {
+        try
+        {
+            this.importVertices();
+            this.coordinator.markDone(this.shard, ShardCoordinator.VERTICES_PHASE);
+            logger.info("Shard " + this.shard + ": waiting for the topics of the rest of the shards");
+            this.coordinator.awaitAll(ShardCoordinator.VERTICES_PHASE);
+
+            this.writeRelations();
+            this.coordinator.markDone(this.shard, ShardCoordinator.RELATIONS_PHASE);
+            logger.info("Shard " + this.shard + ": waiting for the edges of the rest of the shards");
+            this.coordinator.awaitAll(ShardCoordinator.RELATIONS_PHASE);
+
+            this.writeEdges();
+            this.coordinator.markDone(this.shard, ShardCoordinator.EDGES_PHASE);
+        }
+        catch (IOException e)
+        {
+            this.coordinator.markFailed(this.shard, e);
+            throw new IllegalStateException("Shard " + this.shard + " failed", e);
+        }
+        catch (InterruptedException e)
+        {
+            this.coordinator.markFailed(this.shard, e);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Shard " + this.shard + " interrupted", e);
+        }
+        catch (RuntimeException e)
+        {
+            this.coordinator.markFailed(this.shard, e);
+            throw e;
+        }
+    }
+
+    /**
+     * <p>
+     * Imports the topics of the shard and writes their URIs
+     * </p>
+     */
+    private void importVertices() throws IOException
+    {
+        this.importer.setEntityFilter(this.coordinator.getPartitioner().filter(this.shard));
+        this.importer.setGenerateGraph(true);
+        this.importer.setGenerateGraphRelations(false);
+        this.importer.setBuildNameIndex(false);
+        this.importer.setTopNeighbours(0);
+        this.importer.process();
+
+        Graph graph = this.backend.open(this.coordinator.getGraphDirectory(this.shard));
+        try
+        {
+            long topics = TopicSet.write(graph, this.coordinator.getTopicsFile(this.shard));
+            logger.info("Shard " + this.shard + ": " + topics + " topics imported");
+        }
+        finally
+        {
+            graph.shutdown();
+        }
+    }
+
+    /**
+     * <p>
+     * Writes the edges of the entities of the shard to the shards owning them
+     * </p>
+     */
+    private void writeRelations() throws IOException
+    {
+        long start = System.currentTimeMillis();
+        TopicSet topics = TopicSet.read(this.coordinator.getTopicsFiles());
+        logger.info("Shard " + this.shard + ": " + topics.size() + " topics loaded");
+
+        RelationsStatistics statistics = new RelationsStatistics();
+        ShardEdgeWriter writer = new ShardEdgeWriter(this.coordinator.getEdgesFiles(this.shard), this.coordinator
+                .getPartitioner());
+        try
+        {
+            Pipeline pipeline = new Pipeline(ImporterConstants.GENERATE_RELATIONS_STEP + "-shard" + this.shard);
+            Channel<Entity> entities = pipeline.channel("entities", RELATIONS_QUEUE_CAPACITY, new Entity(
+                    ImporterConstants.CANCEL_ENTITY_URI, null));
+            Channel<File> files = pipeline.channel("files", 1, new File(ImporterConstants.CANCEL_ENTITY_URI));
+
+            FreebaseProducerImpl producer = new FreebaseProducerImpl(entities.getQueue(), this.input);
+            producer.setEntityFilter(this.coordinator.getPartitioner().filter(this.shard));
+            ShardRelationsConsumer consumer = new ShardRelationsConsumer(new CountDownLatch(0),
+                    entities.getQueue(), topics, writer);
+            consumer.setMediatedRelationPolicy(this.importer.getMediatedRelationPolicy());
+            consumer.setStatistics(statistics);
+            consumer.setMaxEdges(this.maxEdges);
+
+            pipeline.addStage("source", Collections.singletonList(producer.newFileSource(files)), files,
+                    ExecutionMode.PLATFORM.newThreadFactory(FreebaseProducerImpl.class.getName()));
+            pipeline.addStage("decode", Collections.singletonList(producer.newFileDecoder(files)), entities,
+                    ExecutionMode.PLATFORM.newThreadFactory(FreebaseProducerImpl.class.getName() + "-file"));
+            pipeline.addStage("sink", Collections.singletonList(consumer), null, ExecutionMode.PLATFORM
+                    .newThreadFactory(ShardRelationsConsumer.class.getName()));
+            pipeline.run();
+        }
+        finally
+        {
+            writer.close();
+        }
+
+        logger.info("Shard " + this.shard + ": " + writer.getEdges() + " aggregated edges written. Mediated relations ("
+                + this.importer.getMediatedRelationPolicy() + "): " + statistics + ". Duration: "
+                + (System.currentTimeMillis() - start) / 1000 + " seconds");
+    }
+
+    /**
+     * <p>
+     * Adds up the edges owned by the shard written by all the shards
+     * </p>
+     */
+    private void writeEdges() throws IOException
+    {
+        long start = System.currentTimeMillis();
+        Map<String, ShardEdge> edges = new HashMap<String, ShardEdge>();
+        for (int i = 0; i < this.coordinator.getShards(); i++)
+        {
+            ShardEdgeReader reader = new ShardEdgeReader(this.coordinator.getEdgesFile(i, this.shard));
+            try
+            {
+                ShardEdge edge;
+                while ((edge = reader.read()) != null)
+                {
+                    ShardEdge aggregated = edges.get(edge.getKey());
+                    if (aggregated == null)
+                        edges.put(edge.getKey(), edge);
+                    else
+                        aggregated.add(edge);
+                }
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+
+        /* The file is hidden until it is complete, so the merge never reads a partial file */
+        File relations = this.coordinator.getRelationsFile(this.shard);
+        File partial = new File(relations.getParentFile(), "." + relations.getName() + ".tmp");
+        ShardEdgeWriter writer = new ShardEdgeWriter(partial);
+        try
+        {
+            for (ShardEdge edge : edges.values())
+                writer.write(edge);
+        }
+        finally
+        {
+            writer.close();
+        }
+
+        if (!partial.renameTo(relations))
+            throw new IOException("Unable to rename " + partial.getAbsolutePath() + " to " + relations.getName());
+        logger.info("Shard " + this.shard + ": " + edges.size() + " edges owned. Duration: "
+                + (System.currentTimeMillis() - start) / 1000 + " seconds");
+    }
+}
@@ -0,0 +1,186 @@
+package com.gsoc.freebase.importer.shard;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.binary.MidCodec;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+
+/**
+ * <p>
+ * Set of the URIs of the topics of all the shards
+ * </p>
+ * <p>
+ * Every worker of a sharded import writes the topics of its shard once its vertices are imported, and the workers
+ * load the topics of all the shards to decide which references of their entities are relations between topics. The
+ * mids are kept as sorted numeric codes (8 bytes per topic), so the topics of the whole dump fit in the heap of a
+ * worker
+ * </p>
+ * <p>
+ * A filtered import uses the topics of its graph in the same way (see {@code RetainedTopicsFilter})
+ * </p>
+ */
+public class TopicSet
+{
+    /**
+     * The codes of the mids, sorted
+     */
+    private long[] mids;
+
+    /**
+     * The topics whose URI isn't a mid
+     */
+    private Set<String> others;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     */
+    private TopicSet(long[] mids, Set<String> others)
+    {
+        this.mids = mids;
+        this.others = others;
+    }
+
+    /**
+     * <p>
+     * Checks if a URI is a topic
+     * </p>
+     *
+     * @param uri the URI
+     * @return true if it is the URI of a topic of any shard
+     */
+    public boolean contains(String uri)
+    {
+        long code = MidCodec.encode(uri);
+        if (code != MidCodec.NOT_A_MID)
+            return Arrays.binarySearch(this.mids, code) >= 0;
+        return this.others.contains(uri);
+    }
+
+    /**
+     * @return the number of topics
+     */
+    public long size()
+    {
+        return this.mids.length + this.others.size();
+    }
+
+    /**
+     * <p>
+     * Collects the topics of a graph
+     * </p>
+     *
+     * @param graph the graph
+     * @return the {@code TopicSet} with the URIs of the vertices of the graph
+     */
+    public static TopicSet forGraph(Graph graph)
+    {
+        long[] mids = new long[1024];
+        int size = 0;
+        Set<String> others = new HashSet<String>();
+        for (Vertex vertex : graph.getVertices())
+        {
+            String uri = vertex.getProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY);
+            if (uri == null)
+                continue;
+            long code = MidCodec.encode(uri);
+            if (code == MidCodec.NOT_A_MID)
+                others.add(uri);
+            else
+            {
+                if (size == mids.length)
+                    mids = Arrays.copyOf(mids, 2 * size);
+                mids[size++] = code;
+            }
+        }
+        mids = Arrays.copyOf(mids, size);
+        Arrays.sort(mids);
+        return new TopicSet(mids, others);
+    }
+
+    /**
+     * <p>
+     * Writes the topics of a graph
+     * </p>
+     *
+     * @param graph the graph of a shard
+     * @param file the file to write
+     * @return the number of topics written
+     * @throws IOException if the file can't be written
+     */
+    public static long write(Graph graph, File file) throws IOException
+    {
+        TopicSet topics = forGraph(graph);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(
+                new FileOutputStream(file), 65536)));
+        try
+        {
+            out.writeInt(topics.mids.length);
+            for (long mid : topics.mids)
+                out.writeLong(mid);
+            out.writeInt(topics.others.size());
+            for (String uri : topics.others)
+                out.writeUTF(uri);
+        }
+        finally
+        {
+            out.close();
+        }
+        return topics.size();
+    }
+
+    /**
+     * <p>
+     * Reads the topics written by the workers
+     * </p>
+     *
+     * @param files the files written by {@code write}
+     * @return the {@code TopicSet} with the topics of all the files
+     * @throws IOException if a file can't be read
+     */
+    public static TopicSet read(List<File> files) throws IOException
+    {
+        long[] mids = new long[0];
+        Set<String> others = new HashSet<String>();
+        for (File file : files)
+        {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(
+                    new FileInputStream(file), 65536)));
+            try
+            {
+                int size = in.readInt();
+                int offset = mids.length;
+                mids = Arrays.copyOf(mids, offset + size);
+                for (int i = 0; i < size; i++)
+                    mids[offset + i] = in.readLong();
+                int count = in.readInt();
+                for (int i = 0; i < count; i++)
+                    others.add(in.readUTF());
+            }
+            finally
+            {
+                IOUtils.closeQuietly(in);
+            }
+        }
+        Arrays.sort(mids);
+        return new TopicSet(mids, others);
+    }
+}
@@ -0,0 +1,117 @@
+package com.gsoc.freebase.importer.sink;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.model.Entity;
+import com.gsoc.freebase.importer.producer.EntitySink;
+
+/**
+ * <p>
+ * Sink exporting the entities as CSV: a line for every entity with its URI, its name (the first value, as in the
+ * vertices), its types separated by spaces and its number of values, every value of the entity as the importer doesn't
+ * compact the entities given to an {@code EntityTee}
+ * </p>
+ * <p>
+ * The file is gzipped if its name ends with {@code .gz}. It isn't thread safe: it is meant to be fed by the thread of
+ * an {@code EntityTee}
+ * </p>
+ */
+public class CsvEntityExporter implements EntitySink, Closeable
+{
+    /**
+     * The columns of the file
+     */
+    public static final String HEADER = "uri,name,types,values";
+
+    /**
+     * The writer of the file
+     */
+    private Writer writer;
+
+    /**
+     * <p>
+     * Constructor. Creates the file and writes the header
+     * </p>
+     *
+     * @param file the CSV file
+     * @throws IOException if the file can't be created
+     */
+    public CsvEntityExporter(File file) throws IOException
+    {
+        OutputStream out = new FileOutputStream(file);
+        if (file.getName().endsWith(".gz"))
+            out = new GZIPOutputStream(out, 65536);
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, Charset.forName("UTF-8")), 65536);
+        this.writer.write(HEADER + "\n");
+    }
+
+    @Override
+    public void put(Entity entity)
+    {
+        Map<String, List<String>> properties = entity.getProperties();
+        List<String> names = properties.get(ImporterConstants.FREEBASE_TYPE_OBJECT_NAME);
+        List<String> types = properties.get(ImporterConstants.RDF_TYPE);
+        StringBuilder line = new StringBuilder();
+        line.append(quote(entity.getUri())).append(',');
+        if (names != null && !names.isEmpty())
+            line.append(quote(names.get(0)));
+        line.append(',');
+        if (types != null)
+        {
+            StringBuilder joined = new StringBuilder();
+            for (String type : types)
+                joined.append(joined.length() > 0 ? " " : "").append(type);
+            line.append(quote(joined.toString()));
+        }
+        long values = 0;
+        for (List<String> v : properties.values())
+            values += v.size();
+        line.append(',').append(values).append('\n');
+
+        try
+        {
+            this.writer.write(line.toString());
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Unable to export " + entity.getUri(), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.writer.close();
+    }
+
+    /**
+     * <p>
+     * Quotes a field if it contains a comma, a quote or a line break
+     * </p>
+     *
+     * @param field the field
+     * @return the field as written in the file
+     */
+    static String quote(String field)
+    {
+        for (int i = 0; i < field.length(); i++)
+        {
+            char c = field.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r')
+                return "\"" + field.replace("\"", "\"\"") + "\"";
+        }
+        return field;
+    }
+}
@@ -0,0 +1,157 @@
+package com.gsoc.freebase.importer.sink;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.model.Entity;
+import com.gsoc.freebase.importer.producer.EntitySink;
+import com.gsoc.freebase.importer.utils.FreebaseUtils;
+
+/**
+ * <p>
+ * Sink collecting statistics of the dataset: the number of entities, topics and values, and the number of entities of
+ * every type
+ * </p>
+ * <p>
+ * Every value of the entities is counted, as the importer doesn't compact the entities given to an {@code EntityTee}.
+ * It isn't thread safe: it is meant to be fed by the thread of an {@code EntityTee}. When it is closed, the statistics
+ * are written to the report file (if any) as tab separated lines, the types sorted by number of entities
+ * </p>
+ */
+public class EntityStatistics implements EntitySink, Closeable
+{
+    /**
+     * The file the statistics are written to when the sink is closed (null to keep them in memory only)
+     */
+    private File report;
+
+    /**
+     * Number of entities, topics and values received
+     */
+    private long entities;
+    private long topics;
+    private long values;
+
+    /**
+     * Number of entities of every type
+     */
+    private Map<String, long[]> types = new HashMap<String, long[]>();
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param report the file the statistics are written to when the sink is closed, or null
+     */
+    public EntityStatistics(File report)
+    {
+        this.report = report;
+    }
+
+    @Override
+    public void put(Entity entity)
+    {
+        Map<String, List<String>> properties = entity.getProperties();
+        this.entities++;
+        if (FreebaseUtils.isTopic(properties))
+            this.topics++;
+        for (List<String> v : properties.values())
+            this.values += v.size();
+
+        List<String> entityTypes = properties.get(ImporterConstants.RDF_TYPE);
+        if (entityTypes == null)
+            return;
+        for (String type : entityTypes)
+        {
+            long[] count = this.types.get(type);
+            if (count == null)
+                this.types.put(type, count = new long[1]);
+            count[0]++;
+        }
+    }
+
+    /**
+     * @return the number of entities received
+     */
+    public long getEntities()
+    {
+        return this.entities;
+    }
+
+    /**
+     * @return the number of topics received
+     */
+    public long getTopics()
+    {
+        return this.topics;
+    }
+
+    /**
+     * @return the number of values of the entities received
+     */
+    public long getValues()
+    {
+        return this.values;
+    }
+
+    /**
+     * @param type the URI of a type
+     * @return the number of entities of the type
+     */
+    public long getEntities(String type)
+    {
+        long[] count = this.types.get(type);
+        return count != null ? count[0] : 0;
+    }
+
+    /**
+     * <p>
+     * Writes the statistics to the report file, if any
+     * </p>
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (this.report == null)
+            return;
+
+        List<Map.Entry<String, long[]>> sorted = new ArrayList<Map.Entry<String, long[]>>(this.types.entrySet());
+        Collections.sort(sorted, new Comparator<Map.Entry<String, long[]>>()
+        {
+            @Override
+            public int compare(Map.Entry<String, long[]> a, Map.Entry<String, long[]> b)
+            {
+                int c = Long.compare(b.getValue()[0], a.getValue()[0]);
+                return c != 0 ? c : a.getKey().compareTo(b.getKey());
+            }
+        });
+
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(this.report),
+                Charset.forName("UTF-8")));
+        try
+        {
+            writer.print("entities\t" + this.entities + "\n");
+            writer.print("topics\t" + this.topics + "\n");
+            writer.print("values\t" + this.values + "\n");
+            for (Map.Entry<String, long[]> type : sorted)
+                writer.print("type\t" + type.getKey() + "\t" + type.getValue()[0] + "\n");
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package com.gsoc.freebase.importer.sink;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.model.Entity;
+import com.gsoc.freebase.importer.producer.EntitySink;
+
+/**
+ * <p>
+ * Sink giving every entity to several sinks, so a single parse of the dump feeds all of them
+ * </p>
+ * <p>
+ * Every sink has its own bounded buffer and thread, so a sink only waits for its own work. When the buffer of a sink
+ * is full, its {@code OverflowPolicy} decides whether the parsing waits, the entity is dropped for that sink or the
+ * parsing fails
+ * </p>
+ * <p>
+ * The end of the stream is signalled with a marker put in every buffer by {@code close}, which waits for the sinks to
+ * take their pending entities and closes the sinks implementing {@code Closeable}. A failure of a sink stops the
+ * parsing: the next {@code put} throws it
+ * </p>
+ */
+public class EntityTee implements EntitySink
+{
+    /**
+     * Logger
+     */
+    private static Logger logger = LoggerFactory.getLogger(EntityTee.class);
+
+    /**
+     * Default number of entities of the buffer of a sink
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Milliseconds between the checks of the failure of a sink while waiting for room in its buffer
+     */
+    private static final long FAILURE_CHECK_MILLIS = 100;
+
+    /**
+     * The marker put in the buffers when the tee is closed (compared by identity)
+     */
+    private static final Entity END_OF_STREAM = new Entity(ImporterConstants.CANCEL_ENTITY_URI, null);
+
+    /**
+     * The branches of the sinks, in the order they were added
+     */
+    private List<Branch> branches = new ArrayList<Branch>();
+
+    /**
+     * Flag set once the threads of the sinks have been started
+     */
+    private boolean started;
+
+    /**
+     * Flag set once the tee has been closed
+     */
+    private boolean closed;
+
+    /**
+     * <p>
+     * Adds a sink with a buffer of the default capacity which makes the parsing wait when it is full
+     * </p>
+     *
+     * @param name the name of the sink, used in the logs and in the name of its thread
+     * @param sink the sink
+     */
+    public void addSink(String name, EntitySink sink)
+    {
+        this.addSink(name, sink, DEFAULT_CAPACITY, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * <p>
+     * Adds a sink. The sinks must be added before the tee is started
+     * </p>
+     *
+     * @param name the name of the sink, used in the logs and in the name of its thread
+     * @param sink the sink, called from its own thread
+     * @param capacity the number of entities of its buffer
+     * @param policy what to do when its buffer is full
+     */
+    public void addSink(String name, EntitySink sink, int capacity, OverflowPolicy policy)
+    {
+        if (this.started)
+            throw new IllegalStateException("The tee is already started");
+        this.branches.add(new Branch(name, sink, capacity, policy));
+    }
+
+    /**
+     * <p>
+     * Starts the threads of the sinks
+     * </p>
+     */
+    public synchronized void start()
+    {
+        if (this.started)
+            return;
+        this.started = true;
+        for (final Branch branch : this.branches)
+        {
+            branch.thread = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    branch.drain();
+                }
+            }, EntityTee.class.getName() + "-" + branch.name);
+            branch.thread.setDaemon(true);
+            branch.thread.start();
+        }
+    }
+
+    /**
+     * <p>
+     * Puts the entity in the buffer of every sink. It can be called from several threads
+     * </p>
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting for room in a buffer
+     * @throws IllegalStateException if a sink has failed or the buffer of a sink with the {@code FAIL} policy is full
+     */
+    @Override
+    public void put(Entity entity) throws InterruptedException
+    {
+        if (!this.started)
+            this.start();
+        for (Branch branch : this.branches)
+            branch.put(entity);
+    }
+
+    /**
+     * <p>
+     * Ends the stream: waits until every sink has taken its pending entities and closes the sinks implementing
+     * {@code Closeable}
+     * </p>
+     *
+     * @throws IllegalStateException if a sink has failed
+     */
+    public synchronized void close()
+    {
+        if (this.closed)
+            return;
+        this.closed = true;
+        this.start();
+
+        boolean interrupted = false;
+        for (Branch branch : this.branches)
+        {
+            while (branch.failure == null)
+            {
+                try
+                {
+                    if (branch.buffer.offer(END_OF_STREAM, FAILURE_CHECK_MILLIS, TimeUnit.MILLISECONDS))
+                        break;
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+        }
+        for (Branch branch : this.branches)
+        {
+            while (branch.thread.isAlive())
+            {
+                try
+                {
+                    branch.thread.join();
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        RuntimeException failure = null;
+        for (Branch branch : this.branches)
+        {
+            if (branch.dropped.get() > 0)
+                logger.warn("Sink " + branch.name + ": " + branch.dropped.get() + " entities dropped");
+            logger.info("Sink " + branch.name + ": " + branch.delivered.get() + " entities");
+            if (branch.sink instanceof Closeable)
+            {
+                try
+                {
+                    ((Closeable) branch.sink).close();
+                }
+                catch (IOException e)
+                {
+                    if (failure == null)
+                        failure = new IllegalStateException("Unable to close the sink " + branch.name, e);
+                }
+            }
+            if (branch.failure != null && failure == null)
+                failure = new IllegalStateException("The sink " + branch.name + " failed", branch.failure);
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * <p>
+     * Stops the threads of the sinks without waiting for their pending entities, after a failure of the parsing
+     * </p>
+     */
+    public synchronized void cancel()
+    {
+        if (this.closed)
+            return;
+        this.closed = true;
+        for (Branch branch : this.branches)
+        {
+            if (branch.thread != null)
+                branch.thread.interrupt();
+        }
+    }
+
+    /**
+     * @param name the name of a sink
+     * @return the number of entities given to the sink
+     */
+    public long getDelivered(String name)
+    {
+        return this.getBranch(name).delivered.get();
+    }
+
+    /**
+     * @param name the name of a sink
+     * @return the number of entities dropped for the sink because its buffer was full
+     */
+    public long getDropped(String name)
+    {
+        return this.getBranch(name).dropped.get();
+    }
+
+    /**
+     * <p>
+     * Gets the branch of a sink
+     * </p>
+     */
+    private Branch getBranch(String name)
+    {
+        for (Branch branch : this.branches)
+        {
+            if (branch.name.equals(name))
+                return branch;
+        }
+        throw new IllegalArgumentException("Unknown sink " + name);
+    }
+
+    /**
+     * <p>
+     * A sink with its buffer and its thread
+     * </p>
+     */
+    private static class Branch
+    {
+        private String name;
+        private EntitySink sink;
+        private OverflowPolicy policy;
+        private BlockingQueue<Entity> buffer;
+        private Thread thread;
+        private AtomicLong delivered = new AtomicLong();
+        private AtomicLong dropped = new AtomicLong();
+        private volatile Throwable failure;
+
+        public Branch(String name, EntitySink sink, int capacity, OverflowPolicy policy)
+        {
+            this.name = name;
+            this.sink = sink;
+            this.policy = policy;
+            this.buffer = new ArrayBlockingQueue<Entity>(Math.max(1, capacity));
+        }
+
+        /**
+         * <p>
+         * Puts an entity in the buffer applying the policy when it is full
+         * </p>
+         */
+        public void put(Entity entity) throws InterruptedException
+        {
+            this.checkFailure();
+            if (this.buffer.offer(entity))
+                return;
+
+            switch (this.policy)
+            {
+                case DROP:
+                    this.dropped.incrementAndGet();
+                    break;
+                case FAIL:
+                    throw new IllegalStateException("The buffer of the sink " + this.name + " is full");
+                default:
+                    /* Wake up now and then, so a failed sink doesn't keep the parsing waiting */
+                    while (!this.buffer.offer(entity, FAILURE_CHECK_MILLIS, TimeUnit.MILLISECONDS))
+                        this.checkFailure();
+            }
+        }
+
+        /**
+         * <p>
+         * Loop of the thread of the sink: gives the entities of the buffer to the sink until the end of the stream
+         * </p>
+         */
+        public void drain()
+        {
+            try
+            {
+                Entity entity;
+                while ((entity = this.buffer.take()) != END_OF_STREAM)
+                {
+                    this.sink.put(entity);
+                    this.delivered.incrementAndGet();
+                }
+            }
+            catch (InterruptedException e)
+            {
+                logger.debug("Sink " + this.name + " interrupted");
+            }
+            catch (RuntimeException e)
+            {
+                logger.error("Sink " + this.name + " failed", e);
+                this.failure = e;
+                this.buffer.clear();
+            }
+        }
+
+        /**
+         * <p>
+         * Throws the failure of the sink, if any
+         * </p>
+         */
+        private void checkFailure()
+        {
+            if (this.failure != null)
+                throw new IllegalStateException("The sink " + this.name + " failed", this.failure);
+        }
+    }
+}
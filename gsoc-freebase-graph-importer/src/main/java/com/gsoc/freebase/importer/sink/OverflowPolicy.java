@@ -0,0 +1,24 @@
+package com.gsoc.freebase.importer.sink;
+
+/**
+ * <p>
+ * What an {@code EntityTee} does with an entity when the buffer of a sink is full
+ * </p>
+ */
+public enum OverflowPolicy
+{
+    /**
+     * Wait until the sink takes an entity: a slow sink slows down the parsing, and so the rest of the sinks
+     */
+    BLOCK,
+
+    /**
+     * Skip the entity for this sink only, counting it (for sinks which can work with a sample, such as statistics)
+     */
+    DROP,
+
+    /**
+     * Stop the parsing with an error
+     */
+    FAIL
+}
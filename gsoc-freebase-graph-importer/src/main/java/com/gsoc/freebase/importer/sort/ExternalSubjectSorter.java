@@ -0,0 +1,682 @@
+package com.gsoc.freebase.importer.sort;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jena.atlas.lib.Tuple;
+import org.apache.jena.riot.out.NodeToLabel;
+import org.apache.jena.riot.out.OutputLangUtils;
+import org.apache.jena.riot.system.StreamRDF;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gsoc.freebase.importer.impl.ExecutionMode;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.core.Quad;
+
+/**
+ * <p>
+ * External sort grouping the triples of a file by subject
+ * </p>
+ * <p>
+ * The producer builds the entities from consecutive triples with the same subject, so the triples of an input which
+ * isn't grouped by subject end up split in several fragments of the same entity. The sorter receives the triples of
+ * such an input (it is a {@code StreamRDF}), writes them as N-Triples lines in runs of {@code runBytes} bytes sorted
+ * by subject and merges the runs into a single N-Triples stream where the triples of every subject are consecutive
+ * </p>
+ * <p>
+ * The runs are sorted and written (gzipped) by {@code parallelism} threads while the parser keeps reading the input, and
+ * at most {@code parallelism} full runs are waiting to be written, so the memory used is bounded by
+ * {@code (parallelism + 1) * runBytes}. The sort is stable: the triples of a subject keep the order of the input, and
+ * the order of the subjects doesn't depend on the size of the runs, so the entities are produced in the same order
+ * when a process is resumed
+ * </p>
+ * <p>
+ * The runs are merged at most {@code mergeFactor} at a time, so the buffers of the readers (and of the writer of an
+ * intermediate pass) fit in {@code runBytes}: while there are more runs than the merge factor, consecutive groups of
+ * runs are merged into longer runs, which keeps the merge stable
+ * </p>
+ * <p>
+ * Only the triples of a file are grouped: a subject whose triples are spread over several input files is still
+ * produced as an entity for every file
+ * </p>
+ */
+public class ExternalSubjectSorter implements StreamRDF, Closeable
+{
+    /**
+     * Logger
+     */
+    private static Logger logger = LoggerFactory.getLogger(ExternalSubjectSorter.class);
+
+    /**
+     * Constant containing the default size of a run (64 MB)
+     */
+    public static final long DEFAULT_RUN_BYTES = 64L << 20;
+
+    /**
+     * Maximum number of runs merged at a time
+     */
+    public static final int MAX_MERGE_FACTOR = 128;
+
+    /**
+     * Maximum and minimum sizes of the buffers of a run reader or writer (bytes of the gzip buffer and characters of the
+     * text buffer)
+     */
+    private static final int MAX_BUFFER_SIZE = 64 * 1024;
+    private static final int MIN_BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * Estimated bytes used by a run reader or writer besides its buffers (the charset coder and the inflater or
+     * deflater state)
+     */
+    private static final int STREAM_OVERHEAD_BYTES = 48 * 1024;
+
+    /**
+     * Estimated heap bytes used by a line besides its characters
+     */
+    private static final int LINE_OVERHEAD_BYTES = 64;
+
+    /**
+     * Charset of the runs
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Orders the lines by their subject
+     */
+    private static final Comparator<String> BY_SUBJECT = new Comparator<String>()
+    {
+        @Override
+        public int compare(String line1, String line2)
+        {
+            return subject(line1).compareTo(subject(line2));
+        }
+    };
+
+    /**
+     * The directory of the runs
+     */
+    private File directory;
+
+    /**
+     * Maximum number of bytes of a run
+     */
+    private long runBytes;
+
+    /**
+     * Maximum number of runs merged at a time
+     */
+    private int mergeFactor;
+
+    /**
+     * Executor sorting and writing the runs
+     */
+    private ExecutorService executor;
+
+    /**
+     * Permits of the runs being sorted or written
+     */
+    private Semaphore pendingRuns;
+
+    /**
+     * The runs, in the order they were generated
+     */
+    private List<Future<File>> runs;
+
+    /**
+     * The lines of the current run
+     */
+    private List<String> lines;
+
+    /**
+     * Estimated heap bytes of the lines of the current run
+     */
+    private long linesBytes;
+
+    /**
+     * Writer formatting the triples
+     */
+    private StringWriter line;
+
+    /**
+     * Labels of the blank nodes
+     */
+    private NodeToLabel labels;
+
+    /**
+     * Number of triples sorted
+     */
+    private long triples;
+
+    /**
+     * Readers of the runs being merged
+     */
+    private List<RunReader> readers;
+
+    /**
+     * Runs written by the intermediate merge passes
+     */
+    private List<File> mergedRuns;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param directory the directory where the runs are written
+     * @param runBytes the maximum number of bytes of a run, which is also the memory used by the buffers of a merge
+     *            pass
+     * @param parallelism the number of threads sorting and writing the runs
+     */
+    public ExternalSubjectSorter(File directory, long runBytes, int parallelism)
+    {
+        this.directory = directory;
+        this.runBytes = runBytes;
+        this.executor = Executors.newFixedThreadPool(parallelism, ExecutionMode.PLATFORM.newThreadFactory(
+                ExternalSubjectSorter.class.getName()));
+        this.pendingRuns = new Semaphore(parallelism);
+        this.runs = new ArrayList<Future<File>>();
+        this.lines = new ArrayList<String>();
+        this.line = new StringWriter();
+        this.labels = NodeToLabel.createBNodeByLabelEncoded();
+        this.readers = new ArrayList<RunReader>();
+        this.mergedRuns = new ArrayList<File>();
+        this.mergeFactor = (int) Math.max(2, Math.min(MAX_MERGE_FACTOR, runBytes / streamBytes(MIN_BUFFER_SIZE) - 1));
+    }
+
+    /**
+     * <p>
+     * Sets the maximum number of runs merged at a time, computed from the size of the runs by default
+     * </p>
+     *
+     * @param mergeFactor the number of runs (at least 2)
+     */
+    public void setMergeFactor(int mergeFactor)
+    {
+        this.mergeFactor = Math.max(2, mergeFactor);
+    }
+
+    @Override
+    public void start()
+    {
+        return;
+    }
+
+    /**
+     * <p>
+     * Adds a triple to the current run, writing the run when it is full
+     * </p>
+     */
+    @Override
+    public void triple(Triple triple)
+    {
+        this.line.getBuffer().setLength(0);
+        OutputLangUtils.output(this.line, triple, null, this.labels);
+        String value = this.line.toString();
+        this.lines.add(value);
+        this.linesBytes += 2 * value.length() + LINE_OVERHEAD_BYTES;
+        this.triples++;
+
+        if (this.linesBytes >= this.runBytes)
+            this.writeRun();
+    }
+
+    @Override
+    public void quad(Quad quad)
+    {
+        return;
+    }
+
+    @Override
+    public void tuple(Tuple<Node> tuple)
+    {
+        return;
+    }
+
+    @Override
+    public void base(String base)
+    {
+        return;
+    }
+
+    @Override
+    public void prefix(String prefix, String iri)
+    {
+        return;
+    }
+
+    /**
+     * <p>
+     * Writes the last run
+     * </p>
+     */
+    @Override
+    public void finish()
+    {
+        if (!this.lines.isEmpty())
+            this.writeRun();
+    }
+
+    /**
+     * <p>
+     * Sorts and writes the current run in the executor, waiting if too many runs are pending
+     * </p>
+     */
+    private void writeRun()
+    {
+        try
+        {
+            this.pendingRuns.acquire();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while sorting", e);
+        }
+
+        final List<String> run = this.lines;
+        this.lines = new ArrayList<String>();
+        this.linesBytes = 0;
+        this.runs.add(this.executor.submit(new Callable<File>()
+        {
+            @Override
+            public File call() throws IOException
+            {
+                try
+                {
+                    /* Stable: the triples of a subject keep the order of the input */
+                    Collections.sort(run, BY_SUBJECT);
+                    return write(run);
+                }
+                finally
+                {
+                    pendingRuns.release();
+                }
+            }
+        }));
+    }
+
+    /**
+     * <p>
+     * Writes a sorted run into a gzipped temporary file
+     * </p>
+     */
+    private File write(List<String> run) throws IOException
+    {
+        File file = File.createTempFile("subject-run", ".nt.gz", this.directory);
+        file.deleteOnExit();
+        Writer writer = newWriter(file, MAX_BUFFER_SIZE);
+        try
+        {
+            for (String line : run)
+                writer.write(line);
+        }
+        finally
+        {
+            writer.close();
+        }
+        return file;
+    }
+
+    /**
+     * <p>
+     * Gets the number of triples sorted
+     * </p>
+     *
+     * @return the number of triples
+     */
+    public long getTriples()
+    {
+        return this.triples;
+    }
+
+    /**
+     * <p>
+     * Waits for the runs and merges them
+     * </p>
+     * <p>
+     * It must be called once the whole input has been given to the sorter
+     * </p>
+     *
+     * @return the N-Triples stream of the triples grouped by subject
+     * @throws IOException if a run can't be written or read
+     * @throws InterruptedException if the thread is interrupted while waiting for the runs
+     */
+    public InputStream merge() throws IOException, InterruptedException
+    {
+        List<File> files = new ArrayList<File>(this.runs.size());
+        for (Future<File> run : this.runs)
+        {
+            try
+            {
+                files.add(run.get());
+            }
+            catch (ExecutionException e)
+            {
+                if (e.getCause() instanceof IOException)
+                    throw (IOException) e.getCause();
+                throw new IllegalStateException("Unable to write a run", e.getCause());
+            }
+        }
+
+        int passes = 0;
+        while (files.size() > this.mergeFactor)
+        {
+            List<File> merged = new ArrayList<File>();
+            for (int i = 0; i < files.size(); i += this.mergeFactor)
+                merged.add(this.mergeRuns(files.subList(i, Math.min(files.size(), i + this.mergeFactor))));
+            files = merged;
+            passes++;
+        }
+        logger.debug(this.triples + " triples sorted in " + this.runs.size() + " runs (" + passes
+                + " intermediate merge passes)");
+        return new MergedRunsInputStream(this.openRuns(files, this.readers));
+    }
+
+    /**
+     * <p>
+     * Merges consecutive runs into a new run, deleting them
+     * </p>
+     */
+    private File mergeRuns(List<File> files) throws IOException
+    {
+        if (files.size() == 1)
+            return files.get(0);
+
+        File file = File.createTempFile("subject-run", ".nt.gz", this.directory);
+        file.deleteOnExit();
+        this.mergedRuns.add(file);
+
+        List<RunReader> readers = new ArrayList<RunReader>();
+        Writer writer = null;
+        try
+        {
+            PriorityQueue<RunReader> queue = this.openRuns(files, readers);
+            writer = newWriter(file, bufferSize(this.runBytes, files.size() + 1));
+            RunReader reader;
+            while ((reader = queue.poll()) != null)
+            {
+                writer.write(reader.line);
+                writer.write('\n');
+                if (reader.advance())
+                    queue.add(reader);
+            }
+        }
+        finally
+        {
+            IOUtils.closeQuietly(writer);
+            for (RunReader reader : readers)
+                reader.close();
+        }
+        return file;
+    }
+
+    /**
+     * <p>
+     * Opens the readers of the runs merged at the same time, sharing {@code runBytes} among their buffers
+     * </p>
+     */
+    private PriorityQueue<RunReader> openRuns(List<File> files, List<RunReader> readers) throws IOException
+    {
+        int bufferSize = bufferSize(this.runBytes, files.size());
+        PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(Math.max(1, files.size()));
+        for (int i = 0; i < files.size(); i++)
+        {
+            RunReader reader = new RunReader(files.get(i), i, bufferSize);
+            readers.add(reader);
+            if (reader.advance())
+                queue.add(reader);
+        }
+        return queue;
+    }
+
+    /**
+     * <p>
+     * Stops the sorting and deletes the runs
+     * </p>
+     */
+    @Override
+    public void close()
+    {
+        this.executor.shutdownNow();
+        for (RunReader reader : this.readers)
+            reader.close();
+        for (Future<File> run : this.runs)
+        {
+            try
+            {
+                if (run.isDone() && !run.isCancelled())
+                    run.get().delete();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            catch (ExecutionException e)
+            {
+                /* The run wasn't written */
+            }
+        }
+        for (File run : this.mergedRuns)
+            run.delete();
+    }
+
+    /**
+     * <p>
+     * Opens a writer of a gzipped run
+     * </p>
+     */
+    private static Writer newWriter(File file, int bufferSize) throws IOException
+    {
+        return new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file), bufferSize),
+                UTF8), bufferSize);
+    }
+
+    /**
+     * <p>
+     * Estimates the bytes used by a run reader or writer with buffers of the given size
+     * </p>
+     */
+    private static long streamBytes(int bufferSize)
+    {
+        /* The gzip buffer, and the text buffer using two bytes per character */
+        return 3L * bufferSize + STREAM_OVERHEAD_BYTES;
+    }
+
+    /**
+     * <p>
+     * Computes the size of the buffers of the given number of run readers and writers sharing the memory
+     * </p>
+     */
+    private static int bufferSize(long memory, int streams)
+    {
+        long size = (memory / Math.max(1, streams) - STREAM_OVERHEAD_BYTES) / 3;
+        return (int) Math.max(MIN_BUFFER_SIZE, Math.min(MAX_BUFFER_SIZE, size));
+    }
+
+    /**
+     * <p>
+     * Gets the subject of an N-Triples line
+     * </p>
+     */
+    private static String subject(String line)
+    {
+        int end = line.indexOf(' ');
+        return end < 0 ? line : line.substring(0, end);
+    }
+
+    /**
+     * <p>
+     * Reader of the lines of a run
+     * </p>
+     * <p>
+     * The readers are ordered by the subject of their current line and, for the same subject, by the order of the runs,
+     * so the merge is stable
+     * </p>
+     */
+    private static class RunReader implements Comparable<RunReader>
+    {
+        private File file;
+        private int index;
+        private BufferedReader reader;
+        private String line;
+        private String subject;
+
+        /**
+         * <p>
+         * Constructor
+         * </p>
+         *
+         * @param file the run
+         * @param index the position of the run
+         * @param bufferSize the size of the buffers
+         */
+        RunReader(File file, int index, int bufferSize) throws IOException
+        {
+            this.file = file;
+            this.index = index;
+            this.reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file),
+                    bufferSize), UTF8), bufferSize);
+        }
+
+        /**
+         * <p>
+         * Reads the next line of the run
+         * </p>
+         *
+         * @return false if the run has been read completely
+         */
+        boolean advance() throws IOException
+        {
+            this.line = this.reader.readLine();
+            if (this.line == null)
+            {
+                this.close();
+                return false;
+            }
+            this.subject = subject(this.line);
+            return true;
+        }
+
+        /**
+         * <p>
+         * Closes the run and deletes it
+         * </p>
+         */
+        void close()
+        {
+            IOUtils.closeQuietly(this.reader);
+            this.file.delete();
+        }
+
+        @Override
+        public int compareTo(RunReader other)
+        {
+            int result = this.subject.compareTo(other.subject);
+            return result != 0 ? result : this.index - other.index;
+        }
+    }
+
+    /**
+     * <p>
+     * Stream of the lines of the runs in subject order
+     * </p>
+     */
+    private static class MergedRunsInputStream extends InputStream
+    {
+        private PriorityQueue<RunReader> queue;
+        private byte[] buffer = new byte[0];
+        private int position;
+
+        /**
+         * <p>
+         * Constructor
+         * </p>
+         *
+         * @param queue the readers of the runs not read completely yet
+         */
+        MergedRunsInputStream(PriorityQueue<RunReader> queue)
+        {
+            this.queue = queue;
+        }
+
+        /**
+         * <p>
+         * Moves the next line of the merge to the buffer
+         * </p>
+         *
+         * @return false at the end of the merge
+         */
+        private boolean fill() throws IOException
+        {
+            RunReader reader = this.queue.poll();
+            if (reader == null)
+                return false;
+
+            this.buffer = (reader.line + "\n").getBytes(UTF8);
+            this.position = 0;
+            if (reader.advance())
+                this.queue.add(reader);
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            if (this.position == this.buffer.length && !this.fill())
+                return -1;
+            return this.buffer[this.position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int read = 0;
+            while (read < len)
+            {
+                if (this.position == this.buffer.length && !this.fill())
+                    break;
+
+                int n = Math.min(len - read, this.buffer.length - this.position);
+                System.arraycopy(this.buffer, this.position, b, off + read, n);
+                this.position += n;
+                read += n;
+            }
+            return read == 0 && len > 0 ? -1 : read;
+        }
+
+        @Override
+        public void close()
+        {
+            for (RunReader reader : this.queue)
+                reader.close();
+            this.queue.clear();
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package com.gsoc.freebase.importer.stream;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gsoc.freebase.importer.impl.ExecutionMode;
+import com.gsoc.freebase.importer.model.Entity;
+import com.gsoc.freebase.importer.producer.EntityFilter;
+import com.gsoc.freebase.importer.producer.EntitySink;
+import com.gsoc.freebase.importer.producer.impl.FreebaseProducerImpl;
+
+/**
+ * <p>
+ * Publisher of the entities of a Freebase dump
+ * </p>
+ * <p>
+ * Every subscription runs its own {@code FreebaseProducerImpl} in a dedicated thread, reading the files (RDF or binary)
+ * in name order. The producer gives the entities straight to the subscriber as they are parsed: when the subscriber
+ * hasn't requested more, the parser waits, so the memory used doesn't depend on the speed of the subscriber and there
+ * is no queue to poll. Cancelling the subscription stops the parser
+ * </p>
+ * <p>
+ * The entities can also be published in batches (see {@code batches}), where the demand counts batches instead of
+ * entities, so a fast subscriber doesn't pay the handshake for every entity
+ * </p>
+ * <p>
+ * It is a Reactive Streams {@code Publisher}, so any compliant library can subscribe to it (and
+ * {@code java.util.concurrent.Flow} through the {@code FlowAdapters} of the library, on Java 9 or later)
+ * </p>
+ */
+public class EntityPublisher implements Publisher<Entity>
+{
+    /**
+     * Logger
+     */
+    private static Logger logger = LoggerFactory.getLogger(EntityPublisher.class);
+
+    /**
+     * The file or directory to read the entities from
+     */
+    private File input;
+
+    /**
+     * Filter of the entities published (null to publish all of them)
+     */
+    private EntityFilter entityFilter;
+
+    /**
+     * Number of triples of an entity above which only the values used by the consumers are kept (0 to keep every
+     * triple)
+     */
+    private int compactThreshold;
+
+    /**
+     * Directory of the runs of the subject sort (null if the input is already grouped by subject)
+     */
+    private File sortDirectory;
+
+    /**
+     * Maximum number of bytes of a run of the subject sort
+     */
+    private long sortRunBytes;
+
+    /**
+     * Number of threads sorting the runs of a file
+     */
+    private int sortParallelism;
+
+    /**
+     * Kind of threads running the producers
+     */
+    private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param input the file or directory (one level only) to read the entities from
+     */
+    public EntityPublisher(File input)
+    {
+        this.input = input;
+    }
+
+    /**
+     * <p>
+     * Sets the filter of the entities published
+     * </p>
+     *
+     * @param entityFilter the {@code EntityFilter} or null to publish all the entities
+     */
+    public void setEntityFilter(EntityFilter entityFilter)
+    {
+        this.entityFilter = entityFilter;
+    }
+
+    /**
+     * <p>
+     * Sets the number of triples of an entity above which only the values used by the consumers of the importer are
+     * kept
+     * </p>
+     *
+     * @param triples the number of triples or 0 to keep every triple
+     * @see FreebaseProducerImpl#setCompactThreshold(int)
+     */
+    public void setCompactThreshold(int triples)
+    {
+        this.compactThreshold = triples;
+    }
+
+    /**
+     * <p>
+     * Sorts the triples of every file by subject before publishing its entities
+     * </p>
+     *
+     * @param directory the directory of the temporary runs or null to parse the files as they are
+     * @param runBytes the maximum number of bytes of a run
+     * @param parallelism the number of threads sorting the runs of a file
+     * @see FreebaseProducerImpl#setSubjectSort(File, long, int)
+     */
+    public void setSubjectSort(File directory, long runBytes, int parallelism)
+    {
+        this.sortDirectory = directory;
+        this.sortRunBytes = runBytes;
+        this.sortParallelism = parallelism;
+    }
+
+    /**
+     * <p>
+     * Sets the kind of threads running the producers
+     * </p>
+     *
+     * @param executionMode the {@code ExecutionMode}
+     */
+    public void setExecutionMode(ExecutionMode executionMode)
+    {
+        this.executionMode = executionMode;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super Entity> subscriber)
+    {
+        this.start(new EntitySubscription<Entity>(subscriber, 0));
+    }
+
+    /**
+     * <p>
+     * Gets a publisher of the same entities in batches. A subscriber requesting n elements receives up to n batches,
+     * every one with {@code size} entities except the last one of the stream
+     * </p>
+     *
+     * @param size the number of entities of a batch
+     * @return the publisher of the batches
+     */
+    public Publisher<List<Entity>> batches(final int size)
+    {
+        if (size <= 0)
+            throw new IllegalArgumentException("The size of a batch must be positive: " + size);
+        return new Publisher<List<Entity>>()
+        {
+            @Override
+            public void subscribe(Subscriber<? super List<Entity>> subscriber)
+            {
+                start(new EntitySubscription<List<Entity>>(subscriber, size));
+            }
+        };
+    }
+
+    /**
+     * <p>
+     * Gives the subscription to its subscriber and starts the thread producing its entities
+     * </p>
+     */
+    private void start(final EntitySubscription<?> subscription)
+    {
+        final FreebaseProducerImpl producer = new FreebaseProducerImpl(null, this.input);
+        producer.setEntityFilter(this.entityFilter);
+        producer.setCompactThreshold(this.compactThreshold);
+        producer.setSubjectSort(this.sortDirectory, this.sortRunBytes, this.sortParallelism);
+        producer.setSink(subscription);
+
+        subscription.subscriber.onSubscribe(subscription);
+        Thread thread = this.executionMode.newThreadFactory(EntityPublisher.class.getName()).newThread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                subscription.produce(producer);
+            }
+        });
+        /* A subscriber which stops requesting without cancelling doesn't keep the process alive */
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * <p>
+     * Subscription receiving the entities of a producer and sending them (or their batches) to the subscriber when it
+     * has requested them
+     * </p>
+     *
+     * @param <T> the type of the elements sent: {@code Entity} or a list of them
+     */
+    private static class EntitySubscription<T> implements Subscription, EntitySink
+    {
+        /**
+         * The subscriber
+         */
+        private Subscriber<? super T> subscriber;
+
+        /**
+         * Number of entities of a batch (0 to send the entities one by one)
+         */
+        private int batchSize;
+
+        /**
+         * The batch being filled
+         */
+        private List<Entity> batch;
+
+        /**
+         * Number of elements requested and not sent yet
+         */
+        private long demand;
+
+        /**
+         * Flag set when the subscription is cancelled
+         */
+        private boolean cancelled;
+
+        /**
+         * The failure of an invalid request, sent once the producer thread sees it
+         */
+        private Throwable failure;
+
+        /**
+         * Lock protecting the demand
+         */
+        private Lock lock;
+
+        /**
+         * Condition signalled when there is demand or the subscription is cancelled
+         */
+        private Condition requested;
+
+        /**
+         * <p>
+         * Constructor
+         * </p>
+         */
+        public EntitySubscription(Subscriber<? super T> subscriber, int batchSize)
+        {
+            if (subscriber == null)
+                throw new NullPointerException("The subscriber is null");
+            this.subscriber = subscriber;
+            this.batchSize = batchSize;
+            this.batch = new ArrayList<Entity>();
+            this.lock = new ReentrantLock();
+            this.requested = this.lock.newCondition();
+        }
+
+        @Override
+        public void request(long n)
+        {
+            this.lock.lock();
+            try
+            {
+                if (n <= 0)
+                {
+                    /* Rule 3.9: the stream ends with an error sent from the producer thread */
+                    if (this.failure == null)
+                        this.failure = new IllegalArgumentException("The number of elements requested must be positive: "
+                                + n);
+                }
+                else
+                    this.demand = this.demand + n < 0 ? Long.MAX_VALUE : this.demand + n;
+                this.requested.signal();
+            }
+            finally
+            {
+                this.lock.unlock();
+            }
+        }
+
+        @Override
+        public void cancel()
+        {
+            this.lock.lock();
+            try
+            {
+                this.cancelled = true;
+                this.requested.signal();
+            }
+            finally
+            {
+                this.lock.unlock();
+            }
+        }
+
+        @Override
+        public void put(Entity entity) throws InterruptedException
+        {
+            if (this.batchSize == 0)
+            {
+                this.send(entity);
+                return;
+            }
+            this.batch.add(entity);
+            if (this.batch.size() >= this.batchSize)
+            {
+                List<Entity> full = this.batch;
+                this.batch = new ArrayList<Entity>(this.batchSize);
+                this.send(full);
+            }
+        }
+
+        /**
+         * <p>
+         * Runs the producer in the current thread and ends the stream
+         * </p>
+         */
+        public void produce(FreebaseProducerImpl producer)
+        {
+            try
+            {
+                for (File f : producer.listPendingFiles())
+                    producer.processFile(f);
+                if (!this.batch.isEmpty())
+                    this.send(this.batch);
+                this.subscriber.onComplete();
+            }
+            catch (CancelledException e)
+            {
+                logger.debug("Subscription cancelled");
+            }
+            catch (InterruptedException e)
+            {
+                this.subscriber.onError(e);
+            }
+            catch (RuntimeException e)
+            {
+                if (this.isCancelled())
+                    logger.debug("Subscription cancelled");
+                else
+                    this.subscriber.onError(this.failure != null ? this.failure : e);
+            }
+        }
+
+        /**
+         * <p>
+         * Sends an element once the subscriber has requested it. Cancelling the subscription (or an invalid request)
+         * stops the parsing
+         * </p>
+         */
+        @SuppressWarnings("unchecked")
+        private void send(Object element) throws InterruptedException
+        {
+            this.lock.lockInterruptibly();
+            try
+            {
+                while (this.demand == 0 && !this.cancelled && this.failure == null)
+                    this.requested.await();
+                if (this.cancelled)
+                    throw new CancelledException();
+                if (this.failure != null)
+                    throw new IllegalStateException(this.failure);
+                this.demand--;
+            }
+            finally
+            {
+                this.lock.unlock();
+            }
+            /* Without holding the lock, as the subscriber can request more from onNext */
+            this.subscriber.onNext((T) element);
+        }
+
+        /**
+         * @return true if the subscription has been cancelled
+         */
+        private boolean isCancelled()
+        {
+            this.lock.lock();
+            try
+            {
+                return this.cancelled;
+            }
+            finally
+            {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Exception stopping the parsing of a cancelled subscription
+     * </p>
+     */
+    private static class CancelledException extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+    }
+}
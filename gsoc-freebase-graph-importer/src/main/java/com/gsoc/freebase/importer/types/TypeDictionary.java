@@ -0,0 +1,260 @@
+package com.gsoc.freebase.importer.types;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Dictionary of the type URIs of the topics
+ * </p>
+ * <p>
+ * Every type URI gets a small integer id the first time it is interned, so the vertices store their types as an
+ * {@code int[]} (see {@code ImporterConstants.VERTEX_TYPES_PROPERTY}) instead of repeating the URIs in every vertex
+ * </p>
+ * <p>
+ * The dictionary of a graph is the {@code FILE_NAME} file in the graph location: a UTF-8 text file with a type URI per
+ * line, the id being the number of the line (starting at 0). The file is append only: a new type is written and
+ * synced before its id is returned, so a vertex committed to the graph never refers to an id missing from the file,
+ * and a resumed or incremental import keeps the ids of the previous processes
+ * </p>
+ * <p>
+ * An instance can be used by several threads at the same time
+ * </p>
+ */
+public class TypeDictionary implements Closeable
+{
+    /**
+     * Name of the dictionary file in the graph directory
+     */
+    public static final String FILE_NAME = "types.dict";
+
+    /**
+     * Charset of the file
+     */
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The ids of the types
+     */
+    private Map<String, Integer> ids;
+
+    /**
+     * The types, indexed by id
+     */
+    private List<String> types;
+
+    /**
+     * The dictionary file, where the new types are appended. Null for dictionaries only kept in memory
+     */
+    private FileOutputStream log;
+
+    /**
+     * Flag indicating whether the dictionary file has been closed
+     */
+    private boolean closed;
+
+    /**
+     * <p>
+     * Constructs an empty dictionary kept in memory
+     * </p>
+     */
+    public TypeDictionary()
+    {
+        this.ids = new HashMap<String, Integer>();
+        this.types = new ArrayList<String>();
+    }
+
+    /**
+     * <p>
+     * Opens the dictionary file of a graph, creating it if it doesn't exist. The new types are appended to the file
+     * </p>
+     *
+     * @param file the dictionary file
+     * @return the {@code TypeDictionary}
+     * @throws IOException if the file can't be read or opened
+     */
+    public static TypeDictionary open(File file) throws IOException
+    {
+        TypeDictionary dictionary = read(file);
+        dictionary.log = new FileOutputStream(file, true);
+        return dictionary;
+    }
+
+    /**
+     * <p>
+     * Reads the dictionary file of a graph. The returned dictionary isn't written back to the file
+     * </p>
+     *
+     * @param file the dictionary file
+     * @return the {@code TypeDictionary} (empty if the file doesn't exist)
+     * @throws IOException if the file can't be read
+     */
+    public static TypeDictionary read(File file) throws IOException
+    {
+        TypeDictionary dictionary = new TypeDictionary();
+        if (!file.exists())
+            return dictionary;
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+        try
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+                dictionary.add(line);
+        }
+        finally
+        {
+            reader.close();
+        }
+        return dictionary;
+    }
+
+    /**
+     * <p>
+     * Gets the id of a type, adding the type to the dictionary if it isn't there yet
+     * </p>
+     *
+     * @param type the type URI
+     * @return the id of the type
+     */
+    public synchronized int intern(String type)
+    {
+        Integer id = this.ids.get(type);
+        if (id != null)
+            return id;
+
+        if (this.closed)
+            throw new IllegalStateException("The type dictionary is closed");
+        if (type.indexOf('\n') >= 0 || type.indexOf('\r') >= 0)
+            throw new IllegalArgumentException("Invalid type URI: " + type);
+        if (this.log != null)
+        {
+            try
+            {
+                this.log.write((type + "\n").getBytes(UTF8));
+                this.log.getFD().sync();
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException("Unable to write the type dictionary", e);
+            }
+        }
+        return this.add(type);
+    }
+
+    /**
+     * <p>
+     * Gets the id of a type
+     * </p>
+     *
+     * @param type the type URI
+     * @return the id of the type or -1 if the type isn't in the dictionary
+     */
+    public synchronized int getId(String type)
+    {
+        Integer id = this.ids.get(type);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * <p>
+     * Gets the URI of a type
+     * </p>
+     *
+     * @param id the id of the type
+     * @return the type URI
+     * @throws IllegalArgumentException if the id isn't in the dictionary
+     */
+    public synchronized String getType(int id)
+    {
+        if (id < 0 || id >= this.types.size())
+            throw new IllegalArgumentException("Unknown type id: " + id);
+        return this.types.get(id);
+    }
+
+    /**
+     * <p>
+     * Gets the number of types
+     * </p>
+     *
+     * @return the number of types in the dictionary
+     */
+    public synchronized int size()
+    {
+        return this.types.size();
+    }
+
+    /**
+     * <p>
+     * Interns a list of types
+     * </p>
+     *
+     * @param types the type URIs
+     * @return the ids of the types, in the same order
+     */
+    public int[] encode(List<String> types)
+    {
+        int[] ids = new int[types.size()];
+        for (int i = 0; i < ids.length; i++)
+            ids[i] = this.intern(types.get(i));
+        return ids;
+    }
+
+    /**
+     * <p>
+     * Gets the URIs of a list of type ids
+     * </p>
+     *
+     * @param ids the ids of the types (null is taken as no types)
+     * @return the type URIs, in the same order
+     */
+    public List<String> decode(int[] ids)
+    {
+        if (ids == null)
+            return Collections.emptyList();
+        List<String> types = new ArrayList<String>(ids.length);
+        for (int id : ids)
+            types.add(this.getType(id));
+        return types;
+    }
+
+    /**
+     * <p>
+     * Closes the dictionary file. The known types can still be looked up, but no new types can be interned
+     * </p>
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (this.log != null)
+        {
+            this.log.close();
+            this.log = null;
+            this.closed = true;
+        }
+    }
+
+    /**
+     * <p>
+     * Adds a type at the end of the dictionary
+     * </p>
+     */
+    private int add(String type)
+    {
+        int id = this.types.size();
+        this.ids.put(type, id);
+        this.types.add(type);
+        return id;
+    }
+}
@@ -0,0 +1,188 @@
+package com.gsoc.freebase.importer.types;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import com.gsoc.freebase.importer.binary.VarLongCodec;
+
+/**
+ * <p>
+ * Postings index of the types of the topics, built by the importer next to the graph (see {@code TypeIndexWriter})
+ * </p>
+ * <p>
+ * The index file is memory mapped, so getting the vertices of a type only reads its postings. The type URIs are
+ * translated to ids with the dictionary of the graph (see {@code TypeDictionary})
+ * </p>
+ * <p>
+ * An instance can be used by several threads at the same time
+ * </p>
+ */
+public class TypeIndex implements Closeable
+{
+    /**
+     * The file of the index
+     */
+    private RandomAccessFile file;
+
+    /**
+     * The mapped index
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * The dictionary of the types
+     */
+    private TypeDictionary dictionary;
+
+    /**
+     * Offsets of the postings of every type
+     */
+    private int[] offsets;
+
+    /**
+     * Number of postings of every type
+     */
+    private long[] counts;
+
+    /**
+     * <p>
+     * Opens the type index of a graph
+     * </p>
+     *
+     * @param location the graph directory, containing the {@code TypeIndexWriter.FILE_NAME} and
+     *            {@code TypeDictionary.FILE_NAME} files
+     * @throws IOException if the files can't be read or they aren't a type index
+     */
+    public TypeIndex(File location) throws IOException
+    {
+        this(new File(location, TypeIndexWriter.FILE_NAME), TypeDictionary.read(new File(location,
+                TypeDictionary.FILE_NAME)));
+    }
+
+    /**
+     * <p>
+     * Opens an index
+     * </p>
+     *
+     * @param index the index file
+     * @param dictionary the dictionary of the types of the index
+     * @throws IOException if the file can't be mapped or it isn't a type index
+     */
+    public TypeIndex(File index, TypeDictionary dictionary) throws IOException
+    {
+        this.dictionary = dictionary;
+        this.file = new RandomAccessFile(index, "r");
+        try
+        {
+            long size = this.file.length();
+            int trailer = 8 + TypeIndexWriter.MAGIC.length;
+            if (size < TypeIndexWriter.MAGIC.length + 8 + trailer || size > Integer.MAX_VALUE)
+                throw new IOException(index.getAbsolutePath() + " isn't a type index");
+
+            this.buffer = this.file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+            byte[] magic = new byte[TypeIndexWriter.MAGIC.length];
+            ByteBuffer end = this.buffer.duplicate();
+            end.position((int) size - TypeIndexWriter.MAGIC.length);
+            end.get(magic);
+            if (!Arrays.equals(magic, TypeIndexWriter.MAGIC))
+                throw new IOException(index.getAbsolutePath() + " isn't a type index");
+
+            int footer = (int) this.buffer.getLong((int) size - trailer);
+            int types = (int) this.buffer.getLong(footer);
+            this.offsets = new int[types];
+            this.counts = new long[types];
+            for (int i = 0; i < types; i++)
+            {
+                this.offsets[i] = (int) this.buffer.getLong(footer + 8 + 16 * i);
+                this.counts[i] = this.buffer.getLong(footer + 16 + 16 * i);
+            }
+        }
+        catch (IOException e)
+        {
+            this.file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * <p>
+     * Gets the dictionary of the types
+     * </p>
+     *
+     * @return the {@code TypeDictionary}
+     */
+    public TypeDictionary getDictionary()
+    {
+        return this.dictionary;
+    }
+
+    /**
+     * <p>
+     * Gets the number of topics of a type
+     * </p>
+     *
+     * @param type the type URI
+     * @return the number of vertices having the type (0 if the type is unknown)
+     */
+    public long getVertexCount(String type)
+    {
+        int id = this.dictionary.getId(type);
+        return id >= 0 && id < this.counts.length ? this.counts[id] : 0;
+    }
+
+    /**
+     * <p>
+     * Gets the topics of a type
+     * </p>
+     *
+     * @param type the type URI
+     * @return the ids of the vertices having the type in ascending order (empty if the type is unknown)
+     */
+    public long[] getVertexIds(String type)
+    {
+        return this.getVertexIds(this.dictionary.getId(type));
+    }
+
+    /**
+     * <p>
+     * Gets the topics of a type
+     * </p>
+     *
+     * @param type the id of the type
+     * @return the ids of the vertices having the type in ascending order (empty if the type is unknown)
+     */
+    public long[] getVertexIds(int type)
+    {
+        if (type < 0 || type >= this.counts.length)
+            return new long[0];
+
+        long[] ids = new long[(int) this.counts[type]];
+        ByteBuffer in = this.buffer.duplicate();
+        in.position(this.offsets[type]);
+        long previous = 0;
+        for (int i = 0; i < ids.length; i++)
+        {
+            long value = VarLongCodec.read(in);
+            previous += value;
+            ids[i] = previous;
+        }
+        return ids;
+    }
+
+    /**
+     * <p>
+     * Closes the index file
+     * </p>
+     */
+    @Override
+    public void close() throws IOException
+    {
+        this.file.close();
+    }
+}
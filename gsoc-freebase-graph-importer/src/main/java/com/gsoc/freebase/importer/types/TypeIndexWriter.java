@@ -0,0 +1,343 @@
+package com.gsoc.freebase.importer.types;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.binary.VarLongCodec;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+
+/**
+ * <p>
+ * Builds the postings index of the types of the topics: the ids of the vertices of every type
+ * </p>
+ * <p>
+ * The postings are kept in memory while they are added as variable length deltas of the vertex ids, so the vertices
+ * of a graph scanned in id order take one or two bytes per type. The postings of a type added out of order are sorted
+ * when they are written
+ * </p>
+ * <p>
+ * The file contains:
+ * <ul>
+ * <li>The magic bytes {@code FBGTYPE1}
+ * <li>The postings of every type, in type id order: the vertex ids in ascending order as variable length deltas
+ * <li>The footer: the number of types and, for every type, the offset and the number of its postings
+ * <li>The offset of the footer and the magic bytes again
+ * </ul>
+ * </p>
+ */
+public class TypeIndexWriter
+{
+    /**
+     * Name of the index file in the graph directory
+     */
+    public static final String FILE_NAME = "types.idx";
+
+    /**
+     * Magic bytes at the beginning and the end of the index
+     */
+    static final byte[] MAGIC = "FBGTYPE1".getBytes(TypeDictionary.UTF8);
+
+    /**
+     * The postings, indexed by type id
+     */
+    private List<Postings> postings;
+
+    /**
+     * Number of postings added
+     */
+    private long size;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     */
+    public TypeIndexWriter()
+    {
+        this.postings = new ArrayList<Postings>();
+    }
+
+    /**
+     * <p>
+     * Creates a writer with the types of all the topics of a graph
+     * </p>
+     *
+     * @param graph the graph, whose vertices store their types in the {@code ImporterConstants.VERTEX_TYPES_PROPERTY}
+     *            property
+     * @return the {@code TypeIndexWriter}
+     */
+    public static TypeIndexWriter forGraph(Graph graph)
+    {
+        TypeIndexWriter writer = new TypeIndexWriter();
+        for (Vertex vertex : graph.getVertices())
+        {
+            int[] types = vertex.getProperty(ImporterConstants.VERTEX_TYPES_PROPERTY);
+            if (types == null)
+                continue;
+            long id = vertexId(vertex.getId());
+            for (int type : types)
+                writer.add(type, id);
+        }
+        return writer;
+    }
+
+    /**
+     * <p>
+     * Gets the numeric id of a vertex
+     * </p>
+     *
+     * @param id the id of the vertex
+     * @return the id as a long
+     * @throws IllegalArgumentException if the graph doesn't use numeric ids
+     */
+    public static long vertexId(Object id)
+    {
+        if (id instanceof Number)
+            return ((Number) id).longValue();
+        try
+        {
+            return Long.parseLong(id.toString());
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("The type index needs numeric vertex ids: " + id);
+        }
+    }
+
+    /**
+     * <p>
+     * Adds a vertex to the postings of a type
+     * </p>
+     *
+     * @param type the id of the type
+     * @param vertexId the id of the vertex (not negative)
+     */
+    public void add(int type, long vertexId)
+    {
+        if (vertexId < 0)
+            throw new IllegalArgumentException("Negative vertex id: " + vertexId);
+        while (this.postings.size() <= type)
+            this.postings.add(null);
+        Postings postings = this.postings.get(type);
+        if (postings == null)
+        {
+            postings = new Postings();
+            this.postings.set(type, postings);
+        }
+        if (postings.add(vertexId))
+            this.size++;
+    }
+
+    /**
+     * <p>
+     * Gets the number of postings added
+     * </p>
+     *
+     * @return the number of (type, vertex) pairs
+     */
+    public long size()
+    {
+        return this.size;
+    }
+
+    /**
+     * <p>
+     * Writes the index
+     * </p>
+     *
+     * @param file the index file
+     * @return the number of types having vertices
+     * @throws IOException if the index can't be written
+     */
+    public int write(File file) throws IOException
+    {
+        long[] offsets = new long[this.postings.size()];
+        long[] counts = new long[this.postings.size()];
+        int types = 0;
+        CountingOutput out = new CountingOutput(file);
+        try
+        {
+            out.write(MAGIC);
+            for (int type = 0; type < this.postings.size(); type++)
+            {
+                offsets[type] = out.size();
+                Postings postings = this.postings.get(type);
+                if (postings == null)
+                    continue;
+                if (!postings.sorted)
+                    postings.sort();
+                out.write(postings.bytes, 0, postings.length);
+                counts[type] = postings.count;
+                types++;
+            }
+
+            long footer = out.size();
+            out.writeLong(offsets.length);
+            for (int type = 0; type < offsets.length; type++)
+            {
+                out.writeLong(offsets[type]);
+                out.writeLong(counts[type]);
+            }
+            out.writeLong(footer);
+            out.write(MAGIC);
+        }
+        finally
+        {
+            out.close();
+        }
+        return types;
+    }
+
+    /**
+     * <p>
+     * Postings of a type: the vertex ids as variable length deltas
+     * </p>
+     */
+    private static class Postings
+    {
+        /**
+         * The encoded deltas
+         */
+        byte[] bytes = new byte[16];
+
+        /**
+         * Number of bytes used
+         */
+        int length;
+
+        /**
+         * Number of vertices
+         */
+        long count;
+
+        /**
+         * The last vertex id added
+         */
+        long last = -1;
+
+        /**
+         * Flag indicating whether the ids have been added in ascending order
+         */
+        boolean sorted = true;
+
+        /**
+         * <p>
+         * Adds a vertex id
+         * </p>
+         *
+         * @return false if the id is the last one added
+         */
+        boolean add(long id)
+        {
+            if (id == this.last)
+                return false;
+            if (this.sorted && id < this.last)
+            {
+                /* From now on the ids are stored as they come and sorted once at the end */
+                long[] ids = this.decode(true);
+                this.length = 0;
+                for (long previous : ids)
+                    this.writeVarLong(previous);
+                this.sorted = false;
+            }
+            this.writeVarLong(this.sorted && this.last >= 0 ? id - this.last : id);
+            this.last = id;
+            this.count++;
+            return true;
+        }
+
+        /**
+         * <p>
+         * Sorts the ids and encodes them as deltas, removing duplicates
+         * </p>
+         */
+        void sort()
+        {
+            long[] ids = this.decode(false);
+            Arrays.sort(ids);
+
+            this.length = 0;
+            this.count = 0;
+            this.last = -1;
+            this.sorted = true;
+            for (long id : ids)
+                this.add(id);
+        }
+
+        /**
+         * <p>
+         * Decodes the stored values
+         * </p>
+         *
+         * @param deltas whether the values are deltas of the previous ones
+         */
+        private long[] decode(boolean deltas)
+        {
+            long[] ids = new long[(int) this.count];
+            ByteBuffer in = ByteBuffer.wrap(this.bytes, 0, this.length);
+            long previous = 0;
+            for (int i = 0; i < ids.length; i++)
+            {
+                long value = VarLongCodec.read(in);
+                ids[i] = deltas ? previous + value : value;
+                previous = ids[i];
+            }
+            return ids;
+        }
+
+        /**
+         * <p>
+         * Writes a variable length unsigned long (7 bits per byte)
+         * </p>
+         */
+        private void writeVarLong(long value)
+        {
+            if (this.length + VarLongCodec.MAX_BYTES > this.bytes.length)
+                this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, this.length
+                        + VarLongCodec.MAX_BYTES));
+            this.length = VarLongCodec.write(this.bytes, this.length, value);
+        }
+    }
+
+    /**
+     * <p>
+     * Output checking the index fits in a single mapped buffer
+     * </p>
+     */
+    private static class CountingOutput extends DataOutputStream
+    {
+        /**
+         * <p>
+         * Constructor
+         * </p>
+         *
+         * @param file the file to write
+         */
+        CountingOutput(File file) throws IOException
+        {
+            super(new BufferedOutputStream(new FileOutputStream(file), 65536));
+        }
+
+        /**
+         * <p>
+         * Writes bytes, failing if the index would reach 2 GB
+         * </p>
+         */
+        @Override
+        public synchronized void write(byte[] bytes, int offset, int length) throws IOException
+        {
+            if ((long) this.size() + length >= Integer.MAX_VALUE)
+                throw new IOException("The type index can't be larger than 2 GB");
+            super.write(bytes, offset, length);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.gsoc.freebase.importer.impl;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * <p>
+ * Factory of virtual threads
+ * </p>
+ * <p>
+ * It is only compiled by the {@code java21} profile and it is looked up by name from {@code ExecutionMode.VIRTUAL},
+ * so the rest of the importer still builds and runs with older Java versions
+ * </p>
+ */
+public final class VirtualThreads
+{
+    /**
+     * <p>
+     * Private constructor
+     * </p>
+     */
+    private VirtualThreads()
+    {
+    }
+
+    /**
+     * <p>
+     * Creates a factory of virtual threads
+     * </p>
+     *
+     * @param name the prefix of the names of the threads
+     * @return the {@code ThreadFactory}
+     */
+    public static ThreadFactory factory(String name)
+    {
+        return Thread.ofVirtual().name(name + "-", 0).factory();
+    }
+}
@@ -0,0 +1,72 @@
+package com.gsoc.freebase.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import com.gsoc.freebase.importer.benchmark.BenchmarkReport;
+
+/**
+ * <p>
+ * Class to test the report of the macro benchmark
+ * </p>
+ */
+public class BenchmarkReportTest
+{
+    /**
+     * <p>
+     * Test that the runs are written as CSV and JSON, with missing measures of failed runs left empty
+     * </p>
+     */
+    @Test
+    public void testWrite() throws Exception
+    {
+        File directory = new File("/tmp/ftgibenchmark" + UUID.randomUUID());
+        directory.mkdirs();
+
+        BenchmarkReport report = new BenchmarkReport();
+        report.addEnvironment("label", "with \"quotes\"");
+
+        Map<String, String> ok = new LinkedHashMap<String, String>();
+        ok.put(BenchmarkReport.BACKEND, "neo4j");
+        ok.put(BenchmarkReport.CONSUMERS, "4");
+        ok.put(BenchmarkReport.QUEUE_CAPACITY, "0");
+        ok.put(BenchmarkReport.REPETITION, "1");
+        ok.put(BenchmarkReport.STATUS, "ok");
+        ok.put(BenchmarkReport.WALL_MILLIS, "1234");
+        report.addRun(ok);
+
+        Map<String, String> failed = new LinkedHashMap<String, String>();
+        failed.put(BenchmarkReport.BACKEND, "tinkergraph");
+        failed.put(BenchmarkReport.CONSUMERS, "1");
+        failed.put(BenchmarkReport.QUEUE_CAPACITY, "100");
+        failed.put(BenchmarkReport.REPETITION, "1");
+        failed.put(BenchmarkReport.STATUS, "failed");
+        report.addRun(failed);
+
+        File csv = new File(directory, "report.csv");
+        report.writeCsv(csv);
+        List<String> lines = FileUtils.readLines(csv, "UTF-8");
+        assertEquals(3, lines.size());
+        assertEquals(BenchmarkReport.COLUMNS.length, lines.get(0).split(",", -1).length);
+        assertTrue(lines.get(1).startsWith("neo4j,4,0,1,ok,1234,"));
+        assertTrue(lines.get(2).startsWith("tinkergraph,1,100,1,failed,,"));
+
+        File json = new File(directory, "report.json");
+        report.writeJson(json);
+        String content = FileUtils.readFileToString(json, "UTF-8");
+        assertTrue(content.contains("\"label\": \"with \\\"quotes\\\"\""));
+        assertTrue(content.contains("\"wallMillis\": 1234"));
+        assertTrue(content.contains("\"status\": \"failed\", \"wallMillis\": null"));
+
+        FileUtils.deleteQuietly(directory);
+    }
+}
@@ -0,0 +1,219 @@
+package com.gsoc.freebase.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RiotReader;
+import org.junit.Test;
+
+import com.gsoc.freebase.importer.binary.BinaryConverter;
+import com.gsoc.freebase.importer.binary.BinaryEntityReader;
+import com.gsoc.freebase.importer.binary.BinaryEntityWriter;
+import com.gsoc.freebase.importer.binary.MidCodec;
+import com.gsoc.freebase.importer.binary.VarLongCodec;
+import com.gsoc.freebase.importer.model.Entity;
+import com.gsoc.freebase.importer.producer.impl.AbstractProducerImporterHandler;
+
+/**
+ * <p>
+ * Class to test the binary entity format
+ * </p>
+ */
+public class BinaryEntityFormatTest
+{
+    private static final String ns = "http://rdf.basekb.com/ns/";
+
+    /**
+     * <p>
+     * Test the encoding of the mids
+     * </p>
+     */
+    @Test
+    public void testMidCodec()
+    {
+        for (String mid : Arrays.asList("m.0", "m.0bkh3tb", "m.011qmts", "m.0lwrl1q", "m.___________z"))
+            assertEquals(ns + mid, MidCodec.decode(MidCodec.encode(ns + mid)));
+
+        /* Not a mid, a symbol out of the alphabet and too long */
+        for (String uri : Arrays.asList(ns + "common.topic", ns + "m.", ns + "m.0topic", ns + "m.0123456789bcd"))
+            assertEquals(MidCodec.NOT_A_MID, MidCodec.encode(uri));
+        assertTrue(MidCodec.encode(ns + "m.0bkh3tb") < 1L << 42);
+    }
+
+    /**
+     * <p>
+     * Test the variable length integers written to a stream and to an array are the same bytes and read back
+     * </p>
+     */
+    @Test
+    public void testVarLongCodec() throws Exception
+    {
+        for (long value : new long[] { 0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, Long.MAX_VALUE, -1 })
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            VarLongCodec.write(new DataOutputStream(bytes), value);
+            byte[] array = new byte[VarLongCodec.MAX_BYTES];
+            int length = VarLongCodec.write(array, 0, value);
+            assertEquals(Arrays.toString(bytes.toByteArray()), Arrays.toString(Arrays.copyOf(array, length)));
+            assertEquals(value, VarLongCodec.read(new DataInputStream(new ByteArrayInputStream(array))));
+            assertEquals(value, VarLongCodec.read(ByteBuffer.wrap(array)));
+        }
+        assertEquals(1, VarLongCodec.write(new byte[VarLongCodec.MAX_BYTES], 0, 127));
+        assertEquals(VarLongCodec.MAX_BYTES, VarLongCodec.write(new byte[VarLongCodec.MAX_BYTES], 0, -1));
+    }
+
+    /**
+     * <p>
+     * Test that the entities written in many blocks are read back in order, in the current thread and in parallel
+     * </p>
+     */
+    @Test
+    public void testRoundTrip() throws Exception
+    {
+        List<Entity> entities = new ArrayList<Entity>();
+        for (int i = 0; i < 500; i++)
+        {
+            Map<String, List<String>> properties = new HashMap<String, List<String>>();
+            properties.put(ns + "type.object.type", Arrays.asList(ns + "common.topic", ns + "film.actor"));
+            properties.put(ns + "type.object.name", Arrays.asList("Name " + i + " \u00e9\u4e2d"));
+            properties.put(ns + "film.actor.film", Arrays.asList(ns + "m.0b" + i, ns + "m.0notamid" + i,
+                    "http://en.wikipedia.org/wiki/" + i));
+            entities.add(new Entity(ns + "m.0x" + i, properties));
+        }
+
+        File file = File.createTempFile("ftgibinary", BinaryEntityWriter.EXTENSION);
+        try
+        {
+            BinaryEntityWriter writer = new BinaryEntityWriter(file, 1024);
+            for (Entity entity : entities)
+                writer.write(entity.getUri(), entity.getProperties());
+            writer.close();
+
+            BinaryEntityReader reader = new BinaryEntityReader(file);
+            try
+            {
+                assertTrue(reader.getBlockCount() > 10);
+                assertEquals(500, reader.getEntityCount());
+                assertEquals(5, reader.getDictionarySize());
+                assertEquals(contents(entities), contents(read(reader, 1)));
+                assertEquals(contents(entities), contents(read(reader, 4)));
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    /**
+     * <p>
+     * Test that a converted file contains the same entities the producer builds from the RDF file
+     * </p>
+     */
+    @Test
+    public void testConverter() throws Exception
+    {
+        File input = new File("src/test/resources/test.nt.gz");
+        final List<Entity> expected = new ArrayList<Entity>();
+        InputStream in = new GZIPInputStream(new FileInputStream(input));
+        try
+        {
+            RiotReader.parse(in, Lang.NTRIPLES, input.toURI().toString(), new AbstractProducerImporterHandler()
+            {
+                @Override
+                public void onItemRead(String subject, Map<String, List<String>> properties)
+                {
+                    expected.add(new Entity(subject, properties));
+                }
+            });
+        }
+        finally
+        {
+            in.close();
+        }
+
+        File directory = new File("/tmp/ftgibinary" + UUID.randomUUID());
+        try
+        {
+            assertEquals(expected.size(), new BinaryConverter().convertAll(input, directory));
+            File output = new File(directory, "test" + BinaryEntityWriter.EXTENSION);
+            assertEquals(output.getName(), BinaryConverter.getBinaryName(input));
+
+            BinaryEntityReader reader = new BinaryEntityReader(output);
+            try
+            {
+                assertEquals(contents(expected), contents(read(reader, 2)));
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        finally
+        {
+            FileUtils.deleteQuietly(directory);
+        }
+    }
+
+    /**
+     * <p>
+     * Reads the entities of a binary file
+     * </p>
+     */
+    private static List<Entity> read(BinaryEntityReader reader, int parallelism) throws Exception
+    {
+        final List<Entity> entities = new ArrayList<Entity>();
+        final long[] bytes = new long[1];
+        reader.read(parallelism, new BinaryEntityReader.Listener()
+        {
+            @Override
+            public void entity(String subject, Map<String, List<String>> properties)
+            {
+                entities.add(new Entity(subject, properties));
+            }
+
+            @Override
+            public void blockRead(long blockBytes)
+            {
+                bytes[0] += blockBytes;
+            }
+        });
+        assertTrue(bytes[0] > 0);
+        return entities;
+    }
+
+    /**
+     * <p>
+     * Gets the URI and the properties of every entity, which can be compared
+     * </p>
+     */
+    private static List<List<Object>> contents(List<Entity> entities)
+    {
+        List<List<Object>> contents = new ArrayList<List<Object>>();
+        for (Entity entity : entities)
+            contents.add(Arrays.<Object> asList(entity.getUri(), entity.getProperties()));
+        return contents;
+    }
+}
@@ -0,0 +1,162 @@
+package com.gsoc.freebase.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import com.gsoc.freebase.importer.checkpoint.CheckpointManifest;
+import com.gsoc.freebase.importer.checkpoint.FileFingerprint;
+
+/**
+ * <p>
+ * Class to test the checkpoint manifest
+ * </p>
+ */
+public class CheckpointManifestTest
+{
+    private static final File input1 = new File("/data/basekb/part-00001.nt.gz");
+    private static final File input2 = new File("/data/basekb/part-00002.nt.gz");
+
+    /**
+     * <p>
+     * Test that the records are kept when resuming and discarded otherwise
+     * </p>
+     */
+    @Test
+    public void testResume() throws Exception
+    {
+        File file = new File("/tmp/ftgicheckpoint" + UUID.randomUUID(), CheckpointManifest.MANIFEST_FILE_NAME);
+
+        CheckpointManifest manifest = new CheckpointManifest(file, false);
+        manifest.record("vertices", input1, 1000, true);
+        manifest.record("relations", input1, 300, false);
+        manifest.close();
+
+        /* Simulate a crash while writing a record */
+        FileOutputStream out = new FileOutputStream(file, true);
+        out.write("relations\tpart-00001.nt.gz\t6".getBytes("UTF-8"));
+        out.close();
+
+        manifest = new CheckpointManifest(file, true);
+        assertTrue(manifest.isCompleted("vertices", input1));
+        assertFalse(manifest.isCompleted("relations", input1));
+        assertEquals(300, manifest.getCommittedEntities("relations", input1));
+        assertEquals(0, manifest.getCommittedEntities("vertices", input2));
+
+        manifest.record("relations", input1, 600, false);
+        manifest.close();
+
+        manifest = new CheckpointManifest(file, true);
+        assertEquals(600, manifest.getCommittedEntities("relations", input1));
+        manifest.close();
+
+        manifest = new CheckpointManifest(file, false);
+        assertFalse(manifest.isCompleted("vertices", input1));
+        manifest.close();
+
+        file.delete();
+        file.getParentFile().delete();
+    }
+
+    /**
+     * <p>
+     * Test that the records of a file don't apply once the file changes
+     * </p>
+     */
+    @Test
+    public void testChangedFile() throws Exception
+    {
+        File file = new File("/tmp/ftgicheckpoint" + UUID.randomUUID(), CheckpointManifest.MANIFEST_FILE_NAME);
+        File input = new File(file.getParentFile(), "part-00001.nt");
+        File other = new File(file.getParentFile(), "part-00002.nt");
+        FileUtils.writeStringToFile(input, "content", "UTF-8");
+
+        CheckpointManifest manifest = new CheckpointManifest(file, false);
+        manifest.setDigest(input, FileFingerprint.compute(input));
+        manifest.record("vertices", input, 1000, true);
+        manifest.record("relations", input, 300, false);
+        manifest.close();
+
+        FileUtils.writeStringToFile(input, "changed content", "UTF-8");
+        manifest = new CheckpointManifest(file, true);
+        assertFalse(manifest.isCompleted("vertices", input));
+        assertEquals(0, manifest.getCommittedEntities("relations", input));
+        assertTrue(manifest.isChanged("relations", input));
+        assertFalse(manifest.isChanged("relations", other));
+        manifest.close();
+
+        FileUtils.deleteDirectory(file.getParentFile());
+    }
+
+    /**
+     * <p>
+     * Test that a record applies without reading the file while its length and date don't change, and that a file
+     * written again with the same content is recognized by its digest
+     * </p>
+     */
+    @Test
+    public void testTouchedFile() throws Exception
+    {
+        File file = new File("/tmp/ftgicheckpoint" + UUID.randomUUID(), CheckpointManifest.MANIFEST_FILE_NAME);
+        File input = new File(file.getParentFile(), "part-00001.nt");
+        FileUtils.writeStringToFile(input, "content", "UTF-8");
+        input.setLastModified(1000000000000L);
+
+        CheckpointManifest manifest = new CheckpointManifest(file, false);
+        manifest.setDigest(input, FileFingerprint.compute(input));
+        manifest.record("vertices", input, 1000, true);
+        manifest.close();
+
+        /* The digest isn't checked while the key matches */
+        FileUtils.writeStringToFile(file, "vertices\tpart-00001.nt\t1000\tdone\t" + FileFingerprint.key(input)
+                + "\tnot-a-digest\n", "UTF-8", true);
+        manifest = new CheckpointManifest(file, true);
+        assertTrue(manifest.isCompleted("vertices", input));
+        manifest.close();
+
+        /* The digest is checked once the key changes */
+        input.setLastModified(1100000000000L);
+        manifest = new CheckpointManifest(file, true);
+        assertFalse(manifest.isCompleted("vertices", input));
+        manifest.close();
+
+        FileUtils.writeStringToFile(file, "vertices\tpart-00001.nt\t1000\tdone\t1-1\t"
+                + FileFingerprint.compute(input) + "\n", "UTF-8", true);
+        manifest = new CheckpointManifest(file, true);
+        assertTrue(manifest.isCompleted("vertices", input));
+        assertFalse(manifest.isChanged("vertices", input));
+        manifest.close();
+
+        FileUtils.deleteDirectory(file.getParentFile());
+    }
+
+    /**
+     * <p>
+     * Test that the digest changes with a change of the content anywhere in the file, even keeping its length
+     * </p>
+     */
+    @Test
+    public void testFingerprint() throws Exception
+    {
+        File file = new File("/tmp/ftgifingerprint" + UUID.randomUUID());
+        byte[] content = new byte[3 * 1024 * 1024];
+        for (int i = 0; i < content.length; i++)
+            content[i] = (byte) i;
+        FileUtils.writeByteArrayToFile(file, content);
+        String fingerprint = FileFingerprint.compute(file);
+        assertEquals(fingerprint, FileFingerprint.compute(file));
+
+        content[content.length / 2]++;
+        FileUtils.writeByteArrayToFile(file, content);
+        assertFalse(fingerprint.equals(FileFingerprint.compute(file)));
+
+        file.delete();
+    }
+}
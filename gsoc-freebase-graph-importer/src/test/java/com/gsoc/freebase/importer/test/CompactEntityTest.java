@@ -0,0 +1,135 @@
+package com.gsoc.freebase.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.impl.FreebaseToGraphImporter;
+import com.gsoc.freebase.importer.producer.impl.AbstractProducerImporterHandler;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+
+/**
+ * <p>
+ * Class to test the compaction of the entities with many triples
+ * </p>
+ */
+public class CompactEntityTest
+{
+    private static final String ns = "http://rdf.basekb.com/ns/";
+    private static final File testDirectory = ImportTestSupport.newTestDirectory("compact");
+    private static final File dataset = new File(testDirectory, "dataset");
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception
+    {
+        ImportTestSupport.generateDataset(dataset, 0.01);
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown()
+    {
+        FileUtils.deleteQuietly(testDirectory);
+    }
+
+    /**
+     * <p>
+     * Test a subject above the threshold keeps its types and the first values of the rest of the predicates, while
+     * the subjects below it keep every value
+     * </p>
+     */
+    @Test
+    public void testCompact()
+    {
+        final Map<String, Map<String, List<String>>> entities = new HashMap<String, Map<String, List<String>>>();
+        final Map<String, Boolean> compacted = new HashMap<String, Boolean>();
+        AbstractProducerImporterHandler handler = new AbstractProducerImporterHandler()
+        {
+            @Override
+            public void onItemRead(String subject, Map<String, List<String>> properties)
+            {
+                entities.put(subject, properties);
+                compacted.put(subject, this.isCompacted());
+            }
+        };
+        handler.setCompactThreshold(6);
+        handler.start();
+
+        Node large = NodeFactory.createURI(ns + "m.0large");
+        handler.triple(triple(large, ns + "type.object.name", NodeFactory.createLiteral("Large")));
+        handler.triple(triple(large, ImporterConstants.RDF_TYPE, NodeFactory.createURI(ns + "common.topic")));
+        for (int i = 0; i < 20; i++)
+        {
+            handler.triple(triple(large, ns + "music.artist.track", NodeFactory.createURI(ns + "m.0track" + i)));
+            if (i % 5 == 0)
+                handler.triple(triple(large, ImporterConstants.RDF_TYPE, NodeFactory.createURI(ns + "type" + i)));
+        }
+        handler.triple(triple(large, ns + "music.artist.label", NodeFactory.createURI(ns + "m.0label")));
+
+        Node small = NodeFactory.createURI(ns + "m.0small");
+        for (int i = 0; i < 4; i++)
+            handler.triple(triple(small, ns + "music.artist.track", NodeFactory.createURI(ns + "m.0track" + i)));
+        handler.finish();
+
+        Map<String, List<String>> properties = entities.get(ns + "m.0large");
+        assertTrue(compacted.get(ns + "m.0large"));
+        assertEquals("[Large]", properties.get(ns + "type.object.name").toString());
+        assertEquals("[" + ns + "common.topic, " + ns + "type0, " + ns + "type5, " + ns + "type10, " + ns
+                + "type15]", properties.get(ImporterConstants.RDF_TYPE).toString());
+        assertEquals("[" + ns + "m.0track0, " + ns + "m.0track1]", properties.get(ns + "music.artist.track")
+                .toString());
+        assertEquals("[" + ns + "m.0label]", properties.get(ns + "music.artist.label").toString());
+
+        assertFalse(compacted.get(ns + "m.0small"));
+        assertEquals(4, entities.get(ns + "m.0small").get(ns + "music.artist.track").size());
+    }
+
+    /**
+     * <p>
+     * Test compacting every entity generates the same graph
+     * </p>
+     */
+    @Test
+    public void testCompactedImport() throws Exception
+    {
+        File full = new File(testDirectory, "full");
+        FreebaseToGraphImporter importer = new FreebaseToGraphImporter(dataset, full, 2);
+        importer.setGenerateGraph(true);
+        importer.setGenerateGraphRelations(true);
+        importer.setCompactThreshold(0);
+        importer.process();
+
+        File compact = new File(testDirectory, "compact");
+        importer = new FreebaseToGraphImporter(dataset, compact, 2);
+        importer.setGenerateGraph(true);
+        importer.setGenerateGraphRelations(true);
+        importer.setCompactThreshold(1);
+        importer.process();
+
+        Map<String, Object> expected = ImportTestSupport.contents(full);
+        assertTrue(expected.size() > 100);
+        assertEquals(expected, ImportTestSupport.contents(compact));
+    }
+
+    /**
+     * <p>
+     * Creates a triple
+     * </p>
+     */
+    private static Triple triple(Node subject, String predicate, Node object)
+    {
+        return Triple.create(subject, NodeFactory.createURI(predicate), object);
+    }
+}
@@ -0,0 +1,170 @@
+package com.gsoc.freebase.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.gsoc.freebase.importer.consumer.ElasticConsumerPool;
+import com.gsoc.freebase.importer.consumer.PoolSizingPolicy;
+import com.gsoc.freebase.importer.impl.FreebaseToGraphImporter;
+
+/**
+ * <p>
+ * Class to test the elastic consumer pool
+ * </p>
+ */
+public class ConsumerPoolTest
+{
+    private static final File testDirectory = ImportTestSupport.newTestDirectory("pool");
+    private static final File dataset = new File(testDirectory, "dataset");
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception
+    {
+        ImportTestSupport.generateDataset(dataset, 0.01);
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown()
+    {
+        FileUtils.deleteQuietly(testDirectory);
+    }
+
+    /**
+     * <p>
+     * Test the pool grows when the queue backs up, shrinks when it starves and stops growing on contention
+     * </p>
+     */
+    @Test
+    public void testPolicy()
+    {
+        PoolSizingPolicy policy = new PoolSizingPolicy(1, 4);
+
+        /* A condition has to be sustained */
+        assertEquals(2, policy.resize(2, 1.0, 0.9, 10));
+        assertEquals(2, policy.resize(2, 1.0, 0.9, 10));
+        assertEquals(2, policy.resize(2, 0.5, 0.9, 10));
+        assertEquals(2, policy.resize(2, 1.0, 0.9, 10));
+        assertEquals(2, policy.resize(2, 1.0, 0.9, 10));
+        assertEquals(3, policy.resize(2, 1.0, 0.9, 10));
+
+        /* A full queue with idle consumers isn't a consumer bottleneck */
+        for (int i = 0; i < 5; i++)
+            assertEquals(3, policy.resize(3, 1.0, 0.3, 12));
+
+        /* The commits got slower after growing: shed the consumer and don't grow again */
+        assertEquals(2, policy.resize(3, 1.0, 0.9, 20));
+        assertEquals(2, policy.getMax());
+        for (int i = 0; i < 5; i++)
+            assertEquals(2, policy.resize(2, 1.0, 0.9, 10));
+
+        /* Starving queue */
+        assertEquals(2, policy.resize(2, 0.1, 0.2, 10));
+        assertEquals(2, policy.resize(2, 0.1, 0.2, 10));
+        assertEquals(1, policy.resize(2, 0.1, 0.2, 10));
+        for (int i = 0; i < 5; i++)
+            assertEquals(1, policy.resize(1, 0.0, 0.0, 0));
+
+        /* Out of bounds */
+        assertEquals(2, policy.resize(7, 0.5, 0.5, 0));
+        try
+        {
+            new PoolSizingPolicy(3, 2);
+            assertTrue(false);
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+    }
+
+    /**
+     * <p>
+     * Test the consumers beyond the active ones wait until the target is applied or the pool is closed
+     * </p>
+     */
+    @Test
+    public void testAwaitTurn() throws Exception
+    {
+        final ElasticConsumerPool pool = new ElasticConsumerPool(new PoolSizingPolicy(1, 3), 1);
+        assertEquals(1, pool.getActive());
+        pool.awaitTurn(0);
+
+        final AtomicInteger passed = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(2);
+        for (int i = 1; i < 3; i++)
+        {
+            final int index = i;
+            new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        pool.awaitTurn(index);
+                        passed.incrementAndGet();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        e.printStackTrace();
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        /* The target is only applied by the checkpoint barrier */
+        pool.setTarget(5);
+        assertEquals(3, pool.getTarget());
+        pool.setTarget(2);
+        assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(0, passed.get());
+
+        pool.applyTarget();
+        assertEquals(2, pool.getActive());
+        assertEquals(1, pool.getResizes());
+        assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, passed.get());
+
+        pool.close();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, passed.get());
+    }
+
+    /**
+     * <p>
+     * Test an import with an elastic pool generates the same graph as an import with a fixed number of consumers
+     * </p>
+     */
+    @Test
+    public void testElasticImport() throws Exception
+    {
+        File fixed = new File(testDirectory, "fixed");
+        FreebaseToGraphImporter importer = new FreebaseToGraphImporter(dataset, fixed, 2);
+        importer.setGenerateGraph(true);
+        importer.setGenerateGraphRelations(true);
+        importer.process();
+
+        File elastic = new File(testDirectory, "elastic");
+        importer = new FreebaseToGraphImporter(dataset, elastic, 2);
+        importer.setGenerateGraph(true);
+        importer.setGenerateGraphRelations(true);
+        importer.setConsumerPool(1, 3);
+        importer.process();
+
+        Map<String, Object> expected = ImportTestSupport.contents(fixed);
+        assertTrue(expected.size() > 100);
+        assertEquals(expected, ImportTestSupport.contents(elastic));
+    }
+}
@@ -0,0 +1,158 @@
+package com.gsoc.freebase.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jena.riot.RiotReader;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.gsoc.freebase.importer.generator.DatasetGenerator;
+import com.gsoc.freebase.importer.impl.FreebaseToGraphImporter;
+import com.gsoc.freebase.importer.producer.impl.AbstractProducerImporterHandler;
+import com.gsoc.freebase.importer.utils.FreebaseUtils;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+
+/**
+ * <p>
+ * Class to test the synthetic dataset generator
+ * </p>
+ */
+public class DatasetGeneratorTest
+{
+    private static final double scaleFactor = 0.02;
+    private static final File testDirectory = new File("/tmp/dgtest" + UUID.randomUUID());
+    private static DatasetGenerator generator;
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws IOException
+    {
+        generator = new DatasetGenerator(new File(testDirectory, "dataset"), scaleFactor);
+        generator.setEntitiesPerFile(500);
+        generator.generate();
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown()
+    {
+        FileUtils.deleteQuietly(testDirectory);
+    }
+
+    /**
+     * <p>
+     * Test that the same seed generates the same files
+     * </p>
+     */
+    @Test
+    public void testDeterministic() throws IOException
+    {
+        DatasetGenerator other = new DatasetGenerator(new File(testDirectory, "other"), scaleFactor);
+        other.setEntitiesPerFile(500);
+        other.generate();
+
+        assertEquals(4, generator.getFiles());
+        assertEquals(generator.getTriples(), other.getTriples());
+        for (File f : new File(testDirectory, "dataset").listFiles())
+            assertTrue(FileUtils.contentEquals(f, new File(new File(testDirectory, "other"), f.getName())));
+    }
+
+    /**
+     * <p>
+     * Test the shape of the generated entities
+     * </p>
+     */
+    @Test
+    public void testEntities()
+    {
+        final int[] counts = new int[3];
+        AbstractProducerImporterHandler handler = new AbstractProducerImporterHandler()
+        {
+            @Override
+            public void onItemRead(String subject, Map<String, List<String>> properties)
+            {
+                assertTrue(FreebaseUtils.isFreebaseId(subject));
+                counts[0]++;
+                if (FreebaseUtils.isTopic(properties))
+                    counts[1]++;
+                for (List<String> values : properties.values())
+                    counts[2] += values.size();
+            }
+        };
+        for (File f : new File(testDirectory, "dataset").listFiles())
+            RiotReader.parse(f.getAbsolutePath(), handler);
+
+        /* The triples of every entity are grouped, so every subject is read once */
+        assertEquals(generator.getEntities(), counts[0]);
+        assertEquals(generator.getTopics(), counts[1]);
+        assertEquals(generator.getTriples(), counts[2]);
+    }
+
+    /**
+     * <p>
+     * Test that the generated dataset can be imported
+     * </p>
+     */
+    @Test
+    public void testImport()
+    {
+        long[] counts = importDataset("graph", 1);
+        assertEquals(generator.getTopics(), counts[0]);
+        assertTrue(counts[1] > 0);
+    }
+
+    /**
+     * <p>
+     * Test that parsing the files at the same time generates the same graph
+     * </p>
+     */
+    @Test
+    public void testImportParallelFiles()
+    {
+        long[] sequential = importDataset("sequential", 1);
+        long[] parallel = importDataset("parallel", 4);
+        assertEquals(sequential[0], parallel[0]);
+        assertEquals(sequential[1], parallel[1]);
+    }
+
+    /**
+     * <p>
+     * Imports the dataset and counts the vertices and edges of the graph
+     * </p>
+     */
+    private long[] importDataset(String name, int parallelFiles)
+    {
+        File graphDirectory = new File(testDirectory, name);
+        FreebaseToGraphImporter importer = new FreebaseToGraphImporter(new File(testDirectory, "dataset"),
+                graphDirectory, 2);
+        importer.setGenerateGraph(true);
+        importer.setGenerateGraphRelations(true);
+        importer.setParallelFiles(parallelFiles);
+        importer.process();
+
+        Graph graph = new Neo4jGraph(graphDirectory.getAbsolutePath());
+        try
+        {
+            long[] counts = new long[2];
+            for (Vertex v : graph.getVertices())
+                counts[0]++;
+            for (Edge e : graph.getEdges())
+                counts[1]++;
+            return counts;
+        }
+        finally
+        {
+            graph.shutdown();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.gsoc.freebase.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import com.gsoc.freebase.importer.model.Entity;
+import com.gsoc.freebase.importer.stream.EntityPublisher;
+
+/**
+ * <p>
+ * Class to test the publisher of the entities
+ * </p>
+ */
+public class EntityPublisherTest
+{
+    private static final File testDirectory = ImportTestSupport.newTestDirectory("publisher");
+    private static final File dataset = new File(testDirectory, "dataset");
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception
+    {
+        ImportTestSupport.generateDataset(dataset, 0.01);
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown()
+    {
+        FileUtils.deleteQuietly(testDirectory);
+    }
+
+    /**
+     * <p>
+     * Test no more entities are sent than requested and the batches contain the same entities in the same order
+     * </p>
+     */
+    @Test
+    public void testDemand() throws Exception
+    {
+        EntityPublisher publisher = new EntityPublisher(dataset);
+        RecordingSubscriber<Entity> entities = new RecordingSubscriber<Entity>();
+        publisher.subscribe(entities);
+        entities.subscription.request(3);
+        entities.awaitElements(3);
+        Thread.sleep(500);
+        assertEquals(3, entities.elements.size());
+        assertFalse(entities.completed);
+
+        entities.subscription.request(Long.MAX_VALUE);
+        entities.await();
+        assertTrue(entities.completed);
+        assertTrue(entities.elements.size() > 100);
+
+        RecordingSubscriber<List<Entity>> batches = new RecordingSubscriber<List<Entity>>();
+        publisher.batches(7).subscribe(batches);
+        batches.subscription.request(Long.MAX_VALUE);
+        batches.await();
+        assertTrue(batches.completed);
+
+        List<String> expected = new ArrayList<String>();
+        for (Entity entity : entities.elements)
+            expected.add(entity.getUri());
+        List<String> uris = new ArrayList<String>();
+        for (int i = 0; i < batches.elements.size(); i++)
+        {
+            List<Entity> batch = batches.elements.get(i);
+            assertTrue(batch.size() == 7 || (i == batches.elements.size() - 1 && batch.size() < 7));
+            for (Entity entity : batch)
+                uris.add(entity.getUri());
+        }
+        assertEquals(expected, uris);
+    }
+
+    /**
+     * <p>
+     * Test cancelling the subscription from {@code onNext} stops the stream without completing it
+     * </p>
+     */
+    @Test
+    public void testCancel() throws Exception
+    {
+        RecordingSubscriber<Entity> subscriber = new RecordingSubscriber<Entity>();
+        subscriber.cancelAfter = 10;
+        new EntityPublisher(dataset).subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        subscriber.awaitElements(10);
+        Thread.sleep(500);
+        assertEquals(10, subscriber.elements.size());
+        assertFalse(subscriber.completed);
+        assertEquals(null, subscriber.failure);
+    }
+
+    /**
+     * <p>
+     * Test a request of no elements ends the stream with an error
+     * </p>
+     */
+    @Test
+    public void testInvalidRequest() throws Exception
+    {
+        RecordingSubscriber<Entity> subscriber = new RecordingSubscriber<Entity>();
+        new EntityPublisher(dataset).subscribe(subscriber);
+        subscriber.subscription.request(0);
+        subscriber.await();
+        assertTrue(subscriber.failure instanceof IllegalArgumentException);
+        assertTrue(subscriber.elements.isEmpty());
+    }
+
+    /**
+     * <p>
+     * Subscriber recording the elements received and the end of the stream
+     * </p>
+     */
+    private static class RecordingSubscriber<T> implements Subscriber<T>
+    {
+        private Subscription subscription;
+        private List<T> elements = Collections.synchronizedList(new ArrayList<T>());
+        private int cancelAfter = -1;
+        private volatile boolean completed;
+        private volatile Throwable failure;
+        private CountDownLatch finished = new CountDownLatch(1);
+
+        @Override
+        public void onSubscribe(Subscription subscription)
+        {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(T element)
+        {
+            this.elements.add(element);
+            if (this.elements.size() == this.cancelAfter)
+                this.subscription.cancel();
+        }
+
+        @Override
+        public void onError(Throwable failure)
+        {
+            this.failure = failure;
+            this.finished.countDown();
+        }
+
+        @Override
+        public void onComplete()
+        {
+            this.completed = true;
+            this.finished.countDown();
+        }
+
+        public void await() throws InterruptedException
+        {
+            assertTrue(this.finished.await(60, TimeUnit.SECONDS));
+        }
+
+        public void awaitElements(int n) throws InterruptedException
+        {
+            long end = System.currentTimeMillis() + 60000;
+            while (this.elements.size() < n && System.currentTimeMillis() < end)
+                Thread.sleep(10);
+        }
+    }
+}
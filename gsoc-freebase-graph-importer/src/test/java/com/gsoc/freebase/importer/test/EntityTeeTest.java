@@ -0,0 +1,250 @@
+package com.gsoc.freebase.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.impl.FreebaseToGraphImporter;
+import com.gsoc.freebase.importer.model.Entity;
+import com.gsoc.freebase.importer.producer.EntitySink;
+import com.gsoc.freebase.importer.sink.CsvEntityExporter;
+import com.gsoc.freebase.importer.sink.EntityStatistics;
+import com.gsoc.freebase.importer.sink.EntityTee;
+import com.gsoc.freebase.importer.sink.OverflowPolicy;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+
+/**
+ * <p>
+ * Class to test the sinks fed by a single parse
+ * </p>
+ */
+public class EntityTeeTest
+{
+    private static final File testDirectory = ImportTestSupport.newTestDirectory("tee");
+    private static final File dataset = new File(testDirectory, "dataset");
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception
+    {
+        ImportTestSupport.generateDataset(dataset, 0.01);
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown()
+    {
+        FileUtils.deleteQuietly(testDirectory);
+    }
+
+    /**
+     * <p>
+     * Test a stalled sink only loses its own entities with the drop policy, and fails the parsing with the fail policy
+     * </p>
+     */
+    @Test
+    public void testPolicies() throws Exception
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        EntityTee tee = new EntityTee();
+        CountingSink all = new CountingSink(null);
+        tee.addSink("all", all, 100, OverflowPolicy.BLOCK);
+        tee.addSink("sample", new CountingSink(release), 2, OverflowPolicy.DROP);
+        for (int i = 0; i < 50; i++)
+            tee.put(new Entity("m.0" + i, null));
+        release.countDown();
+        tee.close();
+        assertEquals(50, all.count);
+        assertEquals(50, tee.getDelivered("all"));
+        assertTrue(tee.getDropped("sample") > 0);
+        assertEquals(50, tee.getDelivered("sample") + tee.getDropped("sample"));
+
+        tee = new EntityTee();
+        tee.addSink("stalled", new CountingSink(new CountDownLatch(1)), 2, OverflowPolicy.FAIL);
+        try
+        {
+            for (int i = 0; i < 50; i++)
+                tee.put(new Entity("m.0" + i, null));
+            assertTrue(false);
+        }
+        catch (IllegalStateException e)
+        {
+        }
+        tee.cancel();
+    }
+
+    /**
+     * <p>
+     * Test the failure of a sink reaches the parsing and the close
+     * </p>
+     */
+    @Test
+    public void testFailure() throws Exception
+    {
+        EntityTee tee = new EntityTee();
+        tee.addSink("failing", new EntitySink()
+        {
+            @Override
+            public void put(Entity entity)
+            {
+                throw new IllegalArgumentException("Invalid entity " + entity.getUri());
+            }
+        }, 1, OverflowPolicy.BLOCK);
+        try
+        {
+            for (int i = 0; i < 1000; i++)
+                tee.put(new Entity("m.0" + i, null));
+            assertTrue(false);
+        }
+        catch (IllegalStateException e)
+        {
+        }
+        try
+        {
+            tee.close();
+            assertTrue(false);
+        }
+        catch (IllegalStateException e)
+        {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    /**
+     * <p>
+     * Test an import generating the vertices, a CSV export and the statistics of the dataset from one parse
+     * </p>
+     */
+    @Test
+    public void testImportWithSinks() throws Exception
+    {
+        File csv = new File(testDirectory, "entities.csv.gz");
+        File report = new File(testDirectory, "statistics.tsv");
+        EntityStatistics statistics = new EntityStatistics(report);
+        EntityTee tee = new EntityTee();
+        tee.addSink("csv", new CsvEntityExporter(csv));
+        tee.addSink("statistics", statistics, 16, OverflowPolicy.BLOCK);
+
+        File location = new File(testDirectory, "graph");
+        FreebaseToGraphImporter importer = new FreebaseToGraphImporter(dataset, location, 2);
+        importer.setGenerateGraph(true);
+        importer.setEntityTee(tee);
+        importer.process();
+
+        long vertices = 0;
+        Graph graph = new Neo4jGraph(location.getAbsolutePath());
+        try
+        {
+            for (Vertex vertex : graph.getVertices())
+            {
+                if (vertex.getProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY) != null)
+                    vertices++;
+            }
+        }
+        finally
+        {
+            graph.shutdown();
+        }
+
+        assertTrue(vertices > 100);
+        assertEquals(vertices, statistics.getTopics());
+        assertEquals(vertices, statistics.getEntities(ImporterConstants.FREEBASE_COMMON_TOPIC));
+        assertTrue(statistics.getEntities() > vertices);
+        assertEquals(statistics.getEntities(), tee.getDelivered("csv"));
+
+        List<String> lines = readLines(csv);
+        assertEquals(CsvEntityExporter.HEADER, lines.get(0));
+        assertEquals(statistics.getEntities() + 1, lines.size());
+        assertTrue(FileUtils.readFileToString(report, "UTF-8").startsWith("entities\t" + statistics.getEntities()
+                + "\n"));
+    }
+
+    /**
+     * <p>
+     * Test the sinks receive every value of the entities above the compact threshold, while the graph is the same
+     * </p>
+     */
+    @Test
+    public void testCompactedEntities() throws Exception
+    {
+        EntityStatistics full = new EntityStatistics(null);
+        EntityTee tee = new EntityTee();
+        tee.addSink("statistics", full);
+        File location = new File(testDirectory, "full");
+        FreebaseToGraphImporter importer = new FreebaseToGraphImporter(dataset, location, 2);
+        importer.setGenerateGraph(true);
+        importer.setCompactThreshold(0);
+        importer.setEntityTee(tee);
+        importer.process();
+
+        EntityStatistics compacted = new EntityStatistics(null);
+        tee = new EntityTee();
+        tee.addSink("statistics", compacted);
+        File compactedLocation = new File(testDirectory, "compacted");
+        importer = new FreebaseToGraphImporter(dataset, compactedLocation, 2);
+        importer.setGenerateGraph(true);
+        importer.setCompactThreshold(3);
+        importer.setEntityTee(tee);
+        importer.process();
+
+        assertTrue(full.getValues() > full.getEntities() * 3);
+        assertEquals(full.getEntities(), compacted.getEntities());
+        assertEquals(full.getValues(), compacted.getValues());
+        assertEquals(ImportTestSupport.contents(location), ImportTestSupport.contents(compactedLocation));
+    }
+
+    /**
+     * <p>
+     * Reads the lines of a gzipped file
+     * </p>
+     */
+    private static List<String> readLines(File file) throws Exception
+    {
+        InputStream in = new GZIPInputStream(new FileInputStream(file));
+        try
+        {
+            return IOUtils.readLines(in, "UTF-8");
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * <p>
+     * Sink counting the entities, which can wait for a latch before taking the first one
+     * </p>
+     */
+    private static class CountingSink implements EntitySink
+    {
+        private CountDownLatch release;
+        private long count;
+
+        public CountingSink(CountDownLatch release)
+        {
+            this.release = release;
+        }
+
+        @Override
+        public void put(Entity entity) throws InterruptedException
+        {
+            if (this.release != null)
+                this.release.await();
+            this.count++;
+        }
+    }
+}
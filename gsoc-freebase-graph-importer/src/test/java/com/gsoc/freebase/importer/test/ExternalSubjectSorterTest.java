@@ -0,0 +1,155 @@
+package com.gsoc.freebase.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RiotReader;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.junit.Test;
+
+import com.gsoc.freebase.importer.sort.ExternalSubjectSorter;
+import com.hp.hpl.jena.graph.Triple;
+
+/**
+ * <p>
+ * Class to test the external sort of the triples by subject
+ * </p>
+ */
+public class ExternalSubjectSorterTest
+{
+    private static final String ns = "http://rdf.basekb.com/ns/";
+
+    /**
+     * <p>
+     * Test that the triples of every subject are consecutive after the sort, in the order of the input, when the input
+     * is split in many runs
+     * </p>
+     */
+    @Test
+    public void testGroupBySubject() throws Exception
+    {
+        /* 20 subjects with 10 triples each, interleaved */
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 10; i++)
+        {
+            for (int s = 0; s < 20; s++)
+                input.append("<" + ns + "m.0s" + s + "> <" + ns + "p" + i + "> \"v" + i + " \\u00e9\"@en .\n");
+        }
+
+        File directory = new File("/tmp/ftgisort" + UUID.randomUUID());
+        directory.mkdirs();
+        ExternalSubjectSorter sorter = new ExternalSubjectSorter(directory, 2048, 2);
+        final List<Triple> triples = new ArrayList<Triple>();
+        try
+        {
+            RiotReader.parse(new ByteArrayInputStream(input.toString().getBytes("UTF-8")), Lang.NTRIPLES, ns, sorter);
+            InputStream in = sorter.merge();
+            RiotReader.parse(in, Lang.NTRIPLES, ns, new StreamRDFBase()
+            {
+                @Override
+                public void triple(Triple triple)
+                {
+                    triples.add(triple);
+                }
+            });
+            in.close();
+        }
+        finally
+        {
+            sorter.close();
+        }
+
+        assertEquals(200, sorter.getTriples());
+        assertEquals(200, triples.size());
+        assertEquals(0, directory.list().length);
+        FileUtils.deleteQuietly(directory);
+
+        Set<String> seen = new HashSet<String>();
+        for (int t = 0; t < triples.size(); t++)
+        {
+            String subject = triples.get(t).getSubject().getURI();
+            int predicate = t % 10;
+            if (predicate == 0)
+            {
+                /* A new group starts: its subject hasn't been seen before */
+                assertFalse(seen.contains(subject));
+                seen.add(subject);
+            }
+            else
+                assertEquals(triples.get(t - 1).getSubject().getURI(), subject);
+
+            assertEquals(ns + "p" + predicate, triples.get(t).getPredicate().getURI());
+            assertEquals("v" + predicate + " \u00e9", triples.get(t).getObject().getLiteralLexicalForm());
+            assertEquals("en", triples.get(t).getObject().getLiteralLanguage());
+        }
+        assertEquals(20, seen.size());
+    }
+
+    /**
+     * <p>
+     * Test that merging the runs in several passes, a few runs at a time, gives the same triples in the same order as
+     * merging all the runs at once
+     * </p>
+     */
+    @Test
+    public void testMergePasses() throws Exception
+    {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 20; i++)
+        {
+            for (int s = 0; s < 50; s++)
+                input.append("<" + ns + "m.0s" + (s * 7919 % 50) + "> <" + ns + "p" + i + "> \"v" + i + "\" .\n");
+        }
+
+        List<String> expected = sort(input.toString(), 1000);
+        assertEquals(1000, expected.size());
+        assertEquals(expected, sort(input.toString(), 2));
+        assertEquals(expected, sort(input.toString(), 3));
+    }
+
+    /**
+     * <p>
+     * Sorts the N-Triples of the input in runs of 1 KB, merged {@code mergeFactor} at a time
+     * </p>
+     */
+    private static List<String> sort(String input, int mergeFactor) throws Exception
+    {
+        File directory = new File("/tmp/ftgisort" + UUID.randomUUID());
+        directory.mkdirs();
+        ExternalSubjectSorter sorter = new ExternalSubjectSorter(directory, 1024, 2);
+        sorter.setMergeFactor(mergeFactor);
+        final List<String> triples = new ArrayList<String>();
+        try
+        {
+            RiotReader.parse(new ByteArrayInputStream(input.getBytes("UTF-8")), Lang.NTRIPLES, ns, sorter);
+            InputStream in = sorter.merge();
+            RiotReader.parse(in, Lang.NTRIPLES, ns, new StreamRDFBase()
+            {
+                @Override
+                public void triple(Triple triple)
+                {
+                    triples.add(triple.toString());
+                }
+            });
+            in.close();
+        }
+        finally
+        {
+            sorter.close();
+        }
+        assertEquals(0, directory.list().length);
+        FileUtils.deleteQuietly(directory);
+        return triples;
+    }
+}
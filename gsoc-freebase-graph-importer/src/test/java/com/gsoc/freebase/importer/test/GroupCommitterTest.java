@@ -0,0 +1,263 @@
+package com.gsoc.freebase.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.checkpoint.CheckpointManifest;
+import com.gsoc.freebase.importer.checkpoint.Checkpointer;
+import com.gsoc.freebase.importer.commit.DetachableGraph;
+import com.gsoc.freebase.importer.commit.GroupCommitter;
+import com.gsoc.freebase.importer.impl.FreebaseToGraphImporter;
+import com.gsoc.freebase.importer.model.Entity;
+import com.tinkerpop.blueprints.Graph;
+
+/**
+ * <p>
+ * Class to test the commits in a dedicated thread
+ * </p>
+ */
+public class GroupCommitterTest
+{
+    private static final File testDirectory = ImportTestSupport.newTestDirectory("commit");
+    private static final File dataset = new File(testDirectory, "dataset");
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception
+    {
+        ImportTestSupport.generateDataset(dataset, 0.01);
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown()
+    {
+        FileUtils.deleteQuietly(testDirectory);
+    }
+
+    /**
+     * <p>
+     * Test the actions run after the commits of the transactions submitted before them
+     * </p>
+     */
+    @Test
+    public void testOrder() throws Exception
+    {
+        RecordingGraph graph = new RecordingGraph();
+        GroupCommitter committer = new GroupCommitter(graph, 2);
+        for (int i = 0; i < 20; i++)
+        {
+            committer.submit("t" + i, null);
+            if (i % 5 == 4)
+                committer.afterCommits(graph.action("a" + i));
+        }
+        committer.flush();
+        assertEquals(20, committer.getCommitted());
+        committer.close();
+
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 20; i++)
+        {
+            expected.add("commit t" + i);
+            if (i % 5 == 4)
+                expected.add("a" + i);
+        }
+        assertEquals(expected, graph.log);
+        /* At most a group for every transaction and action */
+        assertTrue(committer.getGroups() > 0 && committer.getGroups() <= 24);
+    }
+
+    /**
+     * <p>
+     * Test a failed commit rolls back the pending transactions, discards the actions and reaches the callers
+     * </p>
+     */
+    @Test
+    public void testFailure() throws Exception
+    {
+        RecordingGraph graph = new RecordingGraph();
+        graph.failing = "t1";
+        /* The commits wait for the transactions to be submitted, so t2 isn't refused after the failure of t1 */
+        graph.release = new CountDownLatch(1);
+        GroupCommitter committer = new GroupCommitter(graph, 10);
+        committer.submit("t0", null);
+        committer.submit("t1", null);
+        committer.afterCommits(graph.action("a"));
+        committer.submit("t2", null);
+        graph.release.countDown();
+        try
+        {
+            committer.flush();
+            assertTrue(false);
+        }
+        catch (IllegalStateException e)
+        {
+        }
+        try
+        {
+            committer.submit("t3", null);
+            assertTrue(false);
+        }
+        catch (IllegalStateException e)
+        {
+        }
+        try
+        {
+            committer.close();
+            assertTrue(false);
+        }
+        catch (IllegalStateException e)
+        {
+        }
+        assertEquals("[commit t0, rollback t2]", graph.log.toString());
+    }
+
+    /**
+     * <p>
+     * Test a checkpoint which can't be recorded fails the producer, or the committer recording it
+     * </p>
+     */
+    @Test
+    public void testRecordFailure() throws Exception
+    {
+        File file = new File(testDirectory, "failure/" + CheckpointManifest.MANIFEST_FILE_NAME);
+        CheckpointManifest manifest = new CheckpointManifest(file, false);
+        manifest.close();
+        Checkpointer checkpointer = new Checkpointer(manifest, ImporterConstants.GENERATE_GRAPH_STEP, 0, 0);
+        try
+        {
+            checkpointer.checkpoint(new LinkedBlockingQueue<Entity>(), file, 10, true);
+            assertTrue(false);
+        }
+        catch (IllegalStateException e)
+        {
+        }
+
+        RecordingGraph graph = new RecordingGraph();
+        GroupCommitter committer = new GroupCommitter(graph, 10);
+        checkpointer.setGroupCommitter(committer);
+        committer.submit("t0", null);
+        checkpointer.checkpoint(new LinkedBlockingQueue<Entity>(), file, 10, true);
+        try
+        {
+            committer.close();
+            assertTrue(false);
+        }
+        catch (IllegalStateException e)
+        {
+        }
+        assertEquals("[commit t0]", graph.log.toString());
+    }
+
+    /**
+     * <p>
+     * Test an import committing in a dedicated thread generates the same vertices and records every file as completed
+     * </p>
+     */
+    @Test
+    public void testAsyncImport() throws Exception
+    {
+        File sync = new File(testDirectory, "sync");
+        FreebaseToGraphImporter importer = new FreebaseToGraphImporter(dataset, sync, 2);
+        importer.setGenerateGraph(true);
+        importer.process();
+
+        File async = new File(testDirectory, "async");
+        importer = new FreebaseToGraphImporter(dataset, async, 2);
+        importer.setGenerateGraph(true);
+        importer.setAsyncCommit(true);
+        importer.process();
+
+        List<String> expected = ImportTestSupport.topicUris(sync);
+        assertTrue(expected.size() > 100);
+        assertEquals(expected, ImportTestSupport.topicUris(async));
+
+        CheckpointManifest manifest = new CheckpointManifest(new File(async, CheckpointManifest.MANIFEST_FILE_NAME),
+                true);
+        try
+        {
+            File[] files = dataset.listFiles();
+            assertTrue(files.length > 1);
+            for (File file : files)
+                assertTrue(manifest.isCompleted(ImporterConstants.GENERATE_GRAPH_STEP, file));
+        }
+        finally
+        {
+            manifest.close();
+        }
+
+        /* Every file is skipped when resuming */
+        importer = new FreebaseToGraphImporter(dataset, async, 2);
+        importer.setGenerateGraph(true);
+        importer.setAsyncCommit(true);
+        importer.setResume(true);
+        importer.process();
+        assertEquals(expected, ImportTestSupport.topicUris(async));
+    }
+
+    /**
+     * <p>
+     * Graph recording the transactions committed and rolled back and the actions run
+     * </p>
+     */
+    private static class RecordingGraph implements DetachableGraph
+    {
+        private List<String> log = Collections.synchronizedList(new ArrayList<String>());
+        private String failing;
+        private CountDownLatch release;
+
+        @Override
+        public Object detachTransaction()
+        {
+            return null;
+        }
+
+        @Override
+        public void commitDetached(Object transaction)
+        {
+            if (release != null)
+            {
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (transaction.equals(failing))
+                throw new IllegalStateException("Unable to commit " + transaction);
+            log.add("commit " + transaction);
+        }
+
+        @Override
+        public void rollbackDetached(Object transaction)
+        {
+            log.add("rollback " + transaction);
+        }
+
+        public Runnable action(final String name)
+        {
+            return new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    log.add(name);
+                }
+            };
+        }
+    }
+}
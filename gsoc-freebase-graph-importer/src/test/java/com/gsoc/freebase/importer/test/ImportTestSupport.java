@@ -0,0 +1,144 @@
+package com.gsoc.freebase.importer.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.generator.DatasetGenerator;
+import com.gsoc.freebase.importer.types.TypeDictionary;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+
+/**
+ * <p>
+ * Helpers shared by the tests importing a generated dataset and comparing the resulting graphs
+ * </p>
+ */
+public final class ImportTestSupport
+{
+    private ImportTestSupport()
+    {
+    }
+
+    /**
+     * <p>
+     * Gets a new temporary directory for a test class (not created)
+     * </p>
+     *
+     * @param name the name identifying the test class
+     * @return the directory
+     */
+    public static File newTestDirectory(String name)
+    {
+        return new File("/tmp/ftgi" + name + UUID.randomUUID());
+    }
+
+    /**
+     * <p>
+     * Generates a synthetic dataset of 500 entities per file
+     * </p>
+     *
+     * @param dataset the directory of the dataset
+     * @param scaleFactor the scale factor of the generator
+     */
+    public static void generateDataset(File dataset, double scaleFactor) throws IOException
+    {
+        DatasetGenerator generator = new DatasetGenerator(dataset, scaleFactor);
+        generator.setEntitiesPerFile(500);
+        generator.generate();
+    }
+
+    /**
+     * <p>
+     * Gets the sorted URIs of the topic vertices of a graph, duplicates included
+     * </p>
+     *
+     * @param location the graph directory
+     * @return the URIs
+     */
+    public static List<String> topicUris(File location)
+    {
+        List<String> uris = new ArrayList<String>();
+        Graph graph = new Neo4jGraph(location.getAbsolutePath());
+        try
+        {
+            for (Vertex vertex : graph.getVertices())
+            {
+                String uri = vertex.getProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY);
+                if (uri != null)
+                    uris.add(uri);
+            }
+        }
+        finally
+        {
+            graph.shutdown();
+        }
+        Collections.sort(uris);
+        return uris;
+    }
+
+    /**
+     * <p>
+     * Gets the properties of the topics (with the types decoded, as the ids depend on the order of the consumers) and
+     * the numeric properties of the edges of a graph, with the vertices of every edge sorted. A topic or an edge found
+     * twice fails the test
+     * </p>
+     *
+     * @param location the graph directory
+     * @return the contents, keyed by URI or by label and vertices, and property
+     */
+    public static Map<String, Object> contents(File location) throws IOException
+    {
+        TypeDictionary dictionary = TypeDictionary.read(new File(location, TypeDictionary.FILE_NAME));
+        Map<String, Object> contents = new HashMap<String, Object>();
+        Graph graph = new Neo4jGraph(location.getAbsolutePath());
+        try
+        {
+            for (Vertex vertex : graph.getVertices())
+            {
+                String uri = vertex.getProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY);
+                if (uri == null)
+                    continue;
+                for (String key : vertex.getPropertyKeys())
+                {
+                    Object value = vertex.getProperty(key);
+                    if (value instanceof int[])
+                        value = dictionary.decode((int[]) value);
+                    else if (value instanceof String[])
+                        value = Arrays.asList((String[]) value);
+                    assertEquals(uri + " " + key, null, contents.put(uri + " " + key, value));
+                }
+            }
+            for (Edge edge : graph.getEdges())
+            {
+                String in = edge.getVertex(Direction.IN).getProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY);
+                String out = edge.getVertex(Direction.OUT).getProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY);
+                String pair = in.compareTo(out) < 0 ? in + " " + out : out + " " + in;
+                for (String key : edge.getPropertyKeys())
+                {
+                    Object value = edge.getProperty(key);
+                    if (value instanceof Number)
+                        assertEquals(pair + " " + key, null, contents.put(edge.getLabel() + " " + pair + " " + key,
+                                value));
+                }
+            }
+        }
+        finally
+        {
+            graph.shutdown();
+        }
+        return contents;
+    }
+}
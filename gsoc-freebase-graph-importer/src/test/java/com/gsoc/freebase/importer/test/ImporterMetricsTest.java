@@ -0,0 +1,98 @@
+package com.gsoc.freebase.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import com.gsoc.freebase.importer.metrics.ConsumerMetrics;
+import com.gsoc.freebase.importer.metrics.ImporterMetrics;
+import com.gsoc.freebase.importer.metrics.LatencyHistogram;
+
+/**
+ * <p>
+ * Class to test the import metrics
+ * </p>
+ */
+public class ImporterMetricsTest
+{
+    /**
+     * <p>
+     * Test the percentiles of the latency histogram
+     * </p>
+     */
+    @Test
+    public void testLatencyHistogram()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++)
+            histogram.record(1000000L);
+        histogram.record(100000000L);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(100.0, histogram.getMaxMillis(), 0.001);
+        /* Percentiles are bounded by the next power of two of the value in microseconds */
+        assertTrue(histogram.getPercentileMillis(50) >= 1.0 && histogram.getPercentileMillis(50) < 2.1);
+        assertTrue(histogram.getPercentileMillis(99) < 2.1);
+        assertEquals(100.0, histogram.getPercentileMillis(100), 0.001);
+    }
+
+    /**
+     * <p>
+     * Test the counters of the producer and the consumers and the JMX registration
+     * </p>
+     */
+    @Test
+    public void testMetrics() throws Exception
+    {
+        ImporterMetrics metrics = new ImporterMetrics();
+        BlockingQueue<String> queue = new ArrayBlockingQueue<String>(4);
+        queue.add("entity");
+        metrics.register();
+        try
+        {
+            metrics.startStep("relations", queue);
+            ConsumerMetrics consumer = metrics.registerConsumer("consumer-0");
+
+            metrics.setBytesTotal(200);
+            metrics.bytesRead(50);
+            metrics.triplesRead(10);
+            metrics.entityProduced(0);
+            metrics.entityProduced(0);
+            consumer.entityConsumed(0);
+            consumer.entityConsumed(0);
+            consumer.indexLookups(6);
+            consumer.commit(5000000L);
+
+            assertEquals(25.0, metrics.getProgressPercent(), 0.001);
+            assertEquals(10, metrics.getTriplesRead());
+            assertEquals(2, metrics.getEntitiesConsumed());
+            assertEquals(3.0, metrics.getIndexLookupsPerEntity(), 0.001);
+            assertEquals(1, metrics.getCommits());
+            assertEquals(1, metrics.getQueueDepth());
+            assertEquals(4, metrics.getQueueCapacity());
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals("relations", server.getAttribute(new ObjectName(ImporterMetrics.JMX_DOMAIN
+                    + ":type=Importer"), "Step"));
+            assertEquals(2L, server.getAttribute(new ObjectName(ImporterMetrics.JMX_DOMAIN
+                    + ":type=Consumer,name=" + ObjectName.quote("consumer-0")), "EntitiesConsumed"));
+
+            /* A new step resets the counters */
+            metrics.startStep("vertices", queue);
+            assertEquals(0, metrics.getEntitiesConsumed());
+            assertEquals(0.0, metrics.getProgressPercent(), 0.001);
+        }
+        finally
+        {
+            metrics.unregister();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.gsoc.freebase.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.gsoc.freebase.importer.consumer.impl.MediatedRelationPolicy;
+import com.gsoc.freebase.importer.consumer.impl.MediatedRelationPolicy.Strategy;
+
+/**
+ * <p>
+ * Class to test the mediated relations policy
+ * </p>
+ */
+public class MediatedRelationPolicyTest
+{
+    private static final String mediator = "http://rdf.basekb.com/ns/m.0mediator";
+
+    /**
+     * <p>
+     * Test that all the pairs are created in discovery order under the cap
+     * </p>
+     */
+    @Test
+    public void testAllPairs()
+    {
+        MediatedRelationPolicy policy = new MediatedRelationPolicy(10, Strategy.STAR);
+        int[] pairs = policy.selectPairs(mediator, 4);
+
+        assertFalse(policy.isTruncated(4));
+        assertEquals(12, pairs.length);
+        int[] expected = { 0, 1, 0, 2, 1, 2, 0, 3, 1, 3, 2, 3 };
+        for (int i = 0; i < expected.length; i++)
+            assertEquals(expected[i], pairs[i]);
+    }
+
+    /**
+     * <p>
+     * Test the star fallback strategy
+     * </p>
+     */
+    @Test
+    public void testStarPairs()
+    {
+        MediatedRelationPolicy policy = new MediatedRelationPolicy(5, Strategy.STAR);
+        int[] pairs = policy.selectPairs(mediator, 100);
+
+        assertTrue(policy.isTruncated(100));
+        assertEquals(10, pairs.length);
+        for (int i = 0; i < pairs.length; i += 2)
+        {
+            assertEquals(0, pairs[i]);
+            assertEquals(i / 2 + 1, pairs[i + 1]);
+        }
+    }
+
+    /**
+     * <p>
+     * Test the sample fallback strategy is bounded, valid and deterministic
+     * </p>
+     */
+    @Test
+    public void testSamplePairs()
+    {
+        MediatedRelationPolicy policy = new MediatedRelationPolicy(50, Strategy.SAMPLE);
+        int[] pairs = policy.selectPairs(mediator, 1000);
+
+        assertEquals(100, pairs.length);
+        Set<Long> distinct = new HashSet<Long>();
+        for (int i = 0; i < pairs.length; i += 2)
+        {
+            assertTrue(pairs[i] >= 0);
+            assertTrue(pairs[i] < pairs[i + 1]);
+            assertTrue(pairs[i + 1] < 1000);
+            distinct.add((long) pairs[i] * 1000 + pairs[i + 1]);
+        }
+        assertEquals(50, distinct.size());
+
+        int[] again = policy.selectPairs(mediator, 1000);
+        for (int i = 0; i < pairs.length; i++)
+            assertEquals(pairs[i], again[i]);
+    }
+}
@@ -0,0 +1,105 @@
+package com.gsoc.freebase.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.gsoc.freebase.importer.checkpoint.Checkpointer;
+import com.gsoc.freebase.importer.memory.MemoryBudget;
+import com.gsoc.freebase.importer.memory.MemoryPressureListener;
+import com.gsoc.freebase.importer.memory.MemoryShare;
+
+/**
+ * <p>
+ * Class to test the memory budget
+ * </p>
+ */
+public class MemoryBudgetTest
+{
+    /**
+     * <p>
+     * Test that the budget is split by the weights of the registered shares
+     * </p>
+     */
+    @Test
+    public void testShares()
+    {
+        MemoryBudget budget = new MemoryBudget(1000, 300, 0.8);
+        MemoryShare queue = budget.register("queue", 1, 0, null);
+        MemoryShare transactions = budget.register("transactions", 3, 0, null);
+        MemoryShare store = budget.register("store", 0, 1, null);
+
+        assertEquals(250, queue.getHeapBytes());
+        assertEquals(750, transactions.getHeapBytes());
+        assertEquals(0, store.getHeapBytes());
+        assertEquals(300, store.getOffHeapBytes());
+        assertEquals(0, queue.getOffHeapBytes());
+        assertEquals(62, queue.getHeapCapacity(4));
+        assertEquals(1, queue.getHeapCapacity(10000));
+
+        /* The memory of an unregistered share is given to the rest */
+        budget.unregister(transactions);
+        assertEquals(1000, queue.getHeapBytes());
+    }
+
+    /**
+     * <p>
+     * Test that the listeners of the shares are called under memory pressure, even if one of them fails
+     * </p>
+     */
+    @Test
+    public void testMemoryPressure()
+    {
+        MemoryBudget budget = new MemoryBudget(1000, 0, 0.8);
+        final List<String> released = new ArrayList<String>();
+        MemoryPressureListener listener = new MemoryPressureListener()
+        {
+            @Override
+            public void memoryPressure(MemoryShare share)
+            {
+                released.add(share.getName());
+                if (share.getName().equals("failing"))
+                    throw new IllegalStateException("Unable to spill");
+            }
+        };
+        budget.register("failing", 1, 0, listener);
+        budget.register("fixed", 1, 0, null);
+        budget.register("spilling", 1, 0, listener);
+
+        budget.start();
+        try
+        {
+            budget.releaseMemory();
+        }
+        finally
+        {
+            budget.stop();
+        }
+
+        assertEquals(1, budget.getPressureEvents());
+        assertEquals(2, released.size());
+        assertEquals("failing", released.get(0));
+        assertEquals("spilling", released.get(1));
+    }
+
+    /**
+     * <p>
+     * Test that a requested checkpoint is due after the next entity, only once
+     * </p>
+     */
+    @Test
+    public void testRequestedCheckpoint()
+    {
+        Checkpointer checkpointer = new Checkpointer(null, "step", 1, 100);
+        assertFalse(checkpointer.isDue(7));
+        checkpointer.requestCheckpoint();
+        assertTrue(checkpointer.isDue(8));
+        assertFalse(checkpointer.isDue(9));
+        assertTrue(checkpointer.isDue(100));
+    }
+}
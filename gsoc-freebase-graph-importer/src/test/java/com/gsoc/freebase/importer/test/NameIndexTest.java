@@ -0,0 +1,174 @@
+package com.gsoc.freebase.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gsoc.freebase.importer.names.NameIndex;
+import com.gsoc.freebase.importer.names.NameIndexWriter;
+import com.gsoc.freebase.importer.names.NameMatch;
+
+/**
+ * <p>
+ * Class to test the name index
+ * </p>
+ */
+public class NameIndexTest
+{
+    private static final String ns = "http://rdf.basekb.com/ns/";
+
+    private File directory;
+
+    @Before
+    public void setUp()
+    {
+        this.directory = new File("/tmp/ftginames" + UUID.randomUUID());
+        this.directory.mkdirs();
+    }
+
+    @After
+    public void tearDown()
+    {
+        FileUtils.deleteQuietly(this.directory);
+    }
+
+    /**
+     * <p>
+     * Test the exact, prefix and fuzzy lookups
+     * </p>
+     */
+    @Test
+    public void testLookups() throws Exception
+    {
+        NameIndexWriter writer = new NameIndexWriter();
+        writer.add("madrid", ns + "m.0d1");
+        writer.add("madrid", ns + "m.0d2");
+        writer.add("madrid", "http://example.org/madrid");
+        writer.add("madeira", ns + "m.0d3");
+        writer.add("malaga", ns + "m.0d4");
+        writer.add("m\u00e1laga", ns + "m.0d5");
+        writer.add("barcelona", ns + "m.0d6");
+        File file = new File(this.directory, NameIndexWriter.FILE_NAME);
+        assertEquals(5, writer.write(file));
+
+        NameIndex index = new NameIndex(file);
+        try
+        {
+            assertEquals(5, index.getNameCount());
+            List<String> topics = new ArrayList<String>(index.getTopics("Madrid"));
+            Collections.sort(topics);
+            assertEquals(Arrays.asList("http://example.org/madrid", ns + "m.0d1", ns + "m.0d2"), topics);
+            assertEquals(Arrays.asList(ns + "m.0d5"), index.getTopics("m\u00e1laga"));
+            assertTrue(index.getTopics("madri").isEmpty());
+            assertTrue(index.getTopics("zaragoza").isEmpty());
+
+            assertEquals(Arrays.asList("madeira", "madrid"), this.names(index.prefix("mad", 10)));
+            assertEquals(Arrays.asList("madeira"), this.names(index.prefix("mad", 1)));
+            assertTrue(index.prefix("x", 10).isEmpty());
+
+            List<NameMatch> matches = index.fuzzy("Malaga", 1, 10);
+            assertEquals(Arrays.asList("malaga", "m\u00e1laga"), this.names(matches));
+            assertEquals(0, matches.get(0).getDistance());
+            assertEquals(1, matches.get(1).getDistance());
+            assertEquals(Arrays.asList("madrid"), this.names(index.fuzzy("madrit", 1, 10)));
+            assertEquals(Arrays.asList("barcelona"), this.names(index.fuzzy("barclona", 1, 10)));
+            assertTrue(index.fuzzy("barclona", 0, 10).isEmpty());
+        }
+        finally
+        {
+            index.close();
+        }
+    }
+
+    /**
+     * <p>
+     * Test the lookups of an index with many blocks against a linear scan of the names
+     * </p>
+     */
+    @Test
+    public void testManyBlocks() throws Exception
+    {
+        NameIndexWriter writer = new NameIndexWriter();
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i < 1000; i++)
+        {
+            String name = "topic " + Integer.toString(i * 7919 % 1000, 26);
+            names.add(name);
+            writer.add(name, ns + "m.0" + Integer.toString(i, 32).replace('a', 'b'));
+        }
+        File file = new File(this.directory, NameIndexWriter.FILE_NAME);
+        writer.write(file);
+
+        NameIndex index = new NameIndex(file);
+        try
+        {
+            for (String name : names)
+                assertEquals(1, index.getTopics(name).size());
+
+            List<String> expected = new ArrayList<String>();
+            for (String name : names)
+            {
+                if (name.startsWith("topic 1"))
+                    expected.add(name);
+            }
+            Collections.sort(expected);
+            assertEquals(expected, this.names(index.prefix("topic 1", 1000)));
+
+            for (int edits = 0; edits <= 2; edits++)
+            {
+                expected.clear();
+                for (String name : names)
+                {
+                    if (this.distance("topic 1a", name) <= edits)
+                        expected.add(name);
+                }
+                Collections.sort(expected);
+                List<String> found = this.names(index.fuzzy("topic 1a", edits, 1000));
+                Collections.sort(found);
+                assertTrue(!expected.isEmpty());
+                assertEquals(expected, found);
+            }
+        }
+        finally
+        {
+            index.close();
+        }
+    }
+
+    private int distance(String s1, String s2)
+    {
+        int[][] d = new int[s1.length() + 1][s2.length() + 1];
+        for (int i = 0; i <= s1.length(); i++)
+            d[i][0] = i;
+        for (int j = 0; j <= s2.length(); j++)
+            d[0][j] = j;
+        for (int i = 1; i <= s1.length(); i++)
+        {
+            for (int j = 1; j <= s2.length(); j++)
+            {
+                int cost = s1.charAt(i - 1) == s2.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+            }
+        }
+        return d[s1.length()][s2.length()];
+    }
+
+    private List<String> names(List<NameMatch> matches)
+    {
+        List<String> names = new ArrayList<String>();
+        for (NameMatch match : matches)
+            names.add(match.getName());
+        return names;
+    }
+}
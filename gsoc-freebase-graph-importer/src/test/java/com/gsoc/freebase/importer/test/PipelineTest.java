@@ -0,0 +1,153 @@
+package com.gsoc.freebase.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.gsoc.freebase.importer.pipeline.Channel;
+import com.gsoc.freebase.importer.pipeline.Pipeline;
+import com.gsoc.freebase.importer.pipeline.PipelineException;
+
+/**
+ * <p>
+ * Class to test the pipeline runtime
+ * </p>
+ */
+public class PipelineTest
+{
+    private static final Object END = new Object();
+
+    /**
+     * <p>
+     * Test that the completion of every stage flows downstream
+     * </p>
+     */
+    @Test
+    public void testCompletion()
+    {
+        Pipeline pipeline = new Pipeline("test");
+        final Channel<Object> numbers = pipeline.channel("numbers", 2, END);
+        final Channel<Object> squares = pipeline.channel("squares", 2, END);
+        final AtomicLong sum = new AtomicLong();
+
+        pipeline.addStage("source", Collections.singletonList(new Worker()
+        {
+            @Override
+            protected void work() throws InterruptedException
+            {
+                for (int i = 1; i <= 100; i++)
+                    numbers.put(i);
+            }
+        }), numbers, Executors.defaultThreadFactory());
+
+        List<Worker> transforms = new ArrayList<Worker>();
+        for (int i = 0; i < 3; i++)
+        {
+            transforms.add(new Worker()
+            {
+                @Override
+                protected void work() throws InterruptedException
+                {
+                    Object n;
+                    while ((n = numbers.take()) != null)
+                        squares.put((Integer) n * (Integer) n);
+                }
+            });
+        }
+        pipeline.addStage("transform", transforms, squares, Executors.defaultThreadFactory());
+
+        pipeline.addStage("sink", Arrays.asList(new Worker()
+        {
+            @Override
+            protected void work() throws InterruptedException
+            {
+                Object n;
+                while ((n = squares.take()) != null)
+                    sum.addAndGet((Integer) n);
+            }
+        }), null, Executors.defaultThreadFactory());
+
+        pipeline.run();
+        assertEquals(338350, sum.get());
+    }
+
+    /**
+     * <p>
+     * Test that a failure stops the rest of the stages, even if they are blocked in a channel, and it is thrown
+     * </p>
+     */
+    @Test
+    public void testFailure()
+    {
+        Pipeline pipeline = new Pipeline("test");
+        final Channel<Object> numbers = pipeline.channel("numbers", 1, END);
+
+        pipeline.addStage("source", Collections.singletonList(new Worker()
+        {
+            @Override
+            protected void work() throws InterruptedException
+            {
+                /* Blocks once the sink has failed */
+                for (int i = 0;; i++)
+                    numbers.put(i);
+            }
+        }), numbers, Executors.defaultThreadFactory());
+
+        pipeline.addStage("sink", Collections.singletonList(new Worker()
+        {
+            @Override
+            protected void work() throws InterruptedException
+            {
+                Object n;
+                while ((n = numbers.take()) != null)
+                {
+                    if (n.equals(10))
+                        throw new IllegalArgumentException("bad number " + n);
+                }
+            }
+        }), null, Executors.defaultThreadFactory());
+
+        try
+        {
+            pipeline.run();
+            fail("The failure of the sink should be thrown");
+        }
+        catch (PipelineException e)
+        {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+            assertTrue(e.getMessage().contains("sink"));
+        }
+    }
+
+    /**
+     * <p>
+     * Worker of the tests
+     * </p>
+     */
+    private abstract static class Worker implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            try
+            {
+                this.work();
+            }
+            catch (InterruptedException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        protected abstract void work() throws InterruptedException;
+    }
+}
@@ -0,0 +1,83 @@
+package com.gsoc.freebase.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.predicates.PredicateMetadata;
+import com.gsoc.freebase.importer.predicates.PredicateRegistry;
+
+/**
+ * <p>
+ * Class to test the registry of the metadata of the predicates
+ * </p>
+ */
+public class PredicateRegistryTest
+{
+    private static final String ns = ImporterConstants.FREEBASE_NAMESPACE;
+
+    /**
+     * <p>
+     * Test the edge keys are the ones incremented before the registry existed, which split the local name by dots
+     * </p>
+     */
+    @Test
+    public void testEdgeKeys()
+    {
+        PredicateRegistry registry = new PredicateRegistry();
+        PredicateMetadata predicate = registry.get(ns + "music.recording.artist");
+        assertEquals("music.recording.artist", predicate.getLocalName());
+        assertEquals("[music, music.recording, music.recording.artist]", Arrays.toString(predicate.getEdgeKeys()));
+        assertTrue(predicate.isTopicReference());
+
+        for (String localName : new String[] { "name", "a.b", "a..b", ".a", "a.", "a..", "..", "", "x/y.z" })
+        {
+            String uri = ns + localName;
+            assertEquals(uri, splitKeys(uri), Arrays.asList(registry.get(uri).getEdgeKeys()));
+        }
+    }
+
+    /**
+     * <p>
+     * Test the metadata is computed once and the keys shared by several predicates are the same instance
+     * </p>
+     */
+    @Test
+    public void testInterned()
+    {
+        PredicateRegistry registry = new PredicateRegistry();
+        PredicateMetadata artist = registry.get(ns + "music.recording.artist");
+        PredicateMetadata track = registry.get(new String(ns + "music.recording.track"));
+        assertTrue(artist == registry.get(new String(ns + "music.recording.artist")));
+        assertTrue(artist.getEdgeKeys()[0] == track.getEdgeKeys()[0]);
+        assertTrue(artist.getEdgeKeys()[1] == track.getEdgeKeys()[1]);
+        assertEquals(2, registry.size());
+
+        assertFalse(registry.get(ImporterConstants.RDF_TYPE).isTopicReference());
+    }
+
+    /**
+     * <p>
+     * Computes the edge keys as the relations consumer did before the registry existed
+     * </p>
+     */
+    private static List<String> splitKeys(String fullProperty)
+    {
+        List<String> keys = new ArrayList<String>();
+        String prop = fullProperty.substring(fullProperty.lastIndexOf("/") + 1);
+        String last = "";
+        for (String s : prop.split("\\."))
+        {
+            keys.add(last + s);
+            last += s + ".";
+        }
+        return keys;
+    }
+}
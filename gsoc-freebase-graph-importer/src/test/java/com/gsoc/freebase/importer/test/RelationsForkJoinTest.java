@@ -0,0 +1,180 @@
+package com.gsoc.freebase.importer.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.consumer.impl.FreebaseGenerateRelationsConsumer;
+import com.gsoc.freebase.importer.model.Entity;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+
+/**
+ * <p>
+ * Class to test the fork/join lookups of the large mediators
+ * </p>
+ */
+public class RelationsForkJoinTest
+{
+    private static final String ns = "http://rdf.basekb.com/ns/";
+    private static final int topics = 12;
+
+    /**
+     * <p>
+     * Test that the parallel lookups generate the same edges as the consumer thread, including the edges created since
+     * the last commit, which the workers can't see
+     * </p>
+     */
+    @Test
+    public void testSameEdges() throws Exception
+    {
+        File directory = new File("/tmp/ftgiforkjoin" + UUID.randomUUID());
+        try
+        {
+            Map<String, Integer> serial = this.generate(new File(directory, "serial"), null);
+            ForkJoinPool pool = new ForkJoinPool(4);
+            Map<String, Integer> parallel = this.generate(new File(directory, "parallel"), pool);
+            pool.shutdown();
+
+            /* Every pair of topics is connected by a single edge */
+            assertEquals(topics * (topics - 1) / 2, serial.size());
+            assertEquals(serial, parallel);
+        }
+        finally
+        {
+            FileUtils.deleteQuietly(directory);
+        }
+    }
+
+    /**
+     * <p>
+     * Test that a mediator referencing a topic twice doesn't duplicate its edges in a graph without transactions, where
+     * the workers see the edges of the previous entities
+     * </p>
+     */
+    @Test
+    public void testDuplicateReferences() throws Exception
+    {
+        Map<String, Integer> serial = this.generateDuplicates(null);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Map<String, Integer> parallel = this.generateDuplicates(pool);
+        pool.shutdown();
+
+        /* The three pairs of topics and the topic referenced twice with itself */
+        assertEquals(4, serial.size());
+        assertEquals(serial, parallel);
+    }
+
+    /**
+     * <p>
+     * Generates the relations of three mediators referencing the same topics: the second one is consumed before any
+     * commit and the third one after a commit
+     * </p>
+     *
+     * @return the value of the property of every mediated edge by the vertices it connects
+     */
+    private Map<String, Integer> generate(File location, ForkJoinPool pool) throws Exception
+    {
+        Neo4jGraph graph = new Neo4jGraph(location.getAbsolutePath());
+        try
+        {
+            graph.createKeyIndex(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY, Vertex.class);
+            for (int i = 0; i < topics; i++)
+                graph.addVertex(null).setProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY, ns + "m.0topic" + i);
+            graph.commit();
+
+            BlockingQueue<Entity> queue = new ArrayBlockingQueue<Entity>(10);
+            FreebaseGenerateRelationsConsumer consumer = new FreebaseGenerateRelationsConsumer(new CountDownLatch(0),
+                    queue, graph);
+            consumer.setCommitInterval(2);
+            consumer.setForkJoinPool(pool);
+            consumer.setForkThreshold(2);
+
+            queue.put(this.mediator("m.0first"));
+            queue.put(this.mediator("m.0second"));
+            queue.put(this.mediator("m.0third"));
+            queue.put(new Entity(ImporterConstants.CANCEL_ENTITY_URI, null));
+            consumer.run();
+            return this.values(graph);
+        }
+        finally
+        {
+            graph.shutdown();
+        }
+    }
+
+    /**
+     * <p>
+     * Generates in a {@code TinkerGraph} the relations of a mediator with four references to three topics
+     * </p>
+     *
+     * @return the value of the property of every mediated edge by the vertices it connects
+     */
+    private Map<String, Integer> generateDuplicates(ForkJoinPool pool) throws Exception
+    {
+        TinkerGraph graph = new TinkerGraph();
+        for (int i = 0; i < 3; i++)
+            graph.addVertex(null).setProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY, ns + "m.0topic" + i);
+
+        Map<String, List<String>> properties = new LinkedHashMap<String, List<String>>();
+        for (int i = 0; i < 4; i++)
+            properties.put(ns + "film.performance.role" + i, Arrays.asList(ns + "m.0topic" + (i % 3)));
+
+        BlockingQueue<Entity> queue = new ArrayBlockingQueue<Entity>(10);
+        FreebaseGenerateRelationsConsumer consumer = new FreebaseGenerateRelationsConsumer(new CountDownLatch(0),
+                queue, graph);
+        consumer.setForkJoinPool(pool);
+        consumer.setForkThreshold(1);
+        queue.put(new Entity(ns + "m.0mediator", properties));
+        queue.put(new Entity(ImporterConstants.CANCEL_ENTITY_URI, null));
+        consumer.run();
+        return this.values(graph);
+    }
+
+    /**
+     * <p>
+     * Gets the value of the property of every edge of a graph by the vertices it connects, failing if two edges connect
+     * the same vertices
+     * </p>
+     */
+    private Map<String, Integer> values(Graph graph)
+    {
+        Map<String, Integer> values = new LinkedHashMap<String, Integer>();
+        for (Edge edge : graph.getEdges())
+        {
+            String key = edge.getProperty(ImporterConstants.EDGE_KEY_VERTICES_CONNECTED_PROPERTY);
+            Integer previous = values.put(key, (Integer) edge.getProperty("film"));
+            assertEquals(null, previous);
+        }
+        return values;
+    }
+
+    /**
+     * <p>
+     * Creates a mediator referencing every topic
+     * </p>
+     */
+    private Entity mediator(String id)
+    {
+        Map<String, List<String>> properties = new LinkedHashMap<String, List<String>>();
+        for (int i = 0; i < topics; i++)
+            properties.put(ns + "film.performance.role" + i, Arrays.asList(ns + "m.0topic" + i));
+        return new Entity(ns + id, properties);
+    }
+}
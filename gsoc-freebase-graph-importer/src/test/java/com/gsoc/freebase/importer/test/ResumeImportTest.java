@@ -0,0 +1,229 @@
+package com.gsoc.freebase.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.checkpoint.CheckpointManifest;
+import com.gsoc.freebase.importer.generator.DatasetGenerator;
+import com.gsoc.freebase.importer.impl.FreebaseToGraphImporter;
+import com.gsoc.freebase.importer.model.Entity;
+import com.gsoc.freebase.importer.producer.EntitySink;
+import com.gsoc.freebase.importer.sink.EntityTee;
+
+/**
+ * <p>
+ * Class to test resuming an import which crashed or failed to read a file, and updating an import with changed files
+ * </p>
+ */
+public class ResumeImportTest
+{
+    private static final File testDirectory = ImportTestSupport.newTestDirectory("resume");
+    private static final File dataset = new File(testDirectory, "dataset");
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception
+    {
+        /* Two files longer than the checkpoint interval of a single consumer */
+        DatasetGenerator generator = new DatasetGenerator(dataset, 0.1);
+        generator.setEntitiesPerFile(5000);
+        generator.generate();
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown()
+    {
+        FileUtils.deleteQuietly(testDirectory);
+    }
+
+    /**
+     * <p>
+     * Test an import crashing in the second file after a checkpoint, and losing the record of that checkpoint, is
+     * resumed to the same vertices as an import which didn't crash
+     * </p>
+     */
+    @Test
+    public void testResumeAfterCrash() throws Exception
+    {
+        File clean = new File(testDirectory, "clean");
+        FreebaseToGraphImporter importer = new FreebaseToGraphImporter(dataset, clean, 1);
+        importer.setGenerateGraph(true);
+        importer.process();
+
+        File crashed = new File(testDirectory, "crashed");
+        EntityTee tee = new EntityTee();
+        tee.addSink("crash", new EntitySink()
+        {
+            private int entities;
+
+            @Override
+            public void put(Entity entity)
+            {
+                if (++this.entities == 7000)
+                    throw new IllegalStateException("Crash");
+            }
+        });
+        importer = new FreebaseToGraphImporter(dataset, crashed, 1);
+        importer.setGenerateGraph(true);
+        importer.setEntityTee(tee);
+        try
+        {
+            importer.process();
+            assertTrue(false);
+        }
+        catch (RuntimeException e)
+        {
+        }
+
+        /* The record of the last checkpoint of the second file is lost, as if the crash happened before writing it */
+        File manifest = new File(crashed, CheckpointManifest.MANIFEST_FILE_NAME);
+        List<String> records = FileUtils.readLines(manifest, "UTF-8");
+        String partial = null;
+        for (String record : records)
+        {
+            if (record.startsWith(ImporterConstants.GENERATE_GRAPH_STEP + "\t") && record.contains("\tpartial\t"))
+                partial = record;
+        }
+        assertTrue(partial != null);
+        List<String> kept = new ArrayList<String>(records);
+        kept.remove(partial);
+        FileUtils.writeLines(manifest, "UTF-8", kept);
+
+        importer = new FreebaseToGraphImporter(dataset, crashed, 1);
+        importer.setGenerateGraph(true);
+        importer.setResume(true);
+        importer.process();
+
+        List<String> expected = ImportTestSupport.topicUris(clean);
+        assertTrue(expected.size() > 1000);
+        assertEquals(expected, ImportTestSupport.topicUris(crashed));
+        Map<String, Object> contents = ImportTestSupport.contents(clean);
+        assertEquals(contents, ImportTestSupport.contents(crashed));
+    }
+
+    /**
+     * <p>
+     * Test the relations committed after the last record of the manifest aren't counted again when resuming, as the
+     * progress is committed in the graph along with the edge counters
+     * </p>
+     */
+    @Test
+    public void testResumeRelationsAfterCrash() throws Exception
+    {
+        File clean = new File(testDirectory, "relations-clean");
+        FreebaseToGraphImporter importer = new FreebaseToGraphImporter(dataset, clean, 1);
+        importer.setGenerateGraph(true);
+        importer.setGenerateGraphRelations(true);
+        importer.process();
+        Map<String, Object> expected = ImportTestSupport.contents(clean);
+
+        /* The last records of the relations step are lost, as if the crash happened after committing their work */
+        File manifest = new File(clean, CheckpointManifest.MANIFEST_FILE_NAME);
+        List<String> records = FileUtils.readLines(manifest, "UTF-8");
+        List<String> kept = new ArrayList<String>();
+        boolean partial = false;
+        for (String record : records)
+        {
+            if (!record.startsWith(ImporterConstants.GENERATE_RELATIONS_STEP + "\t") || !partial)
+                kept.add(record);
+            if (record.startsWith(ImporterConstants.GENERATE_RELATIONS_STEP + "\t") && record.contains("\tpartial\t"))
+                partial = true;
+        }
+        assertTrue(kept.size() < records.size());
+        FileUtils.writeLines(manifest, "UTF-8", kept);
+
+        importer = new FreebaseToGraphImporter(dataset, clean, 1);
+        importer.setGenerateGraph(true);
+        importer.setGenerateGraphRelations(true);
+        importer.setResume(true);
+        importer.process();
+
+        assertEquals(expected, ImportTestSupport.contents(clean));
+    }
+
+    /**
+     * <p>
+     * Test an incremental import fails without touching the graph when a file whose relations have been counted has
+     * changed
+     * </p>
+     */
+    @Test
+    public void testChangedFileRelations() throws Exception
+    {
+        File input = new File(testDirectory, "changed-dataset");
+        FileUtils.copyDirectory(dataset, input);
+        File location = new File(testDirectory, "changed");
+        FreebaseToGraphImporter importer = new FreebaseToGraphImporter(input, location, 2);
+        importer.setGenerateGraph(true);
+        importer.setGenerateGraphRelations(true);
+        importer.process();
+        Map<String, Object> expected = ImportTestSupport.contents(location);
+
+        /* Same length, different content in the middle of the file */
+        File changed = input.listFiles()[0];
+        byte[] content = FileUtils.readFileToByteArray(changed);
+        content[content.length / 2]++;
+        FileUtils.writeByteArrayToFile(changed, content);
+
+        importer = new FreebaseToGraphImporter(input, location, 2);
+        importer.setGenerateGraph(true);
+        importer.setGenerateGraphRelations(true);
+        importer.setIncremental(true);
+        try
+        {
+            importer.process();
+            assertTrue(false);
+        }
+        catch (IllegalStateException e)
+        {
+            assertTrue(e.getMessage().contains(changed.getName()));
+        }
+        assertEquals(expected, ImportTestSupport.contents(location));
+    }
+
+    /**
+     * <p>
+     * Test a file which can't be read fails the import and isn't recorded as completed, so resuming reads it again
+     * </p>
+     */
+    @Test
+    public void testUnreadableFile() throws Exception
+    {
+        File input = new File(testDirectory, "unreadable-dataset");
+        File unreadable = new File(input, "part-00000.nt.gz");
+        FileUtils.writeStringToFile(unreadable, "not gzipped", "UTF-8");
+        File location = new File(testDirectory, "unreadable");
+        FreebaseToGraphImporter importer = new FreebaseToGraphImporter(input, location, 1);
+        importer.setGenerateGraph(true);
+        try
+        {
+            importer.process();
+            assertTrue(false);
+        }
+        catch (RuntimeException e)
+        {
+        }
+
+        CheckpointManifest manifest = new CheckpointManifest(new File(location, CheckpointManifest.MANIFEST_FILE_NAME),
+                true);
+        try
+        {
+            assertFalse(manifest.isCompleted(ImporterConstants.GENERATE_GRAPH_STEP, unreadable));
+        }
+        finally
+        {
+            manifest.close();
+        }
+    }
+}
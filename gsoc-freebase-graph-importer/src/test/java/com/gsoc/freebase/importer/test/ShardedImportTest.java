@@ -0,0 +1,124 @@
+package com.gsoc.freebase.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.gsoc.freebase.importer.impl.FreebaseToGraphImporter;
+import com.gsoc.freebase.importer.impl.GraphBackend;
+import com.gsoc.freebase.importer.names.NameIndexWriter;
+import com.gsoc.freebase.importer.shard.ShardCoordinator;
+import com.gsoc.freebase.importer.shard.ShardMerger;
+import com.gsoc.freebase.importer.shard.ShardPartitioner;
+import com.gsoc.freebase.importer.shard.ShardWorker;
+
+/**
+ * <p>
+ * Class to test the sharded import
+ * </p>
+ */
+public class ShardedImportTest
+{
+    private static final int shards = 3;
+    private static final File testDirectory = ImportTestSupport.newTestDirectory("shards");
+    private static final File dataset = new File(testDirectory, "dataset");
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception
+    {
+        ImportTestSupport.generateDataset(dataset, 0.02);
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown()
+    {
+        FileUtils.deleteQuietly(testDirectory);
+    }
+
+    /**
+     * <p>
+     * Test that the entities are spread over all the shards
+     * </p>
+     */
+    @Test
+    public void testPartitioner()
+    {
+        ShardPartitioner partitioner = new ShardPartitioner(shards);
+        int[] counts = new int[shards];
+        for (int i = 0; i < 3000; i++)
+            counts[partitioner.shard("http://rdf.basekb.com/ns/m.0" + Integer.toString(i, 32).replace('a', 'b'))]++;
+        for (int count : counts)
+            assertTrue(count > 800);
+        assertEquals(partitioner.shard("http://example.org/x"), partitioner.shard("http://example.org/x"));
+    }
+
+    /**
+     * <p>
+     * Test that the workers (run in threads) and the merge generate the same graph as a single import, except for the
+     * direction of the edges, which depends on the order of the entities. The workers aggregate few edges in memory, so
+     * the counters of an edge are added up from several partial edges
+     * </p>
+     */
+    @Test
+    public void testSameGraph() throws Exception
+    {
+        File single = new File(testDirectory, "single");
+        FreebaseToGraphImporter importer = new FreebaseToGraphImporter(dataset, single, 2);
+        importer.setGenerateGraph(true);
+        importer.setGenerateGraphRelations(true);
+        importer.process();
+
+        final ShardCoordinator coordinator = new ShardCoordinator(new File(testDirectory, "shards"), shards);
+        coordinator.reset();
+        List<Thread> workers = new ArrayList<Thread>();
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        for (int i = 0; i < shards; i++)
+        {
+            final int shard = i;
+            Thread worker = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        ShardWorker worker = new ShardWorker(coordinator, shard, new FreebaseToGraphImporter(
+                                dataset, coordinator.getGraphDirectory(shard), 1), GraphBackend.NEO4J, dataset);
+                        /* Write the edges several times, so the owners add up partial counters */
+                        worker.setMaxEdges(100);
+                        worker.run();
+                    }
+                    catch (Throwable e)
+                    {
+                        synchronized (failures)
+                        {
+                            failures.add(e);
+                        }
+                    }
+                }
+            };
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers)
+            worker.join();
+        assertEquals(new ArrayList<Throwable>(), failures);
+
+        File merged = new File(testDirectory, "merged");
+        new ShardMerger(coordinator, GraphBackend.NEO4J).merge(merged, true);
+        assertTrue(new File(merged, NameIndexWriter.FILE_NAME).exists());
+
+        Map<String, Object> expected = ImportTestSupport.contents(single);
+        assertTrue(expected.size() > 1000);
+        assertEquals(expected, ImportTestSupport.contents(merged));
+    }
+}
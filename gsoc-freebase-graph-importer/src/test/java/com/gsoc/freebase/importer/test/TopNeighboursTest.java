@@ -0,0 +1,132 @@
+package com.gsoc.freebase.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.query.EdgeWeightFormula;
+import com.gsoc.freebase.importer.query.Neighbour;
+import com.gsoc.freebase.importer.query.TopNeighboursBuilder;
+import com.gsoc.freebase.importer.query.TopicGraph;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+
+/**
+ * <p>
+ * Class to test the edge weight formula and the materialized top neighbours
+ * </p>
+ */
+public class TopNeighboursTest
+{
+    private static final String ns = "http://rdf.basekb.com/ns/";
+
+    private TinkerGraph graph;
+
+    @Before
+    public void setUp()
+    {
+        this.graph = new TinkerGraph();
+        Vertex hub = this.vertex("m.0hub");
+        Vertex a = this.vertex("m.0a");
+        Vertex b = this.vertex("m.0b");
+        Vertex c = this.vertex("m.0c");
+        this.vertex("m.0alone");
+        this.edge(hub, a, ImporterConstants.DIRECT_CONNECTION_EDGE_LABEL, "music", 1, "music.recording", 1);
+        this.edge(hub, a, ImporterConstants.MEDIATED_CONNECTION_EDGE_LABEL, "people", 3);
+        this.edge(b, hub, ImporterConstants.DIRECT_CONNECTION_EDGE_LABEL, "film", 3, "film.performance", 3);
+        this.edge(hub, c, ImporterConstants.MEDIATED_CONNECTION_EDGE_LABEL, "film", 2, "film.film", 2);
+    }
+
+    /**
+     * <p>
+     * Test the weights computed by the formulas
+     * </p>
+     */
+    @Test
+    public void testFormula()
+    {
+        Map<String, Object> counters = new LinkedHashMap<String, Object>();
+        counters.put(ImporterConstants.EDGE_KEY_VERTICES_CONNECTED_PROPERTY, "a|b");
+        counters.put("film", 3);
+        counters.put("film.performance", 2);
+        counters.put("film.film", 1);
+        counters.put("people", 1);
+
+        assertEquals(4, new EdgeWeightFormula().weight(ImporterConstants.DIRECT_CONNECTION_EDGE_LABEL, counters), 0);
+        EdgeWeightFormula formula = EdgeWeightFormula
+                .parse("default=2, film.performance=1.5, people=0, mediated-connection=0.5");
+        assertEquals(9, formula.weight(ImporterConstants.DIRECT_CONNECTION_EDGE_LABEL, counters), 0);
+        assertEquals(4.5, formula.weight(ImporterConstants.MEDIATED_CONNECTION_EDGE_LABEL, counters), 0);
+
+        try
+        {
+            EdgeWeightFormula.parse("film=x");
+            throw new AssertionError("The formula is not valid");
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+    }
+
+    /**
+     * <p>
+     * Test the top neighbours stored in the vertices and read by the topic graph
+     * </p>
+     */
+    @Test
+    public void testBuild()
+    {
+        TopicGraph topics = new TopicGraph(this.graph);
+        assertNull(topics.topNeighbours(ns + "m.0hub", 0));
+
+        TopNeighboursBuilder builder = new TopNeighboursBuilder(this.graph, 2, new EdgeWeightFormula());
+        assertEquals(5, builder.build());
+        topics.invalidate();
+
+        /* The edges to m.0a add up to 4 */
+        List<Neighbour> neighbours = topics.topNeighbours(ns + "m.0hub", 0);
+        assertEquals(Arrays.asList(ns + "m.0a", ns + "m.0b"), this.uris(neighbours));
+        assertEquals(4, neighbours.get(0).getWeight(), 0);
+        assertEquals(Arrays.asList(ns + "m.0a"), this.uris(topics.topNeighbours(ns + "m.0hub", 1)));
+        assertEquals(Arrays.asList(ns + "m.0hub"), this.uris(topics.topNeighbours(ns + "m.0c", 0)));
+        assertEquals(0, topics.topNeighbours(ns + "m.0alone", 0).size());
+
+        /* A formula favouring film */
+        new TopNeighboursBuilder(this.graph, 3, EdgeWeightFormula.parse("film.film=10")).build();
+        topics.invalidate();
+        assertEquals(Arrays.asList(ns + "m.0c", ns + "m.0a", ns + "m.0b"),
+                this.uris(topics.topNeighbours(ns + "m.0hub", 0)));
+    }
+
+    private Vertex vertex(String id)
+    {
+        Vertex vertex = this.graph.addVertex(null);
+        vertex.setProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY, ns + id);
+        return vertex;
+    }
+
+    private void edge(Vertex in, Vertex out, String label, Object... counters)
+    {
+        Edge edge = this.graph.addEdge(null, in, out, label);
+        for (int i = 0; i < counters.length; i += 2)
+            edge.setProperty((String) counters[i], counters[i + 1]);
+    }
+
+    private List<String> uris(List<Neighbour> neighbours)
+    {
+        List<String> uris = new ArrayList<String>();
+        for (Neighbour neighbour : neighbours)
+            uris.add(neighbour.getUri());
+        return uris;
+    }
+}
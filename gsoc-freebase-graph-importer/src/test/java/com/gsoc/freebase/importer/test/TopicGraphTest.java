@@ -0,0 +1,208 @@
+package com.gsoc.freebase.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.query.LruCache;
+import com.gsoc.freebase.importer.query.Neighbour;
+import com.gsoc.freebase.importer.query.Topic;
+import com.gsoc.freebase.importer.query.TopicGraph;
+import com.gsoc.freebase.importer.types.TypeDictionary;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+
+/**
+ * <p>
+ * Class to test the read API of the imported graph
+ * </p>
+ */
+public class TopicGraphTest
+{
+    private static final String ns = "http://rdf.basekb.com/ns/";
+
+    private TinkerGraph graph;
+
+    /**
+     * <p>
+     * Creates a graph with a hub topic connected to three topics
+     * </p>
+     */
+    @Before
+    public void setUp()
+    {
+        this.graph = new TinkerGraph();
+        Vertex hub = this.vertex("m.0hub", "hub");
+        Vertex a = this.vertex("m.0a", "a");
+        Vertex b = this.vertex("m.0b", "b");
+        Vertex c = this.vertex("m.0c", "c");
+        this.edge(hub, a, ImporterConstants.DIRECT_CONNECTION_EDGE_LABEL, "music", 1, "music.recording", 1);
+        this.edge(b, hub, ImporterConstants.DIRECT_CONNECTION_EDGE_LABEL, "film", 2, "music", 1);
+        this.edge(hub, c, ImporterConstants.MEDIATED_CONNECTION_EDGE_LABEL, "film", 5, "film.performance", 5);
+        this.edge(hub, a, ImporterConstants.MEDIATED_CONNECTION_EDGE_LABEL, "people", 2);
+    }
+
+    /**
+     * <p>
+     * Test the topics, neighbours and edges read
+     * </p>
+     */
+    @Test
+    public void testQueries()
+    {
+        TopicGraph topics = new TopicGraph(this.graph);
+        assertEquals("hub", topics.getTopic(ns + "m.0hub").getName());
+        assertNull(topics.getTopic(ns + "m.0none"));
+
+        assertEquals(Arrays.asList(ns + "m.0c", ns + "m.0b", ns + "m.0a", ns + "m.0a"),
+                this.uris(topics.neighbours(ns + "m.0hub", null, 0)));
+        assertEquals(Arrays.asList(ns + "m.0c", ns + "m.0b"), this.uris(topics.neighbours(ns + "m.0hub", null, 2)));
+        List<Neighbour> direct = topics.neighbours(ns + "m.0hub", ImporterConstants.DIRECT_CONNECTION_EDGE_LABEL, 0);
+        assertEquals(Arrays.asList(ns + "m.0b", ns + "m.0a"), this.uris(direct));
+        assertEquals(3.0, direct.get(0).getWeight(), 0);
+        assertEquals(Arrays.asList(ns + "m.0hub"), this.uris(topics.neighbours(ns + "m.0b", null, 0)));
+        assertTrue(topics.neighbours(ns + "m.0none", null, 0).isEmpty());
+
+        Map<String, Map<String, Object>> features = topics.edgeFeatures(ns + "m.0a", ns + "m.0hub");
+        assertEquals(2, features.size());
+        assertEquals(1, features.get(ImporterConstants.DIRECT_CONNECTION_EDGE_LABEL).get("music.recording"));
+        assertEquals(2, features.get(ImporterConstants.MEDIATED_CONNECTION_EDGE_LABEL).get("people"));
+        assertEquals(features, topics.edgeFeatures(ns + "m.0hub", ns + "m.0a"));
+        assertTrue(topics.edgeFeatures(ns + "m.0a", ns + "m.0b").isEmpty());
+    }
+
+    /**
+     * <p>
+     * Test the interned types of the topics are decoded with the type dictionary
+     * </p>
+     */
+    @Test
+    public void testTypes()
+    {
+        TypeDictionary dictionary = new TypeDictionary();
+        List<String> types = Arrays.asList(ImporterConstants.FREEBASE_COMMON_TOPIC, ns + "music.artist");
+        this.graph.getVertices(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY, ns + "m.0hub").iterator().next()
+                .setProperty(ImporterConstants.VERTEX_TYPES_PROPERTY, dictionary.encode(types));
+
+        TopicGraph topics = new TopicGraph(this.graph);
+        Object ids = topics.getTopic(ns + "m.0hub").getProperties().get(ImporterConstants.VERTEX_TYPES_PROPERTY);
+        assertTrue(ids instanceof int[]);
+        try
+        {
+            topics.getTopic(ns + "m.0hub").getTypes();
+            assertTrue(false);
+        }
+        catch (IllegalStateException e)
+        {
+        }
+
+        topics.setTypeDictionary(dictionary);
+        Topic hub = topics.getTopic(ns + "m.0hub");
+        assertEquals(types, hub.getTypes());
+        assertEquals(types, hub.getProperties().get(ImporterConstants.VERTEX_TYPES_PROPERTY));
+        assertTrue(topics.getTopic(ns + "m.0a").getTypes().isEmpty());
+    }
+
+    /**
+     * <p>
+     * Test that the repeated lookups are served by the caches
+     * </p>
+     */
+    @Test
+    public void testCaches()
+    {
+        TopicGraph topics = new TopicGraph(this.graph, 2, 10, 10);
+        for (int i = 0; i < 10; i++)
+        {
+            topics.getTopic(ns + "m.0hub");
+            topics.neighbours(ns + "m.0hub", null, 1);
+            topics.edgeFeatures(ns + "m.0hub", ns + "m.0c");
+        }
+        /* The first neighbours lookup reads the topic through the topic cache */
+        assertEquals(10, topics.getVertexCache().getHits());
+        assertEquals(1, topics.getVertexCache().getMisses());
+        assertEquals(0.9, topics.getAdjacencyCache().getHitRate(), 0);
+        assertEquals(0.9, topics.getEdgeCache().getHitRate(), 0);
+        assertEquals(4, topics.getAdjacencyCache().getWeight());
+
+        /* The changes are seen once the caches are invalidated */
+        this.vertex("m.0d", "d");
+        this.edge(this.graph.getVertices(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY, ns + "m.0hub").iterator()
+                .next(), this.graph.getVertices(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY, ns + "m.0d").iterator()
+                .next(), ImporterConstants.DIRECT_CONNECTION_EDGE_LABEL, "music", 9);
+        assertEquals(ns + "m.0c", topics.neighbours(ns + "m.0hub", null, 1).get(0).getUri());
+        topics.invalidate();
+        assertEquals(ns + "m.0d", topics.neighbours(ns + "m.0hub", null, 1).get(0).getUri());
+
+        topics.getTopic(ns + "m.0a");
+        topics.getTopic(ns + "m.0b");
+        assertEquals(2, topics.getVertexCache().size());
+        assertEquals(1, topics.getVertexCache().getEvictions());
+    }
+
+    /**
+     * <p>
+     * Test the eviction of the least recently used values by weight
+     * </p>
+     */
+    @Test
+    public void testLruCache()
+    {
+        LruCache<String, String> cache = new LruCache<String, String>(6)
+        {
+            @Override
+            protected long weight(String value)
+            {
+                return value.length();
+            }
+        };
+        cache.put("a", "aa");
+        cache.put("b", "bb");
+        cache.put("c", "cc");
+        assertEquals("aa", cache.get("a"));
+        cache.put("d", "dd");
+        assertNull(cache.get("b"));
+        assertEquals("aa", cache.get("a"));
+        cache.put("e", "eeeeeee");
+        assertNull(cache.get("e"));
+        assertEquals(3, cache.size());
+        assertEquals(6, cache.getWeight());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    private Vertex vertex(String id, String name)
+    {
+        Vertex vertex = this.graph.addVertex(null);
+        vertex.setProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY, ns + id);
+        vertex.setProperty(ImporterConstants.VERTEX_NAME_LC_PROPERTY, name);
+        return vertex;
+    }
+
+    private void edge(Vertex in, Vertex out, String label, Object... counters)
+    {
+        Edge edge = this.graph.addEdge(null, in, out, label);
+        edge.setProperty(ImporterConstants.EDGE_KEY_VERTICES_CONNECTED_PROPERTY,
+                in.getProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY) + "|"
+                        + out.getProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY));
+        for (int i = 0; i < counters.length; i += 2)
+            edge.setProperty((String) counters[i], counters[i + 1]);
+    }
+
+    private List<String> uris(List<Neighbour> neighbours)
+    {
+        List<String> uris = new ArrayList<String>();
+        for (Neighbour neighbour : neighbours)
+            uris.add(neighbour.getUri());
+        return uris;
+    }
+}
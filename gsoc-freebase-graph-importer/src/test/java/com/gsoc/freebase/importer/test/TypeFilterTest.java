@@ -0,0 +1,216 @@
+package com.gsoc.freebase.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.filter.TypeFilter;
+import com.gsoc.freebase.importer.generator.DatasetGenerator;
+import com.gsoc.freebase.importer.impl.FreebaseToGraphImporter;
+import com.gsoc.freebase.importer.types.TypeDictionary;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+
+/**
+ * <p>
+ * Class to test the imports filtered by type
+ * </p>
+ */
+public class TypeFilterTest
+{
+    private static final String ns = "http://rdf.basekb.com/ns/";
+    private static final File testDirectory = ImportTestSupport.newTestDirectory("filter");
+    private static final File dataset = new File(testDirectory, "dataset");
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception
+    {
+        DatasetGenerator generator = new DatasetGenerator(dataset, 0.02);
+        generator.setEntitiesPerFile(500);
+        /* No mediator is truncated, so the filtered graph is the subgraph of the retained topics */
+        generator.setMaxFanOut(100);
+        generator.generate();
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown()
+    {
+        FileUtils.deleteQuietly(testDirectory);
+    }
+
+    /**
+     * <p>
+     * Test the included and excluded types and domains
+     * </p>
+     */
+    @Test
+    public void testAccept()
+    {
+        TypeFilter filter = TypeFilter.parse("people, " + ns + "location.citytown,-people.deceased_person");
+        assertEquals("people,location.citytown,-people.deceased_person", filter.toString());
+        assertTrue(filter.accept(Arrays.asList(ns + "common.topic", ns + "people.person")));
+        assertTrue(filter.accept(Arrays.asList(ns + "location.citytown")));
+        assertFalse(filter.accept(Arrays.asList(ns + "location.country")));
+        assertFalse(filter.accept(Arrays.asList(ns + "peoples.person")));
+        assertFalse(filter.accept(Arrays.asList(ns + "people.person", ns + "people.deceased_person")));
+        assertFalse(filter.accept(Arrays.asList(ns + "common.topic")));
+
+        filter = TypeFilter.parse("-base");
+        assertTrue(filter.accept(Arrays.asList(ns + "common.topic")));
+        assertFalse(filter.accept(Arrays.asList(ns + "base.schemastaging.person_extra")));
+        assertTrue(TypeFilter.parse(" , ").isEmpty());
+    }
+
+    /**
+     * <p>
+     * Test the filtered import only has the topics accepted and the relations between them
+     * </p>
+     */
+    @Test
+    public void testFilteredImport() throws Exception
+    {
+        File full = new File(testDirectory, "full");
+        FreebaseToGraphImporter importer = new FreebaseToGraphImporter(dataset, full, 2);
+        importer.setGenerateGraph(true);
+        importer.setGenerateGraphRelations(true);
+        importer.setInternTypes(true);
+        importer.process();
+
+        /* Include the two largest domains of the dataset, excluding the largest type of the second one */
+        TypeDictionary dictionary = TypeDictionary.read(new File(full, TypeDictionary.FILE_NAME));
+        final Map<String, Integer> counts = new HashMap<String, Integer>();
+        Graph graph = new Neo4jGraph(full.getAbsolutePath());
+        try
+        {
+            for (Vertex vertex : graph.getVertices())
+            {
+                int[] ids = vertex.getProperty(ImporterConstants.VERTEX_TYPES_PROPERTY);
+                for (String type : dictionary.decode(ids))
+                {
+                    if (type.equals(ImporterConstants.FREEBASE_COMMON_TOPIC))
+                        continue;
+                    type = type.substring(ns.length());
+                    String domain = type.substring(0, type.indexOf('.'));
+                    counts.put(type, counts.containsKey(type) ? counts.get(type) + 1 : 1);
+                    counts.put(domain, counts.containsKey(domain) ? counts.get(domain) + 1 : 1);
+                }
+            }
+        }
+        finally
+        {
+            graph.shutdown();
+        }
+        List<String> names = new ArrayList<String>(counts.keySet());
+        Collections.sort(names, new Comparator<String>()
+        {
+            @Override
+            public int compare(String name1, String name2)
+            {
+                return counts.get(name2) - counts.get(name1);
+            }
+        });
+        List<String> domains = new ArrayList<String>();
+        String excluded = null;
+        for (String name : names)
+        {
+            if (name.indexOf('.') < 0 && domains.size() < 2)
+                domains.add(name);
+            else if (domains.size() == 2 && excluded == null && name.startsWith(domains.get(1) + "."))
+                excluded = name;
+        }
+        TypeFilter filter = TypeFilter.parse(domains.get(0) + "," + domains.get(1) + ",-" + excluded);
+
+        Set<String> retained = new HashSet<String>();
+        Map<String, Object> expected = new HashMap<String, Object>();
+        graph = new Neo4jGraph(full.getAbsolutePath());
+        try
+        {
+            int topics = 0;
+            for (Vertex vertex : graph.getVertices())
+            {
+                String uri = vertex.getProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY);
+                if (uri == null)
+                    continue;
+                topics++;
+                if (filter.accept(dictionary.decode((int[]) vertex
+                        .getProperty(ImporterConstants.VERTEX_TYPES_PROPERTY))))
+                    retained.add(uri);
+            }
+            assertTrue(retained.size() > topics / 10 && retained.size() < topics * 4 / 5);
+            this.contents(graph, retained, expected);
+        }
+        finally
+        {
+            graph.shutdown();
+        }
+
+        File filtered = new File(testDirectory, "filtered");
+        importer = new FreebaseToGraphImporter(dataset, filtered, 2);
+        importer.setGenerateGraph(true);
+        importer.setGenerateGraphRelations(true);
+        importer.setTypeFilter(filter);
+        importer.process();
+
+        Map<String, Object> actual = new HashMap<String, Object>();
+        graph = new Neo4jGraph(filtered.getAbsolutePath());
+        try
+        {
+            this.contents(graph, null, actual);
+        }
+        finally
+        {
+            graph.shutdown();
+        }
+        assertTrue(expected.size() > retained.size());
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * <p>
+     * Gets the topics and the numeric properties of the edges between the topics retained (all if null)
+     * </p>
+     */
+    private void contents(Graph graph, Set<String> retained, Map<String, Object> contents)
+    {
+        for (Vertex vertex : graph.getVertices())
+        {
+            String uri = vertex.getProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY);
+            if (uri != null && (retained == null || retained.contains(uri)))
+                contents.put(uri, vertex.getProperty(ImporterConstants.VERTEX_NAME_LC_PROPERTY));
+        }
+        for (Edge edge : graph.getEdges())
+        {
+            String in = edge.getVertex(Direction.IN).getProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY);
+            String out = edge.getVertex(Direction.OUT).getProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY);
+            if (retained != null && (!retained.contains(in) || !retained.contains(out)))
+                continue;
+            String pair = in.compareTo(out) < 0 ? in + " " + out : out + " " + in;
+            for (String key : edge.getPropertyKeys())
+            {
+                Object value = edge.getProperty(key);
+                if (value instanceof Number)
+                    assertEquals(null, contents.put(edge.getLabel() + " " + pair + " " + key, value));
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.gsoc.freebase.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gsoc.freebase.importer.ImporterConstants;
+import com.gsoc.freebase.importer.impl.FreebaseToGraphImporter;
+import com.gsoc.freebase.importer.types.TypeDictionary;
+import com.gsoc.freebase.importer.types.TypeIndex;
+import com.gsoc.freebase.importer.types.TypeIndexWriter;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+
+/**
+ * <p>
+ * Class to test the type dictionary and the type index
+ * </p>
+ */
+public class TypeIndexTest
+{
+    private static final String ns = "http://rdf.basekb.com/ns/";
+
+    private File directory;
+
+    @Before
+    public void setUp()
+    {
+        this.directory = new File("/tmp/ftgitypes" + UUID.randomUUID());
+        this.directory.mkdirs();
+    }
+
+    @After
+    public void tearDown()
+    {
+        FileUtils.deleteQuietly(this.directory);
+    }
+
+    /**
+     * <p>
+     * Test the ids of the types are kept when the dictionary is opened again
+     * </p>
+     */
+    @Test
+    public void testDictionary() throws Exception
+    {
+        File file = new File(this.directory, TypeDictionary.FILE_NAME);
+        TypeDictionary dictionary = TypeDictionary.open(file);
+        int[] ids = dictionary.encode(Arrays.asList(ns + "common.topic", ns + "people.person", ns + "common.topic"));
+        assertEquals("[0, 1, 0]", Arrays.toString(ids));
+        dictionary.close();
+
+        dictionary = TypeDictionary.open(file);
+        assertEquals(2, dictionary.size());
+        assertEquals(1, dictionary.getId(ns + "people.person"));
+        assertEquals(2, dictionary.intern(ns + "film.actor"));
+        assertEquals(-1, dictionary.getId(ns + "film.film"));
+        dictionary.close();
+
+        dictionary = TypeDictionary.read(file);
+        assertEquals(Arrays.asList(ns + "film.actor", ns + "common.topic"), dictionary.decode(new int[] { 2, 0 }));
+    }
+
+    /**
+     * <p>
+     * Test the postings are written sorted and without duplicates
+     * </p>
+     */
+    @Test
+    public void testPostings() throws Exception
+    {
+        TypeDictionary dictionary = new TypeDictionary();
+        int topic = dictionary.intern(ns + "common.topic");
+        int person = dictionary.intern(ns + "people.person");
+        int unused = dictionary.intern(ns + "film.film");
+        int actor = dictionary.intern(ns + "film.actor");
+
+        TypeIndexWriter writer = new TypeIndexWriter();
+        for (long id = 0; id < 1000; id++)
+            writer.add(topic, id * 1000);
+        writer.add(actor, 300);
+        writer.add(actor, 5);
+        writer.add(actor, 1L << 40);
+        writer.add(actor, 5);
+        writer.add(person, 7);
+        writer.add(person, 7);
+        assertEquals(3, writer.write(new File(this.directory, TypeIndexWriter.FILE_NAME)));
+
+        TypeIndex index = new TypeIndex(new File(this.directory, TypeIndexWriter.FILE_NAME), dictionary);
+        try
+        {
+            long[] topics = index.getVertexIds(ns + "common.topic");
+            assertEquals(1000, topics.length);
+            assertEquals(999000, topics[999]);
+            assertEquals(1000, index.getVertexCount(ns + "common.topic"));
+            assertEquals("[5, 300, " + (1L << 40) + "]", Arrays.toString(index.getVertexIds(ns + "film.actor")));
+            assertEquals("[7]", Arrays.toString(index.getVertexIds(ns + "people.person")));
+            assertEquals(0, index.getVertexIds(unused).length);
+            assertEquals(0, index.getVertexIds(ns + "music.artist").length);
+            assertEquals(0, index.getVertexCount(ns + "music.artist"));
+        }
+        finally
+        {
+            index.close();
+        }
+    }
+
+    /**
+     * <p>
+     * Test the importer stores the type ids in the vertices and writes the vertices of every type
+     * </p>
+     */
+    @Test
+    public void testImport() throws Exception
+    {
+        URL url = TypeIndexTest.class.getClassLoader().getResource("test.nt.gz");
+        FreebaseToGraphImporter importer = new FreebaseToGraphImporter(url.getFile(), this.directory.getPath());
+        importer.setGenerateGraph(true);
+        importer.setInternTypes(true);
+        importer.process();
+
+        TypeDictionary dictionary = TypeDictionary.read(new File(this.directory, TypeDictionary.FILE_NAME));
+        Map<String, List<Long>> expected = new HashMap<String, List<Long>>();
+        Neo4jGraph graph = new Neo4jGraph(this.directory.getPath());
+        try
+        {
+            for (Vertex vertex : graph.getVertices())
+            {
+                /* The reference node of Neo4j isn't a topic */
+                if (vertex.getProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY) == null)
+                    continue;
+                assertNull(vertex.getProperty(ImporterConstants.RDF_TYPE));
+                int[] types = vertex.getProperty(ImporterConstants.VERTEX_TYPES_PROPERTY);
+                assertNotNull(types);
+                for (String type : dictionary.decode(types))
+                {
+                    if (!expected.containsKey(type))
+                        expected.put(type, new ArrayList<Long>());
+                    expected.get(type).add((Long) vertex.getId());
+                }
+            }
+        }
+        finally
+        {
+            graph.shutdown();
+        }
+
+        assertEquals(546, expected.get(ImporterConstants.FREEBASE_COMMON_TOPIC).size());
+        TypeIndex index = new TypeIndex(this.directory);
+        try
+        {
+            assertEquals(expected.size(), index.getDictionary().size());
+            for (Map.Entry<String, List<Long>> entry : expected.entrySet())
+            {
+                List<Long> ids = new ArrayList<Long>();
+                for (long id : index.getVertexIds(entry.getKey()))
+                    ids.add(id);
+                assertEquals(entry.getValue(), ids);
+            }
+        }
+        finally
+        {
+            index.close();
+        }
+    }
+
+    /**
+     * <p>
+     * Test the importer keeps the type URIs in the vertices and writes neither the dictionary nor the index by default
+     * </p>
+     */
+    @Test
+    public void testTypeUris() throws Exception
+    {
+        URL url = TypeIndexTest.class.getClassLoader().getResource("test.nt.gz");
+        FreebaseToGraphImporter importer = new FreebaseToGraphImporter(url.getFile(), this.directory.getPath());
+        importer.setGenerateGraph(true);
+        importer.process();
+
+        int topics = 0;
+        Neo4jGraph graph = new Neo4jGraph(this.directory.getPath());
+        try
+        {
+            for (Vertex vertex : graph.getVertices())
+            {
+                if (vertex.getProperty(ImporterConstants.VERTEX_ENTITY_URI_PROPERTY) == null)
+                    continue;
+                assertNull(vertex.getProperty(ImporterConstants.VERTEX_TYPES_PROPERTY));
+                String[] types = vertex.getProperty(ImporterConstants.RDF_TYPE);
+                if (Arrays.asList(types).contains(ImporterConstants.FREEBASE_COMMON_TOPIC))
+                    topics++;
+            }
+        }
+        finally
+        {
+            graph.shutdown();
+        }
+
+        assertEquals(546, topics);
+        assertFalse(new File(this.directory, TypeDictionary.FILE_NAME).exists());
+        assertFalse(new File(this.directory, TypeIndexWriter.FILE_NAME).exists());
+    }
+}